@@ -0,0 +1,349 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps collection docids to Lucene docids and back without searching. The docids of all live documents are kept in
+ * an FST that maps each docid to its rank in sorted order, next to an array from rank to Lucene docid and the reverse
+ * array from Lucene docid to rank. A lookup is thus an FST traversal and the reverse lookup two array accesses plus
+ * an FST traversal, with no per-call allocation of searchers or queries.
+ *
+ * <p>Lookups are built once per reader (see {@link #get(IndexReader)}), shared by all threads and dropped when the
+ * reader is closed. They can be persisted next to the index with {@code IndexUtils -buildDocidLookup}; a persisted
+ * lookup is only used if it was built from the same commit of the index.</p>
+ *
+ * <p>As with a {@code TermQuery} on the docid, a docid that occurs more than once resolves to the smallest Lucene
+ * docid.</p>
+ */
+public final class DocidLookup {
+  private static final Logger LOG = LogManager.getLogger(DocidLookup.class);
+
+  private static final String CODEC = "AnseriniDocidLookup";
+  private static final int VERSION = 0;
+  private static final String SUFFIX = ".docidLookup.";
+
+  private static final Map<IndexReader.CacheKey, Map<String, DocidLookup>> CACHE = new ConcurrentHashMap<>();
+
+  private final String field;
+  private final long indexVersion;
+  private final int numDocs;
+  private final FST<Long> fst;      // docid -> rank in sorted order; null if there are no docids
+  private final int[] luceneDocids; // rank -> Lucene docid
+  private final int[] ranks;        // Lucene docid -> rank, -1 if the document has no docid
+
+  private DocidLookup(String field, long indexVersion, int numDocs, FST<Long> fst, int[] luceneDocids, int[] ranks) {
+    this.field = field;
+    this.indexVersion = indexVersion;
+    this.numDocs = numDocs;
+    this.fst = fst;
+    this.luceneDocids = luceneDocids;
+    this.ranks = ranks;
+  }
+
+  /**
+   * Returns the lookup of {@link LuceneDocumentGenerator#FIELD_ID} for a reader, building it on first use.
+   *
+   * @param reader index reader
+   * @return docid lookup
+   * @throws IOException if the index cannot be read
+   */
+  public static DocidLookup get(IndexReader reader) throws IOException {
+    return get(reader, LuceneDocumentGenerator.FIELD_ID);
+  }
+
+  /**
+   * Returns the lookup of a docid field (indexed as a single untokenized term, e.g., a {@code StringField}) for a
+   * reader, building it on first use.
+   *
+   * @param reader index reader
+   * @param field docid field
+   * @return docid lookup
+   * @throws IOException if the index cannot be read
+   */
+  public static DocidLookup get(IndexReader reader, String field) throws IOException {
+    return get(reader, field, true);
+  }
+
+  /**
+   * Returns the lookup of a docid field only if it does not have to be built, i.e., it is already cached for the
+   * reader or persisted for this version of the index. Callers converting a few docids can fall back to reading the
+   * index directly instead of building the lookup over every document.
+   *
+   * @param reader index reader
+   * @param field docid field
+   * @return docid lookup, or null if it would have to be built
+   * @throws IOException if the persisted lookup cannot be read
+   */
+  public static DocidLookup getIfAvailable(IndexReader reader, String field) throws IOException {
+    return get(reader, field, false);
+  }
+
+  private static DocidLookup get(IndexReader reader, String field, boolean build) throws IOException {
+    IndexReader.CacheHelper helper = reader.getReaderCacheHelper();
+    if (helper == null) {
+      return build ? load(reader, field) : readPersisted(reader, field);
+    }
+
+    Map<String, DocidLookup> lookups = CACHE.computeIfAbsent(helper.getKey(), key -> {
+      helper.addClosedListener(CACHE::remove);
+      return new ConcurrentHashMap<>();
+    });
+    DocidLookup lookup = lookups.get(field);
+    if (lookup == null) {
+      // Only one thread builds the lookup, the others wait for it.
+      synchronized (lookups) {
+        lookup = lookups.get(field);
+        if (lookup == null) {
+          lookup = build ? load(reader, field) : readPersisted(reader, field);
+          if (lookup != null) {
+            lookups.put(field, lookup);
+          }
+        }
+      }
+    }
+    return lookup;
+  }
+
+  /**
+   * Returns where the lookup of a field is persisted for a reader, i.e., next to the index directory, or null if
+   * the reader is not over a file system directory.
+   *
+   * @param reader index reader
+   * @param field docid field
+   * @return path of the persisted lookup, or null
+   */
+  public static Path persistedPath(IndexReader reader, String field) {
+    if (!(reader instanceof DirectoryReader)) {
+      return null;
+    }
+    Directory directory = FilterDirectory.unwrap(((DirectoryReader) reader).directory());
+    if (!(directory instanceof FSDirectory)) {
+      return null;
+    }
+    Path indexPath = ((FSDirectory) directory).getDirectory().toAbsolutePath();
+    return indexPath.resolveSibling(indexPath.getFileName() + SUFFIX + field);
+  }
+
+  private static long indexVersion(IndexReader reader) {
+    return reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : -1L;
+  }
+
+  private static DocidLookup load(IndexReader reader, String field) throws IOException {
+    DocidLookup lookup = readPersisted(reader, field);
+    return lookup != null ? lookup : build(reader, field);
+  }
+
+  // Returns the persisted lookup if it was built from this version of the index, null otherwise
+  private static DocidLookup readPersisted(IndexReader reader, String field) throws IOException {
+    Path path = persistedPath(reader, field);
+    if (path != null && Files.exists(path)) {
+      DocidLookup lookup = read(path);
+      if (lookup.field.equals(field) && lookup.indexVersion == indexVersion(reader) &&
+          lookup.ranks.length == reader.maxDoc() && lookup.numDocs == reader.numDocs()) {
+        LOG.info("Docid lookup read from " + path);
+        return lookup;
+      }
+      LOG.warn("Ignoring docid lookup " + path + ": it was built from another version of the index");
+    }
+    return null;
+  }
+
+  /**
+   * Builds the lookup of a field from the terms of the index.
+   *
+   * @param reader index reader
+   * @param field docid field
+   * @return docid lookup
+   * @throws IOException if the index cannot be read
+   */
+  public static DocidLookup build(IndexReader reader, String field) throws IOException {
+    final long start = System.nanoTime();
+    int[] ranks = new int[reader.maxDoc()];
+    Arrays.fill(ranks, -1);
+    int[] luceneDocids = new int[reader.numDocs()];
+    int count = 0;
+
+    Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+    IntsRefBuilder scratch = new IntsRefBuilder();
+    Terms terms = MultiFields.getTerms(reader, field);
+    if (terms != null) {
+      Bits liveDocs = MultiFields.getLiveDocs(reader);
+      TermsEnum termsEnum = terms.iterator();
+      PostingsEnum postings = null;
+      BytesRef term;
+      // Terms come in sorted order, as the FST requires.
+      while ((term = termsEnum.next()) != null) {
+        postings = termsEnum.postings(postings, PostingsEnum.NONE);
+        int first = -1;
+        for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+          if (liveDocs != null && !liveDocs.get(doc)) {
+            continue;
+          }
+          if (first == -1) {
+            first = doc;
+          }
+          ranks[doc] = count;
+        }
+        if (first == -1) {
+          continue;
+        }
+        if (count == luceneDocids.length) {
+          luceneDocids = Arrays.copyOf(luceneDocids, Math.max(1, count * 2));
+        }
+        builder.add(Util.toIntsRef(term, scratch), (long) count);
+        luceneDocids[count++] = first;
+      }
+    }
+    FST<Long> fst = count == 0 ? null : builder.finish();
+
+    final long durationMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    LOG.info("Docid lookup of " + count + " docids in field " + field + " built in " + durationMillis + " ms");
+    return new DocidLookup(field, indexVersion(reader), reader.numDocs(), fst, Arrays.copyOf(luceneDocids, count),
+        ranks);
+  }
+
+  /**
+   * Writes this lookup to a file, to be picked up by {@link #get(IndexReader, String)} instead of building it.
+   *
+   * @param path output file, usually {@link #persistedPath(IndexReader, String)}
+   * @throws IOException if the file cannot be written
+   */
+  public void save(Path path) throws IOException {
+    try (OutputStreamDataOutput out =
+             new OutputStreamDataOutput(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      CodecUtil.writeHeader(out, CODEC, VERSION);
+      out.writeString(field);
+      out.writeLong(indexVersion);
+      out.writeVInt(numDocs);
+      out.writeVInt(luceneDocids.length);
+      for (int doc : luceneDocids) {
+        out.writeVInt(doc);
+      }
+      out.writeVInt(ranks.length);
+      for (int rank : ranks) {
+        out.writeVInt(rank + 1);
+      }
+      out.writeByte((byte) (fst == null ? 0 : 1));
+      if (fst != null) {
+        fst.save(out);
+      }
+    }
+  }
+
+  private static DocidLookup read(Path path) throws IOException {
+    try (InputStreamDataInput in =
+             new InputStreamDataInput(new BufferedInputStream(Files.newInputStream(path)))) {
+      CodecUtil.checkHeader(in, CODEC, VERSION, VERSION);
+      String field = in.readString();
+      long indexVersion = in.readLong();
+      int numDocs = in.readVInt();
+      int[] luceneDocids = new int[in.readVInt()];
+      for (int i = 0; i < luceneDocids.length; i++) {
+        luceneDocids[i] = in.readVInt();
+      }
+      int[] ranks = new int[in.readVInt()];
+      for (int i = 0; i < ranks.length; i++) {
+        ranks[i] = in.readVInt() - 1;
+      }
+      FST<Long> fst = in.readByte() == 0 ? null : new FST<>(in, PositiveIntOutputs.getSingleton());
+      return new DocidLookup(field, indexVersion, numDocs, fst, luceneDocids, ranks);
+    }
+  }
+
+  /**
+   * Returns the number of distinct docids.
+   *
+   * @return number of docids
+   */
+  public int size() {
+    return luceneDocids.length;
+  }
+
+  /**
+   * Converts a collection docid to a Lucene docid.
+   *
+   * @param docid collection docid
+   * @return Lucene docid, or -1 if the docid is not in the index
+   */
+  public int getLuceneDocid(String docid) {
+    if (fst == null) {
+      return -1;
+    }
+    try {
+      Long rank = Util.get(fst, new BytesRef(docid));
+      return rank == null ? -1 : luceneDocids[rank.intValue()];
+    } catch (IOException e) {
+      // The FST is on heap.
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Converts a Lucene docid to a collection docid.
+   *
+   * @param luceneDocid Lucene docid
+   * @return collection docid, or null if the document has no docid
+   */
+  public String getDocid(int luceneDocid) {
+    if (luceneDocid < 0 || luceneDocid >= ranks.length || ranks[luceneDocid] < 0) {
+      return null;
+    }
+    try {
+      IntsRef input = Util.getByOutput(fst, ranks[luceneDocid]);
+      return Util.toBytesRef(input, new BytesRefBuilder()).utf8ToString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
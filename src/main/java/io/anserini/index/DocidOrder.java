@@ -0,0 +1,334 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import io.anserini.index.generator.TweetGenerator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.InPlaceMergeSorter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed ordering of the documents of an index, e.g., all documents sorted by docid, as an array of Lucene docids.
+ * Deterministic sampling (see {@link io.anserini.rerank.lib.AxiomReranker}) draws from such an ordering, since
+ * Lucene docids alone depend on how the index was built.
+ *
+ * <p>Computing an ordering means sorting the whole index, so it is done once and written next to the index as a
+ * file of fixed-width ints, which later runs memory-map instead of sorting again: opening is then independent of the
+ * size of the index and the ordering is not copied to the heap. The file records the commit of the index it was
+ * computed from and is recomputed if the index changes.</p>
+ */
+public final class DocidOrder {
+  private static final Logger LOG = LogManager.getLogger(DocidOrder.class);
+
+  private static final String CODEC = "AnseriniDocidOrder";
+  private static final int VERSION = 0;
+  private static final String SUFFIX = ".docidOrder.";
+
+  /**
+   * Computes an ordering of the documents of an index.
+   */
+  @FunctionalInterface
+  public interface Source {
+    /**
+     * Computes the ordering.
+     *
+     * @param reader index reader
+     * @return Lucene docids in order; -1 marks an entry without a document
+     * @throws IOException if the index cannot be read
+     */
+    int[] compute(IndexReader reader) throws IOException;
+  }
+
+  private final IntBuffer docids;
+
+  private DocidOrder(IntBuffer docids) {
+    this.docids = docids;
+  }
+
+  /**
+   * Returns an ordering of the documents of an index, reading it from its file next to the index if that file is up
+   * to date, and computing and writing it otherwise. If the file cannot be written the ordering is kept on the heap.
+   *
+   * @param reader index reader
+   * @param name name of the ordering, part of the file name
+   * @param stamp version of the inputs of the ordering other than the index (e.g., the modification time of an input
+   *              file), or 0 if there are none
+   * @param source computes the ordering if needed
+   * @return ordering
+   * @throws IOException if the index cannot be read
+   */
+  public static DocidOrder open(IndexReader reader, String name, long stamp, Source source) throws IOException {
+    Path path = persistedPath(reader, name);
+    if (path != null && Files.exists(path)) {
+      DocidOrder order = map(path, name, reader, stamp);
+      if (order != null) {
+        LOG.info("Docid order " + name + " mapped from " + path);
+        return order;
+      }
+      LOG.warn("Ignoring docid order " + path + ": it was computed from another version of the index");
+    }
+
+    final long start = System.nanoTime();
+    int[] docids = source.compute(reader);
+    final long durationMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    LOG.info("Docid order " + name + " of " + docids.length + " documents computed in " + durationMillis + " ms");
+
+    if (path != null) {
+      try {
+        write(path, name, reader, stamp, docids);
+        DocidOrder order = map(path, name, reader, stamp);
+        if (order != null) {
+          LOG.info("Docid order " + name + " written to " + path);
+          return order;
+        }
+      } catch (IOException e) {
+        LOG.warn("Cannot write docid order " + path + ", keeping it in memory: " + e.getMessage());
+      }
+    }
+    return new DocidOrder(IntBuffer.wrap(docids));
+  }
+
+  /**
+   * Returns where an ordering is written for a reader, i.e., next to the index directory, or null if the reader is
+   * not over a file system directory.
+   *
+   * @param reader index reader
+   * @param name name of the ordering
+   * @return path of the ordering, or null
+   */
+  public static Path persistedPath(IndexReader reader, String name) {
+    if (!(reader instanceof DirectoryReader)) {
+      return null;
+    }
+    Directory directory = FilterDirectory.unwrap(((DirectoryReader) reader).directory());
+    if (!(directory instanceof FSDirectory)) {
+      return null;
+    }
+    Path indexPath = ((FSDirectory) directory).getDirectory().toAbsolutePath();
+    return indexPath.resolveSibling(indexPath.getFileName() + SUFFIX + name);
+  }
+
+  private static long indexVersion(IndexReader reader) {
+    return reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : -1L;
+  }
+
+  private static void write(Path path, String name, IndexReader reader, long stamp, int[] docids) throws IOException {
+    // Write to a temporary file first so that concurrent runs never map a partial file.
+    Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStreamDataOutput out =
+               new OutputStreamDataOutput(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        CodecUtil.writeHeader(out, CODEC, VERSION);
+        out.writeString(name);
+        out.writeLong(indexVersion(reader));
+        out.writeInt(reader.maxDoc());
+        out.writeInt(reader.numDocs());
+        out.writeLong(stamp);
+        out.writeInt(docids.length);
+        for (int doc : docids) {
+          out.writeInt(doc);
+        }
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static DocidOrder map(Path path, String name, IndexReader reader, long stamp) throws IOException {
+    long offset;
+    int count;
+    try (InputStreamDataInput in =
+             new InputStreamDataInput(new BufferedInputStream(Files.newInputStream(path)))) {
+      CodecUtil.checkHeader(in, CODEC, VERSION, VERSION);
+      String persistedName = in.readString();
+      if (!persistedName.equals(name) || in.readLong() != indexVersion(reader) || in.readInt() != reader.maxDoc() ||
+          in.readInt() != reader.numDocs() || in.readLong() != stamp) {
+        return null;
+      }
+      count = in.readInt();
+      int nameLength = persistedName.getBytes(StandardCharsets.UTF_8).length;
+      offset = CodecUtil.headerLength(CODEC) + vIntLength(nameLength) + nameLength + 8 + 4 + 4 + 8 + 4;
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() != offset + 4L * count) {
+        return null;
+      }
+      // Ints are written big-endian, the default order of mapped buffers; the mapping outlives the channel.
+      return new DocidOrder(channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * count).asIntBuffer());
+    }
+  }
+
+  private static int vIntLength(int i) {
+    int length = 1;
+    while ((i >>>= 7) != 0) {
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Orders the live documents by {@link LuceneDocumentGenerator#FIELD_ID}, documents with the same docid by Lucene
+   * docid.
+   *
+   * @param reader index reader
+   * @return Lucene docids in order
+   * @throws IOException if the index cannot be read
+   */
+  public static int[] sortedByDocid(IndexReader reader) throws IOException {
+    int[] docids = new int[reader.numDocs()];
+    int count = 0;
+    Terms terms = MultiFields.getTerms(reader, LuceneDocumentGenerator.FIELD_ID);
+    if (terms != null) {
+      Bits liveDocs = MultiFields.getLiveDocs(reader);
+      TermsEnum termsEnum = terms.iterator();
+      PostingsEnum postings = null;
+      // Terms come in sorted order and postings in Lucene docid order.
+      while (termsEnum.next() != null) {
+        postings = termsEnum.postings(postings, PostingsEnum.NONE);
+        for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+          if (liveDocs == null || liveDocs.get(doc)) {
+            if (count == docids.length) {
+              docids = Arrays.copyOf(docids, Math.max(1, count * 2));
+            }
+            docids[count++] = doc;
+          }
+        }
+      }
+    }
+    return Arrays.copyOf(docids, count);
+  }
+
+  /**
+   * Orders the live documents by decreasing tweet id, documents with the same tweet id by Lucene docid.
+   *
+   * @param reader index reader
+   * @return Lucene docids in order
+   * @throws IOException if the index cannot be read
+   */
+  public static int[] sortedByTweetId(IndexReader reader) throws IOException {
+    final int[] docids = new int[reader.numDocs()];
+    final long[] ids = new long[docids.length];
+    int count = 0;
+    for (LeafReaderContext leaf : reader.leaves()) {
+      NumericDocValues values = leaf.reader().getNumericDocValues(TweetGenerator.StatusField.ID_LONG.name);
+      if (values == null) {
+        continue;
+      }
+      Bits liveDocs = leaf.reader().getLiveDocs();
+      for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+        if (liveDocs == null || liveDocs.get(doc)) {
+          docids[count] = leaf.docBase + doc;
+          ids[count++] = values.longValue();
+        }
+      }
+    }
+
+    // Stable, so equal ids keep Lucene docid order.
+    new InPlaceMergeSorter() {
+      @Override
+      protected int compare(int i, int j) {
+        return Long.compare(ids[j], ids[i]);
+      }
+
+      @Override
+      protected void swap(int i, int j) {
+        int doc = docids[i];
+        docids[i] = docids[j];
+        docids[j] = doc;
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+      }
+    }.sort(0, count);
+    return Arrays.copyOf(docids, count);
+  }
+
+  /**
+   * Orders documents as listed in a docids file, one docid per line. Docids that are not in the index keep their
+   * entry, as -1, so that sampling from the ordering does not depend on the contents of the index.
+   *
+   * @param reader index reader
+   * @param lines docids, one per line
+   * @return Lucene docids in order
+   * @throws IOException if the index or the docids cannot be read
+   */
+  public static int[] fromDocids(IndexReader reader, BufferedReader lines) throws IOException {
+    DocidLookup lookup = DocidLookup.get(reader);
+    int[] docids = new int[1024];
+    int count = 0;
+    String line;
+    while ((line = lines.readLine()) != null) {
+      if (count == docids.length) {
+        docids = Arrays.copyOf(docids, count * 2);
+      }
+      docids[count++] = lookup.getLuceneDocid(line);
+    }
+    return Arrays.copyOf(docids, count);
+  }
+
+  /**
+   * Returns the number of entries of this ordering.
+   *
+   * @return number of entries
+   */
+  public int size() {
+    return docids.limit();
+  }
+
+  /**
+   * Returns the Lucene docid at a position of this ordering. Safe to call from several threads.
+   *
+   * @param index position, in [0, size())
+   * @return Lucene docid, or -1 if the entry has no document
+   */
+  public int get(int index) {
+    return docids.get(index);
+  }
+}
@@ -23,6 +23,7 @@ import io.anserini.analysis.EnglishStemmingAnalyzer;
 import io.anserini.analysis.TweetAnalyzer;
 import io.anserini.collection.*;
 import io.anserini.index.generator.LuceneDocumentGenerator;
+import io.anserini.index.generator.TweetGenerator;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.apache.commons.pool2.BasePooledObjectFactory;
@@ -36,6 +37,8 @@ import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -129,6 +132,14 @@ public final class IndexCollection {
         usage = "a file that contains deleted tweetIds, one per line. these tweeets won't be indexed")
     public String tweetDeletedIdsFile = "";
 
+    @Option(name = "-tweet.sortById", usage = "boolean switch to sort the index by ascending tweet id, so that " +
+        "searches bounded by the query time only visit the tweets posted before it")
+    public boolean tweetSortById = false;
+
+    @Option(name = "-tweet.docValues", usage = "boolean switch to also index the follower, friend, status, hashtag " +
+        "and link counts and the reply status of tweets as numeric DocValues, read by the Twitter LTR features")
+    public boolean tweetDocValues = false;
+
     @Option(name = "-solr", forbids = {"-index"}, usage = "boolean switch to determine if we should index into Solr")
     public boolean solr = false;
 
@@ -552,6 +563,9 @@ public final class IndexCollection {
       config.setRAMBufferSizeMB(args.memorybufferSize);
       config.setUseCompoundFile(false);
       config.setMergeScheduler(new ConcurrentMergeScheduler());
+      if (args.tweetSortById) {
+        config.setIndexSort(new Sort(new SortField(TweetGenerator.StatusField.ID_LONG.name, SortField.Type.LONG)));
+      }
 
       writer = new IndexWriter(dir, config);
     }
@@ -0,0 +1,90 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide pool of index readers keyed by index path, for components that open an index of their own (e.g., the
+ * external index of {@link io.anserini.rerank.lib.AxiomReranker}). Every {@link #acquire(Path)} of a path returns
+ * the same open reader and takes a reference to it; {@link #release(IndexReader)} gives the reference back, and the
+ * reader is closed when the last one is released. Readers are thread-safe, so searchers over a pooled reader can be
+ * created freely.
+ */
+public final class IndexReaderPool {
+  private static final Logger LOG = LogManager.getLogger(IndexReaderPool.class);
+
+  private static final Map<Path, DirectoryReader> READERS = new HashMap<>();
+
+  private IndexReaderPool() {}
+
+  /**
+   * Returns the shared reader of an index, opening it if no one holds it. Each call must be paired with a call to
+   * {@link #release(IndexReader)}.
+   *
+   * @param indexPath index path
+   * @return shared reader
+   * @throws IOException if the index cannot be opened
+   */
+  public static synchronized IndexReader acquire(Path indexPath) throws IOException {
+    Path key = indexPath.toAbsolutePath().normalize();
+    DirectoryReader reader = READERS.get(key);
+    if (reader != null && reader.tryIncRef()) {
+      return reader;
+    }
+
+    if (!Files.exists(key) || !Files.isDirectory(key) || !Files.isReadable(key)) {
+      throw new IllegalArgumentException(indexPath + " does not exist or is not a directory.");
+    }
+    LOG.info("Opening shared reader of " + key);
+    reader = DirectoryReader.open(FSDirectory.open(key));
+    READERS.put(key, reader);
+    return reader;
+  }
+
+  /**
+   * Gives back a reference taken with {@link #acquire(Path)}, closing the reader if it was the last one.
+   *
+   * @param reader shared reader
+   * @throws IOException if the reader cannot be closed
+   */
+  public static synchronized void release(IndexReader reader) throws IOException {
+    reader.decRef();
+    if (reader.getRefCount() == 0) {
+      READERS.values().remove(reader);
+    }
+  }
+
+  /**
+   * Returns the number of open readers in the pool.
+   *
+   * @return number of open readers
+   */
+  public static synchronized int size() {
+    return READERS.size();
+  }
+}
@@ -114,6 +114,10 @@ public class IndexUtils {
 
     @Option(name = "-convertLuceneDocidToDocid", metaVar = "docid", usage = "converts to a Lucene internal lookupDocid to a collection lookupDocid ")
     int lookupLuceneDocid;
+
+    @Option(name = "-buildDocidLookup", usage = "builds the docid <-> Lucene docid lookup and persists it next to the " +
+            "index, so that it is not rebuilt every time the index is opened")
+    boolean buildDocidLookup;
   }
 
   public class NotStoredException extends Exception {
@@ -215,13 +219,16 @@ public class IndexUtils {
 
     int numNonEmptyDocs = reader.getDocCount(LuceneDocumentGenerator.FIELD_BODY);
 
+    // Converts all the docids of the file
+    DocidLookup lookup = DocidLookup.get(reader);
     String docid;
     int counter = 0;
     while ((docid = bRdr.readLine()) != null) {
       counter++;
 
-      int internalDocid = convertDocidToLuceneDocid(docid);
+      int internalDocid = lookup.getLuceneDocid(docid);
       if (internalDocid == -1) {
+        LOG.warn(String.format("Docid %s not found!", docid));
         continue;
       }
 
@@ -329,9 +336,10 @@ public class IndexUtils {
         outStream = new BZip2CompressorOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(outputPath))));
         break;
     }
+    DocidLookup lookup = DocidLookup.get(reader);
     for (int i = 0; i < scoreDocs.length; i++) {
       StringBuilder builder = new StringBuilder();
-      builder.append(searcher.doc(scoreDocs[i].doc).getField(LuceneDocumentGenerator.FIELD_ID).stringValue()).append("\n");
+      builder.append(lookup.getDocid(scoreDocs[i].doc)).append("\n");
       outStream.write(builder.toString().getBytes(StandardCharsets.UTF_8));
     }
     outStream.close();
@@ -360,6 +368,9 @@ public class IndexUtils {
       return;
     }
     
+    // Converts all the docids of the file
+    final DocidLookup lookup = DocidLookup.get(reader);
+
     final class DumpThread extends Thread {
       final private IndexReader reader;
       final private String docid;
@@ -376,7 +387,7 @@ public class IndexUtils {
       @Override
       public void run() {
         try {
-          Document d = reader.document(convertDocidToLuceneDocid(docid));
+          Document d = reader.document(lookup.getLuceneDocid(docid));
           IndexableField doc = d.getField(LuceneDocumentGenerator.FIELD_RAW);
           if (doc == null) {
             LOG.error("Raw documents not stored: " + docid);
@@ -443,29 +454,51 @@ public class IndexUtils {
     return doc.sentences();
   }
 
+  // A single conversion only uses the docid lookup if it is already built, building it reads every document
   public int convertDocidToLuceneDocid(String docid) throws IOException {
-    IndexSearcher searcher = new IndexSearcher(reader);
+    DocidLookup lookup = DocidLookup.getIfAvailable(reader, LuceneDocumentGenerator.FIELD_ID);
+    int luceneDocid;
+    if (lookup != null) {
+      luceneDocid = lookup.getLuceneDocid(docid);
+    } else {
+      IndexSearcher searcher = new IndexSearcher(reader);
 
-    Query q = new TermQuery(new Term(LuceneDocumentGenerator.FIELD_ID, docid));
-    TopDocs rs = searcher.search(q, 1);
-    ScoreDoc[] hits = rs.scoreDocs;
+      Query q = new TermQuery(new Term(LuceneDocumentGenerator.FIELD_ID, docid));
+      TopDocs rs = searcher.search(q, 1);
+      ScoreDoc[] hits = rs.scoreDocs;
+      luceneDocid = hits == null || hits.length == 0 ? -1 : hits[0].doc;
+    }
 
-    if (hits == null || hits.length == 0) {
+    if (luceneDocid < 0) {
       LOG.warn(String.format("Docid %s not found!", docid));
-      return -1;
     }
-
-    return hits[0].doc;
+    return luceneDocid;
   }
 
   public String convertLuceneDocidToDocid(int docid) throws IOException {
-    Document d = reader.document(docid);
-    IndexableField doc = d.getField(LuceneDocumentGenerator.FIELD_ID);
-    if (doc == null) {
+    DocidLookup lookup = DocidLookup.getIfAvailable(reader, LuceneDocumentGenerator.FIELD_ID);
+    String collectionDocid;
+    if (lookup != null) {
+      collectionDocid = lookup.getDocid(docid);
+    } else {
+      IndexableField field = reader.document(docid).getField(LuceneDocumentGenerator.FIELD_ID);
+      collectionDocid = field == null ? null : field.stringValue();
+    }
+
+    if (collectionDocid == null) {
       // Really shouldn't happen!
       throw new RuntimeException();
     }
-    return doc.stringValue();
+    return collectionDocid;
+  }
+
+  public void buildDocidLookup() throws IOException {
+    Path path = DocidLookup.persistedPath(reader, LuceneDocumentGenerator.FIELD_ID);
+    if (path == null) {
+      throw new IllegalArgumentException("The index is not a file system directory.");
+    }
+    DocidLookup.build(reader, LuceneDocumentGenerator.FIELD_ID).save(path);
+    System.out.println(String.format("Docid lookup is output to: %s", path));
   }
 
   public static void main(String[] argv) throws Exception{
@@ -533,5 +566,9 @@ public class IndexUtils {
     if (args.lookupLuceneDocid > 0) {
       System.out.println(util.convertLuceneDocidToDocid(args.lookupLuceneDocid));
     }
+
+    if (args.buildDocidLookup) {
+      util.buildDocidLookup();
+    }
   }
 }
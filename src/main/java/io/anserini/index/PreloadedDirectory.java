@@ -0,0 +1,242 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only directory that eagerly copies every file of an index into direct (off-heap) buffers when it is opened,
+ * so that searching never touches the disk or depends on the state of the OS page cache. Files that appear after
+ * the directory has been opened (there should not be any for a search-only workload) are read through the
+ * underlying directory.
+ */
+public class PreloadedDirectory extends FilterDirectory {
+  private static final Logger LOG = LogManager.getLogger(PreloadedDirectory.class);
+
+  // Direct buffers are addressed with ints, so large files are split into 1GB chunks.
+  private static final int DEFAULT_CHUNK_BITS = 30;
+  private static final int COPY_BUFFER_SIZE = 1 << 20;
+
+  private final int chunkBits;
+  private final Map<String, ByteBuffer[]> files = new HashMap<>();
+  private final long bytesLoaded;
+
+  public static PreloadedDirectory open(Path path) throws IOException {
+    return new PreloadedDirectory(FSDirectory.open(path));
+  }
+
+  public PreloadedDirectory(Directory in) throws IOException {
+    this(in, DEFAULT_CHUNK_BITS);
+  }
+
+  // Smaller chunks are only used by tests, to read across chunk boundaries of small files.
+  PreloadedDirectory(Directory in, int chunkBits) throws IOException {
+    super(in);
+    this.chunkBits = chunkBits;
+    final int chunkSize = 1 << chunkBits;
+
+    final long start = System.nanoTime();
+    long total = 0;
+    byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+    for (String name : in.listAll()) {
+      try (IndexInput input = in.openInput(name, IOContext.READONCE)) {
+        long length = input.length();
+        int numChunks = (int) ((length + chunkSize - 1) >>> chunkBits);
+        ByteBuffer[] chunks = new ByteBuffer[Math.max(numChunks, 1)];
+        chunks[0] = ByteBuffer.allocateDirect(0);
+        for (int i = 0; i < numChunks; i++) {
+          int chunkLength = (int) Math.min(chunkSize, length - ((long) i << chunkBits));
+          ByteBuffer chunk = ByteBuffer.allocateDirect(chunkLength);
+          while (chunk.hasRemaining()) {
+            int n = Math.min(copyBuffer.length, chunk.remaining());
+            input.readBytes(copyBuffer, 0, n);
+            chunk.put(copyBuffer, 0, n);
+          }
+          chunk.flip();
+          chunks[i] = chunk;
+        }
+        files.put(name, chunks);
+        total += length;
+      }
+    }
+    bytesLoaded = total;
+
+    final long durationMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    LOG.info(String.format("Preloaded %d files (%.1f MB) off-heap in %d ms", files.size(),
+        bytesLoaded / (1024.0 * 1024.0), durationMillis));
+  }
+
+  /**
+   * Returns the total number of bytes held in off-heap buffers.
+   *
+   * @return the total number of bytes held in off-heap buffers
+   */
+  public long getBytesLoaded() {
+    return bytesLoaded;
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ByteBuffer[] chunks = files.get(name);
+    if (chunks == null) {
+      return super.openInput(name, context);
+    }
+
+    long length = 0;
+    for (ByteBuffer chunk : chunks) {
+      length += chunk.limit();
+    }
+    return new DirectBufferIndexInput("PreloadedDirectory(" + name + ")", chunks, chunkBits, 0L, length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    files.clear();
+    super.close();
+  }
+
+  /**
+   * {@link IndexInput} over a sequence of preloaded buffers. Every instance (including clones and slices) works on
+   * its own duplicates of the buffers so that positions are never shared between threads.
+   */
+  private static final class DirectBufferIndexInput extends IndexInput {
+    private final int chunkBits;
+    private final long offset;
+    private final long length;
+    private ByteBuffer[] buffers;
+    private int current;
+
+    private DirectBufferIndexInput(String resourceDescription, ByteBuffer[] chunks, int chunkBits, long offset,
+        long length) throws IOException {
+      super(resourceDescription);
+      this.chunkBits = chunkBits;
+      this.offset = offset;
+      this.length = length;
+      this.buffers = duplicate(chunks);
+      seek(0L);
+    }
+
+    private static ByteBuffer[] duplicate(ByteBuffer[] chunks) {
+      ByteBuffer[] copies = new ByteBuffer[chunks.length];
+      for (int i = 0; i < chunks.length; i++) {
+        copies[i] = chunks[i].duplicate();
+      }
+      return copies;
+    }
+
+    private void nextBuffer() throws EOFException {
+      if (current + 1 >= buffers.length) {
+        throw new EOFException("read past EOF: " + this);
+      }
+      current++;
+      buffers[current].position(0);
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      if (getFilePointer() >= length) {
+        throw new EOFException("read past EOF: " + this);
+      }
+      if (!buffers[current].hasRemaining()) {
+        nextBuffer();
+      }
+      return buffers[current].get();
+    }
+
+    @Override
+    public void readBytes(byte[] b, int off, int len) throws IOException {
+      if (getFilePointer() + len > length) {
+        throw new EOFException("read past EOF: " + this);
+      }
+      while (len > 0) {
+        ByteBuffer buffer = buffers[current];
+        if (!buffer.hasRemaining()) {
+          nextBuffer();
+          continue;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        off += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    public long getFilePointer() {
+      return ((long) current << chunkBits) + buffers[current].position() - offset;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      if (pos < 0 || pos > length) {
+        throw new EOFException("seek past EOF (pos=" + pos + "): " + this);
+      }
+      long absolute = offset + pos;
+      int index = (int) (absolute >>> chunkBits);
+      int position = (int) (absolute & ((1 << chunkBits) - 1));
+      // Seeking to the very end of a file that fills its last chunk exactly.
+      if (index == buffers.length) {
+        index--;
+        position = 1 << chunkBits;
+      }
+      current = index;
+      buffers[current].position(position);
+    }
+
+    @Override
+    public long length() {
+      return length;
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long sliceOffset, long sliceLength) throws IOException {
+      if (sliceOffset < 0 || sliceLength < 0 || sliceOffset + sliceLength > length) {
+        throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: " + this);
+      }
+      return new DirectBufferIndexInput(getFullSliceDescription(sliceDescription), buffers, chunkBits,
+          offset + sliceOffset, sliceLength);
+    }
+
+    @Override
+    public DirectBufferIndexInput clone() {
+      DirectBufferIndexInput clone = (DirectBufferIndexInput) super.clone();
+      clone.buffers = duplicate(buffers);
+      clone.current = current;
+      clone.buffers[current].position(buffers[current].position());
+      return clone;
+    }
+
+    @Override
+    public void close() {
+      // The buffers are owned by the directory.
+    }
+  }
+}
@@ -65,7 +65,9 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
     STATUSES_COUNT("statuses_count"),
     RETWEETED_STATUS_ID("retweeted_status_id"),
     RETWEETED_USER_ID("retweeted_user_id"),
-    RETWEET_COUNT("retweet_count");
+    RETWEET_COUNT("retweet_count"),
+    HASHTAG_COUNT("hashtag_count"),
+    LINK_COUNT("link_count");
 
     public final String name;
 
@@ -74,6 +76,27 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
     }
   }
 
+  /**
+   * Counts the occurrences of a string in the text of a tweet, e.g., "#" for hashtags.
+   *
+   * @param text text of the tweet
+   * @param matchStr string to count
+   * @return number of non-overlapping occurrences
+   */
+  public static int countOccurrences(String text, String matchStr) {
+    int lastIndex = 0;
+    int count = 0;
+
+    while (lastIndex != -1) {
+      lastIndex = text.indexOf(matchStr, lastIndex);
+      if (lastIndex != -1) {
+        count++;
+        lastIndex += matchStr.length();
+      }
+    }
+    return count;
+  }
+
   public TweetGenerator(IndexCollection.Args args,
                         IndexCollection.Counters counters) throws IOException{
     super(args, counters);
@@ -160,8 +183,8 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
     tweetDoc.getEpoch().ifPresent( epoch ->
       doc.add(new LongPoint(StatusField.EPOCH.name, epoch)) );
     doc.add(new StringField(StatusField.SCREEN_NAME.name, tweetDoc.getScreenName(), Field.Store.NO));
-    doc.add(new IntPoint(StatusField.FRIENDS_COUNT.name, tweetDoc.getFollowersCount()));
-    doc.add(new IntPoint(StatusField.FOLLOWERS_COUNT.name, tweetDoc.getFriendsCount()));
+    doc.add(new IntPoint(StatusField.FRIENDS_COUNT.name, tweetDoc.getFriendsCount()));
+    doc.add(new IntPoint(StatusField.FOLLOWERS_COUNT.name, tweetDoc.getFollowersCount()));
     doc.add(new IntPoint(StatusField.STATUSES_COUNT.name, tweetDoc.getStatusesCount()));
 
     tweetDoc.getInReplyToStatusId().ifPresent( rid -> {
@@ -205,6 +228,17 @@ public class TweetGenerator extends LuceneDocumentGenerator<TweetCollection.Docu
 
     doc.add(new Field(FIELD_BODY, text, fieldType));
 
+    // Per-tweet values read by the LTR features without loading the stored document
+    if (args.tweetDocValues) {
+      doc.add(new NumericDocValuesField(StatusField.FOLLOWERS_COUNT.name, tweetDoc.getFollowersCount()));
+      doc.add(new NumericDocValuesField(StatusField.FRIENDS_COUNT.name, tweetDoc.getFriendsCount()));
+      doc.add(new NumericDocValuesField(StatusField.STATUSES_COUNT.name, tweetDoc.getStatusesCount()));
+      doc.add(new NumericDocValuesField(StatusField.HASHTAG_COUNT.name, countOccurrences(text, "#")));
+      doc.add(new NumericDocValuesField(StatusField.LINK_COUNT.name, countOccurrences(text, "http://")));
+      tweetDoc.getInReplyToStatusId().ifPresent( rid ->
+        doc.add(new NumericDocValuesField(StatusField.IN_REPLY_TO_STATUS_ID.name, rid)) );
+    }
+
     return doc;
   }
 }
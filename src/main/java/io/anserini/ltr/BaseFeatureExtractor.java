@@ -16,7 +16,11 @@
 
 package io.anserini.ltr;
 
+import io.anserini.index.DocidLookup;
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import io.anserini.ltr.feature.DocValuesCursor;
 import io.anserini.ltr.feature.FeatureExtractors;
+import io.anserini.ltr.feature.PairDocFreqs;
 import io.anserini.rerank.RerankerContext;
 import io.anserini.util.AnalyzerUtils;
 import io.anserini.util.Qrels;
@@ -29,24 +33,35 @@ import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.util.Bits;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Feature extractor class that forms the base for other feature extractors
  */
 abstract public class BaseFeatureExtractor<K> {
     private static final Logger LOG = LogManager.getLogger(BaseFeatureExtractor.class);
+    // Tasks in flight per thread, bounds the output held in memory while waiting for earlier tasks
+    private static final int TASKS_PER_THREAD = 4;
+    // Documents per task when extracting over the whole index
+    private static final int DOCS_PER_TASK = 256;
+
     private IndexReader reader;
     private Qrels qrels;
     private Map<K, Map<String, String>> topics;
     private Analyzer queryAnalyzer;
     private final FeatureExtractors customFeatureExtractors;
+    private int threads = 1;
+    private boolean precomputePairs = false;
 
     abstract protected String getIdField();
 
@@ -62,8 +77,6 @@ abstract public class BaseFeatureExtractor<K> {
 
     abstract protected Query parseQuery(String queryText);
 
-    abstract protected Query docIdQuery(String docId);
-
     public static<K> String constructOutputString(K qid, int qrel, String docId, float[] features) {
       StringBuilder sb = new StringBuilder();
       sb.append(qrel);
@@ -123,6 +136,24 @@ abstract public class BaseFeatureExtractor<K> {
         this.customFeatureExtractors = extractors;
     }
 
+    /**
+     * Sets the number of threads extracting features. All threads share the extractor chain and the output is written
+     * in the same order as with a single thread.
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Computes the document frequencies of all pairs of query terms of the topics before extracting features, instead
+     * of on demand when a pair is first seen (see {@link PairDocFreqs}).
+     * @param precomputePairs
+     */
+    public void setPrecomputePairs(boolean precomputePairs) {
+        this.precomputePairs = precomputePairs;
+    }
+
     // Build all the reranker contexts because they will be reused once per query
     @SuppressWarnings("unchecked")
     private Map<String, RerankerContext<K>> buildRerankerContextMap() throws IOException {
@@ -149,6 +180,14 @@ abstract public class BaseFeatureExtractor<K> {
 
         }
         LOG.debug("Completed constructing context for all qrels");
+
+        if (precomputePairs) {
+            List<List<String>> queries = new ArrayList<>();
+            for (RerankerContext<K> context : queryContextMap.values()) {
+                queries.add(context.getQueryTokens());
+            }
+            PairDocFreqs.get(reader).precompute(reader, LuceneDocumentGenerator.FIELD_BODY, queries, threads);
+        }
         return queryContextMap;
     }
 
@@ -159,6 +198,100 @@ abstract public class BaseFeatureExtractor<K> {
         }
     }
 
+    /**
+     * Where feature vectors are written. Workers collect the vectors of a task in a buffer, and buffers are written
+     * in task order by the calling thread.
+     * @param <B> buffer type
+     */
+    private interface FeatureSink<B> {
+        B newBuffer();
+
+        void add(B buffer, String qid, int qrel, String docId, float[] features);
+
+        void write(B buffer) throws IOException;
+    }
+
+    // SVMlight text, formatted by the workers
+    private static FeatureSink<StringBuilder> textSink(PrintStream out) {
+        return new FeatureSink<StringBuilder>() {
+            @Override
+            public StringBuilder newBuffer() {
+                return new StringBuilder();
+            }
+
+            @Override
+            public void add(StringBuilder sb, String qid, int qrel, String docId, float[] features) {
+                sb.append(constructOutputString(qid, qrel, docId, features));
+                sb.append("\n");
+            }
+
+            @Override
+            public void write(StringBuilder sb) {
+                out.print(sb);
+                out.flush();
+            }
+        };
+    }
+
+    // Binary columnar format, see FeatureFile
+    private static FeatureSink<FeatureFile.Rows> binarySink(FeatureFile.Writer writer) {
+        return new FeatureSink<FeatureFile.Rows>() {
+            @Override
+            public FeatureFile.Rows newBuffer() {
+                return new FeatureFile.Rows();
+            }
+
+            @Override
+            public void add(FeatureFile.Rows rows, String qid, int qrel, String docId, float[] features) {
+                rows.add(qid, qrel, docId, features);
+            }
+
+            @Override
+            public void write(FeatureFile.Rows rows) throws IOException {
+                writer.addAll(rows);
+            }
+        };
+    }
+
+    private static List<String> featureNames(FeatureExtractors extractors) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < extractors.extractors.size(); i++) {
+            names.add(extractors.extractors.get(i).getName());
+        }
+        return names;
+    }
+
+    /**
+     * Runs the tasks on a pool of worker threads and writes their output in task order as soon as it is available,
+     * with a bounded number of tasks in flight
+     * @param sink
+     * @param tasks
+     * @throws IOException
+     */
+    private <B> void writeInOrder(FeatureSink<B> sink, List<Callable<B>> tasks) throws IOException {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      Deque<Future<B>> pending = new ArrayDeque<>();
+      Iterator<Callable<B>> iterator = tasks.iterator();
+      try {
+        while (iterator.hasNext() || !pending.isEmpty()) {
+          while (iterator.hasNext() && pending.size() < threads * TASKS_PER_THREAD) {
+            pending.add(executor.submit(iterator.next()));
+          }
+          sink.write(pending.poll().get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while extracting features", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException("Error extracting features", e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
    /**
    * Iterates through all the documents and print the features for each of the queries
    * This way we are not iterating over the entire index for each query to save disk access
@@ -166,37 +299,64 @@ abstract public class BaseFeatureExtractor<K> {
    * @throws IOException
    */
     public void printFeatureForAllDocs(PrintStream out) throws IOException {
-      Map<String, RerankerContext<K>> queryContextMap = buildRerankerContextMap();
       FeatureExtractors extractors = getExtractors();
-      Bits liveDocs = MultiFields.getLiveDocs(reader);
-      Set<String> fieldsToLoad = getFieldsToLoad();
-
       this.printHeader(out, extractors);
+      extractFeaturesForAllDocs(extractors, textSink(out));
+    }
 
-      for (int docId = 0; docId < reader.maxDoc(); docId ++) {
-        // Only check live docs if we have some
-        if (reader.hasDeletions() && (liveDocs == null || !liveDocs.get(docId))) {
-          LOG.warn(String.format("Document %d not in live docs", docId));
-          continue;
-        }
-        Document doc = reader.document(docId, fieldsToLoad);
-        String docIdString = doc.get(getIdField());
-        // NOTE doc frequencies should not be retrieved from here, term vector returned is as if on single document
-        // index
-        Terms terms = MultiFields.getTerms(reader, getTermVectorField());//reader.getTermVector(docId, getTermVectorField());
-
-        if (terms == null) {
-          continue;
-        }
+    /**
+     * Same as {@link #printFeatureForAllDocs(PrintStream)}, in the binary format of {@link FeatureFile}
+     * @param output
+     * @throws IOException
+     */
+    public void writeFeatureForAllDocs(Path output) throws IOException {
+      FeatureExtractors extractors = getExtractors();
+      try (FeatureFile.Writer writer = new FeatureFile.Writer(output, featureNames(extractors))) {
+        extractFeaturesForAllDocs(extractors, binarySink(writer));
+      }
+    }
 
-        for (Map.Entry<String, RerankerContext<K>> entry : queryContextMap.entrySet()) {
-          float[] featureValues = extractors.extractAll(doc, terms, entry.getValue());
-          writeFeatureVector(out, entry.getKey(),qrels.getRelevanceGrade(entry.getKey(),docIdString),
-                  docIdString, featureValues);
-        }
-        out.flush();
-        LOG.debug(String.format("Completed computing feature vectors for doc %d", docId));
+    private <B> void extractFeaturesForAllDocs(FeatureExtractors extractors, FeatureSink<B> sink) throws IOException {
+      Map<String, RerankerContext<K>> queryContextMap = buildRerankerContextMap();
+      Bits liveDocs = MultiFields.getLiveDocs(reader);
+      // The id of every document is printed, even if the extractors do not need stored fields
+      Set<String> fieldsToLoad = new HashSet<>(getFieldsToLoad());
+      fieldsToLoad.add(getIdField());
+      // NOTE doc frequencies should not be retrieved from here, term vector returned is as if on single document
+      // index
+      Terms terms = MultiFields.getTerms(reader, getTermVectorField());//reader.getTermVector(docId, getTermVectorField());
+
+      if (terms == null) {
+        return;
       }
+
+      List<Callable<B>> tasks = new ArrayList<>();
+      for (int start = 0; start < reader.maxDoc(); start += DOCS_PER_TASK) {
+        final int from = start;
+        final int to = Math.min(start + DOCS_PER_TASK, reader.maxDoc());
+        tasks.add(() -> {
+          B buffer = sink.newBuffer();
+          DocValuesCursor values = new DocValuesCursor(reader);
+          for (int docId = from; docId < to; docId ++) {
+            // Only check live docs if we have some
+            if (reader.hasDeletions() && (liveDocs == null || !liveDocs.get(docId))) {
+              LOG.warn(String.format("Document %d not in live docs", docId));
+              continue;
+            }
+            Document doc = reader.document(docId, fieldsToLoad);
+            String docIdString = doc.get(getIdField());
+
+            for (Map.Entry<String, RerankerContext<K>> entry : queryContextMap.entrySet()) {
+              float[] featureValues = extractors.extractAll(docId, doc, terms, values, entry.getValue());
+              sink.add(buffer, entry.getKey(), qrels.getRelevanceGrade(entry.getKey(), docIdString),
+                      docIdString, featureValues);
+            }
+            LOG.debug(String.format("Completed computing feature vectors for doc %d", docId));
+          }
+          return buffer;
+        });
+      }
+      writeInOrder(sink, tasks);
     }
 
     /**
@@ -205,49 +365,69 @@ abstract public class BaseFeatureExtractor<K> {
      * @throws IOException
      */
     public void printFeatures(PrintStream out) throws IOException {
-      Map<String, RerankerContext<K>> queryContextMap = buildRerankerContextMap();
       FeatureExtractors extractors = getExtractors();
-      Bits liveDocs = MultiFields.getLiveDocs(reader);
+      this.printHeader(out, extractors);
+      extractFeatures(extractors, textSink(out));
+    }
+
+    /**
+     * Same as {@link #printFeatures(PrintStream)}, in the binary format of {@link FeatureFile}
+     * @param output
+     * @throws IOException
+     */
+    public void writeFeatures(Path output) throws IOException {
+      FeatureExtractors extractors = getExtractors();
+      try (FeatureFile.Writer writer = new FeatureFile.Writer(output, featureNames(extractors))) {
+        extractFeatures(extractors, binarySink(writer));
+      }
+    }
+
+    private <B> void extractFeatures(FeatureExtractors extractors, FeatureSink<B> sink) throws IOException {
+      Map<String, RerankerContext<K>> queryContextMap = buildRerankerContextMap();
       Set<String> fieldsToLoad = getFieldsToLoad();
 
-      // We need to open a searcher
-      IndexSearcher searcher = new IndexSearcher(reader);
+      // Qrels docids are resolved without searching
+      DocidLookup lookup = DocidLookup.get(reader, getIdField());
 
-      this.printHeader(out, extractors);
       // Iterate through all the qrels and for each document id we have for them
       LOG.debug("Processing queries");
 
+      // One task per qid, written in qrels order
+      List<Callable<B>> tasks = new ArrayList<>();
       for (String qid : this.qrels.getQids()) {
-        LOG.debug(String.format("Processing qid: %s", qid));
-        // Get the map of documents
-        RerankerContext context = queryContextMap.get(qid);
-
-        for (Map.Entry<String, Integer> entry : this.qrels.getDocMap(qid).entrySet()) {
-          String docId = entry.getKey();
-          int qrelScore = entry.getValue();
-          // We issue a specific query
-          TopDocs topDocs = searcher.search(docIdQuery(docId), 1);
-          if (topDocs.totalHits == 0) {
-            LOG.warn(String.format("Document Id %s expected but not found in index, skipping...", docId));
-            continue;
+        tasks.add(() -> {
+          LOG.debug(String.format("Processing qid: %s", qid));
+          B buffer = sink.newBuffer();
+          // Get the map of documents
+          RerankerContext context = queryContextMap.get(qid);
+          DocValuesCursor values = new DocValuesCursor(reader);
+
+          for (Map.Entry<String, Integer> entry : this.qrels.getDocMap(qid).entrySet()) {
+            String docId = entry.getKey();
+            int qrelScore = entry.getValue();
+            int luceneDocid = lookup.getLuceneDocid(docId);
+            if (luceneDocid < 0) {
+              LOG.warn(String.format("Document Id %s expected but not found in index, skipping...", docId));
+              continue;
+            }
+
+            // Extractors that read DocValues by Lucene id do not need the stored document
+            Document doc = fieldsToLoad.isEmpty() ? null : reader.document(luceneDocid, fieldsToLoad);
+
+            //TODO factor for test
+            Terms terms = reader.getTermVector(luceneDocid, getTermVectorField());
+
+            if (terms == null) {
+              LOG.debug(String.format("No term vectors found for doc %s, qid %s", docId, qid));
+              continue;
+            }
+            float[] featureValues = extractors.extractAll(luceneDocid, doc, terms, values, context);
+            sink.add(buffer, qid, qrelScore, docId, featureValues);
           }
-
-          ScoreDoc hit = topDocs.scoreDocs[0];
-          Document doc = reader.document(hit.doc, fieldsToLoad);
-
-          //TODO factor for test
-          Terms terms = reader.getTermVector(hit.doc, getTermVectorField());
-
-          if (terms == null) {
-            LOG.debug(String.format("No term vectors found for doc %s, qid %s", docId, qid));
-            continue;
-          }
-          float[] featureValues = extractors.extractAll(doc, terms, context);
-          writeFeatureVector(out, qid ,qrelScore,
-                  docId, featureValues);
-        }
-        LOG.debug(String.format("Finished processing for qid: %s", qid));
-        out.flush();
+          LOG.debug(String.format("Finished processing for qid: %s", qid));
+          return buffer;
+        });
       }
+      writeInOrder(sink, tasks);
     }
 }
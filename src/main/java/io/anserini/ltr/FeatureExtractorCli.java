@@ -64,6 +64,14 @@ public class FeatureExtractorCli {
     @Option(name = "-extractors", metaVar = "[path]", required = false, usage = "FeatureExtractors File")
     public String extractors = null;
 
+    @Option(name = "-threads", metaVar = "[Number]", usage = "Number of threads extracting features")
+    public int threads = 1;
+
+    @Option(name = "-precomputePairs", usage = "Compute the pair document frequencies of all topics up front")
+    public boolean precomputePairs = false;
+
+    @Option(name = "-binary", usage = "Write the features in the binary columnar format instead of SVMlight")
+    public boolean binary = false;
   }
   /**
    * requires the user to supply the index directory and also the directory containing the qrels and topics
@@ -94,7 +102,8 @@ public class FeatureExtractorCli {
     }
 
     // Query parser needed to construct the query object for feature extraction in the loop
-    PrintStream out = new PrintStream (new FileOutputStream(new File(parsedArgs.outputFile)));
+    PrintStream out = parsedArgs.binary ? null :
+        new PrintStream (new FileOutputStream(new File(parsedArgs.outputFile)));
 
     if (parsedArgs.collection.equals("gov2") || parsedArgs.collection.equals("webxml")) {
       // Open the topics file and read it
@@ -105,14 +114,26 @@ public class FeatureExtractorCli {
       LOG.debug(String.format("%d topics found", topics.size()));
 
       WebFeatureExtractor extractor = new WebFeatureExtractor(reader, qrels, topics, extractors);
-      extractor.printFeatures(out);
+      extractor.setThreads(parsedArgs.threads);
+      extractor.setPrecomputePairs(parsedArgs.precomputePairs);
+      if (parsedArgs.binary) {
+        extractor.writeFeatures(Paths.get(parsedArgs.outputFile));
+      } else {
+        extractor.printFeatures(out);
+      }
     } else if (parsedArgs.collection.equals("twitter")) {
       TopicReader<Integer> tr = (TopicReader<Integer>)Class.forName("io.anserini.search.topicreader.MicroblogTopicReader")
           .getConstructor(Path.class).newInstance(Paths.get(parsedArgs.topicsFile));
       SortedMap<Integer, Map<String, String>> topics = tr.read();
       LOG.debug(String.format("%d topics found", topics.size()));
       TwitterFeatureExtractor extractor = new TwitterFeatureExtractor(reader, qrels, topics, extractors);
-      extractor.printFeatures(out);
+      extractor.setThreads(parsedArgs.threads);
+      extractor.setPrecomputePairs(parsedArgs.precomputePairs);
+      if (parsedArgs.binary) {
+        extractor.writeFeatures(Paths.get(parsedArgs.outputFile));
+      } else {
+        extractor.printFeatures(out);
+      }
     } else {
       System.err.println("Unrecognized collection " + parsedArgs.collection );
     }
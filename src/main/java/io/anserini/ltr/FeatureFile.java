@@ -0,0 +1,565 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.ParserProperties;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary columnar format for LTR feature vectors, a compact and fast alternative to SVMlight text files.
+ *
+ * <p>Rows are stored in blocks of up to {@link #DEFAULT_BLOCK_SIZE} feature vectors. A block holds a column of qid
+ * ordinals, a column of docid ordinals, a column of labels and the feature matrix, one column per feature. Qids,
+ * docids and feature names are stored once, in dictionaries at the end of the file, followed by the offsets of the
+ * blocks. Every block can be memory-mapped on its own, so files are not limited to 2GB.</p>
+ *
+ * <pre>
+ * header:  magic, version, numFeatures, blockSize
+ * block*:  rows, qid[rows], docid[rows], label[rows], feature[numFeatures][rows]
+ * footer:  featureNames, qids, docids, blockOffsets, numRows
+ * trailer: footerOffset, magic
+ * </pre>
+ *
+ * <p>The {@link #main(String[])} method converts between this format and SVMlight, in either direction.</p>
+ */
+public final class FeatureFile {
+  private static final Logger LOG = LogManager.getLogger(FeatureFile.class);
+
+  public static final int MAGIC = 0x4c545246; // "LTRF"
+  public static final int VERSION = 1;
+  public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+  private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+  private FeatureFile() {}
+
+  /**
+   * Checks whether a file is a binary feature file.
+   *
+   * @param path file
+   * @return true if the file starts with the magic number of the format
+   * @throws IOException if the file cannot be read
+   */
+  public static boolean isFeatureFile(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          return false;
+        }
+      }
+      return buffer.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Feature vectors buffered before being added to a {@link Writer} at once, e.g. all the vectors of a query.
+   */
+  public static final class Rows {
+    private final List<String> qids = new ArrayList<>();
+    private final List<String> docIds = new ArrayList<>();
+    private final List<Integer> labels = new ArrayList<>();
+    private final List<float[]> features = new ArrayList<>();
+
+    public void add(String qid, int label, String docId, float[] featureValues) {
+      qids.add(qid);
+      labels.add(label);
+      docIds.add(docId);
+      features.add(featureValues);
+    }
+
+    public int size() {
+      return qids.size();
+    }
+  }
+
+  /**
+   * Writes feature vectors, block by block. Adding vectors is synchronized so that a writer can be shared by threads.
+   */
+  public static final class Writer implements Closeable {
+    private final FileChannel channel;
+    private final List<String> featureNames;
+    private final int numFeatures;
+    private final int blockSize;
+    private final Map<String, Integer> qids = new HashMap<>();
+    private final List<String> qidList = new ArrayList<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final List<String> docIdList = new ArrayList<>();
+    private final List<Long> blockOffsets = new ArrayList<>();
+    private long numRows = 0;
+
+    // The current block, features are kept column by column
+    private final int[] qidColumn;
+    private final int[] docIdColumn;
+    private final int[] labelColumn;
+    private final float[] featureColumns;
+    private final ByteBuffer buffer;
+    private int rows = 0;
+
+    public Writer(Path path, List<String> featureNames) throws IOException {
+      this(path, featureNames, DEFAULT_BLOCK_SIZE);
+    }
+
+    public Writer(Path path, List<String> featureNames, int blockSize) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      this.featureNames = new ArrayList<>(featureNames);
+      this.numFeatures = featureNames.size();
+      this.blockSize = blockSize;
+      this.qidColumn = new int[blockSize];
+      this.docIdColumn = new int[blockSize];
+      this.labelColumn = new int[blockSize];
+      this.featureColumns = new float[numFeatures * blockSize];
+      this.buffer = ByteBuffer.allocate(Integer.BYTES + blockSize * (3 + numFeatures) * Integer.BYTES);
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).putInt(numFeatures).putInt(blockSize);
+      header.flip();
+      writeFully(header);
+    }
+
+    public synchronized void add(String qid, int label, String docId, float[] features) throws IOException {
+      if (features.length != numFeatures) {
+        throw new IllegalArgumentException(
+            String.format("Expected %d features but got %d for %s %s", numFeatures, features.length, qid, docId));
+      }
+      qidColumn[rows] = ordinal(qid, qids, qidList);
+      docIdColumn[rows] = ordinal(docId, docIds, docIdList);
+      labelColumn[rows] = label;
+      for (int i = 0; i < numFeatures; i++) {
+        featureColumns[i * blockSize + rows] = features[i];
+      }
+      rows++;
+      numRows++;
+      if (rows == blockSize) {
+        flushBlock();
+      }
+    }
+
+    /**
+     * Adds buffered feature vectors, they are written next to each other even if the writer is shared.
+     *
+     * @param buffered feature vectors
+     * @throws IOException if the vectors cannot be written
+     */
+    public synchronized void addAll(Rows buffered) throws IOException {
+      for (int i = 0; i < buffered.size(); i++) {
+        add(buffered.qids.get(i), buffered.labels.get(i), buffered.docIds.get(i), buffered.features.get(i));
+      }
+    }
+
+    private static int ordinal(String value, Map<String, Integer> ordinals, List<String> values) {
+      Integer ordinal = ordinals.get(value);
+      if (ordinal == null) {
+        ordinal = values.size();
+        ordinals.put(value, ordinal);
+        values.add(value);
+      }
+      return ordinal;
+    }
+
+    private void flushBlock() throws IOException {
+      if (rows == 0) {
+        return;
+      }
+      blockOffsets.add(channel.position());
+      buffer.clear();
+      buffer.putInt(rows);
+      buffer.asIntBuffer().put(qidColumn, 0, rows);
+      buffer.position(buffer.position() + rows * Integer.BYTES);
+      buffer.asIntBuffer().put(docIdColumn, 0, rows);
+      buffer.position(buffer.position() + rows * Integer.BYTES);
+      buffer.asIntBuffer().put(labelColumn, 0, rows);
+      buffer.position(buffer.position() + rows * Integer.BYTES);
+      for (int i = 0; i < numFeatures; i++) {
+        buffer.asFloatBuffer().put(featureColumns, i * blockSize, rows);
+        buffer.position(buffer.position() + rows * Float.BYTES);
+      }
+      buffer.flip();
+      writeFully(buffer);
+      rows = 0;
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      try {
+        flushBlock();
+        long footerOffset = channel.position();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream footer = new DataOutputStream(bytes);
+        writeStrings(footer, featureNames);
+        writeStrings(footer, qidList);
+        writeStrings(footer, docIdList);
+        footer.writeInt(blockOffsets.size());
+        for (long offset : blockOffsets) {
+          footer.writeLong(offset);
+        }
+        footer.writeLong(numRows);
+        footer.writeLong(footerOffset);
+        footer.writeInt(MAGIC);
+        footer.flush();
+        writeFully(ByteBuffer.wrap(bytes.toByteArray()));
+      } finally {
+        channel.close();
+      }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+      out.writeInt(values.size());
+      for (String value : values) {
+        out.writeUTF(value);
+      }
+    }
+  }
+
+  /**
+   * Reads a feature file. Blocks are memory-mapped when they are accessed.
+   */
+  public static final class Reader implements Closeable {
+    private final FileChannel channel;
+    private final int numFeatures;
+    private final int blockSize;
+    private final List<String> featureNames;
+    private final String[] qids;
+    private final String[] docIds;
+    private final long[] blockOffsets;
+    private final long footerOffset;
+    private final long numRows;
+
+    public Reader(Path path) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+        ByteBuffer header = readFully(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+          throw new IOException(path + " is not a feature file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+          throw new IOException("Unsupported feature file version " + version);
+        }
+        this.numFeatures = header.getInt();
+        this.blockSize = header.getInt();
+
+        ByteBuffer trailer = readFully(channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+        this.footerOffset = trailer.getLong();
+        if (trailer.getInt() != MAGIC) {
+          throw new IOException(path + " is truncated");
+        }
+
+        ByteBuffer footerBytes = readFully(footerOffset, (int) (channel.size() - TRAILER_SIZE - footerOffset));
+        DataInputStream footer = new DataInputStream(
+            new ByteArrayInputStream(footerBytes.array(), 0, footerBytes.limit()));
+        this.featureNames = Arrays.asList(readStrings(footer));
+        this.qids = readStrings(footer);
+        this.docIds = readStrings(footer);
+        this.blockOffsets = new long[footer.readInt()];
+        for (int i = 0; i < blockOffsets.length; i++) {
+          blockOffsets[i] = footer.readLong();
+        }
+        this.numRows = footer.readLong();
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of feature file");
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+      String[] values = new String[in.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = in.readUTF();
+      }
+      return values;
+    }
+
+    public int numFeatures() {
+      return numFeatures;
+    }
+
+    public List<String> getFeatureNames() {
+      return featureNames;
+    }
+
+    public long numRows() {
+      return numRows;
+    }
+
+    public int numBlocks() {
+      return blockOffsets.length;
+    }
+
+    /**
+     * Maps a block of the file.
+     *
+     * @param block block number
+     * @return block
+     * @throws IOException if the block cannot be mapped
+     */
+    public Block getBlock(int block) throws IOException {
+      long start = blockOffsets[block];
+      long end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : footerOffset;
+      return new Block(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    /**
+     * A block of feature vectors, backed by the mapped file.
+     */
+    public final class Block {
+      private final int rows;
+      private final IntBuffer qidColumn;
+      private final IntBuffer docIdColumn;
+      private final IntBuffer labelColumn;
+      private final FloatBuffer featureColumns;
+
+      private Block(ByteBuffer bytes) {
+        this.rows = bytes.getInt(0);
+        bytes.position(Integer.BYTES);
+        this.qidColumn = bytes.slice().asIntBuffer();
+        bytes.position(bytes.position() + rows * Integer.BYTES);
+        this.docIdColumn = bytes.slice().asIntBuffer();
+        bytes.position(bytes.position() + rows * Integer.BYTES);
+        this.labelColumn = bytes.slice().asIntBuffer();
+        bytes.position(bytes.position() + rows * Integer.BYTES);
+        this.featureColumns = bytes.slice().asFloatBuffer();
+      }
+
+      public int size() {
+        return rows;
+      }
+
+      public String getQid(int row) {
+        return qids[qidColumn.get(row)];
+      }
+
+      public String getDocId(int row) {
+        return docIds[docIdColumn.get(row)];
+      }
+
+      public int getLabel(int row) {
+        return labelColumn.get(row);
+      }
+
+      public float getFeature(int row, int feature) {
+        return featureColumns.get(feature * rows + row);
+      }
+
+      /**
+       * Returns the values of one feature for all the rows of the block.
+       *
+       * @param feature feature number, starting at 0
+       * @return feature values
+       */
+      public float[] getColumn(int feature) {
+        float[] column = new float[rows];
+        FloatBuffer values = featureColumns.duplicate();
+        values.position(feature * rows);
+        values.get(column);
+        return column;
+      }
+
+      /**
+       * Returns the feature vectors of the block, one array per row.
+       *
+       * @return feature vectors
+       */
+      public float[][] getRows() {
+        float[][] vectors = new float[rows][numFeatures];
+        for (int feature = 0; feature < numFeatures; feature++) {
+          float[] column = getColumn(feature);
+          for (int row = 0; row < rows; row++) {
+            vectors[row][feature] = column[row];
+          }
+        }
+        return vectors;
+      }
+    }
+  }
+
+  /**
+   * Converts an SVMlight feature file, as written by {@link BaseFeatureExtractor}, to the binary format. Missing
+   * features are 0. Feature names are taken from the header comments if present.
+   *
+   * @param input SVMlight file
+   * @param output binary feature file
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void fromSvmLight(Path input, Path output) throws IOException {
+    // The first pass finds the number of features, the header does not always list them
+    Map<Integer, String> names = new HashMap<>();
+    int numFeatures = 0;
+    try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("#")) {
+          int colon = line.indexOf(':');
+          if (colon > 1) {
+            try {
+              names.put(Integer.parseInt(line.substring(1, colon)), line.substring(colon + 1));
+            } catch (NumberFormatException e) {
+              // Not a feature name
+            }
+          }
+          continue;
+        }
+        String[] pieces = vectorPart(line).split("\\s+");
+        for (int i = 2; i < pieces.length; i++) {
+          numFeatures = Math.max(numFeatures, Integer.parseInt(pieces[i].substring(0, pieces[i].indexOf(':'))));
+        }
+      }
+    }
+
+    List<String> featureNames = new ArrayList<>();
+    for (int i = 1; i <= numFeatures; i++) {
+      featureNames.add(names.getOrDefault(i, "f" + i));
+    }
+    try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+         Writer writer = new Writer(output, featureNames)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("#") || line.trim().isEmpty()) {
+          continue;
+        }
+        int hash = line.indexOf('#');
+        String docId = hash < 0 ? "" : line.substring(hash + 1).trim();
+        String[] pieces = vectorPart(line).split("\\s+");
+        float[] features = new float[numFeatures];
+        for (int i = 2; i < pieces.length; i++) {
+          int colon = pieces[i].indexOf(':');
+          int feature = Integer.parseInt(pieces[i].substring(0, colon));
+          features[feature - 1] = Float.parseFloat(pieces[i].substring(colon + 1));
+        }
+        writer.add(pieces[1].substring("qid:".length()), Integer.parseInt(pieces[0]), docId, features);
+      }
+    }
+  }
+
+  private static String vectorPart(String line) {
+    int hash = line.indexOf('#');
+    return (hash < 0 ? line : line.substring(0, hash)).trim();
+  }
+
+  /**
+   * Converts a binary feature file to SVMlight, in the format written by {@link BaseFeatureExtractor}.
+   *
+   * @param input binary feature file
+   * @param out SVMlight output
+   * @throws IOException if the feature file cannot be read
+   */
+  public static void toSvmLight(Path input, PrintStream out) throws IOException {
+    try (Reader reader = new Reader(input)) {
+      out.println("#Extracting features with the following feature vector:");
+      for (int i = 0; i < reader.numFeatures(); i++) {
+        out.println(String.format("#%d:%s", i + 1, reader.getFeatureNames().get(i)));
+      }
+      for (int b = 0; b < reader.numBlocks(); b++) {
+        Reader.Block block = reader.getBlock(b);
+        float[][] vectors = block.getRows();
+        for (int row = 0; row < block.size(); row++) {
+          BaseFeatureExtractor.writeFeatureVector(out, block.getQid(row), block.getLabel(row), block.getDocId(row),
+              vectors[row]);
+        }
+      }
+    }
+    out.flush();
+  }
+
+  private static class ConvertArgs {
+    @Option(name = "-input", metaVar = "[file]", required = true, usage = "feature file, SVMlight or binary")
+    public String input;
+
+    @Option(name = "-output", metaVar = "[file]", required = true, usage = "converted feature file")
+    public String output;
+  }
+
+  /**
+   * Converts a feature file to the other format: binary files are converted to SVMlight and the other way round.
+   */
+  public static void main(String[] args) throws IOException {
+    ConvertArgs parsedArgs = new ConvertArgs();
+    CmdLineParser parser = new CmdLineParser(parsedArgs, ParserProperties.defaults().withUsageWidth(90));
+    try {
+      parser.parseArgument(args);
+    } catch (CmdLineException e) {
+      System.err.println(e.getMessage());
+      parser.printUsage(System.err);
+      return;
+    }
+
+    Path input = Paths.get(parsedArgs.input);
+    Path output = Paths.get(parsedArgs.output);
+    long start = System.nanoTime();
+    if (isFeatureFile(input)) {
+      try (PrintStream out = new PrintStream(Files.newOutputStream(output), false, "UTF-8")) {
+        toSvmLight(input, out);
+      }
+      LOG.info(String.format("Converted %s to SVMlight in %d ms", input, (System.nanoTime() - start) / 1000000));
+    } else {
+      fromSvmLight(input, output);
+      LOG.info(String.format("Converted %s to binary in %d ms", input, (System.nanoTime() - start) / 1000000));
+    }
+  }
+}
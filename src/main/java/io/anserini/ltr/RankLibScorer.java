@@ -19,36 +19,325 @@ package io.anserini.ltr;
 import ciir.umass.edu.learning.DataPoint;
 import ciir.umass.edu.learning.Ranker;
 import ciir.umass.edu.learning.RankerFactory;
-import io.anserini.search.SearchArgs;
-import io.anserini.util.Qrels;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.kohsuke.args4j.*;
 
 import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This file will consume a feature file and
  * ranklib model to score the feature vectors
  * then output in a trec_eval friend format
+ *
+ * The feature file, SVMlight or binary (see {@link FeatureFile}), is read one query at a time, so memory is bounded
+ * by the largest query. The vectors of a query are scored, in parallel for compiled tree ensembles, and written as a
+ * ranked run. Other models go through one RankLib {@link Ranker}, which is not thread-safe, and are scored on a single
+ * thread.
  */
-public class RankLibScorer {
-  // We need a model file
-  // We need a feature file
-  // We need a qrel file
+public class RankLibScorer implements Closeable {
+  private static final Logger LOG = LogManager.getLogger(RankLibScorer.class);
+  // Feature vectors scored by one task
+  private static final int VECTORS_PER_TASK = 256;
+
   private static class ParseArgs {
 
     @Option(name = "-model", metaVar = "[file]", required = true, usage = "ranklib model file")
     public String model = "";
 
-    @Option(name = "-featureFile", metaVar = "[file]", required = true, usage = "feature vector file")
+    @Option(name = "-featureFile", metaVar = "[file]", required = true,
+        usage = "feature vector file, SVMlight or binary, vectors of a query next to each other")
     public String featureFile = "";
 
     @Option(name = "-output", metaVar = "[file]", required = true, usage = "output for the feature vector file")
     public String output = "";
 
-    @Option(name = "-qrels", metaVar = "[file]", required = true, usage = "patht to the qrels file, needed for feature vectors")
+    /**
+     * @deprecated labels come from the feature vectors; kept so that existing command lines still parse
+     */
+    @Deprecated
+    @Option(name = "-qrels", metaVar = "[file]", usage = "deprecated and ignored, labels come from the feature vectors")
     public String qrels= "";
+
+    @Option(name = "-threads", metaVar = "[Number]", usage = "Number of threads scoring the vectors of a query, tree ensembles only")
+    public int threads = 1;
+
+    @Option(name = "-runtag", metaVar = "[tag]", usage = "runtag")
+    public String runtag = "LUCENE";
+  }
+
+  /**
+   * The feature vectors of one query.
+   */
+  public static final class QueryGroup {
+    public final String qid;
+    public final List<String> docIds = new ArrayList<>();
+    public final List<float[]> features = new ArrayList<>();
+
+    public QueryGroup(String qid) {
+      this.qid = qid;
+    }
+
+    public int size() {
+      return docIds.size();
+    }
+  }
+
+  /**
+   * Reads the feature vectors of a file one query at a time.
+   */
+  public interface GroupReader extends Closeable {
+    /**
+     * Returns the vectors of the next query.
+     *
+     * @return vectors of the next query, null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    QueryGroup next() throws IOException;
+  }
+
+  /**
+   * Opens a feature file, SVMlight or binary.
+   *
+   * @param path feature file
+   * @return reader of the query groups
+   * @throws IOException if the file cannot be opened
+   */
+  public static GroupReader open(Path path) throws IOException {
+    return FeatureFile.isFeatureFile(path) ? new BinaryGroupReader(path) : new TextGroupReader(path);
+  }
+
+  // Lines of the form: qrel qid:X 1:v1 2:v2 ... # docid
+  private static final class TextGroupReader implements GroupReader {
+    private final BufferedReader reader;
+    private String line;
+
+    private TextGroupReader(Path path) throws IOException {
+      this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+      this.line = nextVector();
+    }
+
+    private String nextVector() throws IOException {
+      String next;
+      while ((next = reader.readLine()) != null) {
+        if (!next.startsWith("#") && !next.trim().isEmpty()) {
+          return next;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public QueryGroup next() throws IOException {
+      if (line == null) {
+        return null;
+      }
+      QueryGroup group = null;
+      while (line != null) {
+        int hash = line.indexOf('#');
+        String[] pieces = (hash < 0 ? line : line.substring(0, hash)).trim().split("\\s+");
+        String qid = pieces[1].substring("qid:".length());
+        if (group == null) {
+          group = new QueryGroup(qid);
+        } else if (!group.qid.equals(qid)) {
+          break;
+        }
+
+        int numFeatures = 0;
+        for (int i = 2; i < pieces.length; i++) {
+          numFeatures = Math.max(numFeatures, Integer.parseInt(pieces[i].substring(0, pieces[i].indexOf(':'))));
+        }
+        float[] features = new float[numFeatures];
+        for (int i = 2; i < pieces.length; i++) {
+          int colon = pieces[i].indexOf(':');
+          features[Integer.parseInt(pieces[i].substring(0, colon)) - 1] =
+              Float.parseFloat(pieces[i].substring(colon + 1));
+        }
+        group.docIds.add(hash < 0 ? "" : line.substring(hash + 1).trim());
+        group.features.add(features);
+        line = nextVector();
+      }
+      return group;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  private static final class BinaryGroupReader implements GroupReader {
+    private final FeatureFile.Reader reader;
+    private int blockNumber = -1;
+    private FeatureFile.Reader.Block block = null;
+    private float[][] rows = null;
+    private int row = 0;
+
+    private BinaryGroupReader(Path path) throws IOException {
+      this.reader = new FeatureFile.Reader(path);
+    }
+
+    // Moves to the next block when the current one is done, returns false at the end of the file
+    private boolean hasRow() throws IOException {
+      while (block == null || row == block.size()) {
+        if (blockNumber + 1 >= reader.numBlocks()) {
+          return false;
+        }
+        block = reader.getBlock(++blockNumber);
+        rows = block.getRows();
+        row = 0;
+      }
+      return true;
+    }
+
+    @Override
+    public QueryGroup next() throws IOException {
+      if (!hasRow()) {
+        return null;
+      }
+      QueryGroup group = new QueryGroup(block.getQid(row));
+      // A query may span several blocks
+      while (hasRow() && block.getQid(row).equals(group.qid)) {
+        group.docIds.add(block.getDocId(row));
+        group.features.add(rows[row]);
+        row++;
+      }
+      return group;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  private final TreeEnsembleScorer scorer; // null for models that are not tree ensembles
+  private final Ranker ranker;             // null if the model is compiled
+  private final int threads;
+  private final ExecutorService executor;
+
+  public RankLibScorer(String modelFile, int threads) throws IOException {
+    this.scorer = TreeEnsembleScorer.load(Paths.get(modelFile));
+    this.ranker = this.scorer == null ? new RankerFactory().loadRanker(modelFile) : null;
+    this.threads = this.scorer == null ? 1 : Math.max(1, threads);
+    this.executor = this.threads == 1 ? null : Executors.newFixedThreadPool(this.threads);
+    if (this.scorer == null && threads > 1) {
+      LOG.warn("The model is not a tree ensemble, its vectors are scored on one thread");
+    }
+  }
+
+  private void score(List<float[]> features, int from, int to, float[] scores) {
+    if (scorer != null) {
+      float[][] vectors = new float[to - from][];
+      for (int i = from; i < to; i++) {
+        vectors[i - from] = fit(features.get(i), scorer.numFeatures());
+      }
+      float[] blockScores = new float[to - from];
+      scorer.score(vectors, 0, vectors.length, blockScores);
+      System.arraycopy(blockScores, 0, scores, from, blockScores.length);
+    } else {
+      for (int i = from; i < to; i++) {
+        String line = BaseFeatureExtractor.constructOutputString("0", 0, "0", features.get(i));
+        scores[i] = (float) ranker.eval(new DataPoint(line));
+      }
+    }
+  }
+
+  // Features the vector does not list are 0, the compiled model needs all the features it tests
+  private static float[] fit(float[] features, int numFeatures) {
+    return features.length >= numFeatures ? features : Arrays.copyOf(features, numFeatures);
+  }
+
+  /**
+   * Scores the feature vectors of a query, in parallel if the model is a compiled tree ensemble. RankLib rankers keep
+   * the current input in their own state, e.g., the neuron layers of RankNet and ListNet, so they score one vector at
+   * a time.
+   *
+   * @param group vectors of a query
+   * @return scores, in the order of the vectors
+   * @throws IOException if scoring fails
+   */
+  public float[] score(QueryGroup group) throws IOException {
+    float[] scores = new float[group.size()];
+    if (scorer == null || threads == 1 || group.size() <= VECTORS_PER_TASK) {
+      score(group.features, 0, group.size(), scores);
+      return scores;
+    }
+
+    List<Future<?>> futures = new ArrayList<>();
+    for (int start = 0; start < group.size(); start += VECTORS_PER_TASK) {
+      final int from = start;
+      final int to = Math.min(start + VECTORS_PER_TASK, group.size());
+      futures.add(executor.submit(() -> score(group.features, from, to, scores)));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while scoring query " + group.qid, e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error scoring query " + group.qid, e.getCause());
+    }
+    return scores;
+  }
+
+  /**
+   * Scores all the queries of a feature file and writes them as a TREC run, ranked by decreasing score with ties
+   * broken by docid.
+   *
+   * @param groups query groups
+   * @param out run
+   * @param runTag run tag
+   * @throws IOException if the feature file cannot be read
+   */
+  public void scoreAll(GroupReader groups, PrintWriter out, String runTag) throws IOException {
+    Set<String> qids = new HashSet<>();
+    QueryGroup group;
+    while ((group = groups.next()) != null) {
+      if (!qids.add(group.qid)) {
+        LOG.warn(String.format("Vectors of query %s are not next to each other, it is ranked more than once",
+            group.qid));
+      }
+      float[] scores = score(group);
+      List<String> docIds = group.docIds;
+      Integer[] order = new Integer[group.size()];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (i, j) -> {
+        int cmp = Float.compare(scores[j], scores[i]);
+        return cmp != 0 ? cmp : docIds.get(i).compareTo(docIds.get(j));
+      });
+
+      for (int rank = 0; rank < order.length; rank++) {
+        out.println(String.format(Locale.US, "%s Q0 %s %d %f %s", group.qid, docIds.get(order[rank]), rank + 1,
+            scores[order[rank]], runTag));
+      }
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdown();
+    }
   }
 
   public static void main(String[] args) throws IOException {
@@ -59,43 +348,21 @@ public class RankLibScorer {
     } catch (CmdLineException e) {
       System.err.println(e.getMessage());
       parser.printUsage(System.err);
-      System.err.println("Example: SearchTweets" + parser.printExample(OptionHandlerFilter.REQUIRED));
+      System.err.println("Example: RankLibScorer" + parser.printExample(OptionHandlerFilter.REQUIRED));
       return;
     }
-    Qrels qrels = new Qrels(parsedArgs.qrels);
-    BufferedReader reader = new BufferedReader(new FileReader(parsedArgs.featureFile));
-    // Map of qid:docId -> datapoint
-    Map<String, DataPoint> featureMap = new HashMap<>();
-    Ranker ranker = new RankerFactory().loadRanker(parsedArgs.model);
-
-    String line= reader.readLine();
-    // We are expecting a line of the form:
-    // qrel qid featureVector # docid
-    while (line != null) {
-      DataPoint dp = new DataPoint(line);
-      String[] pieces = line.split(" ");
-      String key = pieces[1] + " " + pieces[pieces.length-1];
-      featureMap.put(key, dp);
-      line = reader.readLine();
-    }
-
-    BufferedWriter writer = new BufferedWriter(new FileWriter(parsedArgs.output));
-    // Now we want it of the form:
-    //qid, Q0, docid, 0(rank), score, LUCENE
-    for (String key : featureMap.keySet()) {
-      StringBuilder sb = new StringBuilder();
-      String pieces[] = key.split(" ");
-      sb.append(pieces[0]);
-      sb.append(" Q0 ");
-      sb.append(pieces[1]);
-      sb.append(" 0 ");
-      double score = ranker.eval(featureMap.get(key));
-      sb.append(score);
-      sb.append(" LUCENE");
-      writer.write(sb.toString());
-      writer.newLine();
-    }
-    writer.flush();
-    writer.close();
+
+    if (!parsedArgs.qrels.isEmpty()) {
+      LOG.warn("-qrels is deprecated and ignored, labels come from the feature vectors");
+    }
+
+    long start = System.nanoTime();
+    try (RankLibScorer scorer = new RankLibScorer(parsedArgs.model, parsedArgs.threads);
+         GroupReader groups = open(Paths.get(parsedArgs.featureFile));
+         PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(parsedArgs.output),
+             StandardCharsets.UTF_8))) {
+      scorer.scoreAll(groups, out, parsedArgs.runtag);
+    }
+    LOG.info(String.format("Scored %s in %d ms", parsedArgs.featureFile, (System.nanoTime() - start) / 1000000));
   }
 }
@@ -0,0 +1,405 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.InPlaceMergeSorter;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scores feature vectors with a RankLib tree ensemble (LambdaMART, MART or Random Forests) without going through
+ * RankLib's {@code DataPoint}s. The model is compiled into flat arrays and evaluated with QuickScorer (Lucchese et
+ * al., SIGIR 2015): the internal nodes of all trees are grouped by feature and sorted by threshold, and every tree
+ * keeps a bitvector of the leaves that are still reachable. For each feature of a document only the nodes whose test
+ * fails are visited, each clearing the leaves of its left subtree, after which the exit leaf of a tree is the lowest
+ * remaining bit. Models with trees of more than 64 leaves are evaluated by walking the flattened trees instead.
+ *
+ * <p>Scores are accumulated in the same order and precision as RankLib's {@code Ensemble.eval} and
+ * {@code RFRanker.eval}, so they are the scores RankLib computes. Feature {@code i} of the model (1-based, as in the
+ * SVMlight files of {@link BaseFeatureExtractor}) is {@code features[i - 1]}; features past the end of the vector
+ * count as 0. Instances are immutable and can be shared between threads.</p>
+ */
+public final class TreeEnsembleScorer {
+  private static final Logger LOG = LogManager.getLogger(TreeEnsembleScorer.class);
+
+  private static final String RANDOM_FORESTS = "## Random Forests";
+  private static final String[] SUPPORTED = {"## LambdaMART", "## MART", RANDOM_FORESTS};
+
+  // Trees, in model order.
+  private final int numTrees;
+  private final int numFeatures;        // largest feature id tested by the model
+  private final float[] weights;
+  private final int[] ensembleEnds;     // ensemble i holds the trees [ensembleEnds[i-1], ensembleEnds[i])
+  private final boolean average;        // Random Forests average the ensembles of their bags
+  private final int[] leafOffsets;      // leaves of tree t start at leafOffsets[t] in leafValues
+  private final double[] leafValues;
+
+  // QuickScorer: internal nodes sorted by feature, then threshold; null if a tree has more than 64 leaves.
+  private final int[] featureOffsets;   // nodes testing feature f (0-based) are [featureOffsets[f], featureOffsets[f+1])
+  private final float[] nodeThresholds;
+  private final int[] nodeTrees;
+  private final long[] nodeMasks;       // leaves that stay reachable when the test of the node fails
+
+  // Fallback: the trees as flat arrays, root of tree t at roots[t]; a negative child c is leaf -c-1 of the tree.
+  private final int[] roots;
+  private final int[] splitFeatures;
+  private final float[] splitThresholds;
+  private final int[] lefts;
+  private final int[] rights;
+
+  /**
+   * Loads a RankLib model file.
+   *
+   * @param modelFile model file
+   * @return the compiled model, or null if the model is not a tree ensemble
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public static TreeEnsembleScorer load(Path modelFile) throws IOException {
+    return parse(new String(Files.readAllBytes(modelFile), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Compiles a model given as the content of a RankLib model file.
+   *
+   * @param model content of the model file
+   * @return the compiled model, or null if the model is not a tree ensemble
+   * @throws IOException if the model cannot be parsed
+   */
+  public static TreeEnsembleScorer parse(String model) throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader(model));
+    String header = reader.readLine();
+    boolean supported = false;
+    for (String type : SUPPORTED) {
+      supported |= header != null && header.trim().equals(type);
+    }
+    if (!supported) {
+      LOG.info("Not a tree ensemble model: " + header);
+      return null;
+    }
+
+    // As in RankLib, comments are dropped and the remaining lines are read as XML; a Random Forests model has one
+    // ensemble per bag.
+    StringBuilder xml = new StringBuilder("<model>");
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (!line.isEmpty() && !line.startsWith("##")) {
+        xml.append(line);
+      }
+    }
+    xml.append("</model>");
+
+    Element root;
+    try {
+      root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .parse(new InputSource(new StringReader(xml.toString()))).getDocumentElement();
+    } catch (Exception e) {
+      throw new IOException("Unable to parse the model", e);
+    }
+
+    Builder builder = new Builder();
+    for (Element ensemble : children(root, "ensemble")) {
+      for (Element tree : children(ensemble, "tree")) {
+        builder.addTree(Float.parseFloat(tree.getAttribute("weight")), children(tree, "split").get(0));
+      }
+      builder.endEnsemble();
+    }
+    if (builder.trees == 0) {
+      throw new IOException("The model has no trees");
+    }
+    return new TreeEnsembleScorer(builder, header.trim().equals(RANDOM_FORESTS));
+  }
+
+  private static List<Element> children(Element parent, String name) {
+    List<Element> result = new ArrayList<>();
+    NodeList nodes = parent.getChildNodes();
+    for (int i = 0; i < nodes.getLength(); i++) {
+      Node node = nodes.item(i);
+      if (node.getNodeType() == Node.ELEMENT_NODE && node.getNodeName().equalsIgnoreCase(name)) {
+        result.add((Element) node);
+      }
+    }
+    return result;
+  }
+
+  private static String text(Element parent, String name) {
+    return children(parent, name).get(0).getTextContent().trim();
+  }
+
+  // Collects the trees as flat arrays while the model is parsed.
+  private static final class Builder {
+    int trees = 0;
+    List<Float> weights = new ArrayList<>();
+    List<Integer> ensembleEnds = new ArrayList<>();
+    List<Integer> leafOffsets = new ArrayList<>();
+    List<Double> leafValues = new ArrayList<>();
+    List<Integer> roots = new ArrayList<>();
+    List<Integer> features = new ArrayList<>();
+    List<Float> thresholds = new ArrayList<>();
+    List<Integer> lefts = new ArrayList<>();
+    List<Integer> rights = new ArrayList<>();
+    int maxLeaves = 0;
+
+    void addTree(float weight, Element root) throws IOException {
+      weights.add(weight);
+      leafOffsets.add(leafValues.size());
+      int firstLeaf = leafValues.size();
+      roots.add(addNode(root, firstLeaf));
+      maxLeaves = Math.max(maxLeaves, leafValues.size() - firstLeaf);
+      trees++;
+    }
+
+    // Returns the index of the node, or -(leaf number in the tree)-1 for a leaf.
+    int addNode(Element split, int firstLeaf) throws IOException {
+      if (children(split, "feature").isEmpty()) {
+        // RankLib parses the outputs as floats.
+        leafValues.add((double) Float.parseFloat(text(split, "output")));
+        return -(leafValues.size() - firstLeaf);
+      }
+      int feature = Integer.parseInt(text(split, "feature"));
+      if (feature < 1) {
+        throw new IOException("Invalid feature id " + feature);
+      }
+      int node = features.size();
+      features.add(feature);
+      thresholds.add(Float.parseFloat(text(split, "threshold")));
+      lefts.add(0);
+      rights.add(0);
+      // The children are taken in document order, left first, as RankLib does.
+      List<Element> splits = children(split, "split");
+      lefts.set(node, addNode(splits.get(0), firstLeaf));
+      rights.set(node, addNode(splits.get(1), firstLeaf));
+      return node;
+    }
+
+    void endEnsemble() {
+      if (ensembleEnds.isEmpty() || ensembleEnds.get(ensembleEnds.size() - 1) != trees) {
+        ensembleEnds.add(trees);
+      }
+    }
+  }
+
+  private TreeEnsembleScorer(Builder b, boolean average) {
+    this.numTrees = b.trees;
+    this.average = average;
+    this.weights = new float[numTrees];
+    this.leafOffsets = new int[numTrees];
+    this.roots = new int[numTrees];
+    for (int t = 0; t < numTrees; t++) {
+      weights[t] = b.weights.get(t);
+      leafOffsets[t] = b.leafOffsets.get(t);
+      roots[t] = b.roots.get(t);
+    }
+    this.ensembleEnds = b.ensembleEnds.stream().mapToInt(Integer::intValue).toArray();
+    this.leafValues = b.leafValues.stream().mapToDouble(Double::doubleValue).toArray();
+
+    int numNodes = b.features.size();
+    this.splitFeatures = new int[numNodes];
+    this.splitThresholds = new float[numNodes];
+    this.lefts = new int[numNodes];
+    this.rights = new int[numNodes];
+    for (int n = 0; n < numNodes; n++) {
+      splitFeatures[n] = b.features.get(n) - 1;
+      splitThresholds[n] = b.thresholds.get(n);
+      lefts[n] = b.lefts.get(n);
+      rights[n] = b.rights.get(n);
+    }
+
+    int numFeatures = 0;
+    for (int feature : splitFeatures) {
+      numFeatures = Math.max(numFeatures, feature + 1);
+    }
+    this.numFeatures = numFeatures;
+
+    if (b.maxLeaves > 64) {
+      LOG.info(String.format("Trees with up to %d leaves, scoring by tree traversal", b.maxLeaves));
+      this.featureOffsets = null;
+      this.nodeThresholds = null;
+      this.nodeTrees = null;
+      this.nodeMasks = null;
+      return;
+    }
+
+    // The mask of a node keeps every leaf except those of its left subtree.
+    final int[] nodeTree = new int[numNodes];
+    final long[] nodeMask = new long[numNodes];
+    for (int t = 0; t < numTrees; t++) {
+      if (roots[t] >= 0) {
+        leafRange(roots[t], t, nodeTree, nodeMask);
+      }
+    }
+
+    final int[] order = new int[numNodes];
+    for (int n = 0; n < numNodes; n++) {
+      order[n] = n;
+    }
+    new InPlaceMergeSorter() {
+      @Override
+      protected int compare(int i, int j) {
+        int a = order[i];
+        int c = order[j];
+        int cmp = Integer.compare(splitFeatures[a], splitFeatures[c]);
+        return cmp != 0 ? cmp : Float.compare(splitThresholds[a], splitThresholds[c]);
+      }
+
+      @Override
+      protected void swap(int i, int j) {
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+      }
+    }.sort(0, numNodes);
+
+    this.featureOffsets = new int[numFeatures + 1];
+    this.nodeThresholds = new float[numNodes];
+    this.nodeTrees = new int[numNodes];
+    this.nodeMasks = new long[numNodes];
+    for (int i = 0; i < numNodes; i++) {
+      int n = order[i];
+      nodeThresholds[i] = splitThresholds[n];
+      nodeTrees[i] = nodeTree[n];
+      nodeMasks[i] = nodeMask[n];
+      featureOffsets[splitFeatures[n] + 1]++;
+    }
+    for (int f = 0; f < numFeatures; f++) {
+      featureOffsets[f + 1] += featureOffsets[f];
+    }
+  }
+
+  // Fills in the tree and mask of the nodes of a subtree and returns its leaves as {first, last}.
+  private int[] leafRange(int node, int tree, int[] nodeTree, long[] nodeMask) {
+    int[] left = lefts[node] < 0 ? new int[] {-lefts[node] - 1, -lefts[node] - 1}
+        : leafRange(lefts[node], tree, nodeTree, nodeMask);
+    int[] right = rights[node] < 0 ? new int[] {-rights[node] - 1, -rights[node] - 1}
+        : leafRange(rights[node], tree, nodeTree, nodeMask);
+    long leftLeaves = (left[1] == 63 ? -1L : (1L << (left[1] + 1)) - 1) & ~((1L << left[0]) - 1);
+    nodeTree[node] = tree;
+    nodeMask[node] = ~leftLeaves;
+    return new int[] {left[0], right[1]};
+  }
+
+  /**
+   * Returns the number of trees of the model.
+   *
+   * @return number of trees
+   */
+  public int numTrees() {
+    return numTrees;
+  }
+
+  /**
+   * Returns the largest feature id the model tests, i.e., the length of the feature vectors it needs.
+   *
+   * @return number of features
+   */
+  public int numFeatures() {
+    return numFeatures;
+  }
+
+  /**
+   * Scores one feature vector.
+   *
+   * @param features feature values, feature {@code i} of the model at index {@code i - 1}
+   * @return score
+   */
+  public float score(float[] features) {
+    float[] scores = new float[1];
+    score(new float[][] {features}, 0, 1, scores);
+    return scores[0];
+  }
+
+  /**
+   * Scores a block of feature vectors.
+   *
+   * @param features feature vectors, feature {@code i} of the model at index {@code i - 1}
+   * @param from first vector to score
+   * @param to end of the vectors to score, exclusive
+   * @param scores receives the score of {@code features[d]} at {@code scores[d]}
+   */
+  public void score(float[][] features, int from, int to, float[] scores) {
+    if (nodeMasks == null) {
+      for (int d = from; d < to; d++) {
+        scores[d] = traverse(features[d]);
+      }
+      return;
+    }
+
+    long[] leaves = new long[numTrees];
+    for (int d = from; d < to; d++) {
+      float[] x = features[d];
+      Arrays.fill(leaves, -1L);
+      for (int f = 0; f < numFeatures; f++) {
+        float value = f < x.length ? x[f] : 0f;
+        if (Float.isNaN(value)) {
+          // A NaN fails every test, as RankLib's value <= threshold does.
+          value = Float.POSITIVE_INFINITY;
+        }
+        // The test value <= threshold fails for all nodes with a smaller threshold.
+        for (int n = featureOffsets[f], end = featureOffsets[f + 1]; n < end && nodeThresholds[n] < value; n++) {
+          leaves[nodeTrees[n]] &= nodeMasks[n];
+        }
+      }
+      scores[d] = accumulate(leaves, null);
+    }
+  }
+
+  // Scores by walking each tree from its root, for trees too large for the bitvectors.
+  private float traverse(float[] x) {
+    long[] exits = new long[numTrees];
+    for (int t = 0; t < numTrees; t++) {
+      int node = roots[t];
+      while (node >= 0) {
+        int f = splitFeatures[node];
+        float value = f < x.length ? x[f] : 0f;
+        node = value <= splitThresholds[node] ? lefts[node] : rights[node];
+      }
+      exits[t] = -node - 1;
+    }
+    return accumulate(null, exits);
+  }
+
+  // Sums the exit leaves in tree order, as RankLib: a float sum per ensemble and a double average over ensembles.
+  private float accumulate(long[] leaves, long[] exits) {
+    double total = 0;
+    int start = 0;
+    for (int end : ensembleEnds) {
+      float s = 0;
+      for (int t = start; t < end; t++) {
+        int leaf = leaves != null ? Long.numberOfTrailingZeros(leaves[t]) : (int) exits[t];
+        s += leafValues[leafOffsets[t] + leaf] * weights[t];
+      }
+      total += s;
+      start = end;
+    }
+    return average ? (float) (total / ensembleEnds.length) : (float) total;
+  }
+}
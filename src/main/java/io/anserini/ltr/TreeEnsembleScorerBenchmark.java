@@ -0,0 +1,135 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import ciir.umass.edu.learning.DataPoint;
+import ciir.umass.edu.learning.Ranker;
+import ciir.umass.edu.learning.RankerFactory;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.OptionHandlerFilter;
+import org.kohsuke.args4j.ParserProperties;
+
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Compares the scoring of a RankLib tree ensemble through {@link TreeEnsembleScorer} with the RankLib path of
+ * {@code RankLibReranker}, which formats every feature vector as an SVMlight line and parses it into a
+ * {@code DataPoint}. Both paths score the same random candidate blocks; the tool checks that the scores are equal and
+ * reports the throughput of each after a warmup.
+ */
+public class TreeEnsembleScorerBenchmark {
+  private static class Args {
+    @Option(name = "-model", metaVar = "[file]", required = true, usage = "RankLib tree ensemble model")
+    public String model;
+
+    @Option(name = "-docs", metaVar = "[Number]", usage = "candidates per block")
+    public int docs = 1000;
+
+    @Option(name = "-blocks", metaVar = "[Number]", usage = "blocks scored per measurement")
+    public int blocks = 100;
+
+    @Option(name = "-warmup", metaVar = "[Number]", usage = "measurements discarded before the reported one")
+    public int warmup = 5;
+
+    @Option(name = "-seed", metaVar = "[Number]", usage = "seed of the random feature values")
+    public long seed = 42;
+  }
+
+  private static float[][] randomBlock(Random random, int docs, int features) {
+    float[][] block = new float[docs][features];
+    for (float[] vector : block) {
+      for (int f = 0; f < features; f++) {
+        vector[f] = random.nextFloat();
+      }
+    }
+    return block;
+  }
+
+  private static double rankLib(Ranker ranker, float[][][] blocks, float[] scores) {
+    long start = System.nanoTime();
+    for (float[][] block : blocks) {
+      for (int d = 0; d < block.length; d++) {
+        scores[d] = (float) ranker.eval(new DataPoint(BaseFeatureExtractor.constructOutputString("0", 0, "0", block[d])));
+      }
+    }
+    return (System.nanoTime() - start) / 1e9;
+  }
+
+  private static double compiled(TreeEnsembleScorer scorer, float[][][] blocks, float[] scores) {
+    long start = System.nanoTime();
+    for (float[][] block : blocks) {
+      scorer.score(block, 0, block.length, scores);
+    }
+    return (System.nanoTime() - start) / 1e9;
+  }
+
+  public static void main(String[] argv) throws Exception {
+    Args args = new Args();
+    CmdLineParser parser = new CmdLineParser(args, ParserProperties.defaults().withUsageWidth(90));
+    try {
+      parser.parseArgument(argv);
+    } catch (CmdLineException e) {
+      System.err.println(e.getMessage());
+      parser.printUsage(System.err);
+      System.err.println("Example: TreeEnsembleScorerBenchmark" + parser.printExample(OptionHandlerFilter.REQUIRED));
+      return;
+    }
+
+    TreeEnsembleScorer scorer = TreeEnsembleScorer.load(Paths.get(args.model));
+    if (scorer == null) {
+      System.err.println("Not a tree ensemble model: " + args.model);
+      return;
+    }
+    Ranker ranker = new RankerFactory().loadRanker(args.model);
+
+    Random random = new Random(args.seed);
+    float[][][] blocks = new float[args.blocks][][];
+    for (int b = 0; b < args.blocks; b++) {
+      blocks[b] = randomBlock(random, args.docs, scorer.numFeatures());
+    }
+
+    // The scores must be the same before timing means anything.
+    float[] expected = new float[args.docs];
+    float[] actual = new float[args.docs];
+    int mismatches = 0;
+    for (float[][] block : blocks) {
+      rankLib(ranker, new float[][][] {block}, expected);
+      compiled(scorer, new float[][][] {block}, actual);
+      for (int d = 0; d < args.docs; d++) {
+        if (Float.compare(expected[d], actual[d]) != 0) {
+          mismatches++;
+        }
+      }
+    }
+    System.out.println(String.format("%d trees, %d features, %d blocks of %d candidates, %d score mismatches",
+        scorer.numTrees(), scorer.numFeatures(), args.blocks, args.docs, mismatches));
+
+    double rankLibTime = 0;
+    double compiledTime = 0;
+    for (int i = 0; i <= args.warmup; i++) {
+      rankLibTime = rankLib(ranker, blocks, expected);
+      compiledTime = compiled(scorer, blocks, actual);
+    }
+    long scored = (long) args.blocks * args.docs;
+    System.out.println(String.format("RankLib:  %.3fs, %.0f candidates/s", rankLibTime, scored / rankLibTime));
+    System.out.println(String.format("Compiled: %.3fs, %.0f candidates/s (%.1fx)", compiledTime,
+        scored / compiledTime, rankLibTime / compiledTime));
+  }
+}
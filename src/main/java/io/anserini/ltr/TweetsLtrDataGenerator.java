@@ -17,6 +17,7 @@
 package io.anserini.ltr;
 
 import io.anserini.index.generator.TweetGenerator;
+import io.anserini.ltr.feature.DocValuesCursor;
 import io.anserini.ltr.feature.FeatureExtractors;
 import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
@@ -44,6 +45,7 @@ public class TweetsLtrDataGenerator implements Reranker {
   @Override
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext context) {
     IndexReader reader = context.getIndexSearcher().getIndexReader();
+    DocValuesCursor values = new DocValuesCursor(reader);
 
     for (int i = 0; i < docs.documents.length; i++) {
       Terms terms = null;
@@ -60,7 +62,7 @@ public class TweetsLtrDataGenerator implements Reranker {
       out.print(" qid:" + qid);
       out.print(" 1:" + docs.scores[i]);
 
-      float[] intFeatures = this.extractorChain.extractAll(docs.documents[i], terms, context);
+      float[] intFeatures = this.extractorChain.extractAll(docs.ids[i], docs.documents[i], terms, values, context);
 
       for (int j=0; j<intFeatures.length; j++ ) {
         out.print(" " + (j+2) + ":" + intFeatures[j]);
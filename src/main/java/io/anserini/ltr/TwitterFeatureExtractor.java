@@ -29,6 +29,7 @@ import io.anserini.search.query.BagOfWordsQueryGenerator;
 import io.anserini.util.Qrels;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -36,8 +37,11 @@ import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Query;
 
 /**
@@ -72,6 +76,10 @@ public class TwitterFeatureExtractor extends BaseFeatureExtractor<Integer> {
                   new IsTweetReply(),
                   new HashtagCount()
           );
+
+  // Whether the tweet metadata was indexed as DocValues, so that no stored document has to be loaded
+  private final boolean hasDocValues;
+
   /**
    * Constructor that requires a reader to the index, the qrels and the topics
    *
@@ -81,6 +89,7 @@ public class TwitterFeatureExtractor extends BaseFeatureExtractor<Integer> {
    */
   public TwitterFeatureExtractor(IndexReader reader, Qrels qrels, Map<Integer, Map<String, String>> topics) {
     super(reader, qrels, topics, getDefaultExtractors());
+    this.hasDocValues = hasDocValues(reader);
     LOG.debug("Twitter Feature Extractor initialized.");
   }
 
@@ -94,10 +103,31 @@ public class TwitterFeatureExtractor extends BaseFeatureExtractor<Integer> {
   public TwitterFeatureExtractor(IndexReader reader, Qrels qrels,
                  Map<Integer, Map<String, String>> topics, FeatureExtractors featureExtractors) {
     super(reader, qrels, topics, featureExtractors == null ? getDefaultExtractors() : featureExtractors);
+    this.hasDocValues = hasDocValues(reader);
     LOG.debug("Twitter Feature Extractor initialized with custom feature extractors.");
   }
 
+  // Fields that -tweet.docValues writes for every tweet. IN_REPLY_TO_STATUS_ID only exists for replies, and a segment
+  // without it simply has no reply.
+  private static final StatusField[] DOC_VALUES_FIELDS = {StatusField.FOLLOWERS_COUNT, StatusField.FRIENDS_COUNT,
+      StatusField.STATUSES_COUNT, StatusField.HASHTAG_COUNT, StatusField.LINK_COUNT};
 
+  // Every segment must have the DocValues, or the features of its tweets would be read from a missing document
+  private static boolean hasDocValues(IndexReader reader) {
+    for (LeafReaderContext leaf : reader.leaves()) {
+      if (leaf.reader().maxDoc() == 0) {
+        continue;
+      }
+      FieldInfos infos = leaf.reader().getFieldInfos();
+      for (StatusField field : DOC_VALUES_FIELDS) {
+        FieldInfo info = infos.fieldInfo(field.name);
+        if (info == null || info.getDocValuesType() != DocValuesType.NUMERIC) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
 
   @Override
   protected String getIdField() {
@@ -120,6 +150,9 @@ public class TwitterFeatureExtractor extends BaseFeatureExtractor<Integer> {
 
   @Override
   protected Set<String> getFieldsToLoad() {
+    if (hasDocValues) {
+      return Collections.emptySet();
+    }
     return new HashSet<>(Arrays.asList(
         getIdField(),
         getTermVectorField(),
@@ -134,10 +167,4 @@ public class TwitterFeatureExtractor extends BaseFeatureExtractor<Integer> {
     LOG.debug(String.format("Parsing query: %s", queryText) );
     return new BagOfWordsQueryGenerator().buildQuery(TweetGenerator.FIELD_BODY, new TweetAnalyzer(), queryText);
   }
-
-  @Override
-  protected Query docIdQuery(String docId) {
-    long docIdLong = Long.parseLong(docId);
-    return LongPoint.newRangeQuery(getIdField(), docIdLong, docIdLong);
-  }
 }
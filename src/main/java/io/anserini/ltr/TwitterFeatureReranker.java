@@ -17,6 +17,7 @@
 package io.anserini.ltr;
 
 import io.anserini.index.generator.TweetGenerator;
+import io.anserini.ltr.feature.DocValuesCursor;
 import io.anserini.ltr.feature.FeatureExtractors;
 import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
@@ -46,6 +47,7 @@ public class TwitterFeatureReranker implements Reranker<Integer> {
   @Override
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext<Integer> context) {
     IndexReader reader = context.getIndexSearcher().getIndexReader();
+    DocValuesCursor values = new DocValuesCursor(reader);
 
     for (int i = 0; i < docs.documents.length; i++) {
       Terms terms = null;
@@ -61,7 +63,7 @@ public class TwitterFeatureReranker implements Reranker<Integer> {
       out.print(qrels.getRelevanceGrade(qid, docid));
       out.print(" qid:" + qid);
 
-      float[] intFeatures = this.extractors.extractAll(docs.documents[i], terms, context);
+      float[] intFeatures = this.extractors.extractAll(docs.ids[i], docs.documents[i], terms, values, context);
 
       // TODO use model to rerank
     }
@@ -28,11 +28,9 @@ import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.TermQuery;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -131,9 +129,4 @@ public class WebFeatureExtractor extends BaseFeatureExtractor {
     }
   }
 
-  @Override
-  protected Query docIdQuery(String docId) {
-    return new TermQuery(new Term(getIdField(), docId));
-  }
-
 }
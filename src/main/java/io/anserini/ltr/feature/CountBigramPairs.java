@@ -16,184 +16,98 @@
 
 package io.anserini.ltr.feature;
 
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.search.highlight.TokenStreamFromTermVector;
-
-import java.io.IOException;
-import java.util.*;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Static method that will count bigram pairs since this is used
- * by a couple of features
+ * Counts co-occurrences of pairs of query terms within a window, used by the pair features. Only the positions of the
+ * query terms are read (see {@link DocumentStatistics#getPositions(String)}), so the cost depends on how often the
+ * query terms occur in a document rather than on its length, and the positions are shared by all the pair features of
+ * a chain. Distances are measured in positions, so a window also spans the gaps left by removed stopwords.
  */
 public class CountBigramPairs {
-  public static class PhraseCounter {
-    public Map<String, Integer> phraseCountMap = new HashMap<>();
-
-    public void incrementCount(String firstToken) {
-      if (phraseCountMap.containsKey(firstToken)) {
-        phraseCountMap.put(firstToken, phraseCountMap.get(firstToken) + 1);
-      } else {
-        phraseCountMap.put(firstToken, 1);
-      }
-    }
-  }
 
   /**
-   * Method will count coocurrence of pairs specified in queryPairMap
-   * and store counts for each window size in counters
-   * NOTE method mutates inputs
-   * @param singleCountMap    a count of single tokens as we encounter them, useful if any smoothing
-   * @param queryPairMap      all pairs of strings we are looking for
-   * @param gapSizes          list of window sizes to compute for
-   * @param counters          Window size to counter map
+   * Counts the occurrences of a term followed by another term at most {@code gapSize} positions later.
+   *
+   * @param first    sorted positions of the first term
+   * @param second   sorted positions of the second term
+   * @param gapSize  maximum distance between the two terms
+   * @return number of ordered pairs
    */
-  public static void countPairs(Map<String, Integer> singleCountMap, Map<String, Set<String>> queryPairMap,
-                                ArrayList<Integer> gapSizes,
-                                Map<Integer, PhraseCounter> counters,
-                                Terms terms) throws IOException {
-    countPairs(singleCountMap, queryPairMap, Collections.<String, Set<String>>emptyMap(), gapSizes, counters, terms);
-  }
-
-    /**
-     * Method will count coocurrence of pairs specified in queryPairMap
-     * and store counts for each window size in counters
-     * NOTE method mutates inputs
-     * @param singleCountMap    a count of single tokens as we encounter them, useful if any smoothing
-     * @param queryPairMap      all pairs of strings we are looking for
-     * @param backQueryPairMap  all pairs of reverse pairs, ei if query is test query, this would include query test
-     * @param gapSizes          list of window sizes to compute for
-     * @param counters          Window size to counter map
-     */
-  public static void countPairs(Map<String, Integer> singleCountMap, Map<String, Set<String>> queryPairMap,
-                                Map<String, Set<String>> backQueryPairMap,
-                                ArrayList<Integer> gapSizes,
-                                Map<Integer, PhraseCounter> counters,
-                                Terms terms) throws IOException {
-
-    // Construct token stream with offset 0
-    TokenStreamFromTermVector stream = new TokenStreamFromTermVector(terms, -1);
-    CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
-
-    int docSize = 0;
-    int maxGapSize = 0;
-    for (Integer windowSize : gapSizes) {
-      if (windowSize > maxGapSize) {
-        maxGapSize = windowSize;
+  public static int countOrdered(int[] first, int[] second, int gapSize) {
+    int count = 0;
+    int lo = 0;
+    int hi = 0;
+    for (int position : first) {
+      // Both pointers only move forward since the positions of the first term are sorted
+      while (lo < second.length && second[lo] <= position) {
+        lo++;
       }
-    }
-
-    // We will maintain a fifo queue of window size
-    LinkedList<String> window = new LinkedList<>();
-    // add to the window first and process the first tokens
-    stream.reset();
-    while (docSize < maxGapSize * 2 +2 && stream.incrementToken()) {
-      // First construct the window that we need to test on
-      docSize++;
-      String token = termAttribute.toString();
-      window.add(token);
-    }
-
-    // Now we can construct counts for up to index WINDOW_SIZE
-    // But we need to account for the case when the tokenstream just doesn't have that many tokens
-    for (int i = 0; i < Math.min(maxGapSize + 1, docSize); i++) {
-      String firstToken = window.get(i);
-      // Look ahead for token
-      if (queryPairMap.containsKey(firstToken)) {
-        // Count unigram for this token
-        singleCountMap.put(firstToken, singleCountMap.get(firstToken) + 1);
-        for (int j = i + 1; j < Math.min(i + maxGapSize + 1, docSize); j++) {
-          if (queryPairMap.get(firstToken).contains(window.get(j))) {
-            for (int windowSize : counters.keySet()) {
-              if (j - i <= windowSize) counters.get(windowSize).incrementCount(firstToken);
-            }
-          }
-        }
+      if (hi < lo) {
+        hi = lo;
       }
-
-      if (backQueryPairMap.containsKey(firstToken)) {
-        // Count unigram for this token
-        for (int j = i+1; j < Math.min(i + maxGapSize + 1, docSize); j++) {
-          if (backQueryPairMap.get(firstToken).contains(window.get(j))) {
-            for (int windowSize : counters.keySet()) {
-              if (j - i <= windowSize) counters.get(windowSize).incrementCount(window.get(j));
-            }
-          }
-        }
+      while (hi < second.length && second[hi] - position <= gapSize) {
+        hi++;
       }
+      count += hi - lo;
     }
+    return count;
+  }
 
-    // Now we continue
-    while (stream.incrementToken()) {
-      docSize++;
-      String token = termAttribute.toString();
-      window.add(token);
-      // Move the window along
-      // The window at this point is guaranteed to be of size WINDOW_SIZE * 2 because of the previous loop
-      // if there are not enough tokens this would not even execute
-      window.removeFirst();
-      // Now test for the phrase at the test index WINDOW_SIZE
-      String firstToken = window.get(maxGapSize);
-      if (queryPairMap.containsKey(firstToken)) {
-        // Count unigram for this token
-        singleCountMap.put(firstToken, singleCountMap.get(firstToken) + 1);
-        for (int j = maxGapSize +1; j < maxGapSize*2 + 2; j++) {
-          if (queryPairMap.get(firstToken).contains(window.get(j))) {
-            for (int windowSize : counters.keySet()) {
-              if (j - maxGapSize<= windowSize) counters.get(windowSize).incrementCount(firstToken);
-            }
-          }
-        }
-      }
-
-      if (backQueryPairMap.containsKey(firstToken)) {
-        // Count unigram for this token
-        for (int j = maxGapSize +1; j < maxGapSize*2 + 2; j++) {
+  /**
+   * Counts the occurrences of two terms at most {@code gapSize} positions apart, in either order.
+   *
+   * @param first    sorted positions of the first term
+   * @param second   sorted positions of the second term
+   * @param gapSize  maximum distance between the two terms
+   * @return number of unordered pairs
+   */
+  public static int countUnordered(int[] first, int[] second, int gapSize) {
+    return countOrdered(first, second, gapSize) + countOrdered(second, first, gapSize);
+  }
 
-          if (backQueryPairMap.get(firstToken).contains(window.get(j))) {
-            for (int windowSize : counters.keySet()) {
-              if (j - maxGapSize<= windowSize) counters.get(windowSize).incrementCount(window.get(j));
-            }
-          }
-        }
-      }
+  /**
+   * Sums the counts of the pairs x y in {@code queryPairMap}, where y follows x within {@code gapSize} positions.
+   *
+   * @param stats         statistics of the document
+   * @param queryPairMap  all pairs of query terms we are looking for, x->y
+   * @param gapSize       maximum distance between the two terms
+   * @return total count
+   */
+  public static float countOrderedPairs(DocumentStatistics stats, Map<String, Set<String>> queryPairMap, int gapSize) {
+    return countPairs(stats, queryPairMap, gapSize, true);
+  }
 
-    }
+  /**
+   * Sums the counts of the pairs x y in {@code queryPairMap}, where x and y occur within {@code gapSize} positions
+   * in either order.
+   *
+   * @param stats         statistics of the document
+   * @param queryPairMap  all pairs of query terms we are looking for, x->y
+   * @param gapSize       maximum distance between the two terms
+   * @return total count
+   */
+  public static float countUnorderedPairs(DocumentStatistics stats, Map<String, Set<String>> queryPairMap,
+                                          int gapSize) {
+    return countPairs(stats, queryPairMap, gapSize, false);
+  }
 
-    // Now we do the tail end of the window, now that no more tokens are added:
-    // the unprocessed portion is the last maxGap + 1 -> end
-    for (int i = maxGapSize +1; i < Math.min(maxGapSize*2 + 1,docSize); i++) {
-      String firstToken = window.get(i);
-      if (queryPairMap.containsKey(firstToken)) {
-        // Count unigram for this token
-        singleCountMap.put(firstToken, singleCountMap.get(firstToken) + 1);
-        for (int j = i +1; j < Math.min(maxGapSize*2 + 2,docSize) ; j++) {
-          if (queryPairMap.get(firstToken).contains(window.get(j))) {
-            for (int windowSize : counters.keySet()) {
-              if (j -i <= windowSize) counters.get(windowSize).incrementCount(firstToken);
-            }
-          }
-        }
+  private static float countPairs(DocumentStatistics stats, Map<String, Set<String>> queryPairMap, int gapSize,
+                                  boolean ordered) {
+    float score = 0.0f;
+    for (Map.Entry<String, Set<String>> entry : queryPairMap.entrySet()) {
+      int[] first = stats.getPositions(entry.getKey());
+      if (first.length == 0) {
+        continue;
       }
-
-      if (backQueryPairMap.containsKey(firstToken)) {
-        // Count unigram for this token
-        for (int j = i +1; j < Math.min(maxGapSize*2 + 2,docSize); j++) {
-
-          if (backQueryPairMap.get(firstToken).contains(window.get(j))) {
-            for (int windowSize : counters.keySet()) {
-              if (j - i<= windowSize) counters.get(windowSize).incrementCount(window.get(j));
-            }
-          }
-        }
+      int count = 0;
+      for (String secondToken : entry.getValue()) {
+        int[] second = stats.getPositions(secondToken);
+        count += ordered ? countOrdered(first, second, gapSize) : countUnordered(first, second, gapSize);
       }
+      score += count;
     }
-
-    stream.end();
-    stream.close();
+    return score;
   }
-
-
-
 }
@@ -0,0 +1,41 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr.feature;
+
+import io.anserini.rerank.RerankerContext;
+import org.apache.lucene.document.Document;
+
+/**
+ * A feature extractor that reads per-document values, e.g., numeric DocValues, by Lucene id instead of from the stored
+ * document. In a {@link FeatureExtractors} chain it gets the Lucene id of the document when the caller knows it (see
+ * {@link FeatureExtractors#extractAll(int, Document, org.apache.lucene.index.Terms, DocValuesCursor, RerankerContext)}),
+ * along with a {@link DocValuesCursor} shared by the documents of the query.
+ */
+public interface DocIdFeatureExtractor<T> extends FeatureExtractor<T> {
+
+  /**
+   * Extracts the feature of a document.
+   *
+   * @param docid Lucene id of the document in the reader of the context's searcher
+   * @param doc stored document, may be null if the caller did not load it
+   * @param values DocValues of the batch of documents being extracted
+   * @param context reranker context
+   * @return feature value
+   */
+  float extract(int docid, Document doc, DocValuesCursor values, RerankerContext<T> context);
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.ltr.feature;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the numeric DocValues of the documents of a query, or of any batch of documents. The iterator of each field
+ * is kept for the current segment and reused as long as documents come in increasing docid order, e.g., when the
+ * candidates are visited sorted by docid. It is only pulled again when the batch moves to another segment or back to
+ * an earlier document. Not thread-safe: use one instance per thread and batch.
+ */
+public class DocValuesCursor {
+  private final List<LeafReaderContext> leaves;
+  private final Map<String, FieldCursor> fields = new HashMap<>();
+  private LeafReaderContext leaf = null;
+
+  public DocValuesCursor(IndexReader reader) {
+    this.leaves = reader.leaves();
+  }
+
+  /**
+   * Reads the numeric DocValue of a document.
+   *
+   * @param field field
+   * @param docid Lucene id of the document
+   * @param missing value of documents without a value
+   * @return value of the document, null if the segment of the document has no numeric DocValues for the field
+   * @throws IOException if the DocValues cannot be read
+   */
+  public Long getNumericValue(String field, int docid, long missing) throws IOException {
+    if (leaf == null || docid < leaf.docBase || docid >= leaf.docBase + leaf.reader().maxDoc()) {
+      leaf = leaves.get(ReaderUtil.subIndex(docid, leaves));
+      fields.clear();
+    }
+    int target = docid - leaf.docBase;
+    FieldCursor cursor = fields.get(field);
+    if (cursor == null || target < cursor.doc) {
+      // DocValues iterators only move forward
+      cursor = new FieldCursor(leaf, field);
+      fields.put(field, cursor);
+    }
+    return cursor.get(target, missing);
+  }
+
+  private static final class FieldCursor {
+    private final NumericDocValues values; // null if the segment has no numeric DocValues for the field
+    private int doc = -1;
+    private boolean exists = false;
+
+    FieldCursor(LeafReaderContext leaf, String field) throws IOException {
+      FieldInfo info = leaf.reader().getFieldInfos().fieldInfo(field);
+      this.values = info == null || info.getDocValuesType() != DocValuesType.NUMERIC ? null :
+          DocValues.getNumeric(leaf.reader(), field);
+    }
+
+    Long get(int target, long missing) throws IOException {
+      if (values == null) {
+        return null;
+      }
+      // Several extractors may read the same document: the iterator cannot be advanced to its current doc again
+      if (target != doc) {
+        exists = values.advanceExact(target);
+        doc = target;
+      }
+      return exists ? values.longValue() : missing;
+    }
+  }
+}
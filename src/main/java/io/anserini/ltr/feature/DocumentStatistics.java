@@ -0,0 +1,181 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr.feature;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of one document with respect to one query, shared by the extractors of a {@link FeatureExtractors}
+ * chain (see {@link StatisticsFeatureExtractor}). The document vector is read once, when the statistics are
+ * computed: the document length, the number of distinct terms and the frequencies of the query terms all come from
+ * that single pass. Positions of query terms are only read if an extractor asks for them, and then once per term.
+ *
+ * <p>Statistics are computed for a single document and are not thread-safe.</p>
+ */
+public final class DocumentStatistics {
+  private static final Logger LOG = LogManager.getLogger(DocumentStatistics.class);
+
+  private static final int[] NO_POSITIONS = new int[0];
+
+  private final Terms terms;
+  private final long docSize;
+  private final int uniqueTermCount;
+  private final Map<String, Long> termFreqs;
+  private final Map<String, int[]> positions = new HashMap<>();
+
+  private DocumentStatistics(Terms terms, long docSize, int uniqueTermCount, Map<String, Long> termFreqs) {
+    this.terms = terms;
+    this.docSize = docSize;
+    this.uniqueTermCount = uniqueTermCount;
+    this.termFreqs = termFreqs;
+  }
+
+  /**
+   * Computes the statistics of a document vector for a query.
+   *
+   * @param terms document vector, may be null
+   * @param queryTokens query tokens
+   * @return statistics
+   */
+  public static DocumentStatistics compute(Terms terms, List<String> queryTokens) {
+    // Query tokens are matched on their bytes, so only the terms of the query are decoded.
+    Map<BytesRef, String> queryTerms = new HashMap<>();
+    for (String token : queryTokens) {
+      queryTerms.put(new BytesRef(token), token);
+    }
+
+    long docSize = 0L;
+    int uniqueTermCount = 0;
+    Map<String, Long> termFreqs = new HashMap<>();
+    if (terms != null) {
+      try {
+        TermsEnum termsEnum = terms.iterator();
+        BytesRef text;
+        while ((text = termsEnum.next()) != null) {
+          long freq = termsEnum.totalTermFreq();
+          docSize += freq;
+          uniqueTermCount++;
+          String token = queryTerms.get(text);
+          if (token != null) {
+            termFreqs.put(token, freq);
+          }
+        }
+      } catch (IOException e) {
+        LOG.warn("Error reading the document vector, statistics are partial");
+      }
+    }
+    return new DocumentStatistics(terms, docSize, uniqueTermCount, termFreqs);
+  }
+
+  /**
+   * Returns the document vector the statistics were computed from.
+   *
+   * @return document vector, may be null
+   */
+  public Terms getTerms() {
+    return terms;
+  }
+
+  /**
+   * Returns the length of the document, i.e., the sum of the frequencies of its terms.
+   *
+   * @return document length
+   */
+  public long getDocSize() {
+    return docSize;
+  }
+
+  /**
+   * Returns the number of distinct terms of the document.
+   *
+   * @return number of distinct terms
+   */
+  public int getUniqueTermCount() {
+    return uniqueTermCount;
+  }
+
+  /**
+   * Returns the frequency of a query term in the document.
+   *
+   * @param queryToken query token
+   * @return term frequency, 0 if the term is not in the document
+   */
+  public long getTermFreq(String queryToken) {
+    return termFreqs.getOrDefault(queryToken, 0L);
+  }
+
+  /**
+   * Returns the frequencies of the query terms that occur in the document.
+   *
+   * @return frequencies of the matching query terms
+   */
+  public Map<String, Long> getTermFreqs() {
+    return termFreqs;
+  }
+
+  /**
+   * Returns the positions of a query term in the document, read from the document vector on first use.
+   *
+   * @param queryToken query token
+   * @return sorted positions, empty if the term is not in the document or positions are not stored
+   */
+  public int[] getPositions(String queryToken) {
+    int[] result = positions.get(queryToken);
+    if (result == null) {
+      result = readPositions(queryToken);
+      positions.put(queryToken, result);
+    }
+    return result;
+  }
+
+  private int[] readPositions(String queryToken) {
+    if (terms == null || !termFreqs.containsKey(queryToken) || !terms.hasPositions()) {
+      return NO_POSITIONS;
+    }
+    try {
+      TermsEnum termsEnum = terms.iterator();
+      if (!termsEnum.seekExact(new BytesRef(queryToken))) {
+        return NO_POSITIONS;
+      }
+      PostingsEnum postings = termsEnum.postings(null, PostingsEnum.POSITIONS);
+      if (postings.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
+        return NO_POSITIONS;
+      }
+      int[] result = new int[postings.freq()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = postings.nextPosition();
+      }
+      Arrays.sort(result);
+      return result;
+    } catch (IOException e) {
+      LOG.warn("Error reading positions of " + queryToken);
+      return NO_POSITIONS;
+    }
+  }
+}
@@ -28,7 +28,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * A feature extractor.
+ * A feature extractor. The same instance extracts features for many queries, possibly on several threads at once, so
+ * extractors must not keep state between calls.
  */
 public interface FeatureExtractor<T> {
   //********************************************************
@@ -60,5 +61,4 @@ public interface FeatureExtractor<T> {
   float extract(Document doc, Terms terms, RerankerContext<T> context);
 
   String getName();
-
 }
@@ -111,12 +111,59 @@ public class FeatureExtractors {
     return this;
   }
 
-  @SuppressWarnings("unchecked")
   public float[] extractAll(Document doc, Terms terms, RerankerContext context) {
+    return extractAll(-1, doc, terms, context);
+  }
+
+  /**
+   * Extracts all the features of a document. Use
+   * {@link #extractAll(int, Document, Terms, DocValuesCursor, RerankerContext)} to extract the documents of a query
+   * in a batch.
+   *
+   * @param docid Lucene id of the document, passed to {@link DocIdFeatureExtractor}s; -1 if unknown
+   * @param doc stored document, may be null if only {@link DocIdFeatureExtractor}s and extractors working on the
+   *            document vector are used
+   * @param terms document vector
+   * @param context reranker context
+   * @return feature values
+   */
+  public float[] extractAll(int docid, Document doc, Terms terms, RerankerContext context) {
+    return extractAll(docid, doc, terms, null, context);
+  }
+
+  /**
+   * Extracts all the features of a document of a batch, e.g., the candidates of a query. The DocValues iterators of
+   * the batch are reused from one document to the next, best when documents come in increasing docid order.
+   *
+   * @param docid Lucene id of the document, passed to {@link DocIdFeatureExtractor}s; -1 if unknown
+   * @param doc stored document, may be null if only {@link DocIdFeatureExtractor}s and extractors working on the
+   *            document vector are used
+   * @param terms document vector
+   * @param values DocValues of the batch, owned by the calling thread; null to read the DocValues of this document only
+   * @param context reranker context
+   * @return feature values
+   */
+  @SuppressWarnings("unchecked")
+  public float[] extractAll(int docid, Document doc, Terms terms, DocValuesCursor values, RerankerContext context) {
+    if (values == null && docid >= 0) {
+      values = new DocValuesCursor(context.getIndexSearcher().getIndexReader());
+    }
     float[] features = new float[extractors.size()];
+    // Read the document vector once for all the extractors that only need its statistics.
+    DocumentStatistics stats = null;
 
     for (int i=0; i<extractors.size(); i++) {
-      features[i] = extractors.get(i).extract(doc, terms, context);
+      FeatureExtractor extractor = extractors.get(i);
+      if (extractor instanceof StatisticsFeatureExtractor) {
+        if (stats == null) {
+          stats = DocumentStatistics.compute(terms, context.getQueryTokens());
+        }
+        features[i] = ((StatisticsFeatureExtractor) extractor).extract(stats, context);
+      } else if (extractor instanceof DocIdFeatureExtractor && docid >= 0) {
+        features[i] = ((DocIdFeatureExtractor) extractor).extract(docid, doc, values, context);
+      } else {
+        features[i] = extractor.extract(doc, terms, context);
+      }
     }
 
     return features;
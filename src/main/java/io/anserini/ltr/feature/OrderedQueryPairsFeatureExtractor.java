@@ -21,13 +21,8 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import io.anserini.rerank.RerankerContext;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.Terms;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -37,16 +32,7 @@ import java.util.Set;
 /**
  * Counts occurrences of all pairs of query tokens
  */
-public class OrderedQueryPairsFeatureExtractor<T> implements FeatureExtractor<T> {
-  private static final Logger LOG = LogManager.getLogger(OrderedQueryPairsFeatureExtractor.class);
-
-  protected static ArrayList<Integer> gapSizes = new ArrayList<>();
-  protected static Map<Integer, CountBigramPairs.PhraseCounter> counters = new HashMap<>();
-
-  protected static Map<String, Integer> singleCountMap = new HashMap<>();
-  protected static Map<String, Set<String>> queryPairMap = new HashMap<>();
-  protected static String lastProcessedId = "";
-  protected static Document lastProcessedDoc = null;
+public class OrderedQueryPairsFeatureExtractor<T> implements StatisticsFeatureExtractor<T> {
 
   public static class Deserializer extends StdDeserializer<OrderedQueryPairsFeatureExtractor>
   {
@@ -70,24 +56,11 @@ public class OrderedQueryPairsFeatureExtractor<T> implements FeatureExtractor<T>
 
   public OrderedQueryPairsFeatureExtractor(int gapSize) {
     this.gapSize = gapSize;
-    // Add a window to the counters
-    counters.put(gapSize, new CountBigramPairs.PhraseCounter());
-    gapSizes.add(gapSize);
-  }
-
-  private static void resetCounters(String newestQuery, Document newestDoc) {
-    singleCountMap.clear();
-    queryPairMap.clear();
-    for (int i : counters.keySet()) {
-      counters.get(i).phraseCountMap.clear();
-    }
-    lastProcessedId = newestQuery;
-    lastProcessedDoc = newestDoc;
   }
 
   protected int gapSize;
 
-  protected void populateQueryPairMap(List<String> queryTokens) {
+  protected void populateQueryPairMap(Map<String, Set<String>> queryPairMap, List<String> queryTokens) {
     // Construct a count map and a map of phrase pair x y, x->y
     for (int i = 0; i < queryTokens.size() - 1; i++) {
       Set<String> secondTokens = new HashSet<>();
@@ -95,42 +68,14 @@ public class OrderedQueryPairsFeatureExtractor<T> implements FeatureExtractor<T>
         secondTokens.add(queryTokens.get(j));
       }
       queryPairMap.put(queryTokens.get(i), secondTokens);
-      singleCountMap.put(queryTokens.get(i), 0);
     }
   }
 
-  protected float computeOrderedFrequencyScore(Document doc, Terms terms, RerankerContext<T> context) throws IOException {
-
-    // Only compute the score once for all window sizes on the same document
-    if (!context.getQueryId().equals(lastProcessedId) || lastProcessedDoc != doc) {
-      resetCounters((String)context.getQueryId(), doc);
-
-      List<String> queryTokens = context.getQueryTokens();
-      populateQueryPairMap(queryTokens);
-
-      // Now make the call to the static method
-      CountBigramPairs.countPairs(singleCountMap, queryPairMap, gapSizes, counters, terms);
-    }
-
-    float score = 0.0f;
-    // Smoothing count of 1
-    Map<String, Integer> phraseCountMap = counters.get(this.gapSize).phraseCountMap;
-    for (String queryToken : queryPairMap.keySet()) {
-      float countToUse = phraseCountMap.getOrDefault(queryToken, 0);
-      score += countToUse;
-    }
-
-    return score;
-  }
-
   @Override
-  public float extract(Document doc, Terms terms, RerankerContext<T> context) {
-    try {
-      return computeOrderedFrequencyScore(doc, terms, context);
-    } catch (IOException e) {
-      LOG.error("IOException, returning 0.0f");
-      return 0.0f;
-    }
+  public float extract(DocumentStatistics stats, RerankerContext<T> context) {
+    Map<String, Set<String>> queryPairMap = new HashMap<>();
+    populateQueryPairMap(queryPairMap, context.getQueryTokens());
+    return CountBigramPairs.countOrderedPairs(stats, queryPairMap, gapSize);
   }
 
   @Override
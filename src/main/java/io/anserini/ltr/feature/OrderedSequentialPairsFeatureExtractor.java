@@ -21,10 +21,6 @@ import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.anserini.rerank.RerankerContext;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.Terms;
 
 import java.io.IOException;
 import java.util.*;
@@ -33,16 +29,7 @@ import java.util.*;
  * This feature extractor will return the number of phrases
  * in a specified gap size
  */
-public class OrderedSequentialPairsFeatureExtractor<T> implements FeatureExtractor<T> {
-  private static final Logger LOG = LogManager.getLogger(OrderedSequentialPairsFeatureExtractor.class);
-
-  protected static ArrayList<Integer> gapSizes = new ArrayList<>();
-  protected static Map<Integer, CountBigramPairs.PhraseCounter> counters = new HashMap<>();
-
-  protected static Map<String, Integer> singleCountMap = new HashMap<>();
-  protected static Map<String, Set<String>> queryPairMap = new HashMap<>();
-  protected static String lastProcessedId = "";
-  protected static Document lastProcessedDoc = null;
+public class OrderedSequentialPairsFeatureExtractor<T> implements StatisticsFeatureExtractor<T> {
 
   public static class Deserializer extends StdDeserializer<OrderedSequentialPairsFeatureExtractor>
   {
@@ -64,34 +51,11 @@ public class OrderedSequentialPairsFeatureExtractor<T> implements FeatureExtract
     }
   }
 
-  private static void resetCounters(String newestQuery, Document newestDoc) {
-    singleCountMap.clear();
-    queryPairMap.clear();
-    for (int i : counters.keySet()) {
-      counters.get(i).phraseCountMap.clear();
-    }
-    lastProcessedId = newestQuery;
-    lastProcessedDoc = newestDoc;
-  }
-
   protected int gapSize;
 
   // Called when we add these to the chain
   public OrderedSequentialPairsFeatureExtractor(int gapSize) {
     this.gapSize = gapSize;
-    // Add a window to the counters
-    counters.put(gapSize, new CountBigramPairs.PhraseCounter());
-    gapSizes.add(gapSize);
-  }
-
-  @Override
-  public float extract(Document doc, Terms terms, RerankerContext<T> context) {
-    try {
-      return computeOrderedFrequencyScore(doc, terms, context);
-    } catch (IOException e) {
-      LOG.error("IOException, returning 0.0f");
-      return 0.0f;
-    }
   }
 
   /**
@@ -99,7 +63,7 @@ public class OrderedSequentialPairsFeatureExtractor<T> implements FeatureExtract
    * implementation can be overriden for other features that are computed similarly
    * @param queryTokens
    */
-  protected void populateQueryPairMap(List<String> queryTokens) {
+  protected void populateQueryPairMap(Map<String, Set<String>> queryPairMap, List<String> queryTokens) {
     // Construct a count map and a map of phrase pair x y, x->y
     for (int i = 0; i < queryTokens.size() - 1; i++) {
       if (queryPairMap.containsKey(queryTokens.get(i))) {
@@ -107,32 +71,14 @@ public class OrderedSequentialPairsFeatureExtractor<T> implements FeatureExtract
       } else {
         queryPairMap.put(queryTokens.get(i), new HashSet<>(Arrays.asList(queryTokens.get(i + 1))));
       }
-      singleCountMap.put(queryTokens.get(i), 0);
     }
   }
 
-  protected float computeOrderedFrequencyScore(Document doc, Terms terms, RerankerContext<T> context) throws IOException {
-
-    // Only compute the score once for all window sizes on the same document
-    if (!context.getQueryId().equals(lastProcessedId) || lastProcessedDoc != doc) {
-      resetCounters(context.getQueryId().toString(), doc);
-
-      List<String> queryTokens = context.getQueryTokens();
-      populateQueryPairMap(queryTokens);
-
-      // Now make the call to the static method
-      CountBigramPairs.countPairs(singleCountMap, queryPairMap, gapSizes, counters, terms);
-    }
-
-    float score = 0.0f;
-    // Smoothing count of 1
-    Map<String, Integer> phraseCountMap = counters.get(this.gapSize).phraseCountMap;
-    for (String queryToken : queryPairMap.keySet()) {
-      float countToUse = phraseCountMap.getOrDefault(queryToken, 0);
-      score += countToUse;
-    }
-
-    return score;
+  @Override
+  public float extract(DocumentStatistics stats, RerankerContext<T> context) {
+    Map<String, Set<String>> queryPairMap = new HashMap<>();
+    populateQueryPairMap(queryPairMap, context.getQueryTokens());
+    return CountBigramPairs.countOrderedPairs(stats, queryPairMap, gapSize);
   }
 
   @Override
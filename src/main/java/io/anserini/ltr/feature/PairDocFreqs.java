@@ -0,0 +1,252 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr.feature;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Number of documents containing both terms of a pair, shared by all queries and threads working on the same index.
+ * Topic sets reuse the same terms heavily, so pair document frequencies are kept in a bounded LRU cache instead of
+ * intersecting the postings again for every query. The pairs of a known topic set can be computed ahead of time with
+ * {@link #precompute(IndexReader, String, Collection, int)}; those are never evicted.
+ *
+ * <p>Postings are intersected segment by segment, driven by the rarer term, skipping through the postings of the
+ * other term with {@link DocIdSetIterator#advance(int)}.</p>
+ */
+public final class PairDocFreqs {
+  private static final Logger LOG = LogManager.getLogger(PairDocFreqs.class);
+
+  public static final int DEFAULT_CACHE_SIZE = 100000;
+
+  // Removed when the reader is closed; the entries do not reference the reader
+  private static final Map<IndexReader.CacheKey, PairDocFreqs> INSTANCES = new ConcurrentHashMap<>();
+
+  private final Map<Pair, Integer> precomputed = new ConcurrentHashMap<>();
+  private final Map<Pair, Integer> cache;
+
+  private PairDocFreqs(int cacheSize) {
+    this.cache = new LinkedHashMap<Pair, Integer>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Pair, Integer> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the pair document frequencies of an index, shared by all callers using the same reader until it is
+   * closed. The reader is passed again to the lookups so that the cache does not keep it alive. Readers that cannot
+   * be cached get a new instance on every call.
+   *
+   * @param reader index reader
+   * @return pair document frequencies of the index
+   */
+  public static PairDocFreqs get(IndexReader reader) {
+    IndexReader.CacheHelper helper = reader.getReaderCacheHelper();
+    if (helper == null) {
+      return new PairDocFreqs(DEFAULT_CACHE_SIZE);
+    }
+    return INSTANCES.computeIfAbsent(helper.getKey(), key -> {
+      helper.addClosedListener(INSTANCES::remove);
+      return new PairDocFreqs(DEFAULT_CACHE_SIZE);
+    });
+  }
+
+  /**
+   * Returns the number of documents containing both terms.
+   *
+   * @param reader index reader
+   * @param field field
+   * @param first first term
+   * @param second second term
+   * @return number of documents containing both terms
+   * @throws IOException if the postings cannot be read
+   */
+  public int getDocFreq(IndexReader reader, String field, String first, String second) throws IOException {
+    Pair pair = new Pair(field, first, second);
+    Integer docFreq = precomputed.get(pair);
+    if (docFreq != null) {
+      return docFreq;
+    }
+    synchronized (cache) {
+      docFreq = cache.get(pair);
+    }
+    if (docFreq == null) {
+      // Computed outside of the lock, two threads may compute the same pair at worst
+      docFreq = intersect(reader, field, first, second);
+      synchronized (cache) {
+        cache.put(pair, docFreq);
+      }
+    }
+    return docFreq;
+  }
+
+  /**
+   * Computes the document frequencies of all the pairs of query terms of a topic set. They are kept for the lifetime
+   * of the reader and do not count towards the size of the cache.
+   *
+   * @param reader index reader
+   * @param field field
+   * @param queries query tokens of every topic
+   * @param threads number of threads
+   * @throws IOException if the postings cannot be read
+   */
+  public void precompute(IndexReader reader, String field, Collection<List<String>> queries, int threads)
+      throws IOException {
+    Map<Pair, Boolean> pairs = new LinkedHashMap<>();
+    for (List<String> queryTokens : queries) {
+      for (int i = 0; i < queryTokens.size(); i++) {
+        for (int j = i + 1; j < queryTokens.size(); j++) {
+          if (!queryTokens.get(i).equals(queryTokens.get(j))) {
+            pairs.put(new Pair(field, queryTokens.get(i), queryTokens.get(j)), true);
+          }
+        }
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Pair pair : pairs.keySet()) {
+        if (precomputed.containsKey(pair)) {
+          continue;
+        }
+        futures.add(executor.submit(() -> {
+          precomputed.put(pair, intersect(reader, pair.field, pair.first, pair.second));
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while computing pair document frequencies", e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    LOG.info(String.format("Precomputed %d pair document frequencies", precomputed.size()));
+  }
+
+  private static int intersect(IndexReader reader, String field, String first, String second) throws IOException {
+    BytesRef firstTerm = new BytesRef(first);
+    BytesRef secondTerm = new BytesRef(second);
+    int count = 0;
+    for (LeafReaderContext leaf : reader.leaves()) {
+      Terms terms = leaf.reader().terms(field);
+      if (terms == null) {
+        continue;
+      }
+      TermsEnum firstEnum = terms.iterator();
+      if (!firstEnum.seekExact(firstTerm)) {
+        continue;
+      }
+      TermsEnum secondEnum = terms.iterator();
+      if (!secondEnum.seekExact(secondTerm)) {
+        continue;
+      }
+      PostingsEnum lead = firstEnum.postings(null, PostingsEnum.NONE);
+      PostingsEnum other = secondEnum.postings(null, PostingsEnum.NONE);
+      if (secondEnum.docFreq() < firstEnum.docFreq()) {
+        PostingsEnum swap = lead;
+        lead = other;
+        other = swap;
+      }
+      count += intersect(lead, other);
+    }
+    return count;
+  }
+
+  private static int intersect(PostingsEnum lead, PostingsEnum other) throws IOException {
+    int count = 0;
+    int doc = lead.nextDoc();
+    while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+      int otherDoc = other.docID() < doc ? other.advance(doc) : other.docID();
+      if (otherDoc == DocIdSetIterator.NO_MORE_DOCS) {
+        break;
+      }
+      if (otherDoc == doc) {
+        count++;
+        doc = lead.nextDoc();
+      } else {
+        // Leapfrog: the other term is ahead, skip the lead term to it
+        doc = lead.advance(otherDoc);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * A pair of terms of a field, the document frequency does not depend on the order of the terms.
+   */
+  private static final class Pair {
+    private final String field;
+    private final String first;
+    private final String second;
+
+    private Pair(String field, String first, String second) {
+      this.field = field;
+      if (first.compareTo(second) <= 0) {
+        this.first = first;
+        this.second = second;
+      } else {
+        this.first = second;
+        this.second = first;
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Pair)) {
+        return false;
+      }
+      Pair pair = (Pair) o;
+      return field.equals(pair.field) && first.equals(pair.first) && second.equals(pair.second);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(field, first, second);
+    }
+  }
+}
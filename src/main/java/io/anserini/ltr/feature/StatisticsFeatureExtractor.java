@@ -0,0 +1,36 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr.feature;
+
+import io.anserini.rerank.RerankerContext;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Terms;
+
+/**
+ * A feature extractor that only needs the {@link DocumentStatistics} of a document. In a {@link FeatureExtractors}
+ * chain the statistics are computed once per document and passed to all such extractors, instead of every extractor
+ * iterating over the document vector on its own.
+ */
+public interface StatisticsFeatureExtractor<T> extends FeatureExtractor<T> {
+
+  float extract(DocumentStatistics stats, RerankerContext<T> context);
+
+  @Override
+  default float extract(Document doc, Terms terms, RerankerContext<T> context) {
+    return extract(DocumentStatistics.compute(terms, context.getQueryTokens()), context);
+  }
+}
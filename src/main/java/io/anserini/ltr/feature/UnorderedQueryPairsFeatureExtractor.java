@@ -21,8 +21,6 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import io.anserini.rerank.RerankerContext;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.Terms;
 
 import java.io.IOException;
 import java.util.*;
@@ -30,16 +28,7 @@ import java.util.*;
 /**
  * Counts all unordered pairs of query tokens
  */
-public class UnorderedQueryPairsFeatureExtractor<T> implements FeatureExtractor<T> {
-  protected static ArrayList<Integer> gapSizes = new ArrayList<>();
-  protected static Map<Integer, CountBigramPairs.PhraseCounter> counters = new HashMap<>();
-
-  protected static Map<String, Integer> singleCountMap = new HashMap<>();
-  protected static Map<String, Set<String>> queryPairMap = new HashMap<>();
-  protected static Map<String, Set<String>> backQueryPairMap = new HashMap<>();
-  protected static String lastProcessedId = "";
-  protected static Document lastProcessedDoc = null;
-
+public class UnorderedQueryPairsFeatureExtractor<T> implements StatisticsFeatureExtractor<T> {
   public static class Deserializer extends StdDeserializer<UnorderedQueryPairsFeatureExtractor>
   {
     public Deserializer() {
@@ -60,29 +49,14 @@ public class UnorderedQueryPairsFeatureExtractor<T> implements FeatureExtractor<
     }
   }
 
-  private static void resetCounters(String newestQuery, Document newestDoc) {
-
-    singleCountMap.clear();
-    backQueryPairMap.clear();
-    queryPairMap.clear();
-    for (int i : counters.keySet()) {
-      counters.get(i).phraseCountMap.clear();
-    }
-    lastProcessedId = newestQuery;
-    lastProcessedDoc = newestDoc;
-  }
-
   protected int gapSize;
 
   // If this windowSize is 2, then we will look at a window [i-2, i+2] for the second term if the first occurs at i
   public UnorderedQueryPairsFeatureExtractor(int gapSize) {
     this.gapSize= gapSize;
-
-    counters.put(gapSize, new CountBigramPairs.PhraseCounter());
-    gapSizes.add(gapSize);
   }
 
-  protected void populateQueryMaps(List<String> queryTokens) {
+  protected void populateQueryMaps(Map<String, Set<String>> queryPairMap, List<String> queryTokens) {
     for (int i = 0; i < queryTokens.size() - 1; i++) {
       for (int j = i + 1; j < queryTokens.size(); j ++) {
         if (queryPairMap.containsKey(queryTokens.get(i))) {
@@ -90,48 +64,15 @@ public class UnorderedQueryPairsFeatureExtractor<T> implements FeatureExtractor<
         } else {
           queryPairMap.put(queryTokens.get(i), new HashSet<>(Arrays.asList(queryTokens.get(j))));
         }
-
-        if (backQueryPairMap.containsKey(queryTokens.get(j))) {
-          backQueryPairMap.get(queryTokens.get(j)).add(queryTokens.get(i));
-        } else {
-          backQueryPairMap.put(queryTokens.get(j), new HashSet<>(Arrays.asList(queryTokens.get(i))));
-        }
       }
-      // This will serve as our smoothing param
-      singleCountMap.put(queryTokens.get(i), 0);
     }
-    singleCountMap.put(queryTokens.get(queryTokens.size() - 1), 0);
-
   }
-  protected float computeUnorderedFrequencyScore(Document doc, Terms terms, RerankerContext<T> context) throws IOException {
-
-    if (!context.getQueryId().equals(lastProcessedId) || doc != lastProcessedDoc) {
-      resetCounters(context.getQueryId().toString(), doc);
-      List<String> queryTokens = context.getQueryTokens();
-
-      populateQueryMaps(queryTokens);
-
-      CountBigramPairs.countPairs(singleCountMap, queryPairMap, backQueryPairMap, gapSizes, counters, terms);
-    }
 
-    float score = 0.0f;
-    Map<String, Integer> phraseCountMap = counters.get(gapSize).phraseCountMap;
-    // Smoothing count of 1
-    for (String queryToken : queryPairMap.keySet()) {
-      float countToUse = phraseCountMap.getOrDefault(queryToken, 0);
-      score += countToUse;
-    }
-
-    return score;
-  }
   @Override
-  public float extract(Document doc, Terms terms, RerankerContext<T> context) {
-    try {
-      return computeUnorderedFrequencyScore(doc, terms, context);
-    } catch (IOException e) {
-      e.printStackTrace();
-      return 0.0f;
-    }
+  public float extract(DocumentStatistics stats, RerankerContext<T> context) {
+    Map<String, Set<String>> queryPairMap = new HashMap<>();
+    populateQueryMaps(queryPairMap, context.getQueryTokens());
+    return CountBigramPairs.countUnorderedPairs(stats, queryPairMap, gapSize);
   }
 
   @Override
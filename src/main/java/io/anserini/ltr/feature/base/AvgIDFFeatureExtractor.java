@@ -18,15 +18,12 @@ package io.anserini.ltr.feature.base;
 
 import io.anserini.index.generator.LuceneDocumentGenerator;
 import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.rerank.QueryStatistics;
 import io.anserini.rerank.RerankerContext;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -34,13 +31,10 @@ import java.util.List;
  * where N is the total number of docs, calculated like in BM25
  */
 public class AvgIDFFeatureExtractor<T> implements FeatureExtractor<T> {
-  private static final Logger LOG = LogManager.getLogger(AvgIDFFeatureExtractor.class);
-
-  private float sumIdf(IndexReader reader, List<String> queryTokens,
-                       long numDocs, String field) throws IOException {
+  private float sumIdf(QueryStatistics queryStats, List<String> queryTokens, long numDocs) {
     float sumIdf = 0.0f;
     for(String token : queryTokens) {
-      int docFreq = reader.docFreq(new Term(field, token));
+      int docFreq = queryStats.getDocFreq(token);
       sumIdf += Math.log(1 + (numDocs - docFreq + 0.5d) / (docFreq + 0.5d));
     }
     return sumIdf;
@@ -49,15 +43,11 @@ public class AvgIDFFeatureExtractor<T> implements FeatureExtractor<T> {
   @Override
   public float extract(Document doc, Terms terms, RerankerContext<T> context) {
     IndexReader reader = context.getIndexSearcher().getIndexReader();
+    QueryStatistics queryStats = context.getQueryStatistics(LuceneDocumentGenerator.FIELD_BODY);
 
-    long numDocs = reader.numDocs() - reader.numDeletedDocs();
-    try {
-      float sumIdf = sumIdf(reader, context.getQueryTokens(), numDocs, LuceneDocumentGenerator.FIELD_BODY);
-      return sumIdf / (float) context.getQueryTokens().size();
-    } catch (IOException e) {
-      LOG.warn("Error computing AvgIdf, returning 0");
-      return 0.0f;
-    }
+    long numDocs = queryStats.getNumDocs() - reader.numDeletedDocs();
+    float sumIdf = sumIdf(queryStats, context.getQueryTokens(), numDocs);
+    return sumIdf / (float) context.getQueryTokens().size();
   }
 
   @Override
@@ -17,16 +17,12 @@
 package io.anserini.ltr.feature.base;
 
 import io.anserini.index.generator.LuceneDocumentGenerator;
-import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.ltr.feature.DocumentStatistics;
+import io.anserini.ltr.feature.StatisticsFeatureExtractor;
+import io.anserini.rerank.QueryStatistics;
 import io.anserini.rerank.RerankerContext;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -41,8 +37,7 @@ import java.util.Set;
  * Lucene uses the norm value encoded in the index, we are calculating it as is
  * also we do not have any boosting, the field norm is also not available
  */
-public class BM25FeatureExtractor<T> implements FeatureExtractor<T> {
-  private static final Logger LOG = LogManager.getLogger(BM25FeatureExtractor.class);
+public class BM25FeatureExtractor<T> implements StatisticsFeatureExtractor<T> {
 
   public static Map<String, Integer> getDocFreqs(IndexReader reader, List<String> queryTokens, String field) throws IOException {
     Map<String,Integer> docFreqs = new HashMap<>();
@@ -80,76 +75,33 @@ public class BM25FeatureExtractor<T> implements FeatureExtractor<T> {
     }
   }
 
-  private long getSumTermFrequency(IndexReader reader, String fieldName) {
-    Terms collectionTermVector = null;
-    try {
-      collectionTermVector = MultiFields.getTerms(reader, fieldName);
-      long totalTermFreq = collectionTermVector.getSumTotalTermFreq();
-      return totalTermFreq;
-    } catch (IOException e) {
-      LOG.warn("Unable to get total term frequency, it might not be indexed");
-    }
-    return 0;
-  }
-
-
   /**
    * We will implement this according to the Lucene specification
    * the formula used:
    * sum ( IDF(qi) * (df(qi,D) * (k+1)) / (df(qi,D) + k * (1-b + b*|D| / avgFL))
    * IDF and avgFL computation are described above.
-   * @param doc
-   * @param terms
+   * @param stats
    * @param context
    * @return
    */
   @Override
-  public float extract(Document doc, Terms terms, RerankerContext<T> context) {
+  public float extract(DocumentStatistics stats, RerankerContext<T> context) {
     Set<String> queryTokens = new HashSet<>(context.getQueryTokens());
 
-    TermsEnum termsEnum = null;
-    try {
-      termsEnum = terms.iterator();
-    } catch (IOException e) {
-      LOG.warn("Error computing BM25, unable to retrieve terms enum");
-      return 0.0f;
-    }
-
-    IndexReader reader = context.getIndexSearcher().getIndexReader();
-    long maxDocs = reader.numDocs();
-    long sumTotalTermFreq = getSumTermFrequency(reader, LuceneDocumentGenerator.FIELD_BODY);
-    // Compute by iterating
-    long docSize  = 0L;
-
+    // Collection statistics are only computed once per query.
     // NOTE df cannot be retrieved just from the term vector,
     // the term vector here is only a partial term vector that treats this as if we only have 1 document in the index
-    Map<String, Integer> docFreqMap = null;
-    try {
-      docFreqMap = getDocFreqs(reader, context.getQueryTokens(), LuceneDocumentGenerator.FIELD_BODY);
-    } catch (IOException e) {
-      LOG.warn("Unable to retrieve document frequencies.");
-      docFreqMap = new HashMap<>();
-    }
-
-    Map<String, Long> termFreqMap = new HashMap<>();
-    try {
-      while (termsEnum.next() != null) {
-        String termString = termsEnum.term().utf8ToString();
-        docSize += termsEnum.totalTermFreq();
-        if (queryTokens.contains(termString)) {
-          termFreqMap.put(termString, termsEnum.totalTermFreq());
-        }
-      }
-    } catch (IOException e) {
-      LOG.warn("Unable to retrieve termsEnum, treating as 0");
-    }
+    QueryStatistics queryStats = context.getQueryStatistics(LuceneDocumentGenerator.FIELD_BODY);
+    long maxDocs = queryStats.getNumDocs();
+    long sumTotalTermFreq = queryStats.getSumTotalTermFreq();
+    long docSize = stats.getDocSize();
 
     float score = 0.0f;
     // Iterate over the query tokens
     double avgFL = computeAvgFL(sumTotalTermFreq, maxDocs);
     for (String token : queryTokens) {
-      long docFreq = docFreqMap.getOrDefault(token, 0);
-      double termFreq = termFreqMap.containsKey(token) ? termFreqMap.get(token) : 0;
+      long docFreq = queryStats.getDocFreq(token);
+      double termFreq = stats.getTermFreq(token);
       double numerator = (this.k1 + 1) * termFreq;
       double docLengthFactor = this.b * (docSize / avgFL);
       double denominator = termFreq + (this.k1) * (1 - this.b + docLengthFactor);
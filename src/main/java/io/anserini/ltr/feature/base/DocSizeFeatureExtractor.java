@@ -16,39 +16,37 @@
 
 package io.anserini.ltr.feature.base;
 
-import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.ltr.feature.DocumentStatistics;
+import io.anserini.ltr.feature.StatisticsFeatureExtractor;
 import io.anserini.rerank.RerankerContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 
 import java.io.IOException;
 
 /**
  * Returns the size of the document
  */
-public class DocSizeFeatureExtractor<T> implements FeatureExtractor<T> {
+public class DocSizeFeatureExtractor<T> implements StatisticsFeatureExtractor<T> {
   private static final Logger LOG = LogManager.getLogger(DocSizeFeatureExtractor.class);
 
   @Override
-  public float extract(Document doc, Terms terms, RerankerContext<T> context) {
-    float score;
+  public float extract(DocumentStatistics stats, RerankerContext<T> context) {
+    Terms terms = stats.getTerms();
+    if (terms == null) {
+      return 0.0f;
+    }
     try {
-      score = (float)terms.getSumTotalTermFreq();
+      float score = (float) terms.getSumTotalTermFreq();
       if (score == -1) {
-        // try to iterate over the terms
-        TermsEnum termsEnum = terms.iterator();
-        score = 0.0f;
-        while (termsEnum.next()!= null) {
-          score += termsEnum.totalTermFreq();
-        }
+        // not stored, use the length computed by iterating over the terms
+        score = (float) stats.getDocSize();
       }
+      return score;
     } catch (IOException e) {
-      score = 0.0f;
+      return 0.0f;
     }
-    return score;
   }
 
   @Override
@@ -18,15 +18,12 @@ package io.anserini.ltr.feature.base;
 
 import io.anserini.index.generator.LuceneDocumentGenerator;
 import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.rerank.QueryStatistics;
 import io.anserini.rerank.RerankerContext;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -35,26 +32,18 @@ import java.util.List;
  * D is the collection term frequency
  */
 public class SCQFeatureExtractor<T> implements FeatureExtractor<T> {
-  private static final Logger LOG = LogManager.getLogger(SCQFeatureExtractor.class);
-
-  private String lastQueryProcessed = "";
-  private float lastComputedScore = 0.0f;
-
   // Computed as log( 1+ (N - N_t + 0.5)/(N_t + 0.5))
   private float computeIDF(long docFreq, long numDocs) {
     return (float) Math.log(1 + (numDocs - docFreq + 0.5d) / (docFreq + 0.5d));
   }
 
-  private float sumSCQ(IndexReader reader, List<String> queryTokens,
-                       String field) throws IOException {
-
-    long numDocs = reader.numDocs() - reader.numDeletedDocs();
+  private float sumSCQ(QueryStatistics queryStats, List<String> queryTokens, long numDocs) {
     float scq = 0.0f;
 
     for (String token : queryTokens) {
-      long docFreq = reader.docFreq(new Term(field, token));
+      long docFreq = queryStats.getDocFreq(token);
       //TODO what about tf = 0
-      long termFreq = reader.totalTermFreq(new Term(field, token));
+      long termFreq = queryStats.getCollectionFreq(token);
       if (termFreq == 0) continue;
       scq += 1 + Math.log(termFreq* computeIDF(docFreq, numDocs));
     }
@@ -64,21 +53,13 @@ public class SCQFeatureExtractor<T> implements FeatureExtractor<T> {
 
   @Override
   public float extract(Document doc, Terms terms, RerankerContext<T> context) {
+    // The statistics are shared by all candidates of the query, so this is cheap to recompute per document.
     IndexReader reader = context.getIndexSearcher().getIndexReader();
+    QueryStatistics queryStats = context.getQueryStatistics(LuceneDocumentGenerator.FIELD_BODY);
 
-    if (!lastQueryProcessed.equals(context.getQueryText())) {
-      this.lastQueryProcessed = context.getQueryText();
-      this.lastComputedScore = 0.0f;
-
-      try {
-        float sumScq = sumSCQ(reader, context.getQueryTokens(), LuceneDocumentGenerator.FIELD_BODY);
-        this.lastComputedScore = sumScq / context.getQueryTokens().size();
-      } catch (IOException e) {
-        this.lastComputedScore = 0.0f;
-      }
-    }
-
-    return this.lastComputedScore;
+    long numDocs = queryStats.getNumDocs() - reader.numDeletedDocs();
+    float sumScq = sumSCQ(queryStats, context.getQueryTokens(), numDocs);
+    return sumScq / context.getQueryTokens().size();
   }
 
   @Override
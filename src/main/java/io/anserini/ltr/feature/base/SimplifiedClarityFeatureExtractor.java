@@ -18,13 +18,11 @@ package io.anserini.ltr.feature.base;
 
 import io.anserini.index.generator.LuceneDocumentGenerator;
 import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.rerank.QueryStatistics;
 import io.anserini.rerank.RerankerContext;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,9 +33,6 @@ import java.util.Map;
  */
 public class SimplifiedClarityFeatureExtractor<T> implements FeatureExtractor<T> {
 
-  private String lastQueryProcessed = "";
-  private float lastComputedScore = 0.0f;
-
   private Map<String, Integer> queryTermMap(List<String> queryTokens) {
     Map<String, Integer> map = new HashMap<>();
     for (String token : queryTokens) {
@@ -50,15 +45,13 @@ public class SimplifiedClarityFeatureExtractor<T> implements FeatureExtractor<T>
     return map;
   }
 
-  private float sumSC(IndexReader reader, Map<String, Integer> queryTokenMap,
-                      int queryLength, String field) throws IOException {
-
-    long termCount = reader.getSumTotalTermFreq(field);
+  private float sumSC(QueryStatistics queryStats, Map<String, Integer> queryTokenMap, int queryLength) {
+    long termCount = queryStats.getSumTotalTermFreq();
     // We now have a doc size, compute the actual value
     float score = 0.0f;
     for (String token : queryTokenMap.keySet()) {
       float prtq = queryTokenMap.get(token) / (float) queryLength;
-      long tf = reader.totalTermFreq(new Term(field, token));
+      long tf = queryStats.getCollectionFreq(token);
       float prtd = (float)tf /termCount;
       if (prtd == 0 || prtq == 0) continue;
       score += prtq * Math.log(prtq / prtd);
@@ -68,22 +61,10 @@ public class SimplifiedClarityFeatureExtractor<T> implements FeatureExtractor<T>
 
   @Override
   public float extract(Document doc, Terms terms, RerankerContext<T> context) {
-
-    if (!this.lastQueryProcessed.equals(context.getQueryText())) {
-      this.lastQueryProcessed = context.getQueryText();
-      this.lastComputedScore = 0.0f;
-
-      Map<String, Integer> queryCountMap = queryTermMap(context.getQueryTokens());
-      try {
-        this.lastComputedScore = sumSC(context.getIndexSearcher().getIndexReader(),
-                queryCountMap, context.getQueryTokens().size(),
-                LuceneDocumentGenerator.FIELD_BODY);
-      } catch (IOException e) {
-        this.lastComputedScore = 0.0f;
-      }
-    }
-
-    return this.lastComputedScore;
+    // The statistics are shared by all candidates of the query, so this is cheap to recompute per document.
+    Map<String, Integer> queryCountMap = queryTermMap(context.getQueryTokens());
+    return sumSC(context.getQueryStatistics(LuceneDocumentGenerator.FIELD_BODY),
+            queryCountMap, context.getQueryTokens().size());
   }
 
   @Override
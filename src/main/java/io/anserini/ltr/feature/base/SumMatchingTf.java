@@ -16,43 +16,24 @@
 
 package io.anserini.ltr.feature.base;
 
-import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.ltr.feature.DocumentStatistics;
+import io.anserini.ltr.feature.StatisticsFeatureExtractor;
 import io.anserini.rerank.RerankerContext;
 
-import java.io.IOException;
-import java.util.List;
-
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
-import org.apache.lucene.util.BytesRef;
-
 /**
  * Computes the sum of the term frequencies of the matching terms. That is, if there are two query
  * terms and the first occurs twice in the document and the second occurs once in the document, the
  * sum of the matching term frequencies is three.
  */
-public class SumMatchingTf<T> implements FeatureExtractor<T> {
+public class SumMatchingTf<T> implements StatisticsFeatureExtractor<T> {
 
   @Override
-  public float extract(Document doc, Terms terms, RerankerContext<T> context) {
-    try {
-      List<String> queryTokens = context.getQueryTokens();
-      TermsEnum termsEnum = terms.iterator();
-      int sum = 0;
-
-      BytesRef text = null;
-      while ((text = termsEnum.next()) != null) {
-        String term = text.utf8ToString();
-        if (queryTokens.contains(term)) {
-          sum += (int) termsEnum.totalTermFreq();
-        }
-      }
-      return sum;
-
-    } catch (IOException e) {
-      return 0;
+  public float extract(DocumentStatistics stats, RerankerContext<T> context) {
+    int sum = 0;
+    for (long tf : stats.getTermFreqs().values()) {
+      sum += (int) tf;
     }
+    return sum;
   }
 
   @Override
@@ -17,56 +17,24 @@
 package io.anserini.ltr.feature.base;
 
 import io.anserini.index.generator.LuceneDocumentGenerator;
-import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.ltr.feature.DocumentStatistics;
+import io.anserini.ltr.feature.StatisticsFeatureExtractor;
+import io.anserini.rerank.QueryStatistics;
 import io.anserini.rerank.RerankerContext;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.similarities.ClassicSimilarity;
 import org.apache.lucene.search.similarities.TFIDFSimilarity;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Computes the TFIDF feature according to Lucene's formula,
  * Not the same because we don't compute length norm or query norm, with boost 1
  */
-public class TFIDFFeatureExtractor<T> implements FeatureExtractor<T> {
-  private static final Logger LOG = LogManager.getLogger(TFIDFFeatureExtractor.class);
-
+public class TFIDFFeatureExtractor<T> implements StatisticsFeatureExtractor<T> {
   @Override
-  public float extract(Document doc, Terms terms, RerankerContext<T> context) {
+  public float extract(DocumentStatistics stats, RerankerContext<T> context) {
     float score = 0.0f;
-    Map<String, Long> countMap = new HashMap<>();
-    Map<String, Integer> docFreqs = new HashMap<>();
-    IndexReader reader = context.getIndexSearcher().getIndexReader();
-    long numDocs =  reader.numDocs();
-    for (Object queryToken : context.getQueryTokens()) {
-      try {
-        docFreqs.put((String)queryToken, reader.docFreq(new Term(LuceneDocumentGenerator.FIELD_BODY, (String)queryToken)));
-      } catch (IOException e) {
-        LOG.error("Error trying to read document frequency");
-        docFreqs.put((String)queryToken, 0);
-      }
-    }
-
-    try {
-      TermsEnum termsEnum = terms.iterator();
-      while (termsEnum.next() != null) {
-        String termString = termsEnum.term().utf8ToString();
-        if (context.getQueryTokens().contains(termString)) {
-          countMap.put(termString, termsEnum.totalTermFreq());
-        }
-      }
-    } catch (IOException e) {
-      LOG.error("Error while accessing term vector");
-    }
+    // Document frequencies are only read once per query.
+    QueryStatistics queryStats = context.getQueryStatistics(LuceneDocumentGenerator.FIELD_BODY);
+    long numDocs = queryStats.getNumDocs();
 
     TFIDFSimilarity similarity = new ClassicSimilarity();
 
@@ -76,8 +44,8 @@ public class TFIDFFeatureExtractor<T> implements FeatureExtractor<T> {
     // coord removed in Lucene 7
 
     for (Object token : context.getQueryTokens()) {
-      long termFreq = countMap.getOrDefault(token.toString(), 0L);
-      long docFreq = docFreqs.getOrDefault(token.toString(), 0);
+      long termFreq = stats.getTermFreq(token.toString());
+      long docFreq = queryStats.getDocFreq(token.toString());
       float tf = similarity.tf(termFreq);
       float idf = similarity.idf(docFreq, numDocs);
       score += tf * idf*idf;
@@ -17,31 +17,30 @@
 package io.anserini.ltr.feature.twitter;
 
 import io.anserini.index.generator.TweetGenerator;
-import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.index.generator.TweetGenerator.StatusField;
+import io.anserini.ltr.feature.DocIdFeatureExtractor;
+import io.anserini.ltr.feature.DocValuesCursor;
 import io.anserini.rerank.RerankerContext;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Terms;
 
-public class HashtagCount implements FeatureExtractor {
+public class HashtagCount implements DocIdFeatureExtractor {
 
   @Override
   public float extract(Document doc, Terms terms, RerankerContext context) {
-    String str = doc.getField(TweetGenerator.FIELD_BODY).stringValue();
-    final String matchStr = "#";
-
-    int lastIndex = 0;
-    int count = 0;
-
-    while (lastIndex != -1) {
-      lastIndex = str.indexOf(matchStr, lastIndex);
-      if (lastIndex != -1) {
-        count++;
-        lastIndex += matchStr.length();
-      }
+    IndexableField field = doc == null ? null : doc.getField(TweetGenerator.FIELD_BODY);
+    if (field == null) {
+      return 0.0f;
     }
+    return (float) TweetGenerator.countOccurrences(field.stringValue(), "#");
+  }
 
-    return (float) count;
+  @Override
+  public float extract(int docid, Document doc, DocValuesCursor values, RerankerContext context) {
+    Long count = TweetDocValues.get(values, StatusField.HASHTAG_COUNT, docid, 0L);
+    return count == null ? extract(doc, null, context) : (float) count;
   }
 
   @Override
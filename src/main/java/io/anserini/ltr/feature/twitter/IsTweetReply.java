@@ -17,16 +17,29 @@
 package io.anserini.ltr.feature.twitter;
 
 import io.anserini.index.generator.TweetGenerator.StatusField;
-import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.ltr.feature.DocIdFeatureExtractor;
+import io.anserini.ltr.feature.DocValuesCursor;
 import io.anserini.rerank.RerankerContext;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Terms;
 
-public class IsTweetReply implements FeatureExtractor {
+public class IsTweetReply implements DocIdFeatureExtractor {
+  // Marks tweets without a reply status id, which cannot be a valid id
+  private static final long NOT_A_REPLY = -1L;
+
   @Override
   public float extract(Document doc, Terms terms, RerankerContext context) {
-    return doc.getField(StatusField.IN_REPLY_TO_STATUS_ID.name) == null ? 0.0f : 1.0f;
+    return doc == null || doc.getField(StatusField.IN_REPLY_TO_STATUS_ID.name) == null ? 0.0f : 1.0f;
+  }
+
+  @Override
+  public float extract(int docid, Document doc, DocValuesCursor values, RerankerContext context) {
+    Long replyTo = TweetDocValues.get(values, StatusField.IN_REPLY_TO_STATUS_ID, docid, NOT_A_REPLY);
+    if (replyTo == null) {
+      return extract(doc, null, context);
+    }
+    return replyTo == NOT_A_REPLY ? 0.0f : 1.0f;
   }
 
   @Override
@@ -0,0 +1,48 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr.feature.twitter;
+
+import io.anserini.index.generator.TweetGenerator.StatusField;
+import io.anserini.ltr.feature.DocValuesCursor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * Reads the values indexed as DocValues by {@code TweetGenerator} with {@code -tweet.docValues}.
+ */
+final class TweetDocValues {
+  private static final Logger LOG = LogManager.getLogger(TweetDocValues.class);
+
+  private TweetDocValues() {}
+
+  /**
+   * Returns a value of a tweet.
+   *
+   * @return value, {@code missing} if the tweet has none, or null if the index has no DocValues for the field and the
+   *         stored document must be used instead
+   */
+  static Long get(DocValuesCursor values, StatusField field, int docid, long missing) {
+    try {
+      return values.getNumericValue(field.name, docid, missing);
+    } catch (IOException e) {
+      LOG.warn("Unable to read " + field.name + " of document " + docid);
+      return null;
+    }
+  }
+}
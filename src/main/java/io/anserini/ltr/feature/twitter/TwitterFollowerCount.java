@@ -17,16 +17,25 @@
 package io.anserini.ltr.feature.twitter;
 
 import io.anserini.index.generator.TweetGenerator.StatusField;
-import io.anserini.ltr.feature.FeatureExtractor;
+import io.anserini.ltr.feature.DocIdFeatureExtractor;
+import io.anserini.ltr.feature.DocValuesCursor;
 import io.anserini.rerank.RerankerContext;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Terms;
 
-public class TwitterFollowerCount implements FeatureExtractor {
+public class TwitterFollowerCount implements DocIdFeatureExtractor {
   @Override
   public float extract(Document doc, Terms terms, RerankerContext context) {
-    return (float) (int) doc.getField(StatusField.FOLLOWERS_COUNT.name).numericValue();
+    IndexableField field = doc == null ? null : doc.getField(StatusField.FOLLOWERS_COUNT.name);
+    return field == null ? 0.0f : field.numericValue().floatValue();
+  }
+
+  @Override
+  public float extract(int docid, Document doc, DocValuesCursor values, RerankerContext context) {
+    Long count = TweetDocValues.get(values, StatusField.FOLLOWERS_COUNT, docid, 0L);
+    return count == null ? extract(doc, null, context) : (float) count;
   }
 
   @Override
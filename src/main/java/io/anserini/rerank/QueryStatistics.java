@@ -0,0 +1,139 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collection statistics of the query terms in one field: document frequency and collection frequency of every
+ * query token, plus the field's sumTotalTermFreq and docCount. These only depend on the query and the index, so they
+ * are computed once per query (see {@link RerankerContext#getQueryStatistics(String)}) instead of once per candidate
+ * document. Instances are immutable and can be shared between threads.
+ */
+public final class QueryStatistics {
+  private static final Logger LOG = LogManager.getLogger(QueryStatistics.class);
+
+  private final String field;
+  private final int numDocs;
+  private final int docCount;
+  private final long sumTotalTermFreq;
+  private final Map<String, Integer> docFreqs = new HashMap<>();
+  private final Map<String, Long> collectionFreqs = new HashMap<>();
+
+  /**
+   * Reads the statistics of the query tokens in a field, one terms dictionary lookup per distinct token.
+   *
+   * @param reader index reader
+   * @param field field
+   * @param queryTokens query tokens, may be null
+   */
+  public QueryStatistics(IndexReader reader, String field, List<String> queryTokens) {
+    this.field = field;
+    this.numDocs = reader.numDocs();
+
+    int docCount = 0;
+    long sumTotalTermFreq = 0;
+    try {
+      Terms terms = MultiFields.getTerms(reader, field);
+      if (terms != null) {
+        docCount = terms.getDocCount();
+        sumTotalTermFreq = terms.getSumTotalTermFreq();
+        if (queryTokens != null) {
+          TermsEnum termsEnum = terms.iterator();
+          for (String token : queryTokens) {
+            if (docFreqs.containsKey(token)) {
+              continue;
+            }
+            if (termsEnum.seekExact(new BytesRef(token))) {
+              docFreqs.put(token, termsEnum.docFreq());
+              collectionFreqs.put(token, termsEnum.totalTermFreq());
+            } else {
+              docFreqs.put(token, 0);
+              collectionFreqs.put(token, 0L);
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to read the statistics of field " + field + ", missing terms count as 0");
+    }
+    this.docCount = docCount;
+    this.sumTotalTermFreq = sumTotalTermFreq;
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  /**
+   * Returns the number of live documents of the index.
+   *
+   * @return number of live documents
+   */
+  public int getNumDocs() {
+    return numDocs;
+  }
+
+  /**
+   * Returns the number of documents that have a value for the field.
+   *
+   * @return number of documents with the field
+   */
+  public int getDocCount() {
+    return docCount;
+  }
+
+  /**
+   * Returns the total number of tokens in the field over all documents.
+   *
+   * @return sum of the total term frequencies, 0 if not stored
+   */
+  public long getSumTotalTermFreq() {
+    return sumTotalTermFreq;
+  }
+
+  /**
+   * Returns the number of documents containing a query token.
+   *
+   * @param queryToken query token
+   * @return document frequency, 0 for terms not in the index or not in the query
+   */
+  public int getDocFreq(String queryToken) {
+    return docFreqs.getOrDefault(queryToken, 0);
+  }
+
+  /**
+   * Returns the number of occurrences of a query token in the collection.
+   *
+   * @param queryToken query token
+   * @return collection frequency, 0 for terms not in the index or not in the query
+   */
+  public long getCollectionFreq(String queryToken) {
+    return collectionFreqs.getOrDefault(queryToken, 0L);
+  }
+}
@@ -16,7 +16,16 @@
 
 package io.anserini.rerank;
 
-public interface Reranker<T> {
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface Reranker<T> extends Closeable {
   ScoredDocuments rerank(ScoredDocuments docs, RerankerContext<T> context);
   String tag();
+
+  /**
+   * Releases the resources (e.g., index readers) held by this reranker. Called once all queries are done.
+   */
+  @Override
+  default void close() throws IOException {}
 }
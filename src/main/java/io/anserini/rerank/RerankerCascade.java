@@ -16,13 +16,15 @@
 
 package io.anserini.rerank;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Representation of a cascade of rerankers, applied in sequence.
  */
-public class RerankerCascade {
+public class RerankerCascade implements Closeable {
   final List<Reranker> rerankers = new ArrayList<>();
 
   /**
@@ -43,14 +45,43 @@ public class RerankerCascade {
    * @param context reranker context
    * @return reranked results
    */
-  @SuppressWarnings("unchecked")
   public ScoredDocuments run(ScoredDocuments docs, RerankerContext context) {
+    return run(docs, context, StageTimer.DISABLED);
+  }
+
+  /**
+   * Runs this cascade, recording the time spent in each reranker as a separate stage. Stages are named after the
+   * position and the class of the reranker, e.g., {@code rerank:0:Rm3Reranker}, so that rerankers of the same class
+   * are timed separately.
+   *
+   * @param docs input documents
+   * @param context reranker context
+   * @param timer timer of the current query
+   * @return reranked results
+   */
+  @SuppressWarnings("unchecked")
+  public ScoredDocuments run(ScoredDocuments docs, RerankerContext context, StageTimer timer) {
     ScoredDocuments results = docs;
 
-    for (Reranker reranker : rerankers) {
+    for (int i = 0; i < rerankers.size(); i++) {
+      Reranker reranker = rerankers.get(i);
+      long start = timer.start();
       results = reranker.rerank(results, context);
+      timer.stop("rerank:" + i + ":" + reranker.getClass().getSimpleName(), start);
     }
 
     return results;
   }
+
+  /**
+   * Closes all rerankers of this cascade.
+   *
+   * @throws IOException if a reranker cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    for (Reranker reranker : rerankers) {
+      reranker.close();
+    }
+  }
 }
@@ -22,6 +22,9 @@ import org.apache.lucene.search.Query;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 public class RerankerContext<K> {
   private final IndexSearcher searcher;
@@ -32,6 +35,8 @@ public class RerankerContext<K> {
   private final List<String> queryTokens;
   private final Query filter;
   private final SearchArgs searchArgs;
+  private final ConcurrentMap<String, QueryStatistics> queryStatistics = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Float> queryFeatures = new ConcurrentHashMap<>();
 
   public RerankerContext(IndexSearcher searcher, K queryId, Query query, String queryDocId, String queryText,
       List<String> queryTokens, Query filter, SearchArgs searchArgs) throws IOException {
@@ -76,4 +81,28 @@ public class RerankerContext<K> {
   public SearchArgs getSearchArgs() {
     return searchArgs;
   }
+
+  /**
+   * Returns the collection statistics of the query tokens in a field, computed on first use and then shared by
+   * everything that scores candidates of this query.
+   *
+   * @param field field
+   * @return statistics of the query tokens
+   */
+  public QueryStatistics getQueryStatistics(String field) {
+    return queryStatistics.computeIfAbsent(field,
+        f -> new QueryStatistics(searcher.getIndexReader(), f, queryTokens));
+  }
+
+  /**
+   * Returns a feature that only depends on the query and the index, computed on first use and then shared by all the
+   * candidates of this query.
+   *
+   * @param name name of the feature, including any parameter it depends on
+   * @param feature computes the feature
+   * @return value of the feature
+   */
+  public float getQueryFeature(String name, Supplier<Float> feature) {
+    return queryFeatures.computeIfAbsent(name, f -> feature.get());
+  }
 }
@@ -0,0 +1,162 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-query, per-stage latency recorder. Each stage is timed with a pair of {@link System#nanoTime()} calls; nothing
+ * else happens on the query path. A timer is meant to be confined to one thread (i.e., one run); a disabled timer
+ * does nothing and can be shared freely.
+ */
+public class StageTimer {
+  public static final StageTimer DISABLED = new StageTimer(false);
+
+  public static final String TOTAL = "total";
+
+  private final boolean enabled;
+  private final Set<String> stages = new LinkedHashSet<>();
+  private final List<String> qids = new ArrayList<>();
+  private final List<Map<String, Long>> rows = new ArrayList<>();
+  private Map<String, Long> current;
+  private long queryStart;
+
+  public StageTimer(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void startQuery() {
+    if (!enabled) return;
+    current = new LinkedHashMap<>();
+    queryStart = System.nanoTime();
+  }
+
+  /**
+   * Returns the start time of a stage, to be passed to {@link #stop(String, long)}.
+   *
+   * @return the current value of {@link System#nanoTime()}, or 0 if this timer is disabled
+   */
+  public long start() {
+    return enabled ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * Adds the time elapsed since {@code start} to {@code stage} of the current query.
+   *
+   * @param stage stage name
+   * @param start value returned by {@link #start()}
+   */
+  public void stop(String stage, long start) {
+    if (!enabled) return;
+    record(stage, System.nanoTime() - start);
+  }
+
+  // Adds a duration to a stage of the current query.
+  void record(String stage, long nanos) {
+    Long previous = current.get(stage);
+    current.put(stage, previous == null ? nanos : previous + nanos);
+  }
+
+  public <K> void endQuery(K qid) {
+    if (!enabled) return;
+    current.put(TOTAL, System.nanoTime() - queryStart);
+    stages.addAll(current.keySet());
+    qids.add(String.valueOf(qid));
+    rows.add(current);
+    current = null;
+  }
+
+  private List<String> columns() {
+    // Total always goes last.
+    List<String> columns = new ArrayList<>(stages);
+    columns.remove(TOTAL);
+    columns.add(TOTAL);
+    return columns;
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  /**
+   * Writes one line per query with the time (in milliseconds) spent in each stage.
+   *
+   * @param path output file
+   * @throws IOException if the file cannot be written
+   */
+  public void writeQueryTimings(Path path) throws IOException {
+    List<String> columns = columns();
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      out.println("qid," + String.join(",", columns));
+      for (int i = 0; i < rows.size(); i++) {
+        StringBuilder sb = new StringBuilder(qids.get(i));
+        for (String stage : columns) {
+          Long value = rows.get(i).get(stage);
+          sb.append(',').append(String.format(Locale.US, "%.3f", millis(value == null ? 0L : value)));
+        }
+        out.println(sb);
+      }
+    }
+  }
+
+  /**
+   * Returns p50/p90/p99/max (in milliseconds) of every stage over all queries, one stage per line.
+   *
+   * @return summary table
+   */
+  public String summary() {
+    StringBuilder sb = new StringBuilder(String.format(Locale.US, "%-40s %10s %10s %10s %10s%n",
+        "stage", "p50", "p90", "p99", "max"));
+    for (String stage : columns()) {
+      long[] values = new long[rows.size()];
+      for (int i = 0; i < rows.size(); i++) {
+        Long value = rows.get(i).get(stage);
+        values[i] = value == null ? 0L : value;
+      }
+      Arrays.sort(values);
+      sb.append(String.format(Locale.US, "%-40s %10.3f %10.3f %10.3f %10.3f%n", stage,
+          millis(percentile(values, 50)), millis(percentile(values, 90)), millis(percentile(values, 99)),
+          millis(values.length == 0 ? 0L : values[values.length - 1])));
+    }
+    return sb.toString();
+  }
+
+  // Nearest-rank percentile over sorted values.
+  static long percentile(long[] sorted, int p) {
+    if (sorted.length == 0) {
+      return 0L;
+    }
+    int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+    return sorted[Math.max(rank - 1, 0)];
+  }
+}
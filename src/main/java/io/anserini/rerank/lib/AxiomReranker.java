@@ -16,23 +16,26 @@
 
 package io.anserini.rerank.lib;
 
+import io.anserini.index.DocidOrder;
+import io.anserini.index.IndexReaderPool;
 import io.anserini.index.generator.LuceneDocumentGenerator;
-import io.anserini.index.generator.TweetGenerator;
 import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
 import io.anserini.rerank.ScoredDocuments;
 import io.anserini.search.SearchArgs;
+import io.anserini.search.SlicedIndexSearcher;
+import io.anserini.util.TermOrdinals;
 
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -49,6 +52,10 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
 import java.util.regex.Pattern;
 
 import static io.anserini.search.SearchCollection.BREAK_SCORE_TIES_BY_DOCID;
@@ -76,11 +83,12 @@ public class AxiomReranker<T> implements Reranker<T> {
                                            // external sources for searching the expansion
                                            // terms. Typically, we build another index
                                            // separately and include its information here.
-  public static ScoreDoc[] internalDocidsCache; // When enabling the deterministic reranking we could cache all the
-                                                // internal Docids for all queries
-  public static List<String> externalDocidsCache; // When enabling the deterministic reranking we can opt to read sorted docids
-                                              // from a file. The file can be obtained by running
-                                              // `IndexUtils -index /path/to/index -dumpAllDocids GZ`
+  private final IndexReader externalReader; // shared reader of the external index, null if there is none
+  public static DocidOrder docidsCache; // When enabling the deterministic reranking we sample from a fixed ordering
+                                       // of the documents, shared by all queries: all docids sorted, or the sorted
+                                       // docids read from a file. The file can be obtained by running
+                                       // `IndexUtils -index /path/to/index -dumpAllDocids GZ`
+  private static FixedBitSet docidsCacheDocs; // distinct documents of docidsCache that are in the index
 
   private final int R; // number of top documents in initial results
   private final int N; // factor that used in extracting random documents, we will extract (N-1)*R randomly select documents
@@ -104,26 +112,44 @@ public class AxiomReranker<T> implements Reranker<T> {
     this.externalIndexPath = externalIndexPath;
     this.outputQuery = outputQuery;
     this.searchTweets = searchTweets;
+    // All runs with the same external index share one reader.
+    this.externalReader = externalIndexPath == null ? null : IndexReaderPool.acquire(Paths.get(externalIndexPath));
 
-    if (this.deterministic && this.N > 1) {
-      if (docidsCachePath != null) {
-        if (AxiomReranker.externalDocidsCache == null) {
-          AxiomReranker.externalDocidsCache = buildExternalDocidsCache(docidsCachePath);
-          AxiomReranker.internalDocidsCache = null;
+    try {
+      if (this.deterministic && this.N > 1) {
+        if (AxiomReranker.docidsCache == null) {
+          DocidOrder order = buildDocidsCache(externalIndexPath == null ? originalIndexPath : externalIndexPath,
+              docidsCachePath, this.searchTweets);
+          AxiomReranker.docidsCacheDocs = distinctDocs(order);
+          AxiomReranker.docidsCache = order;
         }
       } else {
-        if (AxiomReranker.internalDocidsCache == null) {
-          String indexPath = externalIndexPath == null ? originalIndexPath : externalIndexPath;
-          AxiomReranker.internalDocidsCache = buildInternalDocidsCache(indexPath, this.searchTweets);
-          AxiomReranker.externalDocidsCache = null;
-        }
+        AxiomReranker.docidsCache = null;
+        AxiomReranker.docidsCacheDocs = null;
       }
-    } else {
-      AxiomReranker.internalDocidsCache = null;
-      AxiomReranker.externalDocidsCache = null;
+    } catch (IOException | RuntimeException e) {
+      if (this.externalReader != null) {
+        IndexReaderPool.release(this.externalReader);
+      }
+      throw e;
     }
   }
 
+  // The distinct documents of an ordering, skipping the docids that are not in the index.
+  private static FixedBitSet distinctDocs(DocidOrder order) {
+    int maxDocid = -1;
+    for (int i = 0; i < order.size(); i++) {
+      maxDocid = Math.max(maxDocid, order.get(i));
+    }
+    FixedBitSet docs = new FixedBitSet(maxDocid + 1);
+    for (int i = 0; i < order.size(); i++) {
+      if (order.get(i) >= 0) {
+        docs.set(order.get(i));
+      }
+    }
+    return docs;
+  }
+
   @Override
   public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext<T> context) {
     assert(docs.documents.length == docs.scores.length);
@@ -134,7 +160,7 @@ public class AxiomReranker<T> implements Reranker<T> {
       // Select R*M docs from the original ranking list as the reranking pool
       Set<Integer> usedDocs = selectDocs(docs, context);
       // Extract an inverted list from the reranking pool
-      Map<String, Set<Integer>> termInvertedList = extractTerms(usedDocs, context, null);
+      CooccurrenceIndex termInvertedList = extractTerms(usedDocs, context, null);
       // Calculate all the terms in the reranking pool and pick top K of them
       Map<String, Double> expandedTermScores = computeTermScore(termInvertedList, context);
 
@@ -218,31 +244,28 @@ public class AxiomReranker<T> implements Reranker<T> {
   }
 
   /**
-   * If the result is deterministic we can cache all the external docids by reading them from a file
-   */
-  private List<String> buildExternalDocidsCache(String docidsCachePath) throws IOException {
-    InputStream in = getReadFileStream(docidsCachePath);
-    BufferedReader bRdr = new BufferedReader(new InputStreamReader(in));
-    return IOUtils.readLines(bRdr);
-  }
-
-  /**
-   * If the result is deterministic we can cache all the docids. All queries can share this
-   * cache.
+   * If the result is deterministic we can cache the ordering of the documents. All queries can share this cache,
+   * and it is written next to the index so that later runs only have to map it.
    */
-  private ScoreDoc[] buildInternalDocidsCache(String indexPath, boolean searchTweets) throws IOException {
-    Path index = Paths.get(indexPath);
-    if (!Files.exists(index) || !Files.isDirectory(index) || !Files.isReadable(index)) {
-      throw new IllegalArgumentException(indexPath + " does not exist or is not a directory.");
-    }
-    IndexReader reader = DirectoryReader.open(FSDirectory.open(index));
-    IndexSearcher searcher = new IndexSearcher(reader);
-    if (searchTweets) {
-      return searcher.search(new DocValuesFieldExistsQuery(TweetGenerator.StatusField.ID_LONG.name), reader.maxDoc(),
-          BREAK_SCORE_TIES_BY_TWEETID).scoreDocs;
+  private DocidOrder buildDocidsCache(String indexPath, String docidsCachePath, boolean searchTweets)
+      throws IOException {
+    IndexReader reader = IndexReaderPool.acquire(Paths.get(indexPath));
+    try {
+      if (docidsCachePath != null) {
+        Path path = Paths.get(docidsCachePath);
+        return DocidOrder.open(reader, "file." + path.getFileName(), Files.getLastModifiedTime(path).toMillis(), r -> {
+          try (BufferedReader bRdr = new BufferedReader(new InputStreamReader(getReadFileStream(docidsCachePath)))) {
+            return DocidOrder.fromDocids(r, bRdr);
+          }
+        });
+      }
+      if (searchTweets) {
+        return DocidOrder.open(reader, "tweetid", 0L, DocidOrder::sortedByTweetId);
+      }
+      return DocidOrder.open(reader, "docid", 0L, DocidOrder::sortedByDocid);
+    } finally {
+      IndexReaderPool.release(reader);
     }
-    return searcher.search(new DocValuesFieldExistsQuery(LuceneDocumentGenerator.FIELD_ID), reader.maxDoc(),
-        BREAK_SCORE_TIES_BY_DOCID).scoreDocs;
   }
 
   /**
@@ -255,13 +278,9 @@ public class AxiomReranker<T> implements Reranker<T> {
    * @return Top ranked ScoredDocuments from searching external index
    */
   private ScoredDocuments processExternalContext(ScoredDocuments docs, RerankerContext<T> context) throws IOException {
-    if (this.externalIndexPath != null) {
-      Path indexPath = Paths.get(this.externalIndexPath);
-      if (!Files.exists(indexPath) || !Files.isDirectory(indexPath) || !Files.isReadable(indexPath)) {
-        throw new IllegalArgumentException(this.externalIndexPath + " does not exist or is not a directory.");
-      }
-      IndexReader reader = DirectoryReader.open(FSDirectory.open(indexPath));
-      IndexSearcher searcher = new IndexSearcher(reader);
+    if (this.externalReader != null) {
+      // Search the external index the same way (executor, slices) as the original one.
+      IndexSearcher searcher = SlicedIndexSearcher.forReader(context.getIndexSearcher(), this.externalReader);
       searcher.setSimilarity(context.getIndexSearcher().getSimilarity(true));
 
       SearchArgs args = new SearchArgs();
@@ -295,31 +314,30 @@ public class AxiomReranker<T> implements Reranker<T> {
     long targetSize = this.R * this.N;
 
     if (docidSet.size() < targetSize) {
-      IndexReader reader;
-      IndexSearcher searcher;
-      if (this.externalIndexPath != null) {
-        Path indexPath = Paths.get(this.externalIndexPath);
-        if (!Files.exists(indexPath) || !Files.isDirectory(indexPath) || !Files.isReadable(indexPath)) {
-          throw new IllegalArgumentException(this.externalIndexPath + " does not exist or is not a directory.");
-        }
-        reader = DirectoryReader.open(FSDirectory.open(indexPath));
-        searcher = new IndexSearcher(reader);
-      } else {
-        searcher = context.getIndexSearcher();
-        reader = searcher.getIndexReader();
-      }
+      IndexReader reader = this.externalReader != null ?
+          this.externalReader : context.getIndexSearcher().getIndexReader();
       int availableDocsCnt = reader.getDocCount(this.field);
       if (this.deterministic) { // internal docid cannot be relied due to multi-threads indexing,
                                 // we have to rely on external docid here
         Random random = new Random(this.seed);
+        DocidOrder order = AxiomReranker.docidsCache;
+        // Sampling only ends once the pool is full, so there must be enough distinct documents to pick from.
+        FixedBitSet orderDocs = AxiomReranker.docidsCacheDocs;
+        long available = orderDocs.cardinality();
+        for (int docid : docidSet) {
+          if (docid >= orderDocs.length() || !orderDocs.get(docid)) {
+            available++;
+          }
+        }
+        if (available < targetSize) {
+          throw new IllegalStateException(String.format("Only %d distinct documents of the docids ordering are in " +
+              "the index, but the reranking pool needs %d (R*N); check that -axiom.docids matches the index",
+              available, targetSize));
+        }
         while (docidSet.size() < targetSize) {
-          if (AxiomReranker.externalDocidsCache != null) {
-            String docid = AxiomReranker.externalDocidsCache.get(random.nextInt(AxiomReranker.externalDocidsCache.size()));
-            Query q = new TermQuery(new Term(LuceneDocumentGenerator.FIELD_ID, docid));
-            TopDocs rs = searcher.search(q, 1);
-            docidSet.add(rs.scoreDocs[0].doc);
-          } else {
-            docidSet.add(AxiomReranker.internalDocidsCache[random.nextInt(AxiomReranker.internalDocidsCache.length)].doc);
+          int luceneDocid = order.get(random.nextInt(order.size()));
+          if (luceneDocid >= 0) { // docids of the file that are not in the index
+            docidSet.add(luceneDocid);
           }
         }
       } else {
@@ -339,25 +357,20 @@ public class AxiomReranker<T> implements Reranker<T> {
    * @param docIds The reranking pool, see {@link #selectDocs} for explanations
    * @param context An instance of RerankerContext
    * @param filterPattern A Regex pattern that terms are collected only they matches the pattern, could be null
-   * @return A Map of <term -> Set<docId>> kind of a small inverted list where the Set of docIds is where the term occurs
+   * @return A small inverted list of the pool, where the documents of the pool are renumbered densely
    */
-  private Map<String, Set<Integer>> extractTerms(Set<Integer> docIds, RerankerContext<T> context,
-                                                 Pattern filterPattern) throws Exception, IOException {
-    IndexReader reader;
-    IndexSearcher searcher;
-    if (this.externalIndexPath != null) {
-      Path indexPath = Paths.get(this.externalIndexPath);
-      if (!Files.exists(indexPath) || !Files.isDirectory(indexPath) || !Files.isReadable(indexPath)) {
-        throw new IllegalArgumentException(this.externalIndexPath + " does not exist or is not a directory.");
-      }
-      reader = DirectoryReader.open(FSDirectory.open(indexPath));
-      searcher = new IndexSearcher(reader);
-    } else {
-      searcher = context.getIndexSearcher();
-      reader = searcher.getIndexReader();
-    }
-    Map<String, Set<Integer>> termDocidSets = new HashMap<>();
+  private CooccurrenceIndex extractTerms(Set<Integer> docIds, RerankerContext<T> context,
+                                         Pattern filterPattern) throws Exception, IOException {
+    IndexReader reader = this.externalReader != null ?
+        this.externalReader : context.getIndexSearcher().getIndexReader();
+    TermOrdinals dictionary = new TermOrdinals();
+    CooccurrenceIndex termDocidSets = new CooccurrenceIndex(docIds.size(), dictionary);
+    // Whether each term of the dictionary passes the filters, decided when the term is first seen.
+    FixedBitSet checked = new FixedBitSet(64);
+    FixedBitSet eligible = new FixedBitSet(64);
+    int denseDocid = -1;
     for (int docid : docIds) {
+      denseDocid++;
       Terms terms = reader.getTermVector(docid, LuceneDocumentGenerator.FIELD_BODY);
       if (terms == null) {
         LOG.warn("Document vector not stored for docid: " + docid);
@@ -368,20 +381,26 @@ public class AxiomReranker<T> implements Reranker<T> {
         LOG.warn("Document vector not stored for docid: " + docid);
         continue;
       }
-      while ((te.next()) != null) {
-        String term = te.term().utf8ToString();
-        // We do some noisy filtering here ... pure empirical heuristic
-        if (term.length() < 2) continue;
-        if (!term.matches("[a-z]+")) continue;
-        if (filterPattern == null || filterPattern.matcher(term).matches()) {
-          if (!termDocidSets.containsKey(term)) {
-            termDocidSets.put(term, new HashSet<>());
+      BytesRef text;
+      while ((text = te.next()) != null) {
+        int ord = dictionary.add(text);
+        checked = FixedBitSet.ensureCapacity(checked, ord);
+        eligible = FixedBitSet.ensureCapacity(eligible, ord);
+        if (!checked.get(ord)) {
+          checked.set(ord);
+          String term = dictionary.term(ord);
+          // We do some noisy filtering here ... pure empirical heuristic
+          if (term.length() >= 2 && term.matches("[a-z]+") &&
+              (filterPattern == null || filterPattern.matcher(term).matches())) {
+            eligible.set(ord);
           }
-          termDocidSets.get(term).add(docid);
+        }
+        if (eligible.get(ord)) {
+          termDocidSets.add(ord, denseDocid);
         }
       }
     }
-    return termDocidSets;
+    return termDocidSets.finish();
   }
 
   /**
@@ -399,12 +418,12 @@ public class AxiomReranker<T> implements Reranker<T> {
    * PriorityQueue, only the top {@code K} are kept.
    * 3. Add the scores of the same term together and pick the top {@code M} ones.
    *
-   * @param termInvertedList A Map of <term -> Set<docId>> where the Set of docIds is where the term occurs
+   * @param termInvertedList The inverted list of the reranking pool, see {@link #extractTerms}
    * @param context An instance of RerankerContext
    * @return Map<String, Double> Top terms and their weight scores in a HashMap
    */
   private Map<String, Double> computeTermScore(
-    Map<String, Set<Integer>> termInvertedList, RerankerContext<T> context) throws IOException {
+    CooccurrenceIndex termInvertedList, RerankerContext<T> context) throws IOException {
     class ScoreComparator implements Comparator<Pair<String, Double>> {
       public int compare(Pair<String, Double> a, Pair<String, Double> b) {
         int cmp = Double.compare(b.getRight(), a.getRight());
@@ -417,17 +436,8 @@ public class AxiomReranker<T> implements Reranker<T> {
     }
 
     // get collection statistics so that we can get idf later on.
-    IndexReader reader;
-    if (this.externalIndexPath != null) {
-      Path indexPath = Paths.get(this.externalIndexPath);
-      if (!Files.exists(indexPath) || !Files.isDirectory(indexPath) || !Files.isReadable(indexPath)) {
-        throw new IllegalArgumentException(this.externalIndexPath + " does not exist or is not a directory.");
-      }
-      reader = DirectoryReader.open(FSDirectory.open(indexPath));
-    } else {
-      IndexSearcher searcher = context.getIndexSearcher();
-      reader = searcher.getIndexReader();
-    }
+    IndexReader reader = this.externalReader != null ?
+        this.externalReader : context.getIndexSearcher().getIndexReader();
     final long docCount = reader.numDocs() == -1 ? reader.maxDoc() : reader.numDocs();
 
     //calculate the Mutual Information between term with each query term
@@ -437,37 +447,72 @@ public class AxiomReranker<T> implements Reranker<T> {
       queryTermsCounts.put(qt, queryTermsCounts.getOrDefault(qt, 0) + 1);
     }
 
-    Set<Integer> allDocIds = new HashSet<>();
-    for (Set<Integer> s : termInvertedList.values()) {
-      allDocIds.addAll(s);
-    }
-    int docIdsCount = allDocIds.size();
-
     // Each priority queue corresponds to a query term: The p-queue itself stores all terms
     // in the reranking pool and their reranking scores to the query term.
-    List<PriorityQueue<Pair<String, Double>>> allTermScoresPQ = new ArrayList<>();
+    List<Integer> scoredQueryTerms = new ArrayList<>();
+    List<Float> idfs = new ArrayList<>();
+    List<Integer> qtfs = new ArrayList<>();
     for (Map.Entry<String, Integer> q : queryTermsCounts.entrySet()) {
       String queryTerm = q.getKey();
       long df = reader.docFreq(new Term(LuceneDocumentGenerator.FIELD_BODY, queryTerm));
       if (df == 0L) {
         continue;
       }
-      float idf = (float) Math.log((1 + docCount)/df);
-      int qtf = q.getValue();
-      if (termInvertedList.containsKey(queryTerm)) {
-        PriorityQueue<Pair<String, Double>> termScorePQ = new PriorityQueue<>(new ScoreComparator());
-        double selfMI = computeMutualInformation(termInvertedList.get(queryTerm), termInvertedList.get(queryTerm), docIdsCount);
-        for (Map.Entry<String, Set<Integer>> termEntry : termInvertedList.entrySet()) {
-          double score;
-          if (termEntry.getKey().equals(queryTerm)) { // The mutual information to itself will always be 1
-            score = idf * qtf;
-          } else {
-            double crossMI = computeMutualInformation(termInvertedList.get(queryTerm), termEntry.getValue(), docIdsCount);
-            score = idf * beta * qtf * crossMI / selfMI;
-          }
-          termScorePQ.add(Pair.of(termEntry.getKey(), score));
+      int queryTermOrd = termInvertedList.find(queryTerm);
+      if (queryTermOrd >= 0) {
+        scoredQueryTerms.add(queryTermOrd);
+        idfs.add((float) Math.log((1 + docCount)/df));
+        qtfs.add(q.getValue());
+      }
+    }
+
+    // The query terms are scored in parallel on the shared search executor (see -searchThreads) if there is one, never
+    // on threads of their own, since the runs already search topics in parallel. The queues are kept in query term
+    // order so that the scores below are added up in the same order as before.
+    IntFunction<PriorityQueue<Pair<String, Double>>> scoreQueryTerm = i -> {
+      int queryTerm = scoredQueryTerms.get(i);
+      float idf = idfs.get(i);
+      int qtf = qtfs.get(i);
+      PriorityQueue<Pair<String, Double>> termScorePQ = new PriorityQueue<>(new ScoreComparator());
+      double selfMI = termInvertedList.mutualInformation(queryTerm, queryTerm);
+      for (int term : termInvertedList.terms()) {
+        double score;
+        if (term == queryTerm) { // The mutual information to itself will always be 1
+          score = idf * qtf;
+        } else {
+          double crossMI = termInvertedList.mutualInformation(queryTerm, term);
+          score = idf * beta * qtf * crossMI / selfMI;
+        }
+        termScorePQ.add(Pair.of(termInvertedList.term(term), score));
+      }
+      return termScorePQ;
+    };
+    ExecutorService executor = context.getIndexSearcher() instanceof SlicedIndexSearcher ?
+        ((SlicedIndexSearcher) context.getIndexSearcher()).getSliceExecutor() : null;
+    List<PriorityQueue<Pair<String, Double>>> allTermScoresPQ = new ArrayList<>(scoredQueryTerms.size());
+    if (executor == null || scoredQueryTerms.size() < 2) {
+      for (int i = 0; i < scoredQueryTerms.size(); i++) {
+        allTermScoresPQ.add(scoreQueryTerm.apply(i));
+      }
+    } else {
+      List<Future<PriorityQueue<Pair<String, Double>>>> futures = new ArrayList<>(scoredQueryTerms.size());
+      for (int i = 0; i < scoredQueryTerms.size(); i++) {
+        final int queryTerm = i;
+        futures.add(executor.submit(() -> scoreQueryTerm.apply(queryTerm)));
+      }
+      try {
+        for (Future<PriorityQueue<Pair<String, Double>>> future : futures) {
+          allTermScoresPQ.add(future.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while scoring the expansion terms");
+      } catch (ExecutionException e) {
+        throw new IOException("Unable to score the expansion terms", e.getCause());
+      } finally {
+        for (Future<PriorityQueue<Pair<String, Double>>> future : futures) {
+          future.cancel(true);
         }
-        allTermScoresPQ.add(termScorePQ);
       }
     }
 
@@ -497,40 +542,13 @@ public class AxiomReranker<T> implements Reranker<T> {
     return resultTermScores;
   }
 
-  private double computeMutualInformation(Set<Integer> docidsX, Set<Integer> docidsY, int totalDocCount) {
-    int x1 = docidsX.size(), y1 = docidsY.size(); //document that x occurres
-    int x0 = totalDocCount - x1, y0 = totalDocCount - y1; //document num that x doesn't occurres
-
-    if (x1 == 0 || x0 == 0 || y1 == 0 || y0 == 0) {
-      return 0;
+  @Override
+  public void close() throws IOException {
+    if (this.externalReader != null) {
+      IndexReaderPool.release(this.externalReader);
     }
-
-    float pX0 = 1.0f * x0 / totalDocCount;
-    float pX1 = 1.0f * x1 / totalDocCount;
-    float pY0 = 1.0f * y0 / totalDocCount;
-    float pY1 = 1.0f * y1 / totalDocCount;
-
-    //get the intersection of docIds
-    Set<Integer> docidsXClone = new HashSet<>(docidsX); // directly operate on docidsX will change it permanently
-    docidsXClone.retainAll(docidsY);
-    int numXY11 = docidsXClone.size();
-    int numXY10 = numXY10 = x1 - numXY11;    //doc num that x occurs but y doesn't
-    int numXY01 = y1 - numXY11;    // doc num that y occurs but x doesn't
-    int numXY00 = totalDocCount - numXY11 - numXY10 - numXY01; //doc num that neither x nor y occurs
-
-    float pXY11 = 1.0f * numXY11 / totalDocCount;
-    float pXY10 = 1.0f * numXY10 / totalDocCount;
-    float pXY01 = 1.0f * numXY01 / totalDocCount;
-    float pXY00 = 1.0f * numXY00 / totalDocCount;
-
-    double m00 = 0, m01 = 0, m10 = 0, m11 = 0;
-    if (pXY00 != 0) m00 = pXY00 * Math.log(pXY00 / (pX0 * pY0));
-    if (pXY01 != 0) m01 = pXY01 * Math.log(pXY01 / (pX0 * pY1));
-    if (pXY10 != 0) m10 = pXY10 * Math.log(pXY10 / (pX1 * pY0));
-    if (pXY11 != 0) m11 = pXY11 * Math.log(pXY11 / (pX1 * pY1));
-    return m00 + m10 + m01 + m11;
   }
-  
+
   @Override
   public String tag() {
     return "AxiomaticRerank(R="+R+",N="+N+",K:"+K+",M:"+M+")";
@@ -0,0 +1,170 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank.lib;
+
+import io.anserini.util.TermOrdinals;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.FixedBitSet;
+
+import java.util.Arrays;
+
+/**
+ * Small inverted index over a pool of documents, used by {@link AxiomReranker} to compute the mutual information of
+ * term pairs. The documents of the pool are renumbered 0..n-1, terms are ordinals of a {@link TermOrdinals}
+ * dictionary, and every term keeps the set of documents it occurs in as a bitset, so co-occurrence counts are
+ * popcounts of bitset intersections. Once built, an index is read-only and can be used by several threads.
+ */
+final class CooccurrenceIndex {
+  private final int poolSize;
+  private final TermOrdinals dictionary;
+  private FixedBitSet[] termDocs = new FixedBitSet[64]; // term ordinal -> documents, null if the term was not added
+  private int[] termDocCounts;
+  private int[] terms;
+  private final FixedBitSet docsWithTerms;
+  private int docCount = -1;
+
+  /**
+   * Creates an empty index over a pool of the given size; documents are then added with {@link #add(int, int)}.
+   *
+   * @param poolSize number of documents in the pool
+   * @param dictionary dictionary of the terms
+   */
+  CooccurrenceIndex(int poolSize, TermOrdinals dictionary) {
+    this.poolSize = poolSize;
+    this.dictionary = dictionary;
+    this.docsWithTerms = new FixedBitSet(poolSize);
+  }
+
+  /**
+   * Records that a term occurs in a document of the pool.
+   *
+   * @param term term ordinal
+   * @param doc dense id of the document, in [0, poolSize)
+   */
+  void add(int term, int doc) {
+    if (term >= termDocs.length) {
+      termDocs = ArrayUtil.grow(termDocs, term + 1);
+    }
+    FixedBitSet docs = termDocs[term];
+    if (docs == null) {
+      docs = new FixedBitSet(poolSize);
+      termDocs[term] = docs;
+    }
+    docs.set(doc);
+    docsWithTerms.set(doc);
+  }
+
+  /**
+   * Freezes the index: computes the document counts that mutual information needs, and decodes the terms.
+   *
+   * @return this index
+   */
+  CooccurrenceIndex finish() {
+    termDocCounts = new int[termDocs.length];
+    int[] added = new int[termDocs.length];
+    int numTerms = 0;
+    for (int term = 0; term < termDocs.length; term++) {
+      if (termDocs[term] != null) {
+        termDocCounts[term] = termDocs[term].cardinality();
+        added[numTerms++] = term;
+        // Decoded now, since the dictionary is not thread-safe.
+        dictionary.term(term);
+      }
+    }
+    terms = Arrays.copyOf(added, numTerms);
+    docCount = numTerms == 0 ? 0 : docsWithTerms.cardinality();
+    return this;
+  }
+
+  /**
+   * Returns the ordinals of the terms of the index, in increasing order.
+   *
+   * @return term ordinals
+   */
+  int[] terms() {
+    return terms;
+  }
+
+  /**
+   * Returns the ordinal of a term of the index.
+   *
+   * @param term term
+   * @return term ordinal, or -1 if the term is not in the index
+   */
+  int find(String term) {
+    int ord = dictionary.find(term);
+    return ord >= 0 && ord < termDocs.length && termDocs[ord] != null ? ord : -1;
+  }
+
+  /**
+   * Returns a term of the index as a string.
+   *
+   * @param term term ordinal
+   * @return term
+   */
+  String term(int term) {
+    return dictionary.term(term);
+  }
+
+  /**
+   * Returns the number of documents of the pool with at least one term.
+   *
+   * @return number of documents
+   */
+  int docCount() {
+    return docCount;
+  }
+
+  /**
+   * Computes the mutual information of the occurrences of two terms over the documents with at least one term.
+   *
+   * @param x first term ordinal
+   * @param y second term ordinal
+   * @return mutual information
+   */
+  double mutualInformation(int x, int y) {
+    int totalDocCount = docCount;
+    int x1 = termDocCounts[x], y1 = termDocCounts[y]; //document that x occurres
+    int x0 = totalDocCount - x1, y0 = totalDocCount - y1; //document num that x doesn't occurres
+
+    if (x1 == 0 || x0 == 0 || y1 == 0 || y0 == 0) {
+      return 0;
+    }
+
+    float pX0 = 1.0f * x0 / totalDocCount;
+    float pX1 = 1.0f * x1 / totalDocCount;
+    float pY0 = 1.0f * y0 / totalDocCount;
+    float pY1 = 1.0f * y1 / totalDocCount;
+
+    int numXY11 = (int) FixedBitSet.intersectionCount(termDocs[x], termDocs[y]);
+    int numXY10 = x1 - numXY11;    //doc num that x occurs but y doesn't
+    int numXY01 = y1 - numXY11;    // doc num that y occurs but x doesn't
+    int numXY00 = totalDocCount - numXY11 - numXY10 - numXY01; //doc num that neither x nor y occurs
+
+    float pXY11 = 1.0f * numXY11 / totalDocCount;
+    float pXY10 = 1.0f * numXY10 / totalDocCount;
+    float pXY01 = 1.0f * numXY01 / totalDocCount;
+    float pXY00 = 1.0f * numXY00 / totalDocCount;
+
+    double m00 = 0, m01 = 0, m10 = 0, m11 = 0;
+    if (pXY00 != 0) m00 = pXY00 * Math.log(pXY00 / (pX0 * pY0));
+    if (pXY01 != 0) m01 = pXY01 * Math.log(pXY01 / (pX0 * pY1));
+    if (pXY10 != 0) m10 = pXY10 * Math.log(pXY10 / (pX1 * pY0));
+    if (pXY11 != 0) m11 = pXY11 * Math.log(pXY11 / (pX1 * pY1));
+    return m00 + m10 + m01 + m11;
+  }
+}
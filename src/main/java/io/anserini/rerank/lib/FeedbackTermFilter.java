@@ -0,0 +1,142 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank.lib;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
+
+/**
+ * Decides which terms of feedback documents {@link Rm3Reranker} may use as feedback terms: terms of 2 to 20 letters
+ * and digits that are not too frequent in the collection. The decision for a term does not depend on the query, so
+ * it is made once per reader and remembered; after warm-up, filtering a term is a hash lookup on its bytes, with no
+ * string decoding and no terms dictionary lookup.
+ *
+ * <p>Filters are shared by all threads and dropped when their reader is closed.</p>
+ */
+final class FeedbackTermFilter {
+  private static final Map<IndexReader.CacheKey, FeedbackTermFilter[]> CACHE = new ConcurrentHashMap<>();
+
+  private final IndexReader reader;
+  private final boolean tweetsearch;
+  private final int numDocs;
+  private final Map<BytesRef, Boolean> eligible = new ConcurrentHashMap<>();
+
+  private FeedbackTermFilter(IndexReader reader, boolean tweetsearch) {
+    this.reader = reader;
+    this.tweetsearch = tweetsearch;
+    this.numDocs = reader.numDocs();
+  }
+
+  /**
+   * Returns the filter of a reader.
+   *
+   * @param reader index reader
+   * @param tweetsearch whether the index is a tweet collection, which uses lower df thresholds
+   * @return feedback term filter
+   */
+  static FeedbackTermFilter get(IndexReader reader, boolean tweetsearch) {
+    IndexReader.CacheHelper helper = reader.getReaderCacheHelper();
+    if (helper == null) {
+      return new FeedbackTermFilter(reader, tweetsearch);
+    }
+    FeedbackTermFilter[] filters = CACHE.computeIfAbsent(helper.getKey(), key -> {
+      helper.addClosedListener(CACHE::remove);
+      return new FeedbackTermFilter[] {
+          new FeedbackTermFilter(reader, false), new FeedbackTermFilter(reader, true)};
+    });
+    return filters[tweetsearch ? 1 : 0];
+  }
+
+  /**
+   * Returns whether a term may be used as a feedback term.
+   *
+   * @param term term, as enumerated from a document vector
+   * @return whether the term is eligible
+   * @throws IOException if the index cannot be read
+   */
+  boolean isEligible(BytesRef term) throws IOException {
+    Boolean result = eligible.get(term);
+    if (result == null) {
+      // Racing threads compute the same value, so there is no need to lock.
+      result = check(term);
+      eligible.put(BytesRef.deepCopyOf(term), result);
+    }
+    return result;
+  }
+
+  private boolean check(BytesRef term) throws IOException {
+    // Terms of letters and digits are ASCII, so their length in bytes is their length in chars.
+    for (int i = term.offset; i < term.offset + term.length; i++) {
+      byte b = term.bytes[i];
+      if (!((b >= 'a' && b <= 'z') || (b >= '0' && b <= '9'))) return false;
+    }
+    if (term.length < 2 || term.length > 20) return false;
+
+    // This seemingly arbitrary logic needs some explanation. See following PR for details:
+    //   https://github.com/castorini/Anserini/pull/289
+    //
+    // We have long known that stopwords have a big impact in RM3. If we include stopwords
+    // in feedback, effectiveness is affected negatively. In the previous implementation, we
+    // built custom stopwords lists by selecting top k terms from the collection. We only
+    // had two stopwords lists, for gov2 and for Twitter. The gov2 list is used on all
+    // collections other than Twitter.
+    //
+    // The logic below instead uses a df threshold: If a term appears in more than n percent
+    // of the documents, then it is discarded as a feedback term. This heuristic has the
+    // advantage of getting rid of collection-specific stopwords lists, but at the cost of
+    // introducing an additional tuning parameter.
+    //
+    // Cognizant of the dangers of (essentially) tuning on test data, here's what I
+    // (@lintool) did:
+    //
+    // + For newswire collections, I picked a number, 10%, that seemed right. This value
+    //   actually increased effectiveness in most conditions across all newswire collections.
+    //
+    // + This 10% value worked fine on web collections; effectiveness didn't change much.
+    //
+    // Since this was the first and only heuristic value I selected, we're not really tuning
+    // parameters.
+    //
+    // The 10% threshold, however, doesn't work well on tweets because tweets are much
+    // shorter. Based on a list terms in the collection by df: For the Tweets2011 collection,
+    // I found a threshold close to a nice round number that approximated the length of the
+    // current stopwords list, by eyeballing the df values. This turned out to be 1%. I did
+    // this again for the Tweets2013 collection, using the same approach, and obtained a value
+    // of 0.7%.
+    //
+    // With both values, we obtained effectiveness pretty close to the old values with the
+    // custom stopwords list.
+    int df = reader.docFreq(new Term(FIELD_BODY, BytesRef.deepCopyOf(term)));
+    float ratio = (float) df / numDocs;
+    if (tweetsearch) {
+      if (numDocs > 100000000) { // Probably Tweets2013
+        if (ratio > 0.007f) return false;
+      } else {
+        if (ratio > 0.01f) return false;
+      }
+    } else if (ratio > 0.1f) return false;
+
+    return true;
+  }
+}
@@ -19,7 +19,11 @@ package io.anserini.rerank.lib;
 import ciir.umass.edu.learning.DataPoint;
 import ciir.umass.edu.learning.Ranker;
 import ciir.umass.edu.learning.RankerFactory;
+import io.anserini.index.generator.LuceneDocumentGenerator;
 import io.anserini.ltr.BaseFeatureExtractor;
+import io.anserini.ltr.FeatureFile;
+import io.anserini.ltr.TreeEnsembleScorer;
+import io.anserini.ltr.feature.DocValuesCursor;
 import io.anserini.ltr.feature.FeatureExtractors;
 import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
@@ -28,48 +32,125 @@ import io.anserini.rerank.ScoredDocuments;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Terms;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * This reranker class will load in a RankLib model and then score and rerank the documents
- * using that
+ * using that. All documents returned by the previous stage are rescored: the top rerankcutoff candidates of the
+ * first-stage retrieval, or the hits of a reranker such as RM3. Features are computed from the term vector of each
+ * candidate, for all the candidates of a query at once. Tree ensembles are compiled and score the feature vectors
+ * directly (see {@link TreeEnsembleScorer}), other models go through RankLib. RankLib rankers are not thread-safe, so
+ * each thread reranking with the same instance loads its own.
  */
 public class RankLibReranker<T> implements Reranker<T> {
   private static final Logger LOG = LogManager.getLogger(RankLibReranker.class);
 
   private static final RankerFactory FACTORY = new RankerFactory();
-  private final Ranker ranker;
+  private final ThreadLocal<Ranker> rankers; // null if the model is compiled
+  private final TreeEnsembleScorer scorer; // null for models that are not tree ensembles
   private final FeatureExtractors extractors;
   private final String termsField;
+  private FeatureFile.Writer featureWriter = null;
 
-  private DataPoint convertToDataPoint(Document doc, RerankerContext<T> context) {
-    Terms terms = null;
-    try {
-      terms = MultiFields.getTerms(context.getIndexSearcher().getIndexReader(), this.termsField);
-    } catch (IOException e) {
-      LOG.error("Unable to retrieve term vectors");
+  /**
+   * Computes the features of all the candidates of a query at once. Candidates are visited in docid order, so that
+   * the term vectors and DocValues of each segment are read front to back.
+   */
+  private float[][] extractFeatures(ScoredDocuments docs, RerankerContext<T> context) {
+    int numResults = docs.documents.length;
+    Integer[] order = new Integer[numResults];
+    for (int i = 0; i < numResults; i++) {
+      order[i] = i;
     }
+    Arrays.sort(order, Comparator.comparingInt(i -> docs.ids[i]));
 
-    float[] features = this.extractors.extractAll(doc, terms, context);
+    List<LeafReaderContext> leaves = context.getIndexSearcher().getIndexReader().leaves();
+    LeafReaderContext leaf = null;
+    DocValuesCursor values = new DocValuesCursor(context.getIndexSearcher().getIndexReader());
+    float[][] features = new float[numResults][];
+    for (int i : order) {
+      int docid = docs.ids[i];
+      Terms terms = null;
+      if (docid >= 0) {
+        if (leaf == null || docid >= leaf.docBase + leaf.reader().maxDoc()) {
+          leaf = leaves.get(ReaderUtil.subIndex(docid, leaves));
+        }
+        try {
+          Fields fields = leaf.reader().getTermVectors(docid - leaf.docBase);
+          terms = fields == null ? null : fields.terms(this.termsField);
+        } catch (IOException e) {
+          LOG.error("Unable to retrieve the term vector of document " + docid);
+        }
+      }
+      features[i] = this.extractors.extractAll(docid, docs.documents[i], terms, values, context);
+    }
+    return features;
+  }
+
+  private DataPoint convertToDataPoint(float[] features) {
     String rankLibEntryString = BaseFeatureExtractor.constructOutputString("0", 0, "0", features);
     DataPoint dp = new DataPoint(rankLibEntryString);
     return dp;
   }
 
+  private static TreeEnsembleScorer compile(String modelFile) {
+    try {
+      return TreeEnsembleScorer.load(Paths.get(modelFile));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to load model " + modelFile, e);
+    }
+  }
+
+  private static Ranker loadRanker(String modelFile) {
+    synchronized (FACTORY) {
+      return FACTORY.loadRanker(modelFile);
+    }
+  }
+
   public RankLibReranker(String modelFile, String termsField, FeatureExtractors extractors) {
-    this.ranker = FACTORY.loadRanker(modelFile);
+    this.scorer = compile(modelFile);
+    this.rankers = this.scorer == null ? ThreadLocal.withInitial(() -> loadRanker(modelFile)) : null;
+    if (this.rankers != null) {
+      // Fails early on a bad model
+      this.rankers.get();
+    }
     this.extractors = extractors;
     this.termsField = termsField;
   }
 
   public RankLibReranker (String modelFile, String termsField, String extractorDefinition) throws Exception {
-    this.ranker = FACTORY.loadRanker(modelFile);
-    this.extractors = FeatureExtractors.loadExtractor(extractorDefinition);
-    this.termsField = termsField;
+    this(modelFile, termsField, FeatureExtractors.loadExtractor(extractorDefinition));
+  }
+
+  /**
+   * Records the feature vectors of all reranked documents, with label 0, e.g. to train a model on the candidates of
+   * a run. The writer can be shared by rerankers running in parallel.
+   *
+   * @param featureWriter writer, null to stop recording
+   */
+  public void setFeatureWriter(FeatureFile.Writer featureWriter) {
+    this.featureWriter = featureWriter;
+  }
+
+  private void recordFeatures(ScoredDocuments docs, float[][] features, RerankerContext<T> context) {
+    FeatureFile.Rows rows = new FeatureFile.Rows();
+    for (int i = 0; i < features.length; i++) {
+      rows.add(String.valueOf(context.getQueryId()), 0, docs.documents[i].get(LuceneDocumentGenerator.FIELD_ID),
+          features[i]);
+    }
+    try {
+      featureWriter.addAll(rows);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write the features of query " + context.getQueryId(), e);
+    }
   }
 
   @Override
@@ -81,21 +162,40 @@ public class RankLibReranker<T> implements Reranker<T> {
     rerankedDocs.ids = new int[numResults];
     rerankedDocs.scores = new float[numResults];
 
-    SortedSet<Result> results = new TreeSet<>();
+    long start = System.nanoTime();
+    float[][] features = extractFeatures(docs, context);
+    long extracted = System.nanoTime();
+    if (this.featureWriter != null) {
+      recordFeatures(docs, features, context);
+    }
+
+    float[] scores = new float[numResults];
+    if (this.scorer != null) {
+      this.scorer.score(features, 0, numResults, scores);
+    } else {
+      // To use the rank lib scoring models, we need to construct DataPoint objects for scoring
+      // So we need to construct each feature vector in string representation then
+      // parse it...
+      Ranker ranker = this.rankers.get();
+      for (int i = 0; i < numResults; i++) {
+        scores[i] = (float) ranker.eval(convertToDataPoint(features[i]));
+      }
+    }
+
+    long scored = System.nanoTime();
+    LOG.info(String.format("Query %s: reranked %d candidates, features %.2f ms, scoring %.2f ms",
+        context.getQueryId(), numResults, (extracted - start) / 1e6, (scored - extracted) / 1e6));
 
-    // To use the rank lib scoring models, we need to construct DataPoint objects for scoring
-    // So we need to construct each feature vector in string representation then
-    // parse it...
+    Result[] results = new Result[numResults];
     for (int i = 0; i < numResults; i++) {
-      DataPoint dp = convertToDataPoint(docs.documents[i], context);
-      float score = (float) this.ranker.eval(dp);
-      results.add(new Result(docs.documents[i], i, score, docs.ids[i]));
+      results[i] = new Result(docs.documents[i], i, scores[i], docs.ids[i]);
     }
+    Arrays.sort(results);
 
     int index = 0;
     for (Result result : results) {
       rerankedDocs.documents[index] = result.document;
-      rerankedDocs.ids[index] = result.id;
+      rerankedDocs.ids[index] = docs.ids[result.id];
       rerankedDocs.scores[index] = result.score;
       index++;
     }
@@ -20,8 +20,10 @@ import io.anserini.rerank.Reranker;
 import io.anserini.rerank.RerankerContext;
 import io.anserini.rerank.ScoredDocuments;
 import io.anserini.search.SearchArgs;
+import io.anserini.search.query.LuceneDocidSetQuery;
 import io.anserini.util.AnalyzerUtils;
-import io.anserini.util.FeatureVector;
+import io.anserini.util.OrdinalFeatureVector;
+import io.anserini.util.TermOrdinals;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
@@ -30,14 +32,11 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.*;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
 
-import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
 import static io.anserini.search.SearchCollection.BREAK_SCORE_TIES_BY_DOCID;
 import static io.anserini.search.SearchCollection.BREAK_SCORE_TIES_BY_TWEETID;
 
@@ -51,14 +50,27 @@ public class Rm3Reranker implements Reranker {
   private final int fbDocs;
   private final float originalQueryWeight;
   private final boolean outputQuery;
+  private final boolean rescoreCandidates; // score the feedback query only over the documents being reranked
 
   public Rm3Reranker(Analyzer analyzer, String field, int fbTerms, int fbDocs, float originalQueryWeight, boolean outputQuery) {
+    this(analyzer, field, fbTerms, fbDocs, originalQueryWeight, outputQuery, false);
+  }
+
+  /**
+   * Creates an RM3 reranker. With {@code rescoreCandidates}, the feedback query is evaluated over the documents to
+   * rerank (i.e., the top {@code -rerankCutoff} hits of the first stage) instead of the whole index: the documents
+   * get the same scores as in a full second retrieval, but documents outside of the first-stage candidates are
+   * never scored nor returned.
+   */
+  public Rm3Reranker(Analyzer analyzer, String field, int fbTerms, int fbDocs, float originalQueryWeight,
+                     boolean outputQuery, boolean rescoreCandidates) {
     this.analyzer = analyzer;
     this.field = field;
     this.fbTerms = fbTerms;
     this.fbDocs = fbDocs;
     this.originalQueryWeight = originalQueryWeight;
     this.outputQuery = outputQuery;
+    this.rescoreCandidates = rescoreCandidates;
   }
 
   @Override
@@ -68,18 +80,21 @@ public class Rm3Reranker implements Reranker {
     IndexSearcher searcher = context.getIndexSearcher();
     IndexReader reader = searcher.getIndexReader();
 
-    FeatureVector qfv = FeatureVector.fromTerms(AnalyzerUtils.tokenize(analyzer, context.getQueryText())).scaleToUnitL1Norm();
+    // Feedback terms are handled as ordinals of a per-query dictionary; they are turned back into strings only to
+    // build the feedback query.
+    TermOrdinals terms = new TermOrdinals();
+    OrdinalFeatureVector qfv = OrdinalFeatureVector.fromTerms(
+        AnalyzerUtils.tokenize(analyzer, context.getQueryText()), terms).scaleToUnitL1Norm();
 
-    FeatureVector rm = estimateRelevanceModel(docs, reader, context.getSearchArgs().searchtweets);
+    OrdinalFeatureVector rm = estimateRelevanceModel(docs, reader, context.getSearchArgs().searchtweets, terms);
 
-    rm = FeatureVector.interpolate(qfv, rm, originalQueryWeight);
+    rm = OrdinalFeatureVector.interpolate(qfv, rm, originalQueryWeight, terms.size());
 
     BooleanQuery.Builder feedbackQueryBuilder = new BooleanQuery.Builder();
 
-    Iterator<String> terms = rm.iterator();
-    while (terms.hasNext()) {
-      String term = terms.next();
-      float prob = rm.getFeatureWeight(term);
+    for (int i = 0; i < rm.size(); i++) {
+      String term = terms.term(rm.ord(i));
+      float prob = rm.weight(i);
       feedbackQueryBuilder.add(new BoostQuery(new TermQuery(new Term(this.field, term)), prob), BooleanClause.Occur.SHOULD);
     }
 
@@ -102,6 +117,12 @@ public class Rm3Reranker implements Reranker {
         bqBuilder.add(feedbackQuery, BooleanClause.Occur.MUST);
         finalQuery = bqBuilder.build();
       }
+      if (this.rescoreCandidates) {
+        BooleanQuery.Builder bqBuilder = new BooleanQuery.Builder();
+        bqBuilder.add(new LuceneDocidSetQuery(docs.ids), BooleanClause.Occur.FILTER);
+        bqBuilder.add(finalQuery, BooleanClause.Occur.MUST);
+        finalQuery = bqBuilder.build();
+      }
 
       // Figure out how to break the scoring ties.
       if (context.getSearchArgs().arbitraryScoreTieBreak) {
@@ -119,20 +140,21 @@ public class Rm3Reranker implements Reranker {
     return ScoredDocuments.fromTopDocs(rs, searcher);
   }
 
-  private FeatureVector estimateRelevanceModel(ScoredDocuments docs, IndexReader reader, boolean tweetsearch) {
-    FeatureVector f = new FeatureVector();
+  private OrdinalFeatureVector estimateRelevanceModel(ScoredDocuments docs, IndexReader reader, boolean tweetsearch,
+                                                      TermOrdinals terms) {
+    OrdinalFeatureVector f = new OrdinalFeatureVector();
 
-    Set<String> vocab = new HashSet<>();
     int numdocs = docs.documents.length < fbDocs ? docs.documents.length : fbDocs;
-    FeatureVector[] docvectors = new FeatureVector[numdocs];
+    OrdinalFeatureVector[] docvectors = new OrdinalFeatureVector[numdocs];
+    FeedbackTermFilter filter = FeedbackTermFilter.get(reader, tweetsearch);
+    TermEligibility eligibility = new TermEligibility();
 
     for (int i = 0; i < numdocs; i++) {
       try {
-        FeatureVector docVector = createdFeatureVector(
-            reader.getTermVector(docs.ids[i], field), reader, tweetsearch);
-        docVector.pruneToSize(fbTerms);
+        OrdinalFeatureVector docVector = createdFeatureVector(
+            reader.getTermVector(docs.ids[i], field), terms, filter, eligibility);
+        docVector.pruneToSize(fbTerms, terms);
 
-        vocab.addAll(docVector.getFeatures());
         docvectors[i] = docVector;
       } catch (IOException e) {
         e.printStackTrace();
@@ -147,85 +169,79 @@ public class Rm3Reranker implements Reranker {
       norms[i] = (float) docvectors[i].computeL1Norm();
     }
 
-    for (String term : vocab) {
-      float fbWeight = 0.0f;
-      for (int i = 0; i < docvectors.length; i++) {
+    // Accumulate the weights of all terms at once, document by document, so that the weight of each term adds up
+    // the documents in the same order as a term-at-a-time loop would.
+    float[] fbWeights = new float[terms.size()];
+    boolean[] inVocab = new boolean[terms.size()];
+    int[] vocab = new int[terms.size()];
+    int vocabSize = 0;
+    for (int i = 0; i < docvectors.length; i++) {
+      OrdinalFeatureVector docVector = docvectors[i];
+      for (int j = 0; j < docVector.size(); j++) {
+        int ord = docVector.ord(j);
+        if (!inVocab[ord]) {
+          inVocab[ord] = true;
+          vocab[vocabSize++] = ord;
+        }
         // Avoids zero-length feedback documents, which causes division by zero when computing term weights.
         // Zero-length feedback documents occur (e.g., with CAR17) when a document has only terms 
         // that accents (which are indexed, but not selected for feedback).
         if (norms[i] > 0.001f) {
-          fbWeight += (docvectors[i].getFeatureWeight(term) / norms[i]) * docs.scores[i];
+          fbWeights[ord] += (docVector.weight(j) / norms[i]) * docs.scores[i];
         }
       }
-      f.addFeatureWeight(term, fbWeight);
     }
 
-    f.pruneToSize(fbTerms);
+    f = new OrdinalFeatureVector(vocabSize);
+    for (int i = 0; i < vocabSize; i++) {
+      f.add(vocab[i], fbWeights[vocab[i]]);
+    }
+
+    f.pruneToSize(fbTerms, terms);
     f.scaleToUnitL1Norm();
 
     return f;
   }
 
-  private FeatureVector createdFeatureVector(Terms terms, IndexReader reader, boolean tweetsearch) {
-    FeatureVector f = new FeatureVector();
+  /**
+   * Whether the terms of a dictionary can be feedback terms, looked up in the {@link FeedbackTermFilter} once per
+   * term and query.
+   */
+  private static final class TermEligibility {
+    private static final byte UNKNOWN = 0, ELIGIBLE = 1, INELIGIBLE = 2;
+    private byte[] states = new byte[64];
+
+    byte get(int ord) {
+      return ord < states.length ? states[ord] : UNKNOWN;
+    }
+
+    void set(int ord, boolean eligible) {
+      if (ord >= states.length) {
+        states = ArrayUtil.grow(states, ord + 1);
+      }
+      states[ord] = eligible ? ELIGIBLE : INELIGIBLE;
+    }
+  }
+
+  private OrdinalFeatureVector createdFeatureVector(Terms termVector, TermOrdinals terms, FeedbackTermFilter filter,
+                                                    TermEligibility eligibility) {
+    OrdinalFeatureVector f = new OrdinalFeatureVector();
 
     try {
-      int numDocs = reader.numDocs();
-      TermsEnum termsEnum = terms.iterator();
+      TermsEnum termsEnum = termVector.iterator();
 
       BytesRef text;
       while ((text = termsEnum.next()) != null) {
-        String term = text.utf8ToString();
-
-        if (term.length() < 2 || term.length() > 20) continue;
-        if (!term.matches("[a-z0-9]+")) continue;
-
-        // This seemingly arbitrary logic needs some explanation. See following PR for details:
-        //   https://github.com/castorini/Anserini/pull/289
-        //
-        // We have long known that stopwords have a big impact in RM3. If we include stopwords
-        // in feedback, effectiveness is affected negatively. In the previous implementation, we
-        // built custom stopwords lists by selecting top k terms from the collection. We only
-        // had two stopwords lists, for gov2 and for Twitter. The gov2 list is used on all
-        // collections other than Twitter.
-        //
-        // The logic below instead uses a df threshold: If a term appears in more than n percent
-        // of the documents, then it is discarded as a feedback term. This heuristic has the
-        // advantage of getting rid of collection-specific stopwords lists, but at the cost of
-        // introducing an additional tuning parameter.
-        //
-        // Cognizant of the dangers of (essentially) tuning on test data, here's what I
-        // (@lintool) did:
-        //
-        // + For newswire collections, I picked a number, 10%, that seemed right. This value
-        //   actually increased effectiveness in most conditions across all newswire collections.
-        //
-        // + This 10% value worked fine on web collections; effectiveness didn't change much.
-        //
-        // Since this was the first and only heuristic value I selected, we're not really tuning
-        // parameters.
-        //
-        // The 10% threshold, however, doesn't work well on tweets because tweets are much
-        // shorter. Based on a list terms in the collection by df: For the Tweets2011 collection,
-        // I found a threshold close to a nice round number that approximated the length of the
-        // current stopwords list, by eyeballing the df values. This turned out to be 1%. I did
-        // this again for the Tweets2013 collection, using the same approach, and obtained a value
-        // of 0.7%.
-        //
-        // With both values, we obtained effectiveness pretty close to the old values with the
-        // custom stopwords list.
-        int df = reader.docFreq(new Term(FIELD_BODY, term));
-        float ratio = (float) df / numDocs;
-        if (tweetsearch) {
-          if (numDocs > 100000000) { // Probably Tweets2013
-            if (ratio > 0.007f) continue;
-          } else {
-            if (ratio > 0.01f) continue;
-          }
-        } else if (ratio > 0.1f) continue;
+        int ord = terms.add(text);
+        byte state = eligibility.get(ord);
+        if (state == TermEligibility.UNKNOWN) {
+          eligibility.set(ord, filter.isEligible(text));
+          state = eligibility.get(ord);
+        }
+        if (state == TermEligibility.INELIGIBLE) continue;
 
         int freq = (int) termsEnum.totalTermFreq();
-        f.addFeatureWeight(term, (float) freq);
+        f.add(ord, (float) freq);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -235,9 +251,10 @@ public class Rm3Reranker implements Reranker {
 
     return f;
   }
-  
+
   @Override
   public String tag() {
-    return "Rm3(fbDocs="+fbDocs+",fbTerms="+fbTerms+",originalQueryWeight:"+originalQueryWeight+")";
+    return "Rm3(fbDocs="+fbDocs+",fbTerms="+fbTerms+",originalQueryWeight:"+originalQueryWeight+
+        (rescoreCandidates ? ",rescoreCandidates" : "")+")";
   }
 }
@@ -34,12 +34,36 @@ public class SearchArgs {
   public String topicReader;
 
   // optional arguments
+  @Option(name = "-shards", metaVar = "[path]", handler = StringArrayOptionHandler.class, usage = "Additional shard " +
+      "indexes (e.g., built with IndexCollection -shard.count) searched in parallel together with -index, using " +
+      "collection statistics aggregated across all shards")
+  public String[] shards = null;
+
   @Option(name = "-threads", metaVar = "[Number]", usage = "Number of Threads")
   public int threads = 1;
-  
+
+  @Option(name = "-searchThreads", metaVar = "[Number]", usage = "Number of threads, shared by all runs, that " +
+      "search the slices of a single query in parallel. 0 searches each query sequentially, -1 uses one thread " +
+      "per core. Threads running topics wait while their slices are searched, so this bounds the number of " +
+      "threads searching at any time regardless of -threads")
+  public int searchThreads = 0;
+
+  @Option(name = "-slices", metaVar = "[policy]", usage = "How segments are grouped into slices with " +
+      "-searchThreads or -shards: one of segment, balanced (small segments are grouped together) or shard. " +
+      "Default: shard with -shards, segment otherwise")
+  public String slices = null;
+
   @Option(name = "-inmem", usage = "Boolean switch to read index in memory")
   public Boolean inmem = false;
+
+  @Option(name = "-inmem.preload", metaVar = "[mode]", usage = "Preload the index before the first query: " +
+      "'mmap' maps and touches every page of the index, 'direct' copies all index files into off-heap buffers")
+  public String inmem_preload = null;
   
+  @Option(name = "-timings", usage = "Boolean switch to record per-query, per-stage latencies: writes " +
+      "<output>.timings.csv with one line per query and <output>.timings.txt with p50/p90/p99/max per stage")
+  public boolean timings = false;
+
   @Option(name = "-topicfield", usage = "Which field of the query should be used, default \"title\"." +
       " For TREC ad hoc topics, description or narrative can be used.")
   public String topicfield = "title";
@@ -162,6 +186,10 @@ public class SearchArgs {
   @Option(name = "-sdm.uw", metaVar = "[value]", usage = "unordered window weight in sdm")
   public float sdm_uw = 0.05f;
 
+  @Option(name = "-sdm.fused", usage = "boolean switch to evaluate the Sequential Dependence Model query with a single " +
+      "scorer that reads the positions of each query term once per document instead of span queries")
+  public boolean sdm_fused = false;
+
   // RM3 Options: Anserini uses the same default options as in Indri.
   // As of v5.13, the defaults in Indri are, from src/RMExpander.cpp:
   //
@@ -189,6 +217,11 @@ public class SearchArgs {
       usage = "RM3 parameter: print original and expanded queries")
   public boolean rm3_outputQuery = false;
 
+  @Option(name = "-rm3.rescoreCandidates",
+      usage = "RM3 parameter: score the expanded query only over the top -rerankCutoff hits of the initial ranking " +
+          "instead of the whole index")
+  public boolean rm3_rescoreCandidates = false;
+
   // Axiomatic semantic matching matching options.
 
   @Option(name = "-axiom", usage = "use Axiomatic query expansion model for the reranking")
@@ -222,6 +255,12 @@ public class SearchArgs {
   @Option(name = "-axiom.index", usage = "path to the external index for generating the reranking doucments pool")
   public String axiom_index = null;
 
-  @Option(name = "-model", metaVar = "[file]", required = false, usage = "ranklib model file")
+  @Option(name = "-model", metaVar = "[file]", required = false,
+      usage = "ranklib model file, reranks with learning to rank the top rerankcutoff candidates of each query, or " +
+          "all the hits returned by -rm3 or -axiom; logs the latency of each query")
   public String model = "";
+
+  @Option(name = "-extractors", metaVar = "[file]", required = false,
+      usage = "feature extractors file of the -model, defaults to the feature extraction defaults of the collection")
+  public String extractors = null;
 }
@@ -18,17 +18,24 @@ package io.anserini.search;
 
 import io.anserini.analysis.EnglishStemmingAnalyzer;
 import io.anserini.analysis.TweetAnalyzer;
+import io.anserini.index.PreloadedDirectory;
 import io.anserini.index.generator.TweetGenerator;
 import io.anserini.index.generator.WapoGenerator;
+import io.anserini.ltr.TwitterFeatureExtractor;
+import io.anserini.ltr.WebFeatureExtractor;
+import io.anserini.ltr.feature.FeatureExtractors;
 import io.anserini.rerank.RerankerCascade;
 import io.anserini.rerank.RerankerContext;
+import io.anserini.rerank.StageTimer;
 import io.anserini.rerank.ScoredDocuments;
 import io.anserini.rerank.lib.AxiomReranker;
 import io.anserini.rerank.lib.NewsBackgroundLinkingReranker;
+import io.anserini.rerank.lib.RankLibReranker;
 import io.anserini.rerank.lib.Rm3Reranker;
 import io.anserini.rerank.lib.ScoreTiesAdjusterReranker;
 import io.anserini.search.query.BagOfWordsQueryGenerator;
 import io.anserini.search.query.SdmQueryGenerator;
+import io.anserini.search.query.TweetIdRangeQuery;
 import io.anserini.search.similarity.F2ExpSimilarity;
 import io.anserini.search.similarity.F2LogSimilarity;
 import io.anserini.search.similarity.TaggedSimilarity;
@@ -41,7 +48,6 @@ import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
@@ -66,6 +72,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -95,6 +102,9 @@ public final class SearchCollection implements Closeable {
 
   private final SearchArgs args;
   private final IndexReader reader;
+  // Searches the slices of a query in parallel, shared by all runs; null to search them sequentially.
+  private final ExecutorService searchExecutor;
+  private final SlicedIndexSearcher.Policy slicePolicy;
   private final Analyzer analyzer;
   private List<TaggedSimilarity> similarities;
   private final boolean isRerank;
@@ -123,7 +133,7 @@ public final class SearchCollection implements Closeable {
       this.cascade = cascade;
       this.runTag = runTag;
       this.outputPath = outputPath;
-      this.searcher = new IndexSearcher(this.reader);
+      this.searcher = SlicedIndexSearcher.create(this.reader, searchExecutor, slicePolicy);
       this.searcher.setSimilarity(this.taggedSimilarity.similarity);
       setName(outputPath);
     }
@@ -134,17 +144,19 @@ public final class SearchCollection implements Closeable {
         LOG.info("[Start] Ranking with similarity: " + taggedSimilarity.similarity.toString());
         final long start = System.nanoTime();
         if (!cascadeTag.isEmpty()) LOG.info("ReRanking with: " + cascadeTag);
+        final StageTimer timer = new StageTimer(args.timings);
         PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.US_ASCII));
         for (Map.Entry<K, Map<String, String>> entry : topics.entrySet()) {
           K qid = entry.getKey();
           String queryString = entry.getValue().get(args.topicfield);
           ScoredDocuments docs;
+          timer.startQuery();
           if (args.searchtweets) {
-            docs = searchTweets(this.searcher, qid, queryString, Long.parseLong(entry.getValue().get("time")), cascade);
+            docs = searchTweets(this.searcher, qid, queryString, Long.parseLong(entry.getValue().get("time")), cascade, timer);
           } else if (args.searchnewsbackground) {
-            docs = searchBackgroundLinking(this.searcher, qid, queryString, cascade);
+            docs = searchBackgroundLinking(this.searcher, qid, queryString, cascade, timer);
           } else{
-            docs = search(this.searcher, qid, queryString, cascade);
+            docs = search(this.searcher, qid, queryString, cascade, timer);
           }
     
           /**
@@ -155,13 +167,22 @@ public final class SearchCollection implements Closeable {
            * the fifth column shows the score (integer or floating point) that generated the ranking.
            * the sixth column is called the "run tag" and should be a unique identifier for your
            */
+          long outputStart = timer.start();
           for (int i = 0; i < docs.documents.length; i++) {
             out.println(String.format(Locale.US, "%s Q0 %s %d %f %s", qid,
                 docs.documents[i].getField(FIELD_ID).stringValue(), (i + 1), docs.scores[i], runTag));
           }
+          timer.stop("output", outputStart);
+          timer.endQuery(qid);
         }
         out.flush();
         out.close();
+        if (timer.isEnabled()) {
+          timer.writeQueryTimings(Paths.get(outputPath + ".timings.csv"));
+          String summary = timer.summary();
+          Files.write(Paths.get(outputPath + ".timings.txt"), summary.getBytes(StandardCharsets.UTF_8));
+          LOG.info("Per-stage latencies (ms) of " + outputPath + ":\n" + summary);
+        }
         final long durationMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         LOG.info("[Finished] Ranking with similarity: " + taggedSimilarity.similarity.toString());
         LOG.info("Run " + topics.size() + " topics searched in "
@@ -180,11 +201,41 @@ public final class SearchCollection implements Closeable {
       throw new IllegalArgumentException(args.index + " does not exist or is not a directory.");
     }
 
-    LOG.info("Reading index at " + indexPath);
-    if (args.inmem) {
-      this.reader = DirectoryReader.open(MMapDirectory.open(indexPath));
+    int searchThreads = args.searchThreads < 0 ? Runtime.getRuntime().availableProcessors() : args.searchThreads;
+    if (args.shards == null) {
+      this.reader = openReader(indexPath);
+    } else {
+      List<IndexReader> shards = new ArrayList<>();
+      shards.add(openReader(indexPath));
+      for (String shard : args.shards) {
+        Path shardPath = Paths.get(shard);
+        if (!Files.exists(shardPath) || !Files.isDirectory(shardPath) || !Files.isReadable(shardPath)) {
+          throw new IllegalArgumentException(shard + " does not exist or is not a directory.");
+        }
+        shards.add(openReader(shardPath));
+      }
+      this.reader = ShardedIndexSearcher.combine(shards);
+      if (searchThreads == 0) {
+        searchThreads = shards.size();
+      }
+      LOG.info("Searching " + shards.size() + " shards with global statistics");
+    }
+
+    if (args.slices != null) {
+      this.slicePolicy = SlicedIndexSearcher.Policy.fromString(args.slices);
+    } else {
+      this.slicePolicy = args.shards == null ? SlicedIndexSearcher.Policy.SEGMENT : SlicedIndexSearcher.Policy.SHARD;
+    }
+    if (searchThreads > 0) {
+      if (searchThreads > Runtime.getRuntime().availableProcessors()) {
+        LOG.warn(searchThreads + " search threads exceed the " + Runtime.getRuntime().availableProcessors() +
+            " available cores");
+      }
+      this.searchExecutor = Executors.newFixedThreadPool(searchThreads);
+      LOG.info("Searching slices (" + slicePolicy.name().toLowerCase(Locale.ROOT) + ") of each query with " +
+          searchThreads + " shared threads");
     } else {
-      this.reader = DirectoryReader.open(FSDirectory.open(indexPath));
+      this.searchExecutor = null;
     }
 
     // Are we searching tweets?
@@ -204,11 +255,38 @@ public final class SearchCollection implements Closeable {
       qc = QueryConstructor.BagOfTerms;
     }
   
-    isRerank = args.rm3 || args.axiom;
+    isRerank = args.rm3 || args.axiom || !args.model.isEmpty();
+  }
+
+  private IndexReader openReader(Path indexPath) throws IOException {
+    LOG.info("Reading index at " + indexPath);
+    if (args.inmem_preload != null) {
+      final long start = System.nanoTime();
+      IndexReader reader;
+      if (args.inmem_preload.equals("direct")) {
+        reader = DirectoryReader.open(PreloadedDirectory.open(indexPath));
+      } else if (args.inmem_preload.equals("mmap")) {
+        MMapDirectory directory = new MMapDirectory(indexPath);
+        directory.setPreload(true);
+        reader = DirectoryReader.open(directory);
+      } else {
+        throw new IllegalArgumentException("Unknown preload mode: " + args.inmem_preload);
+      }
+      final long durationMillis = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      LOG.info("Index preloaded (" + args.inmem_preload + ") in " + durationMillis + " ms");
+      return reader;
+    } else if (args.inmem) {
+      return DirectoryReader.open(MMapDirectory.open(indexPath));
+    } else {
+      return DirectoryReader.open(FSDirectory.open(indexPath));
+    }
   }
 
   @Override
   public void close() throws IOException {
+    if (searchExecutor != null) {
+      searchExecutor.shutdown();
+    }
     reader.close();
   }
   
@@ -251,6 +329,32 @@ public final class SearchCollection implements Closeable {
     return similarities;
   }
   
+  /**
+   * Adds the learning to rank stage to a cascade if a model is given: the candidates left by the previous stages are
+   * rescored with the model.
+   *
+   * @param cascade cascade
+   * @throws IOException if the feature extractors cannot be loaded
+   */
+  private void addLtrStage(RerankerCascade cascade) throws IOException {
+    if (args.model.isEmpty()) {
+      return;
+    }
+    FeatureExtractors extractors;
+    if (args.extractors != null) {
+      try {
+        extractors = FeatureExtractors.loadExtractor(args.extractors);
+      } catch (Exception e) {
+        throw new IOException("Unable to load feature extractors " + args.extractors, e);
+      }
+    } else {
+      extractors = args.searchtweets ?
+          TwitterFeatureExtractor.getDefaultExtractors() : WebFeatureExtractor.getDefaultExtractors();
+    }
+    cascade.add(new RankLibReranker<>(args.model, args.searchtweets ? TweetGenerator.FIELD_BODY : FIELD_BODY,
+        extractors));
+  }
+
   public Map<String, RerankerCascade> constructRerankerCascades() throws IOException {
     Map<String, RerankerCascade> cascades = new HashMap<>();
     // Set up the ranking cascade.
@@ -261,7 +365,9 @@ public final class SearchCollection implements Closeable {
           for (String originalQueryWeight : args.rm3_originalQueryWeight) {
             RerankerCascade cascade = new RerankerCascade();
             cascade.add(new Rm3Reranker(analyzer, FIELD_BODY, Integer.valueOf(fbTerms),
-                Integer.valueOf(fbDocs), Float.valueOf(originalQueryWeight), args.rm3_outputQuery));
+                Integer.valueOf(fbDocs), Float.valueOf(originalQueryWeight), args.rm3_outputQuery,
+                args.rm3_rescoreCandidates));
+            addLtrStage(cascade);
             cascade.add(new ScoreTiesAdjusterReranker());
             String tag = "rm3.fbTerms:"+fbTerms+",rm3.fbDocs:"+fbDocs+",rm3.originalQueryWeight:"+originalQueryWeight;
             cascades.put(tag, cascade);
@@ -279,6 +385,7 @@ public final class SearchCollection implements Closeable {
                     args.axiom_deterministic, Integer.valueOf(seed), Integer.valueOf(r),
                     Integer.valueOf(n), Float.valueOf(beta), Integer.valueOf(top),
                     args.axiom_docids, args.axiom_outputQuery, args.searchtweets));
+                addLtrStage(cascade);
                 cascade.add(new ScoreTiesAdjusterReranker());
                 String tag = "axiom.seed:"+seed+",axiom.r:"+r+",axiom.n:"+n+",axiom.beta:"+beta+",axiom.top:"+top;
                 cascades.put(tag, cascade);
@@ -287,6 +394,12 @@ public final class SearchCollection implements Closeable {
           }
         }
       }
+    } else if (!args.model.isEmpty()) {
+      LOG.info("Rerank with learning to rank model " + args.model);
+      RerankerCascade cascade = new RerankerCascade();
+      addLtrStage(cascade);
+      cascade.add(new ScoreTiesAdjusterReranker());
+      cascades.put("ltr", cascade);
     } else {
       RerankerCascade cascade = new RerankerCascade();
       cascade.add(new ScoreTiesAdjusterReranker());
@@ -340,17 +453,37 @@ public final class SearchCollection implements Closeable {
       // Preserve interrupt status
       Thread.currentThread().interrupt();
     }
+    for (RerankerCascade cascade : cascades.values()) {
+      cascade.close();
+    }
   }
   
+  private Query buildSdmQuery(String queryString) {
+    SdmQueryGenerator generator = new SdmQueryGenerator(args.sdm_tw, args.sdm_ow, args.sdm_uw);
+    if (args.sdm_fused) {
+      return generator.buildFusedQuery(FIELD_BODY, analyzer, queryString);
+    }
+    return generator.buildQuery(FIELD_BODY, analyzer, queryString);
+  }
+
   public<K> ScoredDocuments search(IndexSearcher searcher, K qid, String queryString, RerankerCascade cascade)
       throws IOException {
+    return search(searcher, qid, queryString, cascade, StageTimer.DISABLED);
+  }
+
+  public<K> ScoredDocuments search(IndexSearcher searcher, K qid, String queryString, RerankerCascade cascade,
+      StageTimer timer) throws IOException {
+    long start = timer.start();
     Query query = null;
     if (qc == QueryConstructor.SequentialDependenceModel) {
-      query = new SdmQueryGenerator(args.sdm_tw, args.sdm_ow, args.sdm_uw).buildQuery(FIELD_BODY, analyzer, queryString);
+      query = buildSdmQuery(queryString);
     } else {
       query = new BagOfWordsQueryGenerator().buildQuery(FIELD_BODY, analyzer, queryString);
     }
+    List<String> queryTokens = AnalyzerUtils.tokenize(analyzer, queryString);
+    timer.stop("analysis", start);
 
+    start = timer.start();
     TopDocs rs = new TopDocs(0, new ScoreDoc[]{}, Float.NaN);
     if (!(isRerank && args.rerankcutoff <= 0)) {
       if (args.arbitraryScoreTieBreak) {// Figure out how to break the scoring ties.
@@ -359,15 +492,25 @@ public final class SearchCollection implements Closeable {
         rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits, BREAK_SCORE_TIES_BY_DOCID, true, true);
       }
     }
+    timer.stop("search", start);
 
-    List<String> queryTokens = AnalyzerUtils.tokenize(analyzer, queryString);
     RerankerContext context = new RerankerContext<>(searcher, qid, query, null, queryString, queryTokens, null, args);
 
-    return cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context);
+    start = timer.start();
+    ScoredDocuments docs = ScoredDocuments.fromTopDocs(rs, searcher);
+    timer.stop("fetch", start);
+
+    return cascade.run(docs, context, timer);
   }
   
   public<K> ScoredDocuments searchBackgroundLinking(IndexSearcher searcher, K qid, String queryString, RerankerCascade cascade)
       throws IOException, QueryNodeException {
+    return searchBackgroundLinking(searcher, qid, queryString, cascade, StageTimer.DISABLED);
+  }
+
+  public<K> ScoredDocuments searchBackgroundLinking(IndexSearcher searcher, K qid, String queryString, RerankerCascade cascade,
+      StageTimer timer) throws IOException, QueryNodeException {
+    long start = timer.start();
     Query query = null;
     String queryDocID = null;
     if (qc == QueryConstructor.SequentialDependenceModel) {
@@ -376,11 +519,13 @@ public final class SearchCollection implements Closeable {
     queryDocID = queryString;
     List<String> queryList = NewsBackgroundLinkingTopicReader.generateQueryString(reader, queryDocID,
         args.backgroundlinking_paragraph, args.backgroundlinking_k, args.backgroundlinking_weighted, qc, analyzer);
+    timer.stop("analysis", start);
     List<ScoredDocuments> allRes = new ArrayList<>();
     for (String queryStr : queryList) {
+      start = timer.start();
       Query q = null;
       if (qc == QueryConstructor.SequentialDependenceModel) {
-        q = new SdmQueryGenerator(args.sdm_tw, args.sdm_ow, args.sdm_uw).buildQuery(FIELD_BODY, analyzer, queryStr);
+        q = buildSdmQuery(queryStr);
       } else {
         // DO NOT use BagOfWordsQueryGenerator here!!!!
         // Because the actual query strings are extracted from tokenized document!!!
@@ -395,7 +540,9 @@ public final class SearchCollection implements Closeable {
       builder.add(filter, BooleanClause.Occur.MUST_NOT);
       builder.add(q, BooleanClause.Occur.MUST);
       query = builder.build();
+      timer.stop("analysis", start);
       
+      start = timer.start();
       TopDocs rs = new TopDocs(0, new ScoreDoc[]{}, Float.NaN);
       if (!(isRerank && args.rerankcutoff <= 0)) {
         if (args.arbitraryScoreTieBreak) {// Figure out how to break the scoring ties.
@@ -404,11 +551,15 @@ public final class SearchCollection implements Closeable {
           rs = searcher.search(query, isRerank ? args.rerankcutoff : args.hits, BREAK_SCORE_TIES_BY_DOCID, true, true);
         }
       }
+      timer.stop("search", start);
       
       List<String> queryTokens = Arrays.asList(queryStr.split(" "));
       RerankerContext context = new RerankerContext<>(searcher, qid, query, queryDocID, queryStr, queryTokens, null, args);
   
-      allRes.add(cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context));
+      start = timer.start();
+      ScoredDocuments docs = ScoredDocuments.fromTopDocs(rs, searcher);
+      timer.stop("fetch", start);
+      allRes.add(cascade.run(docs, context, timer));
     }
     
     // Finally do a round-robin picking
@@ -439,16 +590,24 @@ public final class SearchCollection implements Closeable {
       rowIdx++;
     }
   
+    start = timer.start();
     NewsBackgroundLinkingReranker postProcessor = new NewsBackgroundLinkingReranker();
     RerankerContext context = new RerankerContext<>(searcher, qid, null, queryDocID, null, null, null, args);
     scoredDocs = postProcessor.rerank(scoredDocs, context);
+    timer.stop("rerank:" + NewsBackgroundLinkingReranker.class.getSimpleName(), start);
     return scoredDocs;
   }
 
   public<K> ScoredDocuments searchTweets(IndexSearcher searcher, K qid, String queryString, long t, RerankerCascade cascade) throws IOException {
+    return searchTweets(searcher, qid, queryString, t, cascade, StageTimer.DISABLED);
+  }
+
+  public<K> ScoredDocuments searchTweets(IndexSearcher searcher, K qid, String queryString, long t, RerankerCascade cascade,
+      StageTimer timer) throws IOException {
+    long start = timer.start();
     Query keywordQuery;
     if (qc == QueryConstructor.SequentialDependenceModel) {
-      keywordQuery = new SdmQueryGenerator(args.sdm_tw, args.sdm_ow, args.sdm_uw).buildQuery(FIELD_BODY, analyzer, queryString);
+      keywordQuery = buildSdmQuery(queryString);
     } else {
       keywordQuery = new BagOfWordsQueryGenerator().buildQuery(FIELD_BODY, analyzer, queryString);
     }
@@ -456,14 +615,16 @@ public final class SearchCollection implements Closeable {
 
     // Do not consider the tweets with tweet ids that are beyond the queryTweetTime
     // <querytweettime> tag contains the timestamp of the query in terms of the
-    // chronologically nearest tweet id within the corpus
-    Query filter = LongPoint.newRangeQuery(TweetGenerator.StatusField.ID_LONG.name, 0L, t);
+    // chronologically nearest tweet id within the corpus. On indexes sorted by tweet id this is a docid range, so
+    // the tweets after the query time are never visited.
+    Query filter = new TweetIdRangeQuery(0L, t);
     BooleanQuery.Builder builder = new BooleanQuery.Builder();
     builder.add(filter, BooleanClause.Occur.FILTER);
     builder.add(keywordQuery, BooleanClause.Occur.MUST);
     Query compositeQuery = builder.build();
+    timer.stop("analysis", start);
 
-
+    start = timer.start();
     TopDocs rs = new TopDocs(0, new ScoreDoc[]{}, Float.NaN);
     if (!(isRerank && args.rerankcutoff <= 0)) {
       if (args.arbitraryScoreTieBreak) {// Figure out how to break the scoring ties.
@@ -472,10 +633,15 @@ public final class SearchCollection implements Closeable {
         rs = searcher.search(compositeQuery, isRerank ? args.rerankcutoff : args.hits, BREAK_SCORE_TIES_BY_TWEETID, true, true);
       }
     }
+    timer.stop("search", start);
 
     RerankerContext context = new RerankerContext<>(searcher, qid, keywordQuery, null, queryString, queryTokens, filter, args);
 
-    return cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context);
+    start = timer.start();
+    ScoredDocuments docs = ScoredDocuments.fromTopDocs(rs, searcher);
+    timer.stop("fetch", start);
+
+    return cascade.run(docs, context, timer);
   }
 
   public static void main(String[] args) throws Exception {
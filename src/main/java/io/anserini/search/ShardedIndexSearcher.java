@@ -0,0 +1,80 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Scatter-gather searcher over a set of shard indexes, e.g., the ones produced by
+ * {@code IndexCollection -shard.count N -shard.current i}. The shards are combined into a single {@link MultiReader},
+ * so term and collection statistics (docFreq, totalTermFreq, docCount, sumTotalTermFreq) are aggregated across all
+ * shards and scores are identical to those of a monolithic index. Each shard is searched as one slice on the
+ * executor, and the per-shard top-k lists are merged by {@link org.apache.lucene.search.IndexSearcher}. Since this is
+ * an ordinary searcher over the combined reader, rerankers work unchanged.
+ */
+public class ShardedIndexSearcher extends SlicedIndexSearcher {
+  /**
+   * Combines already opened shards into one reader. Closing the returned reader closes the shards.
+   *
+   * @param shards shard readers
+   * @return combined reader
+   * @throws IOException if the readers cannot be combined
+   */
+  public static MultiReader combine(List<IndexReader> shards) throws IOException {
+    return new MultiReader(shards.toArray(new IndexReader[0]), true);
+  }
+
+  public ShardedIndexSearcher(IndexReader reader, ExecutorService executor) {
+    super(reader, executor, Policy.SHARD);
+  }
+
+  /*
+   * One slice per shard: the leaves of a shard share the shard's reader context as their parent. Note that this is
+   * called from the IndexSearcher constructor, so it must not depend on instance fields.
+   */
+  @Override
+  protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+    Map<IndexReaderContext, List<LeafReaderContext>> shards = new IdentityHashMap<>();
+    List<List<LeafReaderContext>> ordered = new ArrayList<>();
+    for (LeafReaderContext leaf : leaves) {
+      IndexReaderContext shard = leaf.parent == null ? leaf : leaf.parent;
+      List<LeafReaderContext> shardLeaves = shards.get(shard);
+      if (shardLeaves == null) {
+        shardLeaves = new ArrayList<>();
+        shards.put(shard, shardLeaves);
+        ordered.add(shardLeaves);
+      }
+      shardLeaves.add(leaf);
+    }
+
+    LeafSlice[] slices = new LeafSlice[ordered.size()];
+    for (int i = 0; i < slices.length; i++) {
+      slices[i] = new LeafSlice(ordered.get(i).toArray(new LeafReaderContext[0]));
+    }
+    return slices;
+  }
+}
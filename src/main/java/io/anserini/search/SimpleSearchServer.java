@@ -0,0 +1,424 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.OptionHandlerFilter;
+import org.kohsuke.args4j.ParserProperties;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resident search server that keeps an index open (and warm) across requests. It listens on the loopback interface
+ * only and answers JSON requests on {@code /search}, either as a GET with request parameters for a single query:
+ *
+ * <pre>curl 'http://localhost:8080/search?query=black+bear&amp;k=10&amp;similarity=bm25&amp;reranker=rm3'</pre>
+ *
+ * or as a POST with a JSON object for a batch of queries:
+ *
+ * <pre>{"queries": [{"qid": "1", "query": "black bear"}, {"qid": "2", "query": "hubble"}], "k": 100,
+ *  "similarity": "bm25", "k1": 0.9, "b": 0.4, "reranker": "rm3", "fbTerms": 10, "fbDocs": 10}</pre>
+ *
+ * With {@code "rescoreCandidates": true}, RM3 scores the expanded query only over the first-stage candidates.
+ *
+ * Every distinct combination of similarity and reranker options gets its own {@link SimpleSearcher}, created on first
+ * use and shared by all later requests; all of them search the same index reader. At most {@code -maxSearchers} of
+ * them are kept, the least recently used one is dropped first.
+ */
+public final class SimpleSearchServer implements Closeable {
+  private static final Logger LOG = LogManager.getLogger(SimpleSearchServer.class);
+
+  public static final class Args {
+    @Option(name = "-index", metaVar = "[path]", required = true, usage = "Path to Lucene index")
+    public String index;
+
+    @Option(name = "-port", metaVar = "[number]", usage = "port to listen on (loopback interface only)")
+    public int port = 8080;
+
+    @Option(name = "-threads", metaVar = "[number]", usage = "number of threads serving requests")
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name = "-batchThreads", metaVar = "[number]", usage = "number of threads, shared by all batch " +
+        "requests, that search the queries of a batch in parallel; 1 searches them sequentially")
+    public int batchThreads = 1;
+
+    @Option(name = "-maxSearchers", metaVar = "[number]", usage = "maximum number of searchers with distinct " +
+        "similarity and reranker options kept between requests")
+    public int maxSearchers = 32;
+
+    @Option(name = "-searchThreads", metaVar = "[number]", usage = "number of threads, shared by all requests, " +
+        "that search the slices of a single query in parallel; 0 searches each query sequentially")
+    public int searchThreads = 0;
+
+    @Option(name = "-slices", metaVar = "[policy]", usage = "how segments are grouped into slices with " +
+        "-searchThreads: one of segment, balanced")
+    public String slices = "segment";
+
+    @Option(name = "-inmem", usage = "Boolean switch to read index in memory")
+    public boolean inmem = false;
+  }
+
+  private final Args args;
+  private final IndexReader reader;
+  // Searchers by options, in access order so that the least recently used one is evicted first.
+  private final Map<String, SimpleSearcher> searchers;
+  private final ObjectMapper mapper = new ObjectMapper();
+  private HttpServer server;
+  private ExecutorService executor;
+  // Searches the slices of a query in parallel, shared by all searchers; null to search them sequentially.
+  private final ExecutorService searchExecutor;
+  private final SlicedIndexSearcher.Policy slicePolicy;
+  // Searches the queries of batch requests in parallel, shared by all requests; null to search them sequentially.
+  private final ExecutorService batchExecutor;
+
+  public SimpleSearchServer(Args args) throws IOException {
+    this.args = args;
+    Path indexPath = Paths.get(args.index);
+
+    if (!Files.exists(indexPath) || !Files.isDirectory(indexPath) || !Files.isReadable(indexPath)) {
+      throw new IllegalArgumentException(args.index + " does not exist or is not a directory.");
+    }
+
+    LOG.info("Reading index at " + indexPath);
+    if (args.inmem) {
+      this.reader = DirectoryReader.open(MMapDirectory.open(indexPath));
+    } else {
+      this.reader = DirectoryReader.open(FSDirectory.open(indexPath));
+    }
+
+    this.slicePolicy = SlicedIndexSearcher.Policy.fromString(args.slices);
+    this.searchExecutor = args.searchThreads > 0 ? Executors.newFixedThreadPool(args.searchThreads) : null;
+    this.batchExecutor = args.batchThreads > 1 ? Executors.newFixedThreadPool(args.batchThreads) : null;
+    // Searchers do not own the reader, so evicted searchers need not be closed.
+    this.searchers = Collections.synchronizedMap(new LinkedHashMap<String, SimpleSearcher>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, SimpleSearcher> eldest) {
+        if (size() > args.maxSearchers) {
+          LOG.info("Dropping searcher for " + eldest.getKey());
+          return true;
+        }
+        return false;
+      }
+    });
+  }
+
+  public void start() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), args.port), 0);
+    executor = Executors.newFixedThreadPool(args.threads);
+    server.setExecutor(executor);
+    server.createContext("/search", this::handle);
+    server.start();
+    LOG.info("Listening on " + server.getAddress() + " with " + args.threads + " threads");
+  }
+
+  /**
+   * Returns the port the server listens on, which is only known after {@link #start()} with {@code -port 0}.
+   *
+   * @return port
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  int numSearchers() {
+    return searchers.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdown();
+    }
+    synchronized (searchers) {
+      for (SimpleSearcher searcher : searchers.values()) {
+        searcher.close();
+      }
+    }
+    if (searchExecutor != null) {
+      searchExecutor.shutdown();
+    }
+    if (batchExecutor != null) {
+      batchExecutor.shutdown();
+    }
+    reader.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    final long start = System.nanoTime();
+    int status = 200;
+    JsonNode response;
+    final String method = exchange.getRequestMethod();
+    try {
+      if ("GET".equals(method)) {
+        response = search(parseParameters(exchange.getRequestURI().getRawQuery()));
+      } else if ("POST".equals(method)) {
+        JsonNode request;
+        try (InputStream in = exchange.getRequestBody()) {
+          request = mapper.readTree(in);
+        }
+        response = search(request);
+      } else {
+        status = 405;
+        response = mapper.createObjectNode().put("error", "Unsupported method: " + method);
+      }
+    } catch (IllegalArgumentException | JsonProcessingException e) {
+      status = 400;
+      response = error(e);
+    } catch (Exception e) {
+      LOG.error("Unexpected exception:", e);
+      status = 500;
+      response = error(e);
+    }
+
+    final double latencyMillis = (System.nanoTime() - start) / 1e6;
+    if (response instanceof ObjectNode) {
+      ((ObjectNode) response).put("latency_ms", latencyMillis);
+    }
+    LOG.info(String.format("%s %s %d %.2f ms", method, exchange.getRequestURI().getPath(),
+        status, latencyMillis));
+
+    byte[] body = mapper.writeValueAsBytes(response);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private ObjectNode error(Exception e) {
+    ObjectNode node = mapper.createObjectNode();
+    node.put("error", e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+    return node;
+  }
+
+  private ObjectNode parseParameters(String rawQuery) throws UnsupportedEncodingException {
+    ObjectNode node = mapper.createObjectNode();
+    if (rawQuery == null) {
+      return node;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int idx = pair.indexOf('=');
+      if (idx <= 0) {
+        continue;
+      }
+      node.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"), URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+    }
+    return node;
+  }
+
+  private JsonNode search(JsonNode request) throws IOException {
+    List<String> qids = new ArrayList<>();
+    List<String> queries = new ArrayList<>();
+    if (request.has("queries")) {
+      if (!request.get("queries").isArray()) {
+        throw new IllegalArgumentException("\"queries\" must be an array.");
+      }
+      Set<String> seen = new HashSet<>();
+      int i = 0;
+      for (JsonNode query : request.get("queries")) {
+        if (!query.hasNonNull("query")) {
+          throw new IllegalArgumentException("Query " + i + " of \"queries\" has no \"query\".");
+        }
+        String qid = query.has("qid") ? query.get("qid").asText() : String.valueOf(i);
+        if (!seen.add(qid)) {
+          throw new IllegalArgumentException("Duplicate qid \"" + qid + "\" in \"queries\".");
+        }
+        qids.add(qid);
+        queries.add(query.get("query").asText());
+        i++;
+      }
+    } else if (request.hasNonNull("query")) {
+      qids.add(request.has("qid") ? request.get("qid").asText() : "0");
+      queries.add(request.get("query").asText());
+    } else {
+      throw new IllegalArgumentException("Request must contain \"query\" or \"queries\".");
+    }
+
+    int k = request.path("k").asInt(10);
+    long t = request.path("t").asLong(-1L);
+    SimpleSearcher searcher = getSearcher(request);
+
+    Map<String, SimpleSearcher.Result[]> results;
+    if (queries.size() == 1) {
+      results = new HashMap<>();
+      results.put(qids.get(0), searcher.search(queries.get(0), k, t));
+    } else {
+      results = searcher.batchSearch(queries, qids, k, t, batchExecutor);
+    }
+
+    ObjectNode response = mapper.createObjectNode();
+    ArrayNode resultsNode = response.putArray("results");
+    for (String qid : qids) {
+      ObjectNode queryNode = resultsNode.addObject();
+      queryNode.put("qid", qid);
+      ArrayNode hitsNode = queryNode.putArray("hits");
+      SimpleSearcher.Result[] hits = results.get(qid);
+      for (int i = 0; i < hits.length; i++) {
+        ObjectNode hit = hitsNode.addObject();
+        hit.put("rank", i + 1);
+        hit.put("docid", hits[i].docid);
+        hit.put("score", hits[i].score);
+      }
+    }
+    return response;
+  }
+
+  /*
+   * Returns the searcher configured with the similarity and reranker options of the request, creating it on first use.
+   */
+  private SimpleSearcher getSearcher(JsonNode request) {
+    final String similarity = request.path("similarity").asText("ql");
+    final String reranker = request.path("reranker").asText("");
+    final boolean searchtweets = request.path("searchtweets").asBoolean(false);
+
+    StringBuilder key = new StringBuilder(similarity);
+    switch (similarity) {
+      case "ql":
+        key.append(",mu:").append(request.path("mu").asDouble(1000.0));
+        break;
+      case "qljm":
+        key.append(",lambda:").append(request.path("lambda").asDouble(0.1));
+        break;
+      case "bm25":
+        key.append(",k1:").append(request.path("k1").asDouble(0.9)).append(",b:").append(request.path("b").asDouble(0.4));
+        break;
+      case "pl2":
+      case "spl":
+        key.append(",c:").append(request.path("c").asDouble(0.1));
+        break;
+      case "f2exp":
+      case "f2log":
+        key.append(",s:").append(request.path("s").asDouble(0.5));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown similarity: " + similarity);
+    }
+    if (reranker.equals("rm3")) {
+      key.append(";rm3,fbTerms:").append(request.path("fbTerms").asInt(10))
+          .append(",fbDocs:").append(request.path("fbDocs").asInt(10))
+          .append(",originalQueryWeight:").append(request.path("originalQueryWeight").asDouble(0.5))
+          .append(",rescoreCandidates:").append(request.path("rescoreCandidates").asBoolean(false));
+    } else if (!reranker.isEmpty()) {
+      throw new IllegalArgumentException("Unknown reranker: " + reranker);
+    }
+    key.append(";searchtweets:").append(searchtweets);
+
+    // Creating a searcher is cheap, so it is done while holding the lock of the map.
+    return searchers.computeIfAbsent(key.toString(), k -> {
+      LOG.info("Creating searcher for " + k);
+      SimpleSearcher searcher = new SimpleSearcher(reader);
+      searcher.setSearchExecutor(searchExecutor, slicePolicy);
+      searcher.setSearchTweets(searchtweets);
+      switch (similarity) {
+        case "ql":
+          searcher.setLMDirichletSimilarity((float) request.path("mu").asDouble(1000.0));
+          break;
+        case "qljm":
+          searcher.setLMJelinekMercerSimilarity((float) request.path("lambda").asDouble(0.1));
+          break;
+        case "bm25":
+          searcher.setBM25Similarity((float) request.path("k1").asDouble(0.9), (float) request.path("b").asDouble(0.4));
+          break;
+        case "pl2":
+          searcher.setDFRSimilarity((float) request.path("c").asDouble(0.1));
+          break;
+        case "spl":
+          searcher.setIBSimilarity((float) request.path("c").asDouble(0.1));
+          break;
+        case "f2exp":
+          searcher.setF2ExpSimilarity((float) request.path("s").asDouble(0.5));
+          break;
+        case "f2log":
+          searcher.setF2LogSimilarity((float) request.path("s").asDouble(0.5));
+          break;
+      }
+      if (reranker.equals("rm3")) {
+        searcher.setRM3Reranker(request.path("fbTerms").asInt(10), request.path("fbDocs").asInt(10),
+            (float) request.path("originalQueryWeight").asDouble(0.5), false,
+            request.path("rescoreCandidates").asBoolean(false));
+      }
+      return searcher;
+    });
+  }
+
+  public static void main(String[] argv) throws Exception {
+    Args args = new Args();
+    CmdLineParser parser = new CmdLineParser(args, ParserProperties.defaults().withUsageWidth(90));
+
+    try {
+      parser.parseArgument(argv);
+    } catch (CmdLineException e) {
+      System.err.println(e.getMessage());
+      parser.printUsage(System.err);
+      System.err.println("Example: SimpleSearchServer" + parser.printExample(OptionHandlerFilter.REQUIRED));
+      return;
+    }
+
+    final SimpleSearchServer server = new SimpleSearchServer(args);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        server.close();
+      } catch (IOException e) {
+        LOG.error("Unable to close server:", e);
+      }
+    }));
+    server.start();
+
+    // Keep the main thread alive; the server threads do the work.
+    while (true) {
+      TimeUnit.MINUTES.sleep(1);
+    }
+  }
+}
@@ -24,6 +24,7 @@ import io.anserini.rerank.ScoredDocuments;
 import io.anserini.rerank.lib.Rm3Reranker;
 import io.anserini.rerank.lib.ScoreTiesAdjusterReranker;
 import io.anserini.search.query.BagOfWordsQueryGenerator;
+import io.anserini.search.query.TweetIdRangeQuery;
 import io.anserini.util.AnalyzerUtils;
 import io.anserini.analysis.TweetAnalyzer;
 import org.apache.logging.log4j.LogManager;
@@ -31,7 +32,6 @@ import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
@@ -45,10 +45,19 @@ import org.apache.lucene.store.FSDirectory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SimpleSearcher implements Closeable {
   public static final Sort BREAK_SCORE_TIES_BY_DOCID =
@@ -58,11 +67,16 @@ public class SimpleSearcher implements Closeable {
           new SortField(TweetGenerator.StatusField.ID_LONG.name, SortField.Type.LONG, true));
   private static final Logger LOG = LogManager.getLogger(SimpleSearcher.class);
   private final IndexReader reader;
+  private final boolean ownsReader;
   private Similarity similarity;
   private Analyzer analyzer;
   private RerankerCascade cascade;
   private boolean searchtweets;
   private boolean isRerank;
+  private ExecutorService searchExecutor;
+  private SlicedIndexSearcher.Policy slicePolicy = SlicedIndexSearcher.Policy.SEGMENT;
+  // Immutable snapshot of the settings above, rebuilt by every setter and shared by concurrent searches.
+  private volatile SearchConfiguration configuration;
 
   protected class Result {
     public String docid;
@@ -78,6 +92,29 @@ public class SimpleSearcher implements Closeable {
     }
   }
 
+  /**
+   * Everything a search needs, frozen at the time it was created. The underlying {@link IndexSearcher} is shared by
+   * all queries run with this configuration, so it is only created once per change of settings.
+   */
+  private static final class SearchConfiguration {
+    private final IndexSearcher searcher;
+    private final Analyzer analyzer;
+    private final RerankerCascade cascade;
+    private final boolean searchtweets;
+    private final boolean isRerank;
+
+    private SearchConfiguration(IndexReader reader, ExecutorService searchExecutor, SlicedIndexSearcher.Policy slicePolicy,
+                                Similarity similarity, Analyzer analyzer, RerankerCascade cascade,
+                                boolean searchtweets, boolean isRerank) {
+      this.searcher = SlicedIndexSearcher.create(reader, searchExecutor, slicePolicy);
+      this.searcher.setSimilarity(similarity);
+      this.analyzer = analyzer;
+      this.cascade = cascade;
+      this.searchtweets = searchtweets;
+      this.isRerank = isRerank;
+    }
+  }
+
   public SimpleSearcher(String indexDir) throws IOException {
     Path indexPath = Paths.get(indexDir);
 
@@ -86,6 +123,23 @@ public class SimpleSearcher implements Closeable {
     }
 
     this.reader = DirectoryReader.open(FSDirectory.open(indexPath));
+    this.ownsReader = true;
+    this.similarity = new LMDirichletSimilarity(1000.0f);
+    this.analyzer = new EnglishAnalyzer();
+    this.searchtweets = false;
+    this.isRerank = false;
+    setDefaultReranker();
+  }
+
+  /**
+   * Creates a searcher over an already opened reader, so that several searchers with different settings can share
+   * one reader. Closing this searcher does not close the reader.
+   *
+   * @param reader index reader
+   */
+  SimpleSearcher(IndexReader reader) {
+    this.reader = reader;
+    this.ownsReader = false;
     this.similarity = new LMDirichletSimilarity(1000.0f);
     this.analyzer = new EnglishAnalyzer();
     this.searchtweets = false;
@@ -93,9 +147,28 @@ public class SimpleSearcher implements Closeable {
     setDefaultReranker();
   }
 
-  public void setSearchTweets(boolean flag) {
+  private synchronized void updateConfiguration() {
+    configuration = new SearchConfiguration(reader, searchExecutor, slicePolicy, similarity, analyzer, cascade,
+        searchtweets, isRerank);
+  }
+
+  /**
+   * Searches the slices of each query in parallel on {@code executor}. The executor can be shared with other
+   * searchers and is not shut down by {@link #close()}.
+   *
+   * @param executor executor, or null to search each query sequentially
+   * @param policy how segments are grouped into slices
+   */
+  public synchronized void setSearchExecutor(ExecutorService executor, SlicedIndexSearcher.Policy policy) {
+    this.searchExecutor = executor;
+    this.slicePolicy = policy;
+    updateConfiguration();
+  }
+
+  public synchronized void setSearchTweets(boolean flag) {
      this.searchtweets = flag;
      this.analyzer = flag? new TweetAnalyzer(true) : new EnglishAnalyzer();
+     updateConfiguration();
   }
 
   public void setRM3Reranker() {
@@ -106,50 +179,176 @@ public class SimpleSearcher implements Closeable {
     setRM3Reranker(fbTerms, fbDocs, originalQueryWeight, false);
   }
 
-  public void setDefaultReranker() {
+  public synchronized void setDefaultReranker() {
     isRerank = false;
     cascade = new RerankerCascade();
     cascade.add(new ScoreTiesAdjusterReranker());
+    updateConfiguration();
   }
 
   public void setRM3Reranker(int fbTerms, int fbDocs, float originalQueryWeight, boolean rm3_outputQuery) {
+    setRM3Reranker(fbTerms, fbDocs, originalQueryWeight, rm3_outputQuery, false);
+  }
+
+  public synchronized void setRM3Reranker(int fbTerms, int fbDocs, float originalQueryWeight, boolean rm3_outputQuery,
+                                          boolean rm3_rescoreCandidates) {
     isRerank = true;
     cascade = new RerankerCascade();
-    cascade.add(new Rm3Reranker(this.analyzer, LuceneDocumentGenerator.FIELD_BODY, fbTerms, fbDocs, originalQueryWeight, rm3_outputQuery));
+    cascade.add(new Rm3Reranker(this.analyzer, LuceneDocumentGenerator.FIELD_BODY, fbTerms, fbDocs, originalQueryWeight,
+        rm3_outputQuery, rm3_rescoreCandidates));
     cascade.add(new ScoreTiesAdjusterReranker());
+    updateConfiguration();
   }
 
-  public void setLMDirichletSimilarity(float mu) {
+  public synchronized void setLMDirichletSimilarity(float mu) {
     this.similarity = new LMDirichletSimilarity(mu);
+    updateConfiguration();
   }
 
-  public void setLMJelinekMercerSimilarity(float lambda) {
+  public synchronized void setLMJelinekMercerSimilarity(float lambda) {
     this.similarity = new LMJelinekMercerSimilarity(lambda);
+    updateConfiguration();
   }
 
-  public void setBM25Similarity(float k1, float b) {
+  public synchronized void setBM25Similarity(float k1, float b) {
     this.similarity = new BM25Similarity(k1, b);
+    updateConfiguration();
   }
 
-  public void setDFRSimilarity(float c) {
+  public synchronized void setDFRSimilarity(float c) {
     this.similarity = new DFRSimilarity(new BasicModelP(), new AfterEffectL(), new NormalizationH2(c));
+    updateConfiguration();
   }
 
-  public void setIBSimilarity(float c) {
+  public synchronized void setIBSimilarity(float c) {
     this.similarity = new IBSimilarity(new DistributionSPL(), new LambdaDF(), new NormalizationH2(c));
+    updateConfiguration();
   }
 
-  public void setF2ExpSimilarity(float s) {
+  public synchronized void setF2ExpSimilarity(float s) {
     this.similarity = new AxiomaticF2EXP(s);
+    updateConfiguration();
   }
 
-  public void setF2LogSimilarity(float s) {
+  public synchronized void setF2LogSimilarity(float s) {
     this.similarity = new AxiomaticF2LOG(s);
+    updateConfiguration();
   }
 
   @Override
   public void close() throws IOException {
-    reader.close();
+    if (ownsReader) {
+      reader.close();
+    }
+  }
+
+  /**
+   * Searches a batch of queries in parallel, all against the settings in effect when the method is called.
+   *
+   * @param queries queries
+   * @param k number of hits per query
+   * @param threads number of threads
+   * @return results keyed by the position of the query in {@code queries}
+   * @throws IOException if any of the queries fails
+   */
+  public Map<String, Result[]> batchSearch(List<String> queries, int k, int threads) throws IOException {
+    List<String> qids = new ArrayList<>(queries.size());
+    for (int i = 0; i < queries.size(); i++) {
+      qids.add(String.valueOf(i));
+    }
+    return batchSearch(queries, qids, k, threads);
+  }
+
+  /**
+   * Searches a batch of queries in parallel, all against the settings in effect when the method is called.
+   *
+   * @param queries queries
+   * @param qids unique query ids, one per query
+   * @param k number of hits per query
+   * @param threads number of threads
+   * @return results keyed by query id, in the order of the queries
+   * @throws IOException if any of the queries fails
+   */
+  public Map<String, Result[]> batchSearch(List<String> queries, List<String> qids, int k, int threads)
+      throws IOException {
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      return batchSearch(queries, qids, k, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Searches a batch of queries on an executor, all against the settings in effect when the method is called. The
+   * executor can be shared with other batches and is not shut down.
+   *
+   * @param queries queries
+   * @param qids unique query ids, one per query
+   * @param k number of hits per query
+   * @param executor executor, or null to search the queries sequentially
+   * @return results keyed by query id, in the order of the queries
+   * @throws IOException if any of the queries fails
+   */
+  public Map<String, Result[]> batchSearch(List<String> queries, List<String> qids, int k, ExecutorService executor)
+      throws IOException {
+    return batchSearch(queries, qids, k, -1, executor);
+  }
+
+  /**
+   * Searches a batch of queries on an executor, all against the settings in effect when the method is called. The
+   * executor can be shared with other batches and is not shut down.
+   *
+   * @param queries queries
+   * @param qids unique query ids, one per query
+   * @param k number of hits per query
+   * @param t time of the queries, only tweets posted up to it are returned when searching tweets; -1 for no bound
+   * @param executor executor, or null to search the queries sequentially
+   * @return results keyed by query id, in the order of the queries
+   * @throws IOException if any of the queries fails
+   */
+  public Map<String, Result[]> batchSearch(List<String> queries, List<String> qids, int k, long t,
+                                           ExecutorService executor) throws IOException {
+    if (queries.size() != qids.size()) {
+      throw new IllegalArgumentException("Number of queries and query ids must match.");
+    }
+    if (new HashSet<>(qids).size() != qids.size()) {
+      throw new IllegalArgumentException("Query ids must be unique.");
+    }
+
+    final SearchConfiguration config = configuration;
+    final Map<String, Result[]> results = new LinkedHashMap<>();
+    if (executor == null) {
+      for (int i = 0; i < queries.size(); i++) {
+        results.put(qids.get(i), search(config, queries.get(i), k, t));
+      }
+      return results;
+    }
+
+    final List<Future<Result[]>> futures = new ArrayList<>(queries.size());
+    for (String q : queries) {
+      futures.add(executor.submit(() -> search(config, q, k, t)));
+    }
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.put(qids.get(i), futures.get(i).get());
+        } catch (ExecutionException e) {
+          throw new IOException("Unable to search query " + qids.get(i) + ": " + queries.get(i), e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      // Preserve interrupt status
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while searching a batch of queries");
+    } finally {
+      // Queries still pending after a failure are not needed anymore
+      for (Future<Result[]> future : futures) {
+        future.cancel(true);
+      }
+    }
+
+    return results;
   }
 
   public Result[] search(String q) throws IOException {
@@ -161,24 +360,30 @@ public class SimpleSearcher implements Closeable {
   }
 
   public Result[] search(String q, int k, long t) throws IOException {
-    IndexSearcher searcher = new IndexSearcher(reader);
-    searcher.setSimilarity(similarity);
+    return search(configuration, q, k, t);
+  }
+
+  private Result[] search(SearchConfiguration config, String q, int k, long t) throws IOException {
+    IndexSearcher searcher = config.searcher;
+    Analyzer analyzer = config.analyzer;
+    boolean isRerank = config.isRerank;
     Query query = new BagOfWordsQueryGenerator().buildQuery(LuceneDocumentGenerator.FIELD_BODY, analyzer, q);
     List<String> queryTokens = AnalyzerUtils.tokenize(analyzer, q);
     
     SearchArgs searchArgs = new SearchArgs();
     searchArgs.arbitraryScoreTieBreak = false;
     searchArgs.hits = k;
-    searchArgs.searchtweets = searchtweets;
+    searchArgs.searchtweets = config.searchtweets;
 
     TopDocs rs = new TopDocs(0, new ScoreDoc[]{}, Float.NaN);
     RerankerContext context;
-    if (searchtweets) {
+    if (config.searchtweets) {
       if (t > 0) {
         // Do not consider the tweets with tweet ids that are beyond the queryTweetTime
         // <querytweettime> tag contains the timestamp of the query in terms of the
-        // chronologically nearest tweet id within the corpus
-        Query filter = LongPoint.newRangeQuery(TweetGenerator.StatusField.ID_LONG.name, 0L, t);
+        // chronologically nearest tweet id within the corpus. On indexes sorted by tweet id this is a docid range,
+        // so the tweets after the query time are never visited.
+        Query filter = new TweetIdRangeQuery(0L, t);
         BooleanQuery.Builder builder = new BooleanQuery.Builder();
         builder.add(filter, BooleanClause.Occur.FILTER);
         builder.add(query, BooleanClause.Occur.MUST);
@@ -194,7 +399,7 @@ public class SimpleSearcher implements Closeable {
         context = new RerankerContext<>(searcher, null, query, null, q, queryTokens, null, searchArgs);
     }
 
-    ScoredDocuments hits = cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context);
+    ScoredDocuments hits = config.cascade.run(ScoredDocuments.fromTopDocs(rs, searcher), context);
 
     Result[] results = new Result[hits.ids.length];
     for (int i = 0; i < hits.ids.length; i++) {
@@ -0,0 +1,149 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link IndexSearcher} that searches the slices of a single query concurrently on a (shared) executor. How the
+ * segments of the index are grouped into slices is given by a {@link Policy}. The calling thread blocks while its
+ * slices are searched, so when one executor is shared by several threads issuing queries (e.g., the runs of
+ * {@link SearchCollection} or the request threads of {@link SimpleSearchServer}), at most as many threads as the
+ * executor has are searching at any time, however many queries are in flight.
+ */
+public class SlicedIndexSearcher extends IndexSearcher {
+  public enum Policy {
+    /** One slice per segment. */
+    SEGMENT,
+    /** Small segments are grouped together so that each slice has a comparable amount of work. */
+    BALANCED,
+    /** One slice per shard, see {@link ShardedIndexSearcher}. */
+    SHARD;
+
+    public static Policy fromString(String name) {
+      try {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown slice policy: " + name);
+      }
+    }
+  }
+
+  // Same limits as Lucene uses for its own slicing in later versions.
+  private static final int MAX_DOCS_PER_SLICE = 250_000;
+  private static final int MAX_SEGMENTS_PER_SLICE = 5;
+
+  private final ExecutorService executor;
+  private final Policy policy;
+
+  /**
+   * Creates a searcher with the given slice policy.
+   *
+   * @param reader index reader
+   * @param executor executor on which the slices are searched, or null to search them sequentially
+   * @param policy slice policy
+   * @return searcher
+   */
+  public static SlicedIndexSearcher create(IndexReader reader, ExecutorService executor, Policy policy) {
+    switch (policy) {
+      case BALANCED:
+        return new BalancedIndexSearcher(reader, executor);
+      case SHARD:
+        return new ShardedIndexSearcher(reader, executor);
+      default:
+        return new SlicedIndexSearcher(reader, executor, Policy.SEGMENT);
+    }
+  }
+
+  /**
+   * Creates a searcher over another reader (e.g., an external index used by a reranker) that searches its slices
+   * the same way as {@code template}. The similarity is not copied.
+   *
+   * @param template searcher whose executor and slice policy are reused
+   * @param reader index reader
+   * @return searcher
+   */
+  public static IndexSearcher forReader(IndexSearcher template, IndexReader reader) {
+    if (template instanceof SlicedIndexSearcher) {
+      SlicedIndexSearcher sliced = (SlicedIndexSearcher) template;
+      return create(reader, sliced.executor, sliced.policy);
+    }
+    return new IndexSearcher(reader);
+  }
+
+  protected SlicedIndexSearcher(IndexReader reader, ExecutorService executor, Policy policy) {
+    super(reader, executor);
+    this.executor = executor;
+    this.policy = policy;
+  }
+
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Returns the executor on which the slices are searched. Rerankers can run their own per-query work on it, so that
+   * all the runs share the threads of {@code -searchThreads}. Tasks run on it must not wait for other tasks of it.
+   *
+   * @return executor, or null if the slices are searched sequentially
+   */
+  public ExecutorService getSliceExecutor() {
+    return executor;
+  }
+
+  /*
+   * Note that slices() is called from the IndexSearcher constructor, so the overrides below must not depend on
+   * instance fields; this is why every policy has its own class.
+   */
+  private static final class BalancedIndexSearcher extends SlicedIndexSearcher {
+    private BalancedIndexSearcher(IndexReader reader, ExecutorService executor) {
+      super(reader, executor, Policy.BALANCED);
+    }
+
+    @Override
+    protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+      // Largest segments first: a big segment gets a slice of its own, the small ones are packed together.
+      List<LeafReaderContext> sorted = new ArrayList<>(leaves);
+      Collections.sort(sorted, (a, b) -> Integer.compare(b.reader().maxDoc(), a.reader().maxDoc()));
+
+      List<LeafSlice> slices = new ArrayList<>();
+      List<LeafReaderContext> group = new ArrayList<>();
+      long docs = 0;
+      for (LeafReaderContext leaf : sorted) {
+        group.add(leaf);
+        docs += leaf.reader().maxDoc();
+        if (docs > MAX_DOCS_PER_SLICE || group.size() >= MAX_SEGMENTS_PER_SLICE) {
+          slices.add(new LeafSlice(group.toArray(new LeafReaderContext[0])));
+          group.clear();
+          docs = 0;
+        }
+      }
+      if (!group.isEmpty()) {
+        slices.add(new LeafSlice(group.toArray(new LeafReaderContext[0])));
+      }
+      return slices.toArray(new LeafSlice[0]);
+    }
+  }
+}
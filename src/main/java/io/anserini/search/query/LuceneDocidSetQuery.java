@@ -0,0 +1,125 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search.query;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+import java.util.Arrays;
+
+/*
+ * Matches a fixed set of documents given by their Lucene docids in the searcher's reader, e.g., the candidates of a
+ * first-stage retrieval. As a FILTER clause next to a scoring query it restricts scoring to these documents: the
+ * conjunction is led by this sparse iterator and only advances the scoring clauses to the listed docids, while the
+ * scores themselves are those the query would give over the whole index.
+ *
+ * The docids are only meaningful for the reader they come from, so the query is never cached.
+ */
+public class LuceneDocidSetQuery extends Query {
+  private final int[] docids; // sorted, distinct
+
+  public LuceneDocidSetQuery(int[] docids) {
+    int[] sorted = docids.clone();
+    Arrays.sort(sorted);
+    int size = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[size++] = sorted[i];
+      }
+    }
+    this.docids = Arrays.copyOf(sorted, size);
+  }
+
+  // Index of the first docid >= doc.
+  private int lowerBound(int doc) {
+    int i = Arrays.binarySearch(docids, doc);
+    return i >= 0 ? i : -i - 1;
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) {
+    return new ConstantScoreWeight(this, boost) {
+      @Override
+      public Scorer scorer(LeafReaderContext context) {
+        final int docBase = context.docBase;
+        final int maxDoc = context.reader().maxDoc();
+        final int from = lowerBound(docBase);
+        final int to = lowerBound(docBase + maxDoc);
+        if (from >= to) {
+          return null;
+        }
+        return new ConstantScoreScorer(this, score(), new DocIdSetIterator() {
+          private int index = from - 1;
+          private int doc = -1;
+
+          @Override
+          public int docID() {
+            return doc;
+          }
+
+          @Override
+          public int nextDoc() {
+            index++;
+            return doc = index < to ? docids[index] - docBase : NO_MORE_DOCS;
+          }
+
+          @Override
+          public int advance(int target) {
+            // Also covers NO_MORE_DOCS, which would overflow docBase + target
+            if (target >= maxDoc) {
+              index = to;
+              return doc = NO_MORE_DOCS;
+            }
+            index = Math.max(index + 1, lowerBound(docBase + target));
+            return doc = index < to ? docids[index] - docBase : NO_MORE_DOCS;
+          }
+
+          @Override
+          public long cost() {
+            return to - from;
+          }
+        });
+      }
+
+      @Override
+      public boolean isCacheable(LeafReaderContext context) {
+        return false;
+      }
+    };
+  }
+
+  @Override
+  public String toString(String field) {
+    return "LuceneDocidSetQuery(" + docids.length + " docs)";
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return sameClassAs(other) && Arrays.equals(docids, ((LuceneDocidSetQuery) other).docids);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * classHash() + Arrays.hashCode(docids);
+  }
+}
@@ -0,0 +1,466 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search.query;
+
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.ArrayUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * Sequential Dependence Model evaluated by a single scorer. Produces the same scores as the BooleanQuery of term
+ * queries, ordered SpanNearQuery windows and unordered SpanNearQuery windows built by SdmQueryGenerator, but the
+ * positions of every query term are read only once per document and shared by the unigram, ordered window and
+ * unordered window components.
+ */
+public class SdmQuery extends Query {
+  public static final int ORDERED_WINDOW_SLOP = 1;
+  public static final int UNORDERED_WINDOW_SLOP = 8;
+
+  private final String field;
+  private final List<String> tokens;
+  private final float termWeight;
+  private final float orderWindowWeight;
+  private final float unorderWindowWeight;
+
+  public SdmQuery(String field, List<String> tokens, float termWeight, float orderWindowWeight,
+                  float unorderWindowWeight) {
+    this.field = field;
+    this.tokens = new ArrayList<>(tokens);
+    this.termWeight = termWeight;
+    this.orderWindowWeight = orderWindowWeight;
+    this.unorderWindowWeight = unorderWindowWeight;
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  public List<String> getTokens() {
+    return tokens;
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+    return new SdmWeight(searcher, needsScores, boost);
+  }
+
+  @Override
+  public String toString(String defaultField) {
+    StringBuilder sb = new StringBuilder("sdm(");
+    for (int i = 0; i < tokens.size(); i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      if (!field.equals(defaultField)) {
+        sb.append(field).append(':');
+      }
+      sb.append(tokens.get(i));
+    }
+    sb.append(")^").append(termWeight).append('/').append(orderWindowWeight).append('/').append(unorderWindowWeight);
+    return sb.toString();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!sameClassAs(other)) {
+      return false;
+    }
+    SdmQuery that = (SdmQuery) other;
+    return field.equals(that.field) && tokens.equals(that.tokens) &&
+        Float.compare(termWeight, that.termWeight) == 0 &&
+        Float.compare(orderWindowWeight, that.orderWindowWeight) == 0 &&
+        Float.compare(unorderWindowWeight, that.unorderWindowWeight) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = classHash();
+    h = 31 * h + field.hashCode();
+    h = 31 * h + tokens.hashCode();
+    h = 31 * h + Float.floatToIntBits(termWeight);
+    h = 31 * h + Float.floatToIntBits(orderWindowWeight);
+    h = 31 * h + Float.floatToIntBits(unorderWindowWeight);
+    return h;
+  }
+
+  private final class SdmWeight extends Weight {
+    private final Similarity similarity;
+    // Distinct terms of the query, and for every query token the index of its term.
+    private final Term[] terms;
+    private final int[] tokenTerms;
+    private final Similarity.SimWeight[] termSimWeights;
+    private final Similarity.SimWeight[] orderedSimWeights;
+    private final Similarity.SimWeight[] unorderedSimWeights;
+
+    private SdmWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+      super(SdmQuery.this);
+      this.similarity = searcher.getSimilarity(needsScores);
+
+      Map<String, Integer> termIds = new TreeMap<>();
+      tokenTerms = new int[tokens.size()];
+      for (int i = 0; i < tokens.size(); i++) {
+        Integer id = termIds.get(tokens.get(i));
+        if (id == null) {
+          id = termIds.size();
+          termIds.put(tokens.get(i), id);
+        }
+        tokenTerms[i] = id;
+      }
+      terms = new Term[termIds.size()];
+      for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+        terms[entry.getValue()] = new Term(field, entry.getKey());
+      }
+
+      IndexReaderContext topContext = searcher.getTopReaderContext();
+      CollectionStatistics collectionStats = searcher.collectionStatistics(field);
+      TermStatistics[] termStats = new TermStatistics[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+        TermContext termContext = TermContext.build(topContext, terms[i]);
+        if (termContext.docFreq() > 0) {
+          termStats[i] = searcher.termStatistics(terms[i], termContext);
+        }
+      }
+
+      // A single token is not wrapped with the term weight by SdmQueryGenerator.
+      float unigramBoost = tokens.size() == 1 ? boost : boost * termWeight;
+      termSimWeights = new Similarity.SimWeight[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+        if (termStats[i] != null) {
+          termSimWeights[i] = similarity.computeWeight(unigramBoost, collectionStats, termStats[i]);
+        }
+      }
+
+      int numWindows = Math.max(tokens.size() - 1, 0);
+      orderedSimWeights = new Similarity.SimWeight[numWindows];
+      unorderedSimWeights = new Similarity.SimWeight[numWindows];
+      for (int i = 0; i < numWindows; i++) {
+        int first = tokenTerms[i];
+        int second = tokenTerms[i + 1];
+        if (termStats[first] == null || termStats[second] == null) {
+          continue;
+        }
+        // Span weights see the distinct terms of the window in term order.
+        TreeMap<Term, TermStatistics> windowStats = new TreeMap<>();
+        windowStats.put(terms[first], termStats[first]);
+        windowStats.put(terms[second], termStats[second]);
+        TermStatistics[] stats = windowStats.values().toArray(new TermStatistics[0]);
+        orderedSimWeights[i] = similarity.computeWeight(boost * orderWindowWeight, collectionStats, stats);
+        unorderedSimWeights[i] = similarity.computeWeight(boost * unorderWindowWeight, collectionStats, stats);
+      }
+    }
+
+    @Override
+    public void extractTerms(Set<Term> set) {
+      set.addAll(Arrays.asList(terms));
+    }
+
+    @Override
+    public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+      SdmScorer scorer = scorer(context);
+      if (scorer != null && scorer.iterator().advance(doc) == doc) {
+        return Explanation.match(scorer.score(), "sdm, sum of:",
+            Explanation.match(scorer.unigramScore, "unigram score"),
+            Explanation.match(scorer.orderedScore, "ordered window score"),
+            Explanation.match(scorer.unorderedScore, "unordered window score"));
+      }
+      return Explanation.noMatch("no matching term");
+    }
+
+    @Override
+    public SdmScorer scorer(LeafReaderContext context) throws IOException {
+      LeafReader reader = context.reader();
+      Terms fieldTerms = reader.terms(field);
+      if (fieldTerms == null) {
+        return null;
+      }
+      if (!fieldTerms.hasPositions()) {
+        throw new IllegalStateException("field \"" + field + "\" was indexed without position data; " +
+            "cannot run SdmQuery");
+      }
+
+      PostingsEnum[] postings = new PostingsEnum[terms.length];
+      boolean any = false;
+      for (int i = 0; i < terms.length; i++) {
+        if (termSimWeights[i] != null) {
+          postings[i] = reader.postings(terms[i], PostingsEnum.POSITIONS);
+          any |= postings[i] != null;
+        }
+      }
+      if (!any) {
+        return null;
+      }
+
+      Similarity.SimScorer[] termScorers = new Similarity.SimScorer[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+        if (postings[i] != null) {
+          termScorers[i] = similarity.simScorer(termSimWeights[i], context);
+        }
+      }
+      Similarity.SimScorer[] orderedScorers = new Similarity.SimScorer[orderedSimWeights.length];
+      Similarity.SimScorer[] unorderedScorers = new Similarity.SimScorer[unorderedSimWeights.length];
+      for (int i = 0; i < orderedSimWeights.length; i++) {
+        if (postings[tokenTerms[i]] != null && postings[tokenTerms[i + 1]] != null) {
+          orderedScorers[i] = similarity.simScorer(orderedSimWeights[i], context);
+          unorderedScorers[i] = similarity.simScorer(unorderedSimWeights[i], context);
+        }
+      }
+
+      return new SdmScorer(this, postings, tokenTerms, termScorers, orderedScorers, unorderedScorers);
+    }
+
+    @Override
+    public boolean isCacheable(LeafReaderContext ctx) {
+      return true;
+    }
+  }
+
+  private static final class SdmScorer extends Scorer {
+    private final PostingsEnum[] postings;
+    private final int[] tokenTerms;
+    private final Similarity.SimScorer[] termScorers;
+    private final Similarity.SimScorer[] orderedScorers;
+    private final Similarity.SimScorer[] unorderedScorers;
+    private final DocIdSetIterator iterator;
+
+    // Positions of every term in the current document, read at most once per document.
+    private final int[][] positions;
+    private final int[] numPositions;
+    private final int[] positionsDoc;
+
+    private int doc = -1;
+    private int scoredDoc = -1;
+    private float score;
+    private float unigramScore;
+    private float orderedScore;
+    private float unorderedScore;
+
+    private SdmScorer(Weight weight, PostingsEnum[] postings, int[] tokenTerms, Similarity.SimScorer[] termScorers,
+                      Similarity.SimScorer[] orderedScorers, Similarity.SimScorer[] unorderedScorers) {
+      super(weight);
+      this.postings = postings;
+      this.tokenTerms = tokenTerms;
+      this.termScorers = termScorers;
+      this.orderedScorers = orderedScorers;
+      this.unorderedScorers = unorderedScorers;
+      this.positions = new int[postings.length][];
+      this.numPositions = new int[postings.length];
+      this.positionsDoc = new int[postings.length];
+      Arrays.fill(positionsDoc, -1);
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = new int[16];
+      }
+
+      long cost = 0;
+      for (PostingsEnum p : postings) {
+        if (p != null) {
+          cost += p.cost();
+        }
+      }
+      final long totalCost = cost;
+
+      // Disjunction over the distinct query terms: queries are short, so a linear scan is cheaper than a heap.
+      this.iterator = new DocIdSetIterator() {
+        @Override
+        public int docID() {
+          return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+          return advance(doc + 1);
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+          int min = NO_MORE_DOCS;
+          for (PostingsEnum p : SdmScorer.this.postings) {
+            if (p == null) {
+              continue;
+            }
+            int d = p.docID();
+            if (d < target) {
+              d = p.advance(target);
+            }
+            if (d < min) {
+              min = d;
+            }
+          }
+          return doc = min;
+        }
+
+        @Override
+        public long cost() {
+          return totalCost;
+        }
+      };
+    }
+
+    private boolean matches(int term) {
+      return postings[term] != null && postings[term].docID() == doc;
+    }
+
+    private void loadPositions(int term) throws IOException {
+      if (positionsDoc[term] == doc) {
+        return;
+      }
+      PostingsEnum p = postings[term];
+      int freq = p.freq();
+      positions[term] = ArrayUtil.grow(positions[term], freq);
+      for (int i = 0; i < freq; i++) {
+        positions[term][i] = p.nextPosition();
+      }
+      numPositions[term] = freq;
+      positionsDoc[term] = doc;
+    }
+
+    /*
+     * Sloppy frequency of an ordered SpanNearQuery over two terms: every occurrence of the first term is paired with
+     * the next occurrence of the second term after it, as NearSpansOrdered does.
+     */
+    private static float orderedFreq(int[] first, int numFirst, int[] second, int numSecond,
+                                     Similarity.SimScorer docScorer) {
+      float freq = 0.0f;
+      int j = 0;
+      for (int i = 0; i < numFirst; i++) {
+        int start = first[i] + 1;
+        while (j < numSecond && second[j] < start) {
+          j++;
+        }
+        if (j == numSecond) {
+          break;
+        }
+        int width = second[j] - start;
+        if (width <= ORDERED_WINDOW_SLOP) {
+          freq += docScorer.computeSlopFactor(width);
+        }
+      }
+      return freq;
+    }
+
+    /*
+     * Sloppy frequency of an unordered SpanNearQuery over two terms: walks both position lists, always advancing the
+     * one that starts first (ties keep the current one in front), as NearSpansUnordered does.
+     */
+    private static float unorderedFreq(int[] first, int numFirst, int[] second, int numSecond,
+                                       Similarity.SimScorer docScorer) {
+      float freq = 0.0f;
+      int i = 0;
+      int j = 0;
+      boolean firstOnTop = !(second[0] < first[0]);
+      int maxEnd = Math.max(first[0], second[0]) + 1;
+      while (true) {
+        int width = maxEnd - (firstOnTop ? first[i] : second[j]) - 2;
+        if (width <= UNORDERED_WINDOW_SLOP) {
+          freq += docScorer.computeSlopFactor(width);
+        }
+        if (firstOnTop) {
+          if (++i == numFirst) {
+            break;
+          }
+          maxEnd = Math.max(maxEnd, first[i] + 1);
+          firstOnTop = !(second[j] < first[i]);
+        } else {
+          if (++j == numSecond) {
+            break;
+          }
+          maxEnd = Math.max(maxEnd, second[j] + 1);
+          firstOnTop = first[i] < second[j];
+        }
+      }
+      return freq;
+    }
+
+    private void computeScore() throws IOException {
+      double unigrams = 0.0;
+      for (int token = 0; token < tokenTerms.length; token++) {
+        int term = tokenTerms[token];
+        if (matches(term)) {
+          unigrams += termScorers[term].score(doc, postings[term].freq());
+        }
+      }
+
+      double ordered = 0.0;
+      double unordered = 0.0;
+      for (int window = 0; window < orderedScorers.length; window++) {
+        int first = tokenTerms[window];
+        int second = tokenTerms[window + 1];
+        if (orderedScorers[window] == null || !matches(first) || !matches(second)) {
+          continue;
+        }
+        loadPositions(first);
+        loadPositions(second);
+
+        float orderedFreq = orderedFreq(positions[first], numPositions[first],
+            positions[second], numPositions[second], orderedScorers[window]);
+        if (orderedFreq > 0) {
+          ordered += orderedScorers[window].score(doc, orderedFreq);
+        }
+        float unorderedFreq = unorderedFreq(positions[first], numPositions[first],
+            positions[second], numPositions[second], unorderedScorers[window]);
+        if (unorderedFreq > 0) {
+          unordered += unorderedScorers[window].score(doc, unorderedFreq);
+        }
+      }
+
+      unigramScore = (float) unigrams;
+      orderedScore = (float) ordered;
+      unorderedScore = (float) unordered;
+      score = (float) (unigrams + ordered + unordered);
+      scoredDoc = doc;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public float score() throws IOException {
+      if (scoredDoc != doc) {
+        computeScore();
+      }
+      return score;
+    }
+
+    @Override
+    public DocIdSetIterator iterator() {
+      return iterator;
+    }
+  }
+}
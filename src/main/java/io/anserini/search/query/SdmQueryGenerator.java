@@ -81,4 +81,12 @@ public class SdmQueryGenerator extends QueryGenerator {
     
     return builder.build();
   }
+
+  /*
+  * Sequential Dependency Model evaluated by a single fused scorer, see SdmQuery
+  */
+  public Query buildFusedQuery(String field, Analyzer analyzer, String queryText) {
+    List<String> tokens = AnalyzerUtils.tokenize(analyzer, queryText);
+    return new SdmQuery(field, tokens, termWeight, orderWindowWeight, unorderWindowWeight);
+  }
 }
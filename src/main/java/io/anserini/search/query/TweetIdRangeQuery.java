@@ -0,0 +1,206 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search.query;
+
+import io.anserini.index.generator.TweetGenerator;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+
+/*
+ * Matches the tweets whose id is within [lower, upper], e.g., all tweets posted up to the query time. On segments
+ * sorted by ascending tweet id (IndexCollection -tweet.sortById) these tweets are one contiguous range of docids,
+ * found with a binary search over the id doc values; the query then iterates that range only, so a conjunction with
+ * it stops at the last tweet before the query time instead of scoring every later tweet, and the point index is not
+ * read at all. Tweets without an id never match, as with the LongPoint range query that other segments fall back to,
+ * so results are the same on any index.
+ */
+public class TweetIdRangeQuery extends Query {
+  private final String field;
+  private final long lower;
+  private final long upper;
+
+  public TweetIdRangeQuery(long lower, long upper) {
+    this(TweetGenerator.StatusField.ID_LONG.name, lower, upper);
+  }
+
+  public TweetIdRangeQuery(String field, long lower, long upper) {
+    this.field = field;
+    this.lower = lower;
+    this.upper = upper;
+  }
+
+  /**
+   * Returns whether the docids of a segment are in ascending order of the given field.
+   *
+   * @param reader segment reader
+   * @param field numeric doc values field
+   * @return true if the segment is sorted by {@code field}
+   */
+  public static boolean isSortedBy(LeafReader reader, String field) {
+    return getSortField(reader, field) != null;
+  }
+
+  // The index sort of a segment if it sorts by ascending values of the field first, null otherwise.
+  private static SortField getSortField(LeafReader reader, String field) {
+    Sort sort = reader.getMetaData().getSort();
+    if (sort == null || sort.getSort().length == 0) {
+      return null;
+    }
+    SortField first = sort.getSort()[0];
+    return field.equals(first.getField()) && first.getType() == SortField.Type.LONG && !first.getReverse() ?
+        first : null;
+  }
+
+  /*
+   * Values of a segment sorted by the field, as they were compared by the index sort: documents without a value sort
+   * as the missing value of the sort. Doc values iterators only go forward, so the iterator is reused while the probes
+   * of a binary search move forward and a new one is only pulled when a probe goes back.
+   */
+  private static final class SortedValues {
+    private final LeafReader reader;
+    private final String field;
+    private final long missingValue;
+    private NumericDocValues values;
+
+    private SortedValues(LeafReader reader, String field, SortField sortField) {
+      this.reader = reader;
+      this.field = field;
+      this.missingValue = sortField.getMissingValue() == null ? 0L : (Long) sortField.getMissingValue();
+    }
+
+    private long get(int doc) throws IOException {
+      if (values == null || doc <= values.docID()) {
+        values = DocValues.getNumeric(reader, field);
+      }
+      return values.advanceExact(doc) ? values.longValue() : missingValue;
+    }
+
+    // First docid in [from, maxDoc) whose value is >= value, or maxDoc if there is none.
+    private int firstDocAtLeast(int from, long value) throws IOException {
+      int lo = from;
+      int hi = reader.maxDoc();
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (get(mid) < value) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+  }
+
+  // The documents of [from, to) that have a value.
+  private static DocIdSetIterator withValues(NumericDocValues values, int from, int to) {
+    return new DocIdSetIterator() {
+      private int doc = -1;
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        int min = Math.max(target, from);
+        if (min >= to) {
+          return doc = NO_MORE_DOCS;
+        }
+        int next = values.docID() >= min ? values.docID() : values.advance(min);
+        return doc = next >= to ? NO_MORE_DOCS : next;
+      }
+
+      @Override
+      public long cost() {
+        return to - from;
+      }
+    };
+  }
+
+  @Override
+  public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+    final Weight fallback = LongPoint.newRangeQuery(field, lower, upper).createWeight(searcher, false, boost);
+    return new ConstantScoreWeight(this, boost) {
+      @Override
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        LeafReader reader = context.reader();
+        SortField sortField = getSortField(reader, field);
+        if (sortField == null) {
+          return fallback.scorer(context);
+        }
+        if (lower > upper) {
+          return null;
+        }
+        SortedValues values = new SortedValues(reader, field, sortField);
+        int from = values.firstDocAtLeast(0, lower);
+        int to = upper == Long.MAX_VALUE ? reader.maxDoc() : values.firstDocAtLeast(from, upper + 1);
+        if (from >= to) {
+          return null;
+        }
+        return new ConstantScoreScorer(this, score(), withValues(DocValues.getNumeric(reader, field), from, to));
+      }
+
+      @Override
+      public boolean isCacheable(LeafReaderContext context) {
+        return DocValues.isCacheable(context, field) && fallback.isCacheable(context);
+      }
+    };
+  }
+
+  @Override
+  public String toString(String defaultField) {
+    return (field.equals(defaultField) ? "" : field + ":") + "[" + lower + " TO " + upper + "]";
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!sameClassAs(other)) {
+      return false;
+    }
+    TweetIdRangeQuery that = (TweetIdRangeQuery) other;
+    return field.equals(that.field) && lower == that.lower && upper == that.upper;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = classHash();
+    h = 31 * h + field.hashCode();
+    h = 31 * h + Long.hashCode(lower);
+    h = 31 * h + Long.hashCode(upper);
+    return h;
+  }
+}
@@ -20,6 +20,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import io.anserini.collection.WashingtonPostCollection;
+import io.anserini.index.DocidLookup;
 import io.anserini.index.IndexUtils;
 import io.anserini.index.generator.LuceneDocumentGenerator;
 import io.anserini.index.generator.WapoGenerator;
@@ -186,17 +187,11 @@ public class NewsBackgroundLinkingTopicReader extends TopicReader<Integer> {
   
   
   public static int convertDocidToLuceneDocid(IndexReader reader, String docid) throws IOException {
-    IndexSearcher searcher = new IndexSearcher(reader);
-    
-    Query q = new TermQuery(new Term(LuceneDocumentGenerator.FIELD_ID, docid));
-    TopDocs rs = searcher.search(q, 1);
-    ScoreDoc[] hits = rs.scoreDocs;
-    
-    if (hits == null) {
+    int luceneDocid = DocidLookup.get(reader).getLuceneDocid(docid);
+    if (luceneDocid < 0) {
       throw new RuntimeException("Docid not found!");
     }
-    
-    return hits[0].doc;
+    return luceneDocid;
   }
   
   private static WashingtonPostCollection.Document.WashingtonPostObject getWapoObj(String record) {
@@ -0,0 +1,232 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.util;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.InPlaceMergeSorter;
+import org.apache.lucene.util.IntroSelector;
+
+import java.util.List;
+
+/**
+ * Sparse feature vector over the terms of a {@link TermOrdinals} dictionary, stored as parallel arrays of term
+ * ordinals and weights. This is the primitive counterpart of {@link FeatureVector} for relevance feedback, where
+ * vectors are built, pruned, normalized and combined for every feedback document of every query: none of these
+ * operations hashes or allocates per term.
+ *
+ * <p>Each term occurs at most once in a vector. Terms tied in weight are ordered by term, so that pruning does not
+ * depend on the order in which terms were added.</p>
+ */
+public final class OrdinalFeatureVector {
+  private int[] ords;
+  private float[] weights;
+  private int size;
+
+  public OrdinalFeatureVector() {
+    this(16);
+  }
+
+  public OrdinalFeatureVector(int capacity) {
+    this.ords = new int[Math.max(1, capacity)];
+    this.weights = new float[ords.length];
+  }
+
+  /**
+   * Appends a term that is not in this vector yet.
+   *
+   * @param ord ordinal of the term
+   * @param weight weight
+   */
+  public void add(int ord, float weight) {
+    if (size == ords.length) {
+      ords = ArrayUtil.grow(ords, size + 1);
+      weights = ArrayUtil.grow(weights, size + 1);
+    }
+    ords[size] = ord;
+    weights[size] = weight;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the ordinal of the i-th term of this vector.
+   *
+   * @param i index, in [0, size())
+   * @return term ordinal
+   */
+  public int ord(int i) {
+    return ords[i];
+  }
+
+  /**
+   * Returns the weight of the i-th term of this vector.
+   *
+   * @param i index, in [0, size())
+   * @return weight
+   */
+  public float weight(int i) {
+    return weights[i];
+  }
+
+  public double computeL1Norm() {
+    double norm = 0.0;
+    for (int i = 0; i < size; i++) {
+      norm += Math.abs(weights[i]);
+    }
+    return norm;
+  }
+
+  public OrdinalFeatureVector scaleToUnitL1Norm() {
+    double norm = computeL1Norm();
+    for (int i = 0; i < size; i++) {
+      weights[i] = (float) (weights[i] / norm);
+    }
+    return this;
+  }
+
+  /**
+   * Keeps the {@code k} terms with the largest weights, which end up sorted by decreasing weight. The terms are
+   * selected in linear time and only the kept ones are sorted.
+   *
+   * @param k number of terms to keep
+   * @param terms dictionary of the terms, to break ties
+   * @return this vector
+   */
+  public OrdinalFeatureVector pruneToSize(int k, TermOrdinals terms) {
+    k = Math.min(k, size);
+    if (k < size) {
+      new IntroSelector() {
+        private int pivotOrd;
+        private float pivotWeight;
+
+        @Override
+        protected void setPivot(int i) {
+          pivotOrd = ords[i];
+          pivotWeight = weights[i];
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+          return compareEntries(pivotWeight, pivotOrd, weights[j], ords[j], terms);
+        }
+
+        @Override
+        protected void swap(int i, int j) {
+          OrdinalFeatureVector.this.swap(i, j);
+        }
+      }.select(0, size, k);
+      size = k;
+    }
+
+    new InPlaceMergeSorter() {
+      @Override
+      protected int compare(int i, int j) {
+        return compareEntries(weights[i], ords[i], weights[j], ords[j], terms);
+      }
+
+      @Override
+      protected void swap(int i, int j) {
+        OrdinalFeatureVector.this.swap(i, j);
+      }
+    }.sort(0, size);
+    return this;
+  }
+
+  private static int compareEntries(float weight1, int ord1, float weight2, int ord2, TermOrdinals terms) {
+    int cmp = Float.compare(weight2, weight1);
+    return cmp != 0 ? cmp : terms.compare(ord1, ord2);
+  }
+
+  private void swap(int i, int j) {
+    int ord = ords[i];
+    ords[i] = ords[j];
+    ords[j] = ord;
+    float weight = weights[i];
+    weights[i] = weights[j];
+    weights[j] = weight;
+  }
+
+  /**
+   * Builds the vector of term counts of a list of terms, e.g., of a query.
+   *
+   * @param list terms
+   * @param terms dictionary to add the terms to
+   * @return term counts
+   */
+  public static OrdinalFeatureVector fromTerms(List<String> list, TermOrdinals terms) {
+    OrdinalFeatureVector f = new OrdinalFeatureVector(list.size());
+    for (String t : list) {
+      int ord = terms.add(t);
+      int i = 0;
+      while (i < f.size && f.ords[i] != ord) {
+        i++;
+      }
+      if (i < f.size) {
+        f.weights[i] += 1.0f;
+      } else {
+        f.add(ord, 1.0f);
+      }
+    }
+    return f;
+  }
+
+  /**
+   * Combines two vectors as {@code xWeight * x + (1 - xWeight) * y}; the terms of x come first, then the terms that
+   * are only in y.
+   *
+   * @param x first vector
+   * @param y second vector
+   * @param xWeight weight of the first vector
+   * @param numTerms number of terms of the dictionary of the vectors
+   * @return combination of the vectors
+   */
+  public static OrdinalFeatureVector interpolate(OrdinalFeatureVector x, OrdinalFeatureVector y, float xWeight,
+                                                 int numTerms) {
+    float[] yWeights = new float[numTerms];
+    boolean[] inY = new boolean[numTerms];
+    for (int i = 0; i < y.size; i++) {
+      yWeights[y.ords[i]] = y.weights[i];
+      inY[y.ords[i]] = true;
+    }
+
+    OrdinalFeatureVector z = new OrdinalFeatureVector(x.size + y.size);
+    for (int i = 0; i < x.size; i++) {
+      int ord = x.ords[i];
+      z.add(ord, (float) (xWeight * x.weights[i] + (1.0 - xWeight) * yWeights[ord]));
+      inY[ord] = false;
+    }
+    for (int i = 0; i < y.size; i++) {
+      int ord = y.ords[i];
+      if (inY[ord]) {
+        z.add(ord, (float) ((1.0 - xWeight) * y.weights[i]));
+      }
+    }
+    return z;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      b.append(weights[i]).append(' ').append(ords[i]).append('\n');
+    }
+    return b.toString();
+  }
+}
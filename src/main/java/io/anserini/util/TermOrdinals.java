@@ -0,0 +1,108 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.util;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+
+/**
+ * Dictionary that numbers terms 0, 1, 2, ... in order of first occurrence, so that feedback computations over many
+ * document vectors (see {@link OrdinalFeatureVector}) can work on ints instead of strings. Terms are added as the
+ * {@link BytesRef}s of a {@code TermsEnum}, without decoding them; a term is decoded to a string at most once, when
+ * {@link #term(int)} is first called for it.
+ *
+ * <p>A dictionary is meant to live for a single query and is not thread-safe.</p>
+ */
+public final class TermOrdinals {
+  private final BytesRefHash hash = new BytesRefHash();
+  private final BytesRef scratch1 = new BytesRef();
+  private final BytesRef scratch2 = new BytesRef();
+  private String[] strings = new String[16];
+
+  /**
+   * Adds a term if it is not in the dictionary yet. New terms get ordinal {@code size() - 1}.
+   *
+   * @param term term
+   * @return ordinal of the term
+   */
+  public int add(BytesRef term) {
+    int ord = hash.add(term);
+    return ord >= 0 ? ord : -ord - 1;
+  }
+
+  /**
+   * Adds a term if it is not in the dictionary yet.
+   *
+   * @param term term
+   * @return ordinal of the term
+   */
+  public int add(String term) {
+    int ord = add(new BytesRef(term));
+    if (ord >= strings.length) {
+      strings = ArrayUtil.grow(strings, ord + 1);
+    }
+    strings[ord] = term;
+    return ord;
+  }
+
+  /**
+   * Returns the ordinal of a term.
+   *
+   * @param term term
+   * @return ordinal of the term, or -1 if it is not in the dictionary
+   */
+  public int find(String term) {
+    return hash.find(new BytesRef(term));
+  }
+
+  /**
+   * Returns the number of terms.
+   *
+   * @return number of terms
+   */
+  public int size() {
+    return hash.size();
+  }
+
+  /**
+   * Returns a term as a string.
+   *
+   * @param ord ordinal of the term
+   * @return term
+   */
+  public String term(int ord) {
+    if (ord >= strings.length) {
+      strings = ArrayUtil.grow(strings, ord + 1);
+    }
+    if (strings[ord] == null) {
+      strings[ord] = hash.get(ord, scratch1).utf8ToString();
+    }
+    return strings[ord];
+  }
+
+  /**
+   * Compares two terms in {@link BytesRef} order, i.e., in Unicode code point order.
+   *
+   * @param ord1 ordinal of the first term
+   * @param ord2 ordinal of the second term
+   * @return negative, zero or positive as the first term sorts before, with or after the second one
+   */
+  public int compare(int ord1, int ord2) {
+    return hash.get(ord1, scratch1).compareTo(hash.get(ord2, scratch2));
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DocidLookupTest extends LuceneTestCase {
+  private static final String ID = LuceneDocumentGenerator.FIELD_ID;
+
+  private static void addDocument(IndexWriter writer, String docid) throws Exception {
+    Document doc = new Document();
+    doc.add(new StringField(ID, docid, Field.Store.YES));
+    writer.addDocument(doc);
+  }
+
+  @Test
+  public void testLookupMatchesTermQuery() throws Exception {
+    Path indexPath = createTempDir();
+    Directory dir = FSDirectory.open(indexPath);
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()));
+    for (int i = 0; i < 50; i++) {
+      addDocument(writer, "doc" + ((i * 7) % 50));
+      if (i % 20 == 19) {
+        writer.commit();
+      }
+    }
+    addDocument(writer, "doc3");
+    addDocument(writer, "deleted");
+    writer.deleteDocuments(new Term(ID, "deleted"));
+    writer.commit();
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+    // Nothing is built, cached or persisted yet
+    assertNull(DocidLookup.getIfAvailable(reader, ID));
+    DocidLookup lookup = DocidLookup.get(reader);
+    assertSame(lookup, DocidLookup.get(reader));
+    assertSame(lookup, DocidLookup.getIfAvailable(reader, ID));
+    assertEquals(50, lookup.size());
+
+    for (int i = 0; i < 50; i++) {
+      String docid = "doc" + i;
+      TopDocs rs = searcher.search(new TermQuery(new Term(ID, docid)), 1);
+      int luceneDocid = lookup.getLuceneDocid(docid);
+      assertEquals(rs.scoreDocs[0].doc, luceneDocid);
+      assertEquals(docid, lookup.getDocid(luceneDocid));
+    }
+    assertEquals(-1, lookup.getLuceneDocid("deleted"));
+    assertEquals(-1, lookup.getLuceneDocid("doc50"));
+    assertNull(lookup.getDocid(reader.maxDoc()));
+
+    // Persist, and read it back for a new reader over the same commit.
+    Path path = DocidLookup.persistedPath(reader, ID);
+    lookup.save(path);
+    reader.close();
+    reader = DirectoryReader.open(dir);
+    DocidLookup persisted = DocidLookup.getIfAvailable(reader, ID);
+    assertNotNull(persisted);
+    assertSame(persisted, DocidLookup.get(reader));
+    assertEquals(lookup.size(), persisted.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals(lookup.getLuceneDocid("doc" + i), persisted.getLuceneDocid("doc" + i));
+    }
+    for (int doc = 0; doc < reader.maxDoc(); doc++) {
+      assertEquals(lookup.getDocid(doc), persisted.getDocid(doc));
+    }
+
+    reader.close();
+    Files.delete(path);
+    dir.close();
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import io.anserini.index.generator.TweetGenerator;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DocidOrderTest extends LuceneTestCase {
+  private static final String ID = LuceneDocumentGenerator.FIELD_ID;
+  private static final String TWEET_ID = TweetGenerator.StatusField.ID_LONG.name;
+
+  private static void addDocument(IndexWriter writer, int i) throws Exception {
+    Document doc = new Document();
+    doc.add(new StringField(ID, "doc" + i, Field.Store.YES));
+    doc.add(new NumericDocValuesField(TWEET_ID, 100L + i));
+    writer.addDocument(doc);
+  }
+
+  @Test
+  public void testOrders() throws Exception {
+    Path indexPath = createTempDir();
+    Directory dir = FSDirectory.open(indexPath);
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()));
+    for (int i = 0; i < 20; i++) {
+      addDocument(writer, (i * 7) % 20);
+      if (i % 8 == 7) {
+        writer.commit();
+      }
+    }
+    writer.deleteDocuments(new Term(ID, "doc5"));
+    writer.commit();
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    DocidLookup lookup = DocidLookup.get(reader);
+
+    // "doc0" < "doc1" < "doc10" < ... < "doc19" < "doc2" < ...
+    int[] byDocid = DocidOrder.sortedByDocid(reader);
+    assertEquals(19, byDocid.length);
+    for (int i = 1; i < byDocid.length; i++) {
+      assertTrue(lookup.getDocid(byDocid[i - 1]).compareTo(lookup.getDocid(byDocid[i])) < 0);
+    }
+
+    int[] byTweetId = DocidOrder.sortedByTweetId(reader);
+    assertEquals(19, byTweetId.length);
+    assertEquals(lookup.getLuceneDocid("doc19"), byTweetId[0]);
+    assertEquals(lookup.getLuceneDocid("doc0"), byTweetId[18]);
+
+    int[] fromDocids = DocidOrder.fromDocids(reader, new BufferedReader(new StringReader("doc3\ndoc5\nmissing\ndoc0\n")));
+    assertArrayEquals(new int[] {lookup.getLuceneDocid("doc3"), -1, -1, lookup.getLuceneDocid("doc0")}, fromDocids);
+
+    // The first open computes and writes the order, the next ones map it.
+    AtomicInteger computed = new AtomicInteger();
+    DocidOrder.Source source = r -> {
+      computed.incrementAndGet();
+      return DocidOrder.sortedByDocid(r);
+    };
+    DocidOrder order = DocidOrder.open(reader, "docid", 0L, source);
+    Path path = DocidOrder.persistedPath(reader, "docid");
+    assertTrue(Files.exists(path));
+    DocidOrder mapped = DocidOrder.open(reader, "docid", 0L, source);
+    assertEquals(1, computed.get());
+    assertEquals(byDocid.length, mapped.size());
+    for (int i = 0; i < byDocid.length; i++) {
+      assertEquals(byDocid[i], order.get(i));
+      assertEquals(byDocid[i], mapped.get(i));
+    }
+
+    // A different stamp, or another commit of the index, invalidates the file.
+    DocidOrder.open(reader, "docid", 1L, source);
+    assertEquals(2, computed.get());
+    reader.close();
+    writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()));
+    addDocument(writer, 20);
+    writer.close();
+    reader = DirectoryReader.open(dir);
+    assertEquals(20, DocidOrder.open(reader, "docid", 1L, source).size());
+    assertEquals(3, computed.get());
+
+    reader.close();
+    Files.delete(path);
+    dir.close();
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.nio.file.Path;
+
+public class IndexReaderPoolTest extends LuceneTestCase {
+  @Test
+  public void testReadersAreSharedAndClosedWithLastReference() throws Exception {
+    Path indexPath = createTempDir();
+    Directory dir = FSDirectory.open(indexPath);
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()));
+    Document doc = new Document();
+    doc.add(new StringField("id", "doc1", Field.Store.YES));
+    writer.addDocument(doc);
+    writer.close();
+    dir.close();
+
+    IndexReader first = IndexReaderPool.acquire(indexPath);
+    IndexReader second = IndexReaderPool.acquire(indexPath.resolve(".").resolve("."));
+    assertSame(first, second);
+    assertEquals(2, first.getRefCount());
+    assertEquals(1, IndexReaderPool.size());
+
+    IndexReaderPool.release(second);
+    assertEquals(1, first.getRefCount());
+    assertEquals(1, first.numDocs());
+
+    IndexReaderPool.release(first);
+    assertEquals(0, first.getRefCount());
+    assertEquals(0, IndexReaderPool.size());
+
+    // A released index is opened again on the next acquire.
+    IndexReader third = IndexReaderPool.acquire(indexPath);
+    assertNotSame(first, third);
+    IndexReaderPool.release(third);
+  }
+}
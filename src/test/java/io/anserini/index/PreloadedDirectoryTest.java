@@ -0,0 +1,194 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.index;
+
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.nio.file.Path;
+
+public class PreloadedDirectoryTest extends LuceneTestCase {
+  // 64 byte chunks, so that small files span several chunks
+  private static final int CHUNK_BITS = 6;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+
+  @Test
+  public void testSearchMatchesFSDirectory() throws Exception {
+    Path indexPath = createTempDir();
+    try (Directory dir = FSDirectory.open(indexPath)) {
+      IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()));
+      for (int i = 0; i < 200; i++) {
+        Document doc = new Document();
+        doc.add(new StringField(LuceneDocumentGenerator.FIELD_ID, "doc" + i, Field.Store.YES));
+        StringBuilder text = new StringBuilder();
+        for (int j = 0; j <= i % WORDS.length; j++) {
+          text.append(WORDS[(i + j * 3) % WORDS.length]).append(' ');
+        }
+        doc.add(new TextField(LuceneDocumentGenerator.FIELD_BODY, text.toString(), Field.Store.YES));
+        writer.addDocument(doc);
+        if (i % 70 == 69) {
+          writer.commit();
+        }
+      }
+      writer.commit();
+      writer.close();
+    }
+
+    try (Directory fsDir = FSDirectory.open(indexPath);
+         PreloadedDirectory preloaded = new PreloadedDirectory(FSDirectory.open(indexPath), CHUNK_BITS);
+         IndexReader expectedReader = DirectoryReader.open(fsDir);
+         IndexReader reader = DirectoryReader.open(preloaded)) {
+      assertTrue(preloaded.getBytesLoaded() > CHUNK_SIZE);
+      IndexSearcher expectedSearcher = new IndexSearcher(expectedReader);
+      IndexSearcher searcher = new IndexSearcher(reader);
+      for (String word : WORDS) {
+        TermQuery query = new TermQuery(new Term(LuceneDocumentGenerator.FIELD_BODY, word));
+        TopDocs expected = expectedSearcher.search(query, 50);
+        TopDocs actual = searcher.search(query, 50);
+        assertEquals(expected.totalHits, actual.totalHits);
+        for (int i = 0; i < expected.scoreDocs.length; i++) {
+          assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+          assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0.0f);
+          assertEquals(expectedReader.document(expected.scoreDocs[i].doc).get(LuceneDocumentGenerator.FIELD_ID),
+              reader.document(actual.scoreDocs[i].doc).get(LuceneDocumentGenerator.FIELD_ID));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReadAcrossChunks() throws Exception {
+    Path path = createTempDir();
+    // A file that ends in the middle of a chunk and one that fills its last chunk exactly
+    byte[] partial = bytes(3 * CHUNK_SIZE + 17);
+    byte[] exact = bytes(2 * CHUNK_SIZE);
+    try (Directory dir = FSDirectory.open(path)) {
+      write(dir, "partial", partial);
+      write(dir, "exact", exact);
+    }
+
+    try (PreloadedDirectory dir = new PreloadedDirectory(FSDirectory.open(path), CHUNK_BITS)) {
+      for (String name : new String[] {"partial", "exact"}) {
+        byte[] expected = name.equals("partial") ? partial : exact;
+        try (IndexInput input = dir.openInput(name, IOContext.DEFAULT)) {
+          assertEquals(expected.length, input.length());
+
+          // Bulk read ending exactly on a chunk boundary, then single bytes across it
+          byte[] actual = new byte[expected.length];
+          input.readBytes(actual, 0, CHUNK_SIZE);
+          assertEquals(CHUNK_SIZE, input.getFilePointer());
+          for (int i = CHUNK_SIZE; i < expected.length; i++) {
+            actual[i] = input.readByte();
+          }
+          assertArrayEquals(expected, actual);
+          assertEquals(expected.length, input.getFilePointer());
+          assertReadPastEOF(input);
+
+          // Seek to EOF, and back into the file
+          input.seek(expected.length);
+          assertEquals(expected.length, input.getFilePointer());
+          assertReadPastEOF(input);
+          input.seek(CHUNK_SIZE - 1);
+          assertEquals(expected[CHUNK_SIZE - 1], input.readByte());
+          assertEquals(expected[CHUNK_SIZE], input.readByte());
+          try {
+            input.seek(expected.length + 1);
+            fail();
+          } catch (EOFException e) {
+            // expected
+          }
+
+          // Clones keep their own position
+          input.seek(CHUNK_SIZE + 5);
+          IndexInput clone = input.clone();
+          assertEquals(CHUNK_SIZE + 5, clone.getFilePointer());
+          assertEquals(expected[CHUNK_SIZE + 5], clone.readByte());
+          clone.seek(0);
+          assertEquals(expected[CHUNK_SIZE + 5], input.readByte());
+
+          // A slice that starts and ends inside different chunks
+          int offset = CHUNK_SIZE / 2;
+          int length = expected.length - CHUNK_SIZE;
+          IndexInput slice = input.slice("slice", offset, length);
+          assertEquals(length, slice.length());
+          byte[] sliced = new byte[length];
+          slice.readBytes(sliced, 0, length);
+          for (int i = 0; i < length; i++) {
+            assertEquals(expected[offset + i], sliced[i]);
+          }
+          assertReadPastEOF(slice);
+          slice.seek(length);
+          assertEquals(length, slice.getFilePointer());
+          // Back to the start of the second chunk of the file
+          slice.seek(CHUNK_SIZE - offset);
+          assertEquals(expected[CHUNK_SIZE], slice.readByte());
+
+          IndexInput sliceOfSlice = slice.slice("nested", 3, 10);
+          assertEquals(expected[offset + 3], sliceOfSlice.readByte());
+          IndexInput sliceClone = slice.clone();
+          assertEquals(slice.getFilePointer(), sliceClone.getFilePointer());
+          assertEquals(slice.readByte(), sliceClone.readByte());
+        }
+      }
+    }
+  }
+
+  private static byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (i * 31 + 7);
+    }
+    return bytes;
+  }
+
+  private static void write(Directory dir, String name, byte[] bytes) throws Exception {
+    try (IndexOutput output = dir.createOutput(name, IOContext.DEFAULT)) {
+      output.writeBytes(bytes, bytes.length);
+    }
+  }
+
+  private static void assertReadPastEOF(IndexInput input) throws Exception {
+    try {
+      input.readByte();
+      fail();
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+}
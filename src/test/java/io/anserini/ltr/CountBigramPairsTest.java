@@ -0,0 +1,67 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import io.anserini.ltr.feature.CountBigramPairs;
+import io.anserini.ltr.feature.OrderedSequentialPairsFeatureExtractor;
+import io.anserini.ltr.feature.UnorderedSequentialPairsFeatureExtractor;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests counting pairs of positions within a window
+ */
+public class CountBigramPairsTest extends BaseFeatureExtractorTest<Integer> {
+
+  @Test
+  public void testCountOrdered() {
+    int[] first = {0, 4, 10};
+    int[] second = {1, 3, 5, 12};
+    assertEquals(2, CountBigramPairs.countOrdered(first, second, 1));
+    assertEquals(4, CountBigramPairs.countOrdered(first, second, 3));
+    assertEquals(5, CountBigramPairs.countOrdered(first, second, 5));
+    assertEquals(0, CountBigramPairs.countOrdered(new int[0], second, 5));
+    assertEquals(0, CountBigramPairs.countOrdered(first, new int[0], 5));
+  }
+
+  @Test
+  public void testCountUnordered() {
+    int[] first = {0, 4, 10};
+    int[] second = {1, 3, 5, 12};
+    assertEquals(3, CountBigramPairs.countUnordered(first, second, 1));
+    assertEquals(CountBigramPairs.countUnordered(second, first, 3), CountBigramPairs.countUnordered(first, second, 3));
+  }
+
+  @Test
+  public void testSameTerm() {
+    // Each occurrence is paired with the following occurrences only
+    int[] positions = {0, 1, 2};
+    assertEquals(3, CountBigramPairs.countOrdered(positions, positions, 2));
+  }
+
+  @Test
+  public void testStopwordGap() throws IOException {
+    // Removed stopwords still take a position, so "simple" and "document" are 3 positions apart
+    String testText = "simple and the document";
+    String testQuery = "simple document";
+    assertFeatureValues(new float[] {0.0f, 1.0f}, testQuery, testText,
+        getChain(new OrderedSequentialPairsFeatureExtractor(2), new OrderedSequentialPairsFeatureExtractor(3)));
+    assertFeatureValues(new float[] {0.0f, 1.0f}, testQuery, testText,
+        getChain(new UnorderedSequentialPairsFeatureExtractor(2), new UnorderedSequentialPairsFeatureExtractor(3)));
+  }
+}
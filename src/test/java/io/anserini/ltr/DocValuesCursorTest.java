@@ -0,0 +1,93 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.anserini.ltr;
+
+import io.anserini.ltr.feature.DocValuesCursor;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link DocValuesCursor} returns the same values whatever the order the documents are read in
+ */
+public class DocValuesCursorTest extends LuceneTestCase {
+  private static final String FIELD = "count";
+  private static final String STORED_FIELD = "stored";
+  private static final long MISSING = -1L;
+
+  // Every third document has no value, and the last segment has no DocValues for the field at all
+  private static Long expected(int docid) {
+    if (docid >= 20) {
+      return null;
+    }
+    return docid % 3 == 0 ? MISSING : docid * 10L;
+  }
+
+  @Test
+  public void testReadOrders() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+    config.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter writer = new IndexWriter(dir, config);
+    for (int i = 0; i < 30; i++) {
+      Document doc = new Document();
+      doc.add(new TextField("contents", "doc", Field.Store.NO));
+      if (i < 20 && i % 3 != 0) {
+        doc.add(new NumericDocValuesField(FIELD, i * 10L));
+      }
+      // Not a numeric DocValues field
+      doc.add(new StoredField(STORED_FIELD, i));
+      writer.addDocument(doc);
+      if (i % 10 == 9) {
+        writer.commit();
+      }
+    }
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    assertEquals(3, reader.leaves().size());
+
+    // Increasing order, each document read twice as by two extractors of the same field
+    DocValuesCursor values = new DocValuesCursor(reader);
+    for (int docid = 0; docid < 30; docid++) {
+      assertEquals(expected(docid), values.getNumericValue(FIELD, docid, MISSING));
+      assertEquals(expected(docid), values.getNumericValue(FIELD, docid, MISSING));
+      assertNull(values.getNumericValue(STORED_FIELD, docid, MISSING));
+    }
+
+    // Backwards within a segment and across segments, e.g., qrels in arbitrary order
+    values = new DocValuesCursor(reader);
+    for (int docid : new int[] {8, 2, 5, 4, 25, 17, 11, 13, 1, 29, 19, 10, 0}) {
+      assertEquals(expected(docid), values.getNumericValue(FIELD, docid, MISSING));
+    }
+
+    reader.close();
+    dir.close();
+  }
+}
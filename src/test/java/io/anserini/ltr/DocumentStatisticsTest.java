@@ -0,0 +1,81 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import io.anserini.ltr.feature.DocumentStatistics;
+import io.anserini.ltr.feature.FeatureExtractors;
+import io.anserini.ltr.feature.UnigramFeatureExtractor;
+import io.anserini.ltr.feature.base.BM25FeatureExtractor;
+import io.anserini.ltr.feature.base.DocSizeFeatureExtractor;
+import io.anserini.ltr.feature.base.MatchingTermCount;
+import io.anserini.ltr.feature.base.SumMatchingTf;
+import io.anserini.ltr.feature.base.TFIDFFeatureExtractor;
+import io.anserini.ltr.feature.base.TermFrequencyFeatureExtractor;
+import io.anserini.rerank.RerankerContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Terms;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests the statistics shared by the extractors of a chain
+ */
+public class DocumentStatisticsTest extends BaseFeatureExtractorTest<Integer> {
+
+  @Test
+  public void testStatistics() throws IOException {
+    addTestDocument("simple simple document test case document simple");
+    testWriter.forceMerge(1);
+    RerankerContext<Integer> context = makeTestContext("simple document nonexistent");
+    IndexReader reader = context.getIndexSearcher().getIndexReader();
+    Terms terms = reader.getTermVector(0, TEST_FIELD_NAME);
+
+    DocumentStatistics stats = DocumentStatistics.compute(terms, context.getQueryTokens());
+    assertEquals(7, stats.getDocSize());
+    assertEquals(4, stats.getUniqueTermCount());
+    assertEquals(3, stats.getTermFreq("simpl"));
+    assertEquals(2, stats.getTermFreq("document"));
+    assertEquals(0, stats.getTermFreq("nonexist"));
+    assertEquals(2, stats.getTermFreqs().size());
+    assertArrayEquals(new int[] {0, 1, 6}, stats.getPositions("simpl"));
+    assertArrayEquals(new int[] {2, 5}, stats.getPositions("document"));
+    assertEquals(0, stats.getPositions("nonexist").length);
+  }
+
+  @Test
+  public void testChainMatchesSingleExtractors() throws IOException {
+    FeatureExtractors chain = getChain(new BM25FeatureExtractor(), new TFIDFFeatureExtractor(),
+        new TermFrequencyFeatureExtractor(), new DocSizeFeatureExtractor(), new SumMatchingTf(),
+        new MatchingTermCount(), new UnigramFeatureExtractor());
+    for (String doc : Arrays.asList("first document", "second simple document", "simple test document document")) {
+      addTestDocument(doc);
+    }
+    testWriter.forceMerge(1);
+    RerankerContext<Integer> context = makeTestContext("simple document");
+    IndexReader reader = context.getIndexSearcher().getIndexReader();
+
+    for (int docid = 0; docid < reader.maxDoc(); docid++) {
+      Terms terms = reader.getTermVector(docid, TEST_FIELD_NAME);
+      float[] features = chain.extractAll(reader.document(docid), terms, context);
+      for (int i = 0; i < features.length; i++) {
+        assertEquals(chain.extractors.get(i).extract(reader.document(docid), terms, context), features[i], 0.0f);
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests writing and reading the binary feature file format, and converting it from and to SVMlight
+ */
+public class FeatureFileTest extends LuceneTestCase {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Path path = createTempFile("features", ".bin");
+    Random random = new Random(42);
+    int numRows = 25;
+    float[][] vectors = new float[numRows][3];
+    // Small blocks so that several blocks and a partial last block are written
+    try (FeatureFile.Writer writer = new FeatureFile.Writer(path, Arrays.asList("a", "b", "c"), 8)) {
+      for (int row = 0; row < numRows; row++) {
+        for (int i = 0; i < 3; i++) {
+          vectors[row][i] = random.nextFloat();
+        }
+        writer.add(String.valueOf(row / 10), row % 3, "doc" + row, vectors[row]);
+      }
+    }
+
+    assertTrue(FeatureFile.isFeatureFile(path));
+    try (FeatureFile.Reader reader = new FeatureFile.Reader(path)) {
+      assertEquals(3, reader.numFeatures());
+      assertEquals(Arrays.asList("a", "b", "c"), reader.getFeatureNames());
+      assertEquals(numRows, reader.numRows());
+      assertEquals(4, reader.numBlocks());
+
+      int row = 0;
+      for (int b = 0; b < reader.numBlocks(); b++) {
+        FeatureFile.Reader.Block block = reader.getBlock(b);
+        float[][] rows = block.getRows();
+        for (int i = 0; i < block.size(); i++, row++) {
+          assertEquals(String.valueOf(row / 10), block.getQid(i));
+          assertEquals("doc" + row, block.getDocId(i));
+          assertEquals(row % 3, block.getLabel(i));
+          assertArrayEquals(vectors[row], rows[i], 0.0f);
+          assertEquals(vectors[row][1], block.getFeature(i, 1), 0.0f);
+        }
+      }
+      assertEquals(numRows, row);
+    }
+  }
+
+  @Test
+  public void testSvmLightConversion() throws Exception {
+    String svmLight = "#Extracting features with the following feature vector:\n" +
+        "#1:BM25\n" +
+        "#2:DocSize\n" +
+        "1 qid:301 1:12.5 2:300.0 # FBIS3-1\n" +
+        "0 qid:301 1:0.25 2:17.0 # FBIS3-2\n" +
+        "2 qid:302 1:-1.0 2:5.0 # LA010189-0001\n";
+    Path input = createTempFile("features", ".txt");
+    Files.write(input, svmLight.getBytes(StandardCharsets.UTF_8));
+    assertFalse(FeatureFile.isFeatureFile(input));
+
+    Path binary = createTempFile("features", ".bin");
+    FeatureFile.fromSvmLight(input, binary);
+    try (FeatureFile.Reader reader = new FeatureFile.Reader(binary)) {
+      assertEquals(Arrays.asList("BM25", "DocSize"), reader.getFeatureNames());
+      assertEquals(3, reader.numRows());
+      FeatureFile.Reader.Block block = reader.getBlock(0);
+      assertEquals("302", block.getQid(2));
+      assertEquals("LA010189-0001", block.getDocId(2));
+      assertEquals(2, block.getLabel(2));
+      assertArrayEquals(new float[] {12.5f, 0.25f, -1.0f}, block.getColumn(0), 0.0f);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FeatureFile.toSvmLight(binary, new PrintStream(bytes, true, "UTF-8"));
+    assertEquals(svmLight, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import io.anserini.ltr.feature.PairDocFreqs;
+import io.anserini.rerank.RerankerContext;
+import org.apache.lucene.index.IndexReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests the pair document frequencies shared by the PMI feature
+ */
+public class PairDocFreqsTest extends BaseFeatureExtractorTest<Integer> {
+
+  private IndexReader buildIndex() throws IOException {
+    for (String doc : Arrays.asList("test document", "document token", "document no match", "test",
+        "no match token", "no match document token", "test document token")) {
+      // Every document is committed on its own, so intersections run over several segments
+      addTestDocument(doc);
+    }
+    RerankerContext<Integer> context = makeTestContext("test document token");
+    return context.getIndexSearcher().getIndexReader();
+  }
+
+  @Test
+  public void testDocFreq() throws IOException {
+    IndexReader reader = buildIndex();
+    PairDocFreqs pairDocFreqs = PairDocFreqs.get(reader);
+    assertSame(pairDocFreqs, PairDocFreqs.get(reader));
+
+    assertEquals(2, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "test", "document"));
+    assertEquals(3, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "document", "token"));
+    assertEquals(3, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "token", "document"));
+    assertEquals(1, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "test", "token"));
+    assertEquals(0, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "test", "missing"));
+  }
+
+  @Test
+  public void testPrecompute() throws IOException {
+    IndexReader reader = buildIndex();
+    PairDocFreqs pairDocFreqs = PairDocFreqs.get(reader);
+    pairDocFreqs.precompute(reader, TEST_FIELD_NAME,
+        Collections.singletonList(Arrays.asList("test", "document", "token")), 2);
+
+    assertEquals(2, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "document", "test"));
+    assertEquals(3, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "document", "token"));
+    assertEquals(1, pairDocFreqs.getDocFreq(reader, TEST_FIELD_NAME, "token", "test"));
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import io.anserini.util.Qrels;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests that features extracted on several threads are written exactly as on a single thread
+ */
+public class ParallelFeatureExtractionTest extends LuceneTestCase {
+  private static final String[] WORDS = {"black", "bear", "river", "salmon", "fish", "forest", "hubble", "space"};
+  // More documents than one extraction task of the all documents mode handles
+  private static final int NUM_DOCS = 600;
+
+  private interface Extraction {
+    void run(WebFeatureExtractor extractor, Path output) throws Exception;
+  }
+
+  @Test
+  public void testSameOutputForAnyThreadCount() throws Exception {
+    Path path = createTempDir();
+    try (Directory dir = FSDirectory.open(path.resolve("index"));
+         IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()))) {
+      FieldType fieldType = new FieldType();
+      fieldType.setStored(true);
+      fieldType.setStoreTermVectors(true);
+      fieldType.setStoreTermVectorPositions(true);
+      fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+      for (int i = 0; i < NUM_DOCS; i++) {
+        StringBuilder text = new StringBuilder();
+        for (int j = 0; j < 3 + i % 7; j++) {
+          text.append(WORDS[(i * 5 + j * 3) % WORDS.length]).append(' ');
+        }
+        Document doc = new Document();
+        doc.add(new StringField(LuceneDocumentGenerator.FIELD_ID, "doc" + i, Field.Store.YES));
+        doc.add(new Field(LuceneDocumentGenerator.FIELD_BODY, text.toString(), fieldType));
+        writer.addDocument(doc);
+        if (i % 150 == 149) {
+          writer.commit();
+        }
+      }
+    }
+
+    Path qrelsPath = path.resolve("qrels");
+    Map<String, Map<String, String>> topics = new HashMap<>();
+    String[] titles = {"black bear", "salmon river", "hubble space", "forest fish river"};
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(qrelsPath, StandardCharsets.UTF_8))) {
+      for (int q = 0; q < titles.length; q++) {
+        Map<String, String> topic = new HashMap<>();
+        topic.put("title", titles[q]);
+        topics.put(String.valueOf(q + 1), topic);
+        for (int i = q; i < NUM_DOCS; i += 7) {
+          out.println((q + 1) + " 0 doc" + i + " " + (i % 3));
+        }
+      }
+    }
+    Qrels qrels = new Qrels(qrelsPath.toString());
+
+    try (IndexReader reader = DirectoryReader.open(FSDirectory.open(path.resolve("index")))) {
+      assertSameOutput(reader, qrels, topics, path, (extractor, output) -> print(output, extractor::printFeatures));
+      assertSameOutput(reader, qrels, topics, path,
+          (extractor, output) -> print(output, extractor::printFeatureForAllDocs));
+      assertSameOutput(reader, qrels, topics, path, WebFeatureExtractor::writeFeatures);
+    }
+  }
+
+  private interface Printer {
+    void print(PrintStream out) throws Exception;
+  }
+
+  private static void print(Path output, Printer printer) throws Exception {
+    try (PrintStream out = new PrintStream(Files.newOutputStream(output), false, "UTF-8")) {
+      printer.print(out);
+    }
+  }
+
+  private static void assertSameOutput(IndexReader reader, Qrels qrels, Map<String, Map<String, String>> topics,
+                                       Path dir, Extraction extraction) throws Exception {
+    byte[] expected = null;
+    for (int threads : new int[] {1, 3, 8}) {
+      WebFeatureExtractor extractor = new WebFeatureExtractor(reader, qrels, topics);
+      extractor.setThreads(threads);
+      Path output = dir.resolve("features." + threads);
+      extraction.run(extractor, output);
+      byte[] actual = Files.readAllBytes(output);
+      if (expected == null) {
+        assertTrue(actual.length > 0);
+        expected = actual;
+      } else {
+        assertArrayEquals("Output with " + threads + " threads", expected, actual);
+      }
+      Files.delete(output);
+    }
+  }
+}
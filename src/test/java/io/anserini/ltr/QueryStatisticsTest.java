@@ -0,0 +1,50 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import io.anserini.rerank.QueryStatistics;
+import io.anserini.rerank.RerankerContext;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests the per-query collection statistics shared by the extractors
+ */
+public class QueryStatisticsTest extends BaseFeatureExtractorTest<Integer> {
+
+  @Test
+  public void testStatistics() throws IOException {
+    addTestDocument("simple simple document");
+    addTestDocument("another document with simple text");
+    addTestDocument("unrelated text");
+    RerankerContext<Integer> context = makeTestContext("simple document nonexistent simple");
+
+    QueryStatistics stats = context.getQueryStatistics(TEST_FIELD_NAME);
+    assertSame(stats, context.getQueryStatistics(TEST_FIELD_NAME));
+    assertEquals(3, stats.getNumDocs());
+    assertEquals(3, stats.getDocCount());
+    assertEquals(9, stats.getSumTotalTermFreq());
+    assertEquals(2, stats.getDocFreq("simpl"));
+    assertEquals(3, stats.getCollectionFreq("simpl"));
+    assertEquals(2, stats.getDocFreq("document"));
+    assertEquals(2, stats.getCollectionFreq("document"));
+    assertEquals(0, stats.getDocFreq("nonexist"));
+    assertEquals(0, stats.getCollectionFreq("nonexist"));
+    assertEquals(0, stats.getDocFreq("text"));
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import io.anserini.ltr.feature.base.DocSizeFeatureExtractor;
+import io.anserini.rerank.RerankerContext;
+import io.anserini.rerank.ScoredDocuments;
+import io.anserini.rerank.lib.RankLibReranker;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests reranking the candidates of a query with a learning to rank model
+ */
+public class RankLibRerankerTest extends BaseFeatureExtractorTest<Integer> {
+  // Scores documents of 1, 2-3 and 4+ terms with 1, 2 and 3
+  private static final String MODEL = "## LambdaMART\n## No. of trees = 1\n## No. of leaves = 3\n\n" +
+      "<ensemble>\n\t<tree id=\"1\" weight=\"1.0\">\n<split>\n" +
+      "<feature> 1 </feature>\n<threshold> 1.5 </threshold>\n" +
+      "<split pos=\"left\">\n<output> 1.0 </output>\n</split>\n" +
+      "<split pos=\"right\">\n" +
+      "<feature> 1 </feature>\n<threshold> 3.5 </threshold>\n" +
+      "<split pos=\"left\">\n<output> 2.0 </output>\n</split>\n" +
+      "<split pos=\"right\">\n<output> 3.0 </output>\n</split>\n" +
+      "</split>\n" +
+      "</split>\n\t</tree>\n</ensemble>\n";
+
+  @Test
+  public void testRerank() throws Exception {
+    addTestDocument("simple");
+    addTestDocument("simple test");
+    addTestDocument("simple document words here");
+    RerankerContext<Integer> context = makeTestContext("simple");
+    IndexReader reader = context.getIndexSearcher().getIndexReader();
+
+    Path model = createTempFile("model", ".txt");
+    Files.write(model, MODEL.getBytes(StandardCharsets.UTF_8));
+    RankLibReranker<Integer> reranker =
+        new RankLibReranker<>(model.toString(), TEST_FIELD_NAME, getChain(new DocSizeFeatureExtractor()));
+
+    // Candidates are not in docid order, features come from the vector of each document
+    int[] ids = {0, 2, 1};
+    ScoredDocuments docs = new ScoredDocuments();
+    docs.ids = ids;
+    docs.documents = new Document[ids.length];
+    docs.scores = new float[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      docs.documents[i] = reader.document(ids[i]);
+      docs.scores[i] = 1.0f;
+    }
+
+    ScoredDocuments reranked = reranker.rerank(docs, context);
+    assertArrayEquals(new int[] {2, 1, 0}, reranked.ids);
+    assertArrayEquals(new float[] {3.0f, 2.0f, 1.0f}, reranked.scores, 0.0f);
+    assertEquals("simple test", reranked.documents[1].get(TEST_FIELD_NAME));
+  }
+}
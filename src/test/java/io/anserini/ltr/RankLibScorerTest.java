@@ -0,0 +1,89 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests scoring feature files query by query into a ranked run
+ */
+public class RankLibScorerTest extends LuceneTestCase {
+  private static final String MODEL = "## LambdaMART\n## No. of trees = 1\n## No. of leaves = 2\n\n" +
+      "<ensemble>\n\t<tree id=\"1\" weight=\"1.0\">\n<split>\n" +
+      "<feature> 1 </feature>\n<threshold> 0.5 </threshold>\n" +
+      "<split pos=\"left\">\n<output> 1.0 </output>\n</split>\n" +
+      "<split pos=\"right\">\n<output> 2.0 </output>\n</split>\n" +
+      "</split>\n\t</tree>\n</ensemble>\n";
+
+  private static final String FEATURES = "#Extracting features with the following feature vector:\n" +
+      "#1:BM25\n#2:DocSize\n" +
+      "0 qid:1 1:0.1 2:0.0 # d3\n" +
+      "1 qid:1 1:0.9 2:0.0 # d1\n" +
+      "0 qid:1 1:0.2 2:0.0 # d2\n" +
+      "2 qid:2 1:0.7 # d9\n";
+
+  private static final String RUN = "1 Q0 d1 1 2.000000 test\n" +
+      "1 Q0 d2 2 1.000000 test\n" +
+      "1 Q0 d3 3 1.000000 test\n" +
+      "2 Q0 d9 1 2.000000 test\n";
+
+  private String score(Path model, Path featureFile) throws Exception {
+    StringWriter run = new StringWriter();
+    try (RankLibScorer scorer = new RankLibScorer(model.toString(), 2);
+         RankLibScorer.GroupReader groups = RankLibScorer.open(featureFile);
+         PrintWriter out = new PrintWriter(run)) {
+      scorer.scoreAll(groups, out, "test");
+    }
+    return run.toString().replace(System.lineSeparator(), "\n");
+  }
+
+  @Test
+  public void testRankedRun() throws Exception {
+    Path model = createTempFile("model", ".txt");
+    Files.write(model, MODEL.getBytes(StandardCharsets.UTF_8));
+    Path text = createTempFile("features", ".txt");
+    Files.write(text, FEATURES.getBytes(StandardCharsets.UTF_8));
+    assertEquals(RUN, score(model, text));
+
+    Path binary = createTempFile("features", ".bin");
+    FeatureFile.fromSvmLight(text, binary);
+    assertEquals(RUN, score(model, binary));
+  }
+
+  @Test
+  public void testGroups() throws Exception {
+    Path text = createTempFile("features", ".txt");
+    Files.write(text, FEATURES.getBytes(StandardCharsets.UTF_8));
+    try (RankLibScorer.GroupReader groups = RankLibScorer.open(text)) {
+      RankLibScorer.QueryGroup group = groups.next();
+      assertEquals("1", group.qid);
+      assertEquals(3, group.size());
+      assertEquals("d2", group.docIds.get(2));
+      group = groups.next();
+      assertEquals("2", group.qid);
+      assertEquals(1, group.size());
+      assertNull(groups.next());
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import ciir.umass.edu.learning.DataPoint;
+import ciir.umass.edu.learning.Ranker;
+import ciir.umass.edu.learning.RankerFactory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class TreeEnsembleScorerTest extends LuceneTestCase {
+  private static final int NUM_FEATURES = 5;
+  // Thresholds and feature values come from the same grid, so that values equal to thresholds are tested.
+  private static final float[] GRID = {-1.5f, 0f, 0.25f, 0.5f, 1f, 3f};
+
+  private static void appendTree(StringBuilder sb, Random random, int leaves) {
+    if (leaves == 1) {
+      sb.append("<output> ").append(random.nextFloat() * 4 - 2).append(" </output>\n");
+      return;
+    }
+    int left = 1 + random.nextInt(leaves - 1);
+    sb.append("<feature> ").append(1 + random.nextInt(NUM_FEATURES)).append(" </feature>\n");
+    sb.append("<threshold> ").append(GRID[random.nextInt(GRID.length)]).append(" </threshold>\n");
+    sb.append("<split pos=\"left\">\n");
+    appendTree(sb, random, left);
+    sb.append("</split>\n<split pos=\"right\">\n");
+    appendTree(sb, random, leaves - left);
+    sb.append("</split>\n");
+  }
+
+  private static String ensemble(Random random, int trees, int minLeaves, int maxLeaves) {
+    StringBuilder sb = new StringBuilder("<ensemble>\n");
+    for (int t = 0; t < trees; t++) {
+      sb.append("\t<tree id=\"").append(t + 1).append("\" weight=\"").append(0.1f + random.nextFloat()).append("\">\n");
+      sb.append("<split>\n");
+      appendTree(sb, random, minLeaves + random.nextInt(maxLeaves - minLeaves + 1));
+      sb.append("</split>\n\t</tree>\n");
+    }
+    return sb.append("</ensemble>\n").toString();
+  }
+
+  private void assertSameScores(String model) throws Exception {
+    Path modelFile = createTempDir().resolve("model.txt");
+    Files.write(modelFile, model.getBytes(StandardCharsets.UTF_8));
+    Ranker ranker = new RankerFactory().loadRanker(modelFile.toString());
+    TreeEnsembleScorer scorer = TreeEnsembleScorer.load(modelFile);
+    assertNotNull(scorer);
+
+    Random random = new Random(42);
+    float[][] features = new float[200][NUM_FEATURES];
+    for (float[] vector : features) {
+      for (int f = 0; f < NUM_FEATURES; f++) {
+        vector[f] = random.nextBoolean() ? GRID[random.nextInt(GRID.length)] : random.nextFloat() * 5 - 2;
+      }
+    }
+    float[] scores = new float[features.length];
+    scorer.score(features, 0, features.length, scores);
+
+    for (int d = 0; d < features.length; d++) {
+      DataPoint dp = new DataPoint(BaseFeatureExtractor.constructOutputString("0", 0, "0", features[d]));
+      float expected = (float) ranker.eval(dp);
+      assertEquals(expected, scores[d], 0f);
+      assertEquals(expected, scorer.score(features[d]), 0f);
+    }
+  }
+
+  @Test
+  public void testLambdaMART() throws Exception {
+    Random random = new Random(1);
+    assertSameScores("## LambdaMART\n## No. of trees = 50\n## No. of leaves = 10\n\n" + ensemble(random, 50, 1, 10));
+  }
+
+  @Test
+  public void testLargeTrees() throws Exception {
+    Random random = new Random(2);
+    assertSameScores("## MART\n## No. of trees = 5\n## No. of leaves = 100\n\n" + ensemble(random, 5, 65, 100));
+  }
+
+  @Test
+  public void testRandomForests() throws Exception {
+    Random random = new Random(3);
+    StringBuilder model = new StringBuilder("## Random Forests\n## No. of bags = 3\n");
+    for (int bag = 0; bag < 3; bag++) {
+      model.append("## MART\n").append(ensemble(random, 10, 1, 16));
+    }
+    assertSameScores(model.toString());
+  }
+
+  @Test
+  public void testOtherModels() throws Exception {
+    assertNull(TreeEnsembleScorer.parse("## Coordinate Ascent\n## Restart = 5\n1:0.5 2:0.5\n"));
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.ltr;
+
+import io.anserini.index.generator.TweetGenerator.StatusField;
+import io.anserini.ltr.feature.FeatureExtractors;
+import io.anserini.ltr.feature.twitter.HashtagCount;
+import io.anserini.ltr.feature.twitter.IsTweetReply;
+import io.anserini.ltr.feature.twitter.LinkCount;
+import io.anserini.ltr.feature.twitter.TwitterFollowerCount;
+import io.anserini.ltr.feature.twitter.TwitterFriendCount;
+import io.anserini.rerank.RerankerContext;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.IndexReader;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests that the Twitter features are read from DocValues by Lucene id, and from stored fields otherwise
+ */
+public class TwitterDocValuesFeaturesTest extends BaseFeatureExtractorTest<Integer> {
+
+  private static FeatureExtractors twitterChain() {
+    return getChain(new TwitterFollowerCount(), new TwitterFriendCount(), new HashtagCount(), new LinkCount(),
+        new IsTweetReply());
+  }
+
+  @Test
+  public void testDocValues() throws IOException {
+    Document reply = new Document();
+    reply.add(new NumericDocValuesField(StatusField.FOLLOWERS_COUNT.name, 120));
+    reply.add(new NumericDocValuesField(StatusField.FRIENDS_COUNT.name, 45));
+    reply.add(new NumericDocValuesField(StatusField.HASHTAG_COUNT.name, 2));
+    reply.add(new NumericDocValuesField(StatusField.LINK_COUNT.name, 1));
+    reply.add(new NumericDocValuesField(StatusField.IN_REPLY_TO_STATUS_ID.name, 12345L));
+    testWriter.addDocument(reply);
+    Document tweet = new Document();
+    tweet.add(new NumericDocValuesField(StatusField.FOLLOWERS_COUNT.name, 7));
+    tweet.add(new NumericDocValuesField(StatusField.HASHTAG_COUNT.name, 0));
+    testWriter.addDocument(tweet);
+    testWriter.commit();
+
+    RerankerContext<Integer> context = makeTestContext("test");
+    FeatureExtractors chain = twitterChain();
+    // No stored document is needed
+    assertArrayEquals(new float[] {120f, 45f, 2f, 1f, 1f}, chain.extractAll(0, null, null, context), 0.0f);
+    assertArrayEquals(new float[] {7f, 0f, 0f, 0f, 0f}, chain.extractAll(1, null, null, context), 0.0f);
+  }
+
+  @Test
+  public void testStoredFieldsFallback() throws IOException {
+    Document doc = addTestDocument("#first #second tweet http://t.co/x");
+    doc.add(new StoredField(StatusField.FOLLOWERS_COUNT.name, 3));
+    doc.add(new StoredField(StatusField.IN_REPLY_TO_STATUS_ID.name, 1L));
+
+    RerankerContext<Integer> context = makeTestContext("tweet");
+    IndexReader reader = context.getIndexSearcher().getIndexReader();
+    FeatureExtractors chain = twitterChain();
+    float[] expected = {3f, 0f, 2f, 1f, 1f};
+    assertArrayEquals(expected, chain.extractAll(0, doc, reader.getTermVector(0, TEST_FIELD_NAME), context), 0.0f);
+    assertArrayEquals(expected, chain.extractAll(doc, null, context), 0.0f);
+  }
+}
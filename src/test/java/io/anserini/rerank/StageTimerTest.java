@@ -0,0 +1,99 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class StageTimerTest extends LuceneTestCase {
+  private static final long MILLIS = 1000000L;
+
+  private static final class IdentityReranker implements Reranker<String> {
+    @Override
+    public ScoredDocuments rerank(ScoredDocuments docs, RerankerContext<String> context) {
+      return docs;
+    }
+
+    @Override
+    public String tag() {
+      return "";
+    }
+  }
+
+  @Test
+  public void testPercentile() {
+    long[] values = new long[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    assertEquals(5L, StageTimer.percentile(values, 50));
+    assertEquals(9L, StageTimer.percentile(values, 90));
+    assertEquals(10L, StageTimer.percentile(values, 99));
+    assertEquals(1L, StageTimer.percentile(new long[] {1}, 50));
+    assertEquals(0L, StageTimer.percentile(new long[0], 99));
+  }
+
+  @Test
+  public void testSummaryAndCsv() throws Exception {
+    StageTimer timer = new StageTimer(true);
+    for (int i = 1; i <= 10; i++) {
+      timer.startQuery();
+      timer.record("search", i * MILLIS);
+      // Only the even queries have a rerank stage, the others count as 0
+      if (i % 2 == 0) {
+        timer.record("rerank", MILLIS);
+        timer.record("rerank", MILLIS);
+      }
+      timer.endQuery("q" + i);
+    }
+
+    String[] lines = timer.summary().split("\\R");
+    assertEquals(4, lines.length);
+    assertArrayEquals(new String[] {"stage", "p50", "p90", "p99", "max"}, lines[0].trim().split("\\s+"));
+    assertArrayEquals(new String[] {"search", "5.000", "9.000", "10.000", "10.000"}, lines[1].trim().split("\\s+"));
+    assertArrayEquals(new String[] {"rerank", "0.000", "2.000", "2.000", "2.000"}, lines[2].trim().split("\\s+"));
+    assertTrue(lines[3].startsWith(StageTimer.TOTAL));
+
+    Path path = createTempDir().resolve("timings.csv");
+    timer.writeQueryTimings(path);
+    List<String> rows = Files.readAllLines(path, StandardCharsets.UTF_8);
+    assertEquals(11, rows.size());
+    assertEquals("qid,search,rerank,total", rows.get(0));
+    assertTrue(rows.get(1).startsWith("q1,1.000,0.000,"));
+    assertTrue(rows.get(2).startsWith("q2,2.000,2.000,"));
+    assertTrue(rows.get(10).startsWith("q10,10.000,2.000,"));
+  }
+
+  @Test
+  public void testCascadeStagesByPosition() throws Exception {
+    Reranker<String> identity = new IdentityReranker();
+    RerankerCascade cascade = new RerankerCascade();
+    cascade.add(identity).add(identity);
+
+    StageTimer timer = new StageTimer(true);
+    timer.startQuery();
+    cascade.run(new ScoredDocuments(), null, timer);
+    timer.endQuery("q1");
+
+    Path path = createTempDir().resolve("timings.csv");
+    timer.writeQueryTimings(path);
+    assertEquals("qid,rerank:0:IdentityReranker,rerank:1:IdentityReranker,total",
+        Files.readAllLines(path, StandardCharsets.UTF_8).get(0));
+  }
+}
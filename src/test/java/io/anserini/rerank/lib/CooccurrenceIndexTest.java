@@ -0,0 +1,108 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank.lib;
+
+import io.anserini.util.TermOrdinals;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class CooccurrenceIndexTest {
+  // The set-based computation that the bitsets replace.
+  private static double referenceMutualInformation(Set<Integer> docidsX, Set<Integer> docidsY, int totalDocCount) {
+    int x1 = docidsX.size(), y1 = docidsY.size();
+    int x0 = totalDocCount - x1, y0 = totalDocCount - y1;
+    if (x1 == 0 || x0 == 0 || y1 == 0 || y0 == 0) {
+      return 0;
+    }
+    float pX0 = 1.0f * x0 / totalDocCount;
+    float pX1 = 1.0f * x1 / totalDocCount;
+    float pY0 = 1.0f * y0 / totalDocCount;
+    float pY1 = 1.0f * y1 / totalDocCount;
+    Set<Integer> docidsXClone = new HashSet<>(docidsX);
+    docidsXClone.retainAll(docidsY);
+    int numXY11 = docidsXClone.size();
+    int numXY10 = x1 - numXY11;
+    int numXY01 = y1 - numXY11;
+    int numXY00 = totalDocCount - numXY11 - numXY10 - numXY01;
+    float pXY11 = 1.0f * numXY11 / totalDocCount;
+    float pXY10 = 1.0f * numXY10 / totalDocCount;
+    float pXY01 = 1.0f * numXY01 / totalDocCount;
+    float pXY00 = 1.0f * numXY00 / totalDocCount;
+    double m00 = 0, m01 = 0, m10 = 0, m11 = 0;
+    if (pXY00 != 0) m00 = pXY00 * Math.log(pXY00 / (pX0 * pY0));
+    if (pXY01 != 0) m01 = pXY01 * Math.log(pXY01 / (pX0 * pY1));
+    if (pXY10 != 0) m10 = pXY10 * Math.log(pXY10 / (pX1 * pY0));
+    if (pXY11 != 0) m11 = pXY11 * Math.log(pXY11 / (pX1 * pY1));
+    return m00 + m10 + m01 + m11;
+  }
+
+  @Test
+  public void testSameMutualInformationAsSets() {
+    Random random = new Random(42);
+    int poolSize = 300;
+    // Docids of the pool are sparse Lucene docids; the index renumbers them.
+    int[] docids = new int[poolSize];
+    for (int i = 0; i < poolSize; i++) {
+      docids[i] = i * 13 + random.nextInt(13);
+    }
+
+    TermOrdinals dictionary = new TermOrdinals();
+    CooccurrenceIndex index = new CooccurrenceIndex(poolSize, dictionary);
+    Map<String, Set<Integer>> sets = new HashMap<>();
+    for (int i = 0; i < poolSize; i++) {
+      // The last documents have no terms and must not be counted.
+      if (i >= poolSize - 20) {
+        continue;
+      }
+      for (int t = 0; t < 40; t++) {
+        if (random.nextInt(t + 2) == 0) {
+          String term = "t" + t;
+          index.add(dictionary.add(new BytesRef(term)), i);
+          sets.computeIfAbsent(term, k -> new HashSet<>()).add(docids[i]);
+        }
+      }
+    }
+    index.finish();
+
+    Set<Integer> all = new HashSet<>();
+    for (Set<Integer> s : sets.values()) {
+      all.addAll(s);
+    }
+    assertEquals(all.size(), index.docCount());
+    Set<String> terms = new HashSet<>();
+    for (int term : index.terms()) {
+      terms.add(index.term(term));
+    }
+    assertEquals(sets.keySet(), terms);
+    assertEquals(-1, index.find("t40"));
+
+    for (String x : sets.keySet()) {
+      for (String y : sets.keySet()) {
+        assertEquals(referenceMutualInformation(sets.get(x), sets.get(y), all.size()),
+            index.mutualInformation(index.find(x), index.find(y)), 0.0);
+      }
+    }
+  }
+}
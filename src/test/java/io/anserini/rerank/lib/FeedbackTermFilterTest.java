@@ -0,0 +1,71 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.rerank.lib;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static io.anserini.index.generator.LuceneDocumentGenerator.FIELD_BODY;
+
+public class FeedbackTermFilterTest extends LuceneTestCase {
+  @Test
+  public void testFilter() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new WhitespaceAnalyzer()));
+    // "common" is in every document, "rare" in 1 of 20.
+    for (int i = 0; i < 20; i++) {
+      Document doc = new Document();
+      doc.add(new TextField(FIELD_BODY, i == 0 ? "common rare" : "common other" + i, Field.Store.NO));
+      writer.addDocument(doc);
+    }
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    FeedbackTermFilter filter = FeedbackTermFilter.get(reader, false);
+    assertSame(filter, FeedbackTermFilter.get(reader, false));
+    assertNotSame(filter, FeedbackTermFilter.get(reader, true));
+
+    assertTrue(filter.isEligible(new BytesRef("rare")));
+    assertTrue(filter.isEligible(new BytesRef("abc123")));
+    assertFalse(filter.isEligible(new BytesRef("common")));
+    assertFalse(filter.isEligible(new BytesRef("a")));
+    assertFalse(filter.isEligible(new BytesRef("abcdefghijklmnopqrstu")));
+    assertFalse(filter.isEligible(new BytesRef("Rare")));
+    assertFalse(filter.isEligible(new BytesRef("café")));
+    // Answers come from the cache the second time, and must not depend on the bytes of the first lookup.
+    BytesRef scratch = new BytesRef("rare");
+    assertTrue(filter.isEligible(scratch));
+    scratch.bytes[0] = 'b';
+    assertTrue(filter.isEligible(new BytesRef("rare")));
+
+    // The df thresholds of tweets are stricter: 1 of 20 is more than 1%.
+    assertFalse(FeedbackTermFilter.get(reader, true).isEligible(new BytesRef("rare")));
+
+    reader.close();
+    dir.close();
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import io.anserini.search.query.LuceneDocidSetQuery;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class LuceneDocidSetQueryTest extends LuceneTestCase {
+  private static final String FIELD = "contents";
+
+  @Test
+  public void testRestrictedScoresMatchFullScores() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()));
+    String[] words = {"bear", "black", "river", "fish", "salmon"};
+    for (int i = 0; i < 200; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int j = 0; j < words.length; j++) {
+        if ((i + j) % (j + 2) == 0) {
+          text.append(words[j]).append(' ');
+        }
+      }
+      Document doc = new Document();
+      doc.add(new TextField(FIELD, text.toString() + "doc", Field.Store.NO));
+      writer.addDocument(doc);
+      if (i % 70 == 69) {
+        writer.commit();
+      }
+    }
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.add(new BoostQuery(new TermQuery(new Term(FIELD, "bear")), 0.6f), BooleanClause.Occur.SHOULD);
+    builder.add(new BoostQuery(new TermQuery(new Term(FIELD, "salmon")), 0.3f), BooleanClause.Occur.SHOULD);
+    builder.add(new BoostQuery(new TermQuery(new Term(FIELD, "river")), 0.1f), BooleanClause.Occur.SHOULD);
+    Query query = builder.build();
+
+    TopDocs full = searcher.search(query, reader.maxDoc());
+    Map<Integer, Float> fullScores = new HashMap<>();
+    for (ScoreDoc sd : full.scoreDocs) {
+      fullScores.put(sd.doc, sd.score);
+    }
+
+    // Candidates across all segments, unsorted, with a duplicate and a document that does not match.
+    int[] candidates = {150, 3, 71, 199, 3, 0, 140, 69, 1};
+    BooleanQuery.Builder restricted = new BooleanQuery.Builder();
+    restricted.add(new LuceneDocidSetQuery(candidates), BooleanClause.Occur.FILTER);
+    restricted.add(query, BooleanClause.Occur.MUST);
+    TopDocs rs = searcher.search(restricted.build(), 100);
+
+    int expectedHits = 0;
+    for (int doc : new int[] {150, 3, 71, 199, 0, 140, 69, 1}) {
+      if (fullScores.containsKey(doc)) {
+        expectedHits++;
+      }
+    }
+    assertEquals(expectedHits, rs.totalHits);
+    for (ScoreDoc sd : rs.scoreDocs) {
+      assertEquals(fullScores.get(sd.doc), sd.score, 1e-6f);
+    }
+    assertEquals(8, searcher.count(new LuceneDocidSetQuery(candidates)));
+
+    reader.close();
+    dir.close();
+  }
+
+  @Test
+  public void testAdvanceToNoMoreDocs() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig config = new IndexWriterConfig(new EnglishAnalyzer());
+    config.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter writer = new IndexWriter(dir, config);
+    for (int i = 0; i < 30; i++) {
+      Document doc = new Document();
+      doc.add(new TextField(FIELD, "doc", Field.Store.NO));
+      writer.addDocument(doc);
+      if (i % 10 == 9) {
+        writer.commit();
+      }
+    }
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    assertEquals(3, reader.leaves().size());
+    IndexSearcher searcher = new IndexSearcher(reader);
+    Weight weight = searcher.createNormalizedWeight(new LuceneDocidSetQuery(new int[] {2, 12, 15, 22, 25}), false);
+    for (LeafReaderContext leaf : reader.leaves()) {
+      DocIdSetIterator it = weight.scorer(leaf).iterator();
+      assertEquals(2, it.nextDoc());
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, it.advance(DocIdSetIterator.NO_MORE_DOCS));
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, it.docID());
+
+      it = weight.scorer(leaf).iterator();
+      assertEquals(DocIdSetIterator.NO_MORE_DOCS, it.advance(leaf.reader().maxDoc()));
+    }
+
+    // The iterator is not the lead of the conjunction, which advances it to NO_MORE_DOCS once the lead is exhausted
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.add(new LuceneDocidSetQuery(new int[] {2, 12, 15, 25, 29}), BooleanClause.Occur.FILTER);
+    builder.add(new TermQuery(new Term(FIELD, "doc")), BooleanClause.Occur.FILTER);
+    assertEquals(5, searcher.count(builder.build()));
+
+    reader.close();
+    dir.close();
+  }
+}
@@ -24,6 +24,8 @@ import org.apache.lucene.document.*;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.LMDirichletSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.search.spans.SpanNearQuery;
 import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.search.spans.SpanTermQuery;
@@ -35,6 +37,8 @@ import org.junit.Before;
 import org.junit.Test;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
 public class SdmQueryTest extends LuceneTestCase {
 
@@ -166,4 +170,59 @@ public class SdmQueryTest extends LuceneTestCase {
 
     reader.close();
   }
+
+  @Test
+  public void fusedSdmQueryTest() throws Exception {
+    Path tempDir2 = createTempDir();
+    Directory dir = FSDirectory.open(tempDir2);
+    IndexWriterConfig config = new IndexWriterConfig(analyzer);
+    config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+    IndexWriter writer = new IndexWriter(dir, config);
+
+    FieldType textOptions = new FieldType();
+    textOptions.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+    textOptions.setStored(true);
+    textOptions.setTokenized(true);
+
+    String[] texts = new String[] {
+        "john fox information river chicken bush frank retrieval world",
+        "information retrieval river fox information fox retrieval",
+        "river river information retrieval fox world fox information river",
+        "fox chicken information",
+        "world bush frank john chicken"};
+    for (String text : texts) {
+      Document doc = new Document();
+      doc.add(new Field(field, text, textOptions));
+      writer.addDocument(doc);
+    }
+    writer.commit();
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    String[] queries = new String[] {"fox information river retrieval", "river information", "fox"};
+    Similarity[] similarities = new Similarity[] {new BM25Similarity(), new LMDirichletSimilarity(10.0f)};
+    for (Similarity similarity : similarities) {
+      searcher.setSimilarity(similarity);
+      for (String queryStr : queries) {
+        SdmQueryGenerator generator = new SdmQueryGenerator(0.85f, 0.1f, 0.05f);
+        TopDocs expected = searcher.search(generator.buildQuery(field, analyzer, queryStr), 10);
+        TopDocs actual = searcher.search(generator.buildFusedQuery(field, analyzer, queryStr), 10);
+
+        assertEquals(expected.totalHits, actual.totalHits);
+        Map<Integer, Float> actualScores = new HashMap<>();
+        for (ScoreDoc sd : actual.scoreDocs) {
+          actualScores.put(sd.doc, sd.score);
+        }
+        for (ScoreDoc sd : expected.scoreDocs) {
+          assertTrue(actualScores.containsKey(sd.doc));
+          assertEquals(sd.score, actualScores.get(sd.doc), 1e-5f);
+        }
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
 }
@@ -0,0 +1,121 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import io.anserini.search.query.BagOfWordsQueryGenerator;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ShardedIndexSearcherTest extends LuceneTestCase {
+  private final String field = "text";
+  private final Analyzer analyzer = new EnglishAnalyzer();
+
+  private static final String[] TEXTS = new String[] {
+      "john fox information river chicken bush frank retrieval world",
+      "information retrieval river fox information fox retrieval",
+      "river river information retrieval fox world",
+      "fox chicken information",
+      "world bush frank john chicken",
+      "retrieval of information from the river bank"};
+
+  private Directory buildIndex(int shard, int numShards) throws IOException {
+    Directory dir = FSDirectory.open(createTempDir());
+    IndexWriterConfig config = new IndexWriterConfig(analyzer);
+    config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+    IndexWriter writer = new IndexWriter(dir, config);
+    for (int i = 0; i < TEXTS.length; i++) {
+      if (numShards > 1 && i % numShards != shard) {
+        continue;
+      }
+      Document doc = new Document();
+      doc.add(new StringField("id", "doc" + i, Field.Store.YES));
+      doc.add(new TextField(field, TEXTS[i], Field.Store.NO));
+      writer.addDocument(doc);
+    }
+    writer.commit();
+    writer.close();
+    return dir;
+  }
+
+  private Map<String, Float> scores(IndexSearcher searcher, Query query) throws IOException {
+    Map<String, Float> scores = new HashMap<>();
+    TopDocs rs = searcher.search(query, 10);
+    for (ScoreDoc sd : rs.scoreDocs) {
+      scores.put(searcher.doc(sd.doc).get("id"), sd.score);
+    }
+    return scores;
+  }
+
+  @Test
+  public void testScoresMatchMonolithicIndex() throws Exception {
+    Directory monolithic = buildIndex(0, 1);
+    IndexReader monolithicReader = DirectoryReader.open(monolithic);
+
+    List<IndexReader> shards = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      shards.add(DirectoryReader.open(buildIndex(i, 3)));
+    }
+    IndexReader shardedReader = ShardedIndexSearcher.combine(shards);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    IndexSearcher expected = new IndexSearcher(monolithicReader);
+    expected.setSimilarity(new BM25Similarity());
+    IndexSearcher actual = new ShardedIndexSearcher(shardedReader, executor);
+    actual.setSimilarity(new BM25Similarity());
+
+    for (String q : new String[] {"fox information", "river retrieval world", "chicken"}) {
+      Query query = new BagOfWordsQueryGenerator().buildQuery(field, analyzer, q);
+      Map<String, Float> expectedScores = scores(expected, query);
+      Map<String, Float> actualScores = scores(actual, query);
+      assertEquals(expectedScores.keySet(), actualScores.keySet());
+      for (Map.Entry<String, Float> entry : expectedScores.entrySet()) {
+        assertEquals(entry.getValue(), actualScores.get(entry.getKey()), 1e-6f);
+      }
+    }
+
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    shardedReader.close();
+    monolithicReader.close();
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakLingering;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+// The threads of the HTTP server take a moment to exit after it is stopped
+@ThreadLeakLingering(linger = 5000)
+public class SimpleSearchServerTest extends LuceneTestCase {
+  private final ObjectMapper mapper = new ObjectMapper();
+  private SimpleSearchServer server;
+  private SimpleSearcher searcher;
+
+  private static final class Response {
+    private final int status;
+    private final JsonNode body;
+
+    private Response(int status, JsonNode body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    SimpleSearchServer.Args args = new SimpleSearchServer.Args();
+    args.index = SimpleSearcherTest.createIndex(createTempDir()).toString();
+    args.port = 0;
+    args.threads = 2;
+    args.batchThreads = 2;
+    args.maxSearchers = 2;
+    server = new SimpleSearchServer(args);
+    server.start();
+    searcher = new SimpleSearcher(args.index);
+    searcher.setBM25Similarity(0.9f, 0.4f);
+  }
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    searcher.close();
+    server.close();
+    super.tearDown();
+  }
+
+  private Response get(String query) throws IOException {
+    URL url = new URL("http://localhost:" + server.getPort() + "/search?" + query);
+    return read((HttpURLConnection) url.openConnection());
+  }
+
+  private Response post(String json) throws IOException {
+    URL url = new URL("http://localhost:" + server.getPort() + "/search");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(json.getBytes(StandardCharsets.UTF_8));
+    }
+    return read(connection);
+  }
+
+  private Response read(HttpURLConnection connection) throws IOException {
+    int status = connection.getResponseCode();
+    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      return new Response(status, mapper.readTree(in));
+    }
+  }
+
+  private void assertHits(SimpleSearcher.Result[] expected, JsonNode hits) {
+    assertEquals(expected.length, hits.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(i + 1, hits.get(i).get("rank").asInt());
+      assertEquals(expected[i].docid, hits.get(i).get("docid").asText());
+      assertEquals(expected[i].score, (float) hits.get(i).get("score").asDouble(), 1e-6f);
+    }
+  }
+
+  @Test
+  public void testSingleQuery() throws Exception {
+    Response response = get("query=" + URLEncoder.encode("information retrieval", "UTF-8") +
+        "&k=3&similarity=bm25&qid=q1");
+    assertEquals(200, response.status);
+    JsonNode result = response.body.get("results").get(0);
+    assertEquals("q1", result.get("qid").asText());
+    assertHits(searcher.search("information retrieval", 3), result.get("hits"));
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    Response response = post("{\"queries\": [{\"qid\": \"a\", \"query\": \"fox\"}, " +
+        "{\"qid\": \"b\", \"query\": \"river bank\"}, {\"query\": \"john chicken\"}], " +
+        "\"k\": 4, \"similarity\": \"bm25\", \"k1\": 0.9, \"b\": 0.4}");
+    assertEquals(200, response.status);
+    JsonNode results = response.body.get("results");
+    assertEquals(3, results.size());
+    assertEquals("a", results.get(0).get("qid").asText());
+    assertHits(searcher.search("fox", 4), results.get(0).get("hits"));
+    assertEquals("b", results.get(1).get("qid").asText());
+    assertHits(searcher.search("river bank", 4), results.get(1).get("hits"));
+    assertEquals("2", results.get(2).get("qid").asText());
+    assertHits(searcher.search("john chicken", 4), results.get(2).get("hits"));
+  }
+
+  @Test
+  public void testBadRequests() throws Exception {
+    Response response = post("{\"queries\": [{\"qid\": \"a\", \"query\": \"fox\"}, {\"qid\": \"b\"}]}");
+    assertEquals(400, response.status);
+    assertTrue(response.body.get("error").asText().contains("\"query\""));
+
+    assertEquals(400, post("{\"k\": 10}").status);
+    assertEquals(400, post("{\"queries\": \"fox\"}").status);
+    assertEquals(400, post("{not json").status);
+    assertEquals(400, get("query=fox&similarity=unknown").status);
+    assertEquals(400, get("query=fox&reranker=unknown").status);
+
+    // Repeated qids, explicit or positional, would overwrite each other's hits
+    response = post("{\"queries\": [{\"qid\": \"a\", \"query\": \"fox\"}, {\"qid\": \"a\", \"query\": \"bank\"}]}");
+    assertEquals(400, response.status);
+    assertTrue(response.body.get("error").asText().contains("\"a\""));
+    assertEquals(400, post("{\"queries\": [{\"qid\": \"1\", \"query\": \"fox\"}, {\"query\": \"bank\"}]}").status);
+  }
+
+  @Test
+  public void testUnsupportedMethod() throws Exception {
+    URL url = new URL("http://localhost:" + server.getPort() + "/search?query=fox");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("DELETE");
+    Response response = read(connection);
+    assertEquals(405, response.status);
+    assertTrue(response.body.get("error").asText().contains("DELETE"));
+  }
+
+  @Test
+  public void testSearchersAreBounded() throws Exception {
+    for (int i = 1; i <= 5; i++) {
+      assertEquals(200, get("query=fox&similarity=bm25&k1=" + i).status);
+      assertTrue(server.numSearchers() <= 2);
+    }
+    assertEquals(2, server.numSearchers());
+  }
+}
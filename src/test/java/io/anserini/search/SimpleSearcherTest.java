@@ -0,0 +1,107 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import io.anserini.index.generator.LuceneDocumentGenerator;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class SimpleSearcherTest extends LuceneTestCase {
+  private static final String[] TEXTS = new String[] {
+      "john fox information river chicken bush frank retrieval world",
+      "information retrieval river fox information fox retrieval",
+      "river river information retrieval fox world",
+      "fox chicken information",
+      "world bush frank john chicken",
+      "retrieval of information from the river bank"};
+
+  private static final List<String> QUERIES = Arrays.asList("fox", "information retrieval", "river bank",
+      "john chicken", "world", "frank fox river", "nothing matches this");
+
+  /**
+   * Builds a small index with the fields {@link SimpleSearcher} expects, in a few segments.
+   */
+  static Path createIndex(Path path) throws IOException {
+    try (Directory dir = FSDirectory.open(path);
+         IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new EnglishAnalyzer()))) {
+      for (int i = 0; i < TEXTS.length; i++) {
+        Document doc = new Document();
+        doc.add(new StringField(LuceneDocumentGenerator.FIELD_ID, "doc" + i, Field.Store.YES));
+        doc.add(new SortedDocValuesField(LuceneDocumentGenerator.FIELD_ID, new BytesRef("doc" + i)));
+        doc.add(new TextField(LuceneDocumentGenerator.FIELD_BODY, TEXTS[i], Field.Store.NO));
+        writer.addDocument(doc);
+        if (i % 2 == 1) {
+          writer.commit();
+        }
+      }
+    }
+    return path;
+  }
+
+  @Test
+  public void testBatchSearchMatchesSequentialSearch() throws Exception {
+    try (SimpleSearcher searcher = new SimpleSearcher(createIndex(createTempDir()).toString())) {
+      searcher.setBM25Similarity(0.9f, 0.4f);
+      List<SimpleSearcher.Result[]> expected = new ArrayList<>();
+      for (String query : QUERIES) {
+        expected.add(searcher.search(query, 5));
+      }
+
+      for (int threads : new int[] {1, 2, 4}) {
+        Map<String, SimpleSearcher.Result[]> results = searcher.batchSearch(QUERIES, 5, threads);
+        assertEquals(QUERIES.size(), results.size());
+        for (int i = 0; i < QUERIES.size(); i++) {
+          SimpleSearcher.Result[] actual = results.get(String.valueOf(i));
+          assertEquals(expected.get(i).length, actual.length);
+          for (int j = 0; j < actual.length; j++) {
+            assertEquals(expected.get(i)[j].docid, actual[j].docid);
+            assertEquals(expected.get(i)[j].score, actual[j].score, 0.0f);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBatchSearchReportsFailures() throws Exception {
+    try (SimpleSearcher searcher = new SimpleSearcher(createIndex(createTempDir()).toString())) {
+      // A null query cannot be analyzed
+      List<String> queries = Arrays.asList("fox", null, "river");
+      List<String> qids = Arrays.asList("q1", "q2", "q3");
+      IOException e = expectThrows(IOException.class, () -> searcher.batchSearch(queries, qids, 5, 2));
+      assertTrue(e.getMessage().contains("q2"));
+    }
+  }
+}
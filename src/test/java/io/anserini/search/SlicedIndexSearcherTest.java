@@ -0,0 +1,106 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import io.anserini.search.query.BagOfWordsQueryGenerator;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SlicedIndexSearcherTest extends LuceneTestCase {
+  private final String field = "text";
+  private final Analyzer analyzer = new EnglishAnalyzer();
+
+  private static final String[] TEXTS = new String[] {
+      "john fox information river chicken bush frank retrieval world",
+      "information retrieval river fox information fox retrieval",
+      "river river information retrieval fox world",
+      "fox chicken information",
+      "world bush frank john chicken",
+      "retrieval of information from the river bank"};
+
+  @Test
+  public void testPoliciesMatchSequentialSearch() throws Exception {
+    // One segment per document.
+    Directory dir = FSDirectory.open(createTempDir());
+    IndexWriterConfig config = new IndexWriterConfig(analyzer);
+    config.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter writer = new IndexWriter(dir, config);
+    for (int i = 0; i < TEXTS.length; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", "doc" + i, Field.Store.YES));
+      doc.add(new TextField(field, TEXTS[i], Field.Store.NO));
+      writer.addDocument(doc);
+      writer.commit();
+    }
+    writer.close();
+
+    IndexReader reader = DirectoryReader.open(dir);
+    assertEquals(TEXTS.length, reader.leaves().size());
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    IndexSearcher expected = new IndexSearcher(reader);
+    expected.setSimilarity(new BM25Similarity());
+    for (SlicedIndexSearcher.Policy policy : SlicedIndexSearcher.Policy.values()) {
+      IndexSearcher actual = SlicedIndexSearcher.create(reader, executor, policy);
+      actual.setSimilarity(new BM25Similarity());
+      for (String q : new String[] {"fox information", "river retrieval world", "chicken"}) {
+        Query query = new BagOfWordsQueryGenerator().buildQuery(field, analyzer, q);
+        TopDocs expectedDocs = expected.search(query, 10);
+        TopDocs actualDocs = actual.search(query, 10);
+        assertEquals(expectedDocs.totalHits, actualDocs.totalHits);
+        for (int i = 0; i < expectedDocs.scoreDocs.length; i++) {
+          ScoreDoc e = expectedDocs.scoreDocs[i];
+          ScoreDoc a = actualDocs.scoreDocs[i];
+          assertEquals(e.doc, a.doc);
+          assertEquals(e.score, a.score, 1e-6f);
+        }
+      }
+    }
+
+    // Searchers over other readers inherit the policy.
+    IndexSearcher template = SlicedIndexSearcher.create(reader, executor, SlicedIndexSearcher.Policy.BALANCED);
+    IndexSearcher derived = SlicedIndexSearcher.forReader(template, reader);
+    assertEquals(SlicedIndexSearcher.Policy.BALANCED, ((SlicedIndexSearcher) derived).getPolicy());
+
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    reader.close();
+    dir.close();
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.search;
+
+import io.anserini.index.generator.TweetGenerator;
+import io.anserini.search.query.TweetIdRangeQuery;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TweetIdRangeQueryTest extends LuceneTestCase {
+  private static final String FIELD = "text";
+  private static final String ID = TweetGenerator.StatusField.ID_LONG.name;
+  private final Analyzer analyzer = new EnglishAnalyzer();
+
+  private Directory buildIndex(boolean sorted) throws IOException {
+    Directory dir = FSDirectory.open(createTempDir());
+    IndexWriterConfig config = new IndexWriterConfig(analyzer);
+    if (sorted) {
+      config.setIndexSort(new Sort(new SortField(ID, SortField.Type.LONG)));
+    }
+    IndexWriter writer = new IndexWriter(dir, config);
+    // Add the tweets out of order, in a few segments.
+    for (int i = 0; i < 100; i++) {
+      long id = 1000L + (i * 37) % 100;
+      Document doc = new Document();
+      doc.add(new LongPoint(ID, id));
+      doc.add(new NumericDocValuesField(ID, id));
+      doc.add(new TextField(FIELD, id % 3 == 0 ? "fox river" : "fox", Field.Store.NO));
+      writer.addDocument(doc);
+      // Tweets without an id never match, also where they sort among the ids
+      if (i % 10 == 0) {
+        Document noId = new Document();
+        noId.add(new TextField(FIELD, "fox river", Field.Store.NO));
+        writer.addDocument(noId);
+      }
+      if (i % 30 == 29) {
+        writer.commit();
+      }
+    }
+    writer.close();
+    return dir;
+  }
+
+  private static Query filtered(Query filter) {
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.add(filter, BooleanClause.Occur.FILTER);
+    builder.add(new TermQuery(new Term(FIELD, "river")), BooleanClause.Occur.MUST);
+    return builder.build();
+  }
+
+  @Test
+  public void testSameMatchesAsPointRange() throws Exception {
+    for (boolean sorted : new boolean[] {true, false}) {
+      Directory dir = buildIndex(sorted);
+      IndexReader reader = DirectoryReader.open(dir);
+      for (LeafReaderContext leaf : reader.leaves()) {
+        assertEquals(sorted, TweetIdRangeQuery.isSortedBy(leaf.reader(), ID));
+      }
+      IndexSearcher searcher = new IndexSearcher(reader);
+
+      for (long lower : new long[] {0L, 1020L}) {
+        for (long t : new long[] {999L, 1000L, 1042L, 1099L, 2000L}) {
+          Sort sort = new Sort(new SortField(ID, SortField.Type.LONG, true));
+          TopDocs expected = searcher.search(filtered(LongPoint.newRangeQuery(ID, lower, t)), 200, sort);
+          TopDocs actual = searcher.search(filtered(new TweetIdRangeQuery(lower, t)), 200, sort);
+          assertEquals(expected.totalHits, actual.totalHits);
+          for (int i = 0; i < expected.scoreDocs.length; i++) {
+            assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+          }
+          assertEquals(searcher.count(LongPoint.newRangeQuery(ID, lower, t)),
+              searcher.count(new TweetIdRangeQuery(lower, t)));
+        }
+      }
+
+      reader.close();
+      dir.close();
+    }
+  }
+}
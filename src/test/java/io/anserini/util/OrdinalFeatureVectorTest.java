@@ -0,0 +1,107 @@
+/**
+ * Anserini: A toolkit for reproducible information retrieval research built on Lucene
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.anserini.util;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class OrdinalFeatureVectorTest extends LuceneTestCase {
+  private static OrdinalFeatureVector vector(TermOrdinals terms, String[] keys, float[] weights) {
+    OrdinalFeatureVector f = new OrdinalFeatureVector();
+    for (int i = 0; i < keys.length; i++) {
+      f.add(terms.add(new BytesRef(keys[i])), weights[i]);
+    }
+    return f;
+  }
+
+  private static Set<String> terms(OrdinalFeatureVector f, TermOrdinals terms) {
+    Set<String> set = new HashSet<>();
+    for (int i = 0; i < f.size(); i++) {
+      set.add(terms.term(f.ord(i)));
+    }
+    return set;
+  }
+
+  @Test
+  public void pruneToSizeTest() {
+    TermOrdinals terms = new TermOrdinals();
+    String[] keys = {"d", "c", "b", "a"};
+    float[] weights = {0.1f, 0.4f, 0.8f, 0.5f};
+    assertEquals(2, vector(terms, keys, weights).pruneToSize(2, terms).size());
+    assertEquals(new HashSet<>(Arrays.asList("a", "b")), terms(vector(terms, keys, weights).pruneToSize(2, terms), terms));
+    assertEquals(4, vector(terms, keys, weights).pruneToSize(10, terms).size());
+
+    // Kept terms are sorted by decreasing weight, ties by term.
+    OrdinalFeatureVector f = vector(terms, new String[] {"z", "y", "x", "w"}, new float[] {1.0f, 2.0f, 1.0f, 1.0f})
+        .pruneToSize(3, terms);
+    assertEquals("y", terms.term(f.ord(0)));
+    assertEquals("w", terms.term(f.ord(1)));
+    assertEquals("x", terms.term(f.ord(2)));
+  }
+
+  @Test
+  public void pruneMatchesFeatureVectorTest() {
+    Random random = new Random(42);
+    TermOrdinals terms = new TermOrdinals();
+    FeatureVector expected = new FeatureVector();
+    OrdinalFeatureVector actual = new OrdinalFeatureVector();
+    for (int i = 0; i < 1000; i++) {
+      // Distinct weights, so that the top terms do not depend on how ties are broken.
+      float weight = random.nextFloat() + i;
+      expected.addFeatureWeight("t" + i, weight);
+      actual.add(terms.add("t" + i), weight);
+    }
+    expected.pruneToSize(37).scaleToUnitL1Norm();
+    actual.pruneToSize(37, terms).scaleToUnitL1Norm();
+    assertEquals(expected.getFeatures(), terms(actual, terms));
+    for (int i = 0; i < actual.size(); i++) {
+      assertEquals(expected.getFeatureWeight(terms.term(actual.ord(i))), actual.weight(i), 1e-7f);
+    }
+  }
+
+  @Test
+  public void interpolateTest() {
+    TermOrdinals terms = new TermOrdinals();
+    OrdinalFeatureVector q = OrdinalFeatureVector.fromTerms(Arrays.asList("a", "b", "a"), terms);
+    assertEquals(2, q.size());
+    assertEquals(2.0f, q.weight(0), 0.0f);
+    q.scaleToUnitL1Norm();
+
+    OrdinalFeatureVector rm = vector(terms, new String[] {"c", "a"}, new float[] {0.75f, 0.25f});
+    OrdinalFeatureVector z = OrdinalFeatureVector.interpolate(q, rm, 0.5f, terms.size());
+
+    FeatureVector x = new FeatureVector();
+    x.addFeatureWeight("a", 2.0f);
+    x.addFeatureWeight("b", 1.0f);
+    x.scaleToUnitL1Norm();
+    FeatureVector y = new FeatureVector();
+    y.addFeatureWeight("c", 0.75f);
+    y.addFeatureWeight("a", 0.25f);
+    FeatureVector expected = FeatureVector.interpolate(x, y, 0.5f);
+
+    assertEquals(expected.getFeatures(), terms(z, terms));
+    for (int i = 0; i < z.size(); i++) {
+      assertEquals(expected.getFeatureWeight(terms.term(z.ord(i))), z.weight(i), 0.0f);
+    }
+  }
+}